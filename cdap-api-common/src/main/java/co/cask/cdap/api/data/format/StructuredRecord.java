@@ -21,6 +21,11 @@ import co.cask.cdap.api.common.Bytes;
 import co.cask.cdap.api.data.schema.Schema;
 import co.cask.cdap.api.data.schema.Schema.LogicalType;
 
+import java.io.IOException;
+import java.io.InvalidObjectException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamField;
 import java.io.Serializable;
 import java.text.DateFormat;
 import java.text.SimpleDateFormat;
@@ -30,9 +35,11 @@ import java.time.LocalTime;
 import java.time.ZoneId;
 import java.time.ZoneOffset;
 import java.time.ZonedDateTime;
+import java.util.Arrays;
 import java.util.Date;
 import java.util.EnumSet;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
@@ -41,23 +48,32 @@ import java.util.concurrent.TimeUnit;
 import javax.annotation.Nullable;
 
 /**
- * Instance of a record structured by a {@link Schema}. Fields are accessible by name.
+ * Instance of a record structured by a {@link Schema}. Fields are accessible by name, or by the position of the
+ * field in the {@link Schema#getFields()} list. Field values are stored in an array ordered by the field positions.
  */
 @Beta
 public class StructuredRecord implements Serializable {
   private static final SimpleDateFormat DEFAULT_FORMAT = new SimpleDateFormat("YYYY-MM-DD'T'HH:mm:ss z");
-  private final Schema schema;
-  private final Map<String, Object> fields;
+  // Not final, as they are set by readObject
+  private Schema schema;
+  private Object[] values;
 
   private static final long serialVersionUID = -6547770456592865613L;
 
+  // The serialized form is a map from field name to value, which is the form used before the values were kept in
+  // an array. This keeps records serialized by different versions readable by each other.
+  private static final ObjectStreamField[] serialPersistentFields = {
+    new ObjectStreamField("schema", Schema.class),
+    new ObjectStreamField("fields", Map.class)
+  };
+
   {
     DEFAULT_FORMAT.setTimeZone(TimeZone.getTimeZone("UTC"));
   }
 
-  private StructuredRecord(Schema schema, Map<String, Object> fields) {
+  private StructuredRecord(Schema schema, Object[] values) {
     this.schema = schema;
-    this.fields = fields;
+    this.values = values;
   }
 
   /**
@@ -79,7 +95,22 @@ public class StructuredRecord implements Serializable {
   @SuppressWarnings("unchecked")
   @Nullable
   public <T> T get(String fieldName) {
-    return (T) fields.get(fieldName);
+    int idx = schema.getFieldIndex(fieldName);
+    return idx < 0 ? null : (T) values[idx];
+  }
+
+  /**
+   * Get the value of a field in the record by the position of the field in the schema.
+   *
+   * @param fieldIndex position of the field to get in the {@link Schema#getFields()} list.
+   * @param <T> type of object of the field value.
+   * @return value of the field.
+   * @throws IndexOutOfBoundsException if the index is not a valid field position.
+   */
+  @SuppressWarnings("unchecked")
+  @Nullable
+  public <T> T get(int fieldIndex) {
+    return (T) values[fieldIndex];
   }
 
   /**
@@ -92,7 +123,7 @@ public class StructuredRecord implements Serializable {
   @Nullable
   public LocalDate getDate(String fieldName) {
     LogicalType logicalType = validateAndGetLogicalType(schema.getField(fieldName), EnumSet.of(LogicalType.DATE));
-    Integer value = (Integer) fields.get(fieldName);
+    Integer value = get(fieldName);
     return (value == null || logicalType == null) ? null : LocalDate.ofEpochDay(value.longValue());
   }
 
@@ -109,7 +140,7 @@ public class StructuredRecord implements Serializable {
   public LocalTime getTime(String fieldName) {
     LogicalType logicalType = validateAndGetLogicalType(schema.getField(fieldName),
                                                         EnumSet.of(LogicalType.TIME_MILLIS, LogicalType.TIME_MICROS));
-    Object value = fields.get(fieldName);
+    Object value = get(fieldName);
     if (value == null || logicalType == null) {
       return null;
     }
@@ -152,7 +183,7 @@ public class StructuredRecord implements Serializable {
     LogicalType logicalType = validateAndGetLogicalType(schema.getField(fieldName),
                                                         EnumSet.of(LogicalType.TIMESTAMP_MILLIS,
                                                                    LogicalType.TIMESTAMP_MICROS));
-    Object value = fields.get(fieldName);
+    Object value = get(fieldName);
     if (value == null || logicalType == null) {
       return null;
     }
@@ -258,12 +289,20 @@ public class StructuredRecord implements Serializable {
    * TODO: enforce schema correctness?
    */
   public static class Builder {
+    // Marker for null explicitly set to field that is not nullable as defined by Schema#isNullable(),
+    // such as a NULL field, so that build() can tell it apart from a field that was never set.
+    private static final Object NULL_VALUE = new Object();
+
     private final Schema schema;
-    private Map<String, Object> fields;
+    private final List<Schema.Field> fields;
+    private Object[] values;
+    // True if the values array is used by a record returned from build(), which requires a copy before modification
+    private boolean shared;
 
     private Builder(Schema schema) {
       this.schema = schema;
-      this.fields = new HashMap<>();
+      this.fields = schema.getFields();
+      this.values = new Object[fields.size()];
     }
 
     /**
@@ -276,8 +315,21 @@ public class StructuredRecord implements Serializable {
      *                                   value is given
      */
     public Builder set(String fieldName, @Nullable Object value) {
-      validateAndGetField(fieldName, value);
-      fields.put(fieldName, value);
+      return set(getFieldIndex(fieldName), value);
+    }
+
+    /**
+     * Set the field at the given position in the schema to the given value.
+     *
+     * @param fieldIndex position of the field to set in the {@link Schema#getFields()} list
+     * @param value value for the field
+     * @return this builder
+     * @throws UnexpectedFormatException if the index is not a valid field position, or the field is not nullable
+     *                                   but a null value is given
+     */
+    public Builder set(int fieldIndex, @Nullable Object value) {
+      validateAndGetField(fieldIndex, value);
+      put(fieldIndex, value);
       return this;
     }
 
@@ -291,13 +343,14 @@ public class StructuredRecord implements Serializable {
      *                                   value is given or if the provided date is an invalid date
      */
     public Builder setDate(String fieldName, @Nullable LocalDate localDate) {
-      validateAndGetLogicalType(validateAndGetField(fieldName, localDate), EnumSet.of(LogicalType.DATE));
+      int idx = getFieldIndex(fieldName);
+      validateAndGetLogicalType(validateAndGetField(idx, localDate), EnumSet.of(LogicalType.DATE));
       if (localDate == null) {
-        fields.put(fieldName, null);
+        put(idx, null);
         return this;
       }
       try {
-        fields.put(fieldName, Math.toIntExact(localDate.toEpochDay()));
+        put(idx, Math.toIntExact(localDate.toEpochDay()));
       } catch (ArithmeticException e) {
         // Highest integer is 2,147,483,647 which is Jan 1 2038.
         throw new UnexpectedFormatException(String.format("Field %s was set to a date that is too large." +
@@ -316,11 +369,12 @@ public class StructuredRecord implements Serializable {
      *                                   value is given
      */
     public Builder setTime(String fieldName, @Nullable LocalTime localTime) {
-      LogicalType logicalType = validateAndGetLogicalType(validateAndGetField(fieldName, localTime),
+      int idx = getFieldIndex(fieldName);
+      LogicalType logicalType = validateAndGetLogicalType(validateAndGetField(idx, localTime),
                                                           EnumSet.of(LogicalType.TIME_MILLIS, LogicalType.TIME_MICROS));
 
       if (localTime == null) {
-        fields.put(fieldName, null);
+        put(idx, null);
         return this;
       }
 
@@ -329,7 +383,7 @@ public class StructuredRecord implements Serializable {
       if (logicalType == LogicalType.TIME_MILLIS) {
         try {
           int millis = Math.toIntExact(TimeUnit.NANOSECONDS.toMillis(nanos));
-          fields.put(fieldName, millis);
+          put(idx, millis);
         } catch (ArithmeticException e) {
           throw new UnexpectedFormatException(String.format("Field %s was set to a time that is too large.",
                                                             fieldName));
@@ -338,7 +392,7 @@ public class StructuredRecord implements Serializable {
       }
 
       long micros = TimeUnit.NANOSECONDS.toMicros(nanos);
-      fields.put(fieldName, micros);
+      put(idx, micros);
       return this;
     }
 
@@ -353,12 +407,13 @@ public class StructuredRecord implements Serializable {
      *                                   value is given or if the provided date is an invalid timestamp
      */
     public Builder setTimestamp(String fieldName, @Nullable ZonedDateTime zonedDateTime) {
-      LogicalType logicalType = validateAndGetLogicalType(validateAndGetField(fieldName, zonedDateTime),
+      int idx = getFieldIndex(fieldName);
+      LogicalType logicalType = validateAndGetLogicalType(validateAndGetField(idx, zonedDateTime),
                                                           EnumSet.of(LogicalType.TIMESTAMP_MILLIS,
                                                                      LogicalType.TIMESTAMP_MICROS));
 
       if (zonedDateTime == null) {
-        fields.put(fieldName, null);
+        put(idx, null);
         return this;
       }
 
@@ -367,13 +422,13 @@ public class StructuredRecord implements Serializable {
         if (logicalType == LogicalType.TIMESTAMP_MILLIS) {
           long millis = TimeUnit.SECONDS.toMillis(instant.getEpochSecond());
           long tsMillis = Math.addExact(millis, TimeUnit.NANOSECONDS.toMillis(instant.getNano()));
-          fields.put(fieldName, tsMillis);
+          put(idx, tsMillis);
           return this;
         }
 
         long micros = TimeUnit.SECONDS.toMicros(instant.getEpochSecond());
         long tsMicros = Math.addExact(micros, TimeUnit.NANOSECONDS.toMicros(instant.getNano()));
-        fields.put(fieldName, tsMicros);
+        put(idx, tsMicros);
         return this;
       } catch (ArithmeticException e) {
         throw new UnexpectedFormatException(String.format("Field %s was set to a timestamp that is too large.",
@@ -417,19 +472,20 @@ public class StructuredRecord implements Serializable {
     @Deprecated
     public Builder convertAndSet(String fieldName, @Nullable Date date,
                                  @Nullable DateFormat dateFormat) throws UnexpectedFormatException {
-      Schema.Field field = validateAndGetField(fieldName, date);
+      int idx = getFieldIndex(fieldName);
+      Schema.Field field = validateAndGetField(idx, date);
       boolean isNullable = field.getSchema().isNullable();
       if (isNullable && date == null) {
-        fields.put(fieldName, null);
+        put(idx, null);
         return this;
       }
 
       Schema.Type fieldType = isNullable ? field.getSchema().getNonNullable().getType() : field.getSchema().getType();
       if (fieldType == Schema.Type.LONG) {
-        fields.put(fieldName, date.getTime());
+        put(idx, date.getTime());
       } else if (fieldType == Schema.Type.STRING) {
         DateFormat format = dateFormat == null ? DEFAULT_FORMAT : dateFormat;
-        fields.put(fieldName, format.format(date));
+        put(idx, format.format(date));
       } else {
         throw new UnexpectedFormatException("Date must be either a long or a string, not a " + fieldType);
       }
@@ -447,8 +503,9 @@ public class StructuredRecord implements Serializable {
      *                                   value is given, or the string cannot be converted to the type for the field
      */
     public Builder convertAndSet(String fieldName, @Nullable String strVal) throws UnexpectedFormatException {
-      Schema.Field field = validateAndGetField(fieldName, strVal);
-      fields.put(fieldName, convertString(field.getSchema(), strVal));
+      int idx = getFieldIndex(fieldName);
+      Schema.Field field = validateAndGetField(idx, strVal);
+      put(idx, convertString(field.getSchema(), strVal));
       return this;
     }
 
@@ -459,20 +516,43 @@ public class StructuredRecord implements Serializable {
      * @throws UnexpectedFormatException if there is at least one non-nullable field without a value
      */
     public StructuredRecord build() throws UnexpectedFormatException {
-      // check that all non-nullable fields have a value.
-      for (Schema.Field field : schema.getFields()) {
-        String fieldName = field.getName();
-        if (!fields.containsKey(fieldName)) {
-          // if the field is not nullable and there is no value set for the field, this is invalid.
-          if (!field.getSchema().isNullable()) {
-            throw new UnexpectedFormatException("Field " + fieldName + " must contain a value.");
-          } else {
-            // otherwise, set the value for the field to null
-            fields.put(fieldName, null);
+      // check that all non-nullable fields have a value. Fields that are not set have null value.
+      Object[] recordValues = values;
+      for (int i = 0; i < recordValues.length; i++) {
+        Object value = recordValues[i];
+        if (value == NULL_VALUE) {
+          // the record cannot have the marker, hence copy the values before replacing it with null
+          if (recordValues == values) {
+            recordValues = Arrays.copyOf(values, values.length);
           }
+          recordValues[i] = null;
+        } else if (value == null && !fields.get(i).getSchema().isNullable()) {
+          // if the field is not nullable and there is no value set for the field, this is invalid.
+          throw new UnexpectedFormatException("Field " + fields.get(i).getName() + " must contain a value.");
         }
       }
-      return new StructuredRecord(schema, fields);
+      shared = recordValues == values;
+      return new StructuredRecord(schema, recordValues);
+    }
+
+    private int getFieldIndex(String fieldName) {
+      int idx = schema.getFieldIndex(fieldName);
+      if (idx < 0) {
+        throw new UnexpectedFormatException("field " + fieldName + " is not in the schema.");
+      }
+      return idx;
+    }
+
+    private void put(int fieldIndex, @Nullable Object value) {
+      if (shared) {
+        values = Arrays.copyOf(values, values.length);
+        shared = false;
+      }
+      if (value == null && !fields.get(fieldIndex).getSchema().isNullable()) {
+        values[fieldIndex] = NULL_VALUE;
+      } else {
+        values[fieldIndex] = value;
+      }
     }
 
     private Object convertString(Schema schema, String strVal) throws UnexpectedFormatException {
@@ -514,11 +594,12 @@ public class StructuredRecord implements Serializable {
       }
     }
 
-    private Schema.Field validateAndGetField(String fieldName, Object val) {
-      Schema.Field field = schema.getField(fieldName);
-      if (field == null) {
-        throw new UnexpectedFormatException("field " + fieldName + " is not in the schema.");
+    private Schema.Field validateAndGetField(int fieldIndex, Object val) {
+      if (fieldIndex < 0 || fieldIndex >= fields.size()) {
+        throw new UnexpectedFormatException("field index " + fieldIndex + " is not in the schema.");
       }
+      Schema.Field field = fields.get(fieldIndex);
+      String fieldName = field.getName();
       Schema fieldSchema = field.getSchema();
       if (val == null) {
         if (fieldSchema.getType() == Schema.Type.NULL) {
@@ -538,6 +619,37 @@ public class StructuredRecord implements Serializable {
     }
   }
 
+  private void writeObject(ObjectOutputStream out) throws IOException {
+    List<Schema.Field> schemaFields = schema.getFields();
+    Map<String, Object> fields = new HashMap<>();
+    for (int i = 0; i < schemaFields.size(); i++) {
+      fields.put(schemaFields.get(i).getName(), values[i]);
+    }
+
+    ObjectOutputStream.PutField putField = out.putFields();
+    putField.put("schema", schema);
+    putField.put("fields", fields);
+    out.writeFields();
+  }
+
+  @SuppressWarnings("unchecked")
+  private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+    ObjectInputStream.GetField getField = in.readFields();
+    Schema schema = (Schema) getField.get("schema", null);
+    Map<String, Object> fields = (Map<String, Object>) getField.get("fields", null);
+    if (schema == null || fields == null) {
+      throw new InvalidObjectException("Missing schema or fields of the record");
+    }
+
+    List<Schema.Field> schemaFields = schema.getFields();
+    Object[] values = new Object[schemaFields.size()];
+    for (int i = 0; i < values.length; i++) {
+      values[i] = fields.get(schemaFields.get(i).getName());
+    }
+    this.schema = schema;
+    this.values = values;
+  }
+
   @Override
   public boolean equals(Object o) {
     if (this == o) {
@@ -549,12 +661,12 @@ public class StructuredRecord implements Serializable {
 
     StructuredRecord that = (StructuredRecord) o;
 
-    return Objects.equals(schema, that.schema) && Objects.equals(fields, that.fields);
+    return Objects.equals(schema, that.schema) && Arrays.equals(values, that.values);
 
   }
 
   @Override
   public int hashCode() {
-    return Objects.hash(schema, fields);
+    return 31 * Objects.hashCode(schema) + Arrays.hashCode(values);
   }
 }
@@ -472,6 +472,10 @@ public final class Schema implements Serializable {
   // This is a on demand cache for case insensitive field lookup. No need to serialize.
   private transient Map<String, Field> ignoreCaseFieldMap;
 
+  // Mapping from field name to the field position in the record. It is computed in the constructor and
+  // recomputed on demand after deserialization, hence no need to serialize.
+  private transient Map<String, Integer> fieldIndexes;
+
   private Schema(Type type,
                  @Nullable LogicalType logicalType,                                   // Not null for logical type
                  @Nullable Set<String> enumValues,                                    // Not null for enum type
@@ -491,6 +495,7 @@ public final class Schema implements Serializable {
     this.recordName = recordName;
     this.fieldMap = fieldMap == null ? null : copyFields(fieldMap);
     this.fields = this.fieldMap == null ? null : Collections.unmodifiableList(new ArrayList<>(this.fieldMap.values()));
+    this.fieldIndexes = createFieldIndexes(this.fields);
     this.unionSchemas = unionSchemas == null ? null : new ArrayList<>(unionSchemas);
 
     // Resolve name only records. Only need this step for RECORD or UNION type schemas
@@ -630,6 +635,25 @@ public final class Schema implements Serializable {
     return ignoreCaseFieldMap.get(name.toLowerCase());
   }
 
+  /**
+   * Returns the position of the record {@link Field} of the given name in the {@link #getFields()} list.
+   *
+   * @param name Name of the field
+   * @return The 0-base index of the field or {@code -1} if there is no such field in this record
+   *         or this is not a {@link Type#RECORD RECORD} schema.
+   */
+  public int getFieldIndex(String name) {
+    if (fields == null) {
+      return -1;
+    }
+    Map<String, Integer> indexes = fieldIndexes;
+    if (indexes == null) {
+      indexes = fieldIndexes = createFieldIndexes(fields);
+    }
+    Integer idx = indexes.get(name);
+    return idx == null ? -1 : idx;
+  }
+
   /**
    * @return An immutable {@link List} of schemas inside this union
    *         or {@code null} if this is not a {@link Type#UNION UNION} schema.
@@ -885,6 +909,22 @@ public final class Schema implements Serializable {
     return writer.toString();
   }
 
+  /**
+   * Creates the mapping from field name to the field position for the given list of fields.
+   */
+  @Nullable
+  private static Map<String, Integer> createFieldIndexes(@Nullable List<Field> fields) {
+    if (fields == null) {
+      return null;
+    }
+    Map<String, Integer> indexes = new HashMap<>();
+    int idx = 0;
+    for (Field field : fields) {
+      indexes.put(field.getName(), idx++);
+    }
+    return indexes;
+  }
+
   /**
    * Copies the given set of fields.
    */
@@ -0,0 +1,100 @@
+/*
+ * Copyright © 2018 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.internal.io;
+
+import co.cask.cdap.api.data.format.StructuredRecord;
+import co.cask.cdap.api.data.format.UnexpectedFormatException;
+import co.cask.cdap.api.data.schema.Schema;
+import com.google.gson.JsonDeserializationContext;
+import com.google.gson.JsonDeserializer;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonSerializationContext;
+import com.google.gson.JsonSerializer;
+
+import java.lang.reflect.Type;
+import java.util.List;
+
+/**
+ * Class for serialize/deserialize {@link StructuredRecord} object to/from json through
+ * {@link com.google.gson.Gson Gson}. A record is a json object of the {@code schema} and a {@code fields} object
+ * from field name to value. Field values are deserialized as the json types, same as deserializing an
+ * {@link Object}.
+ * <p>
+ *  Expected usage:
+ *
+ *  <pre>
+ *    StructuredRecord record = ...;
+ *    Gson gson = new GsonBuilder()
+ *                  .registerTypeAdapter(StructuredRecord.class, new StructuredRecordTypeAdapter())
+ *                  .create();
+ *    String json = gson.toJson(record);
+ *
+ *    StructuredRecord newRecord = gson.fromJson(json, StructuredRecord.class);
+ *  </pre>
+ * </p>
+ */
+public final class StructuredRecordTypeAdapter implements JsonSerializer<StructuredRecord>,
+                                                          JsonDeserializer<StructuredRecord> {
+
+  private static final String SCHEMA = "schema";
+  private static final String FIELDS = "fields";
+
+  @Override
+  public JsonElement serialize(StructuredRecord record, Type typeOfSrc, JsonSerializationContext context) {
+    JsonObject fields = new JsonObject();
+    List<Schema.Field> schemaFields = record.getSchema().getFields();
+    for (int i = 0; i < schemaFields.size(); i++) {
+      Object value = record.get(i);
+      fields.add(schemaFields.get(i).getName(), value == null ? null : context.serialize(value));
+    }
+
+    JsonObject json = new JsonObject();
+    json.add(SCHEMA, context.serialize(record.getSchema(), Schema.class));
+    json.add(FIELDS, fields);
+    return json;
+  }
+
+  @Override
+  public StructuredRecord deserialize(JsonElement json, Type typeOfT,
+                                      JsonDeserializationContext context) throws JsonParseException {
+    if (!json.isJsonObject()) {
+      throw new JsonParseException("Expected a json object for StructuredRecord");
+    }
+    JsonObject jsonObj = json.getAsJsonObject();
+    Schema schema = context.deserialize(jsonObj.get(SCHEMA), Schema.class);
+    if (schema == null) {
+      throw new JsonParseException("Missing schema of StructuredRecord");
+    }
+    JsonObject fields = jsonObj.has(FIELDS) ? jsonObj.getAsJsonObject(FIELDS) : new JsonObject();
+
+    try {
+      StructuredRecord.Builder builder = StructuredRecord.builder(schema);
+      for (Schema.Field field : schema.getFields()) {
+        Object value = context.deserialize(fields.get(field.getName()), Object.class);
+        // Null values are not in the json, and are set by the builder for nullable fields
+        if (value != null || field.getSchema().getType() == Schema.Type.NULL) {
+          builder.set(field.getName(), value);
+        }
+      }
+      return builder.build();
+    } catch (UnexpectedFormatException e) {
+      throw new JsonParseException("Invalid StructuredRecord", e);
+    }
+  }
+}
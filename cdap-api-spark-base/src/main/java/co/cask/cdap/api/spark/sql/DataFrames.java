@@ -450,9 +450,9 @@ public final class DataFrames {
 
           // Special case handling for ARRAY and MAP in order to get the Java type
           if (fieldSchema.getType() == Schema.Type.ARRAY) {
-            builder.set(field.getName(), fromRowValue(row.getList(idx), fieldSchema, fieldPath));
+            builder.set(idx, fromRowValue(row.getList(idx), fieldSchema, fieldPath));
           } else if (fieldSchema.getType() == Schema.Type.MAP) {
-            builder.set(field.getName(), fromRowValue(row.getJavaMap(idx), fieldSchema, fieldPath));
+            builder.set(idx, fromRowValue(row.getJavaMap(idx), fieldSchema, fieldPath));
           } else {
             Object fieldValue = row.get(idx);
 
@@ -462,7 +462,7 @@ public final class DataFrames {
             } else if (fieldValue instanceof Timestamp) {
               fieldValue = ((Timestamp) fieldValue).getTime();
             }
-            builder.set(field.getName(), fromRowValue(fieldValue, fieldSchema, fieldPath));
+            builder.set(idx, fromRowValue(fieldValue, fieldSchema, fieldPath));
           }
 
           idx++;
@@ -27,6 +27,7 @@ import co.cask.cdap.api.data.format.StructuredRecord;
 import co.cask.cdap.api.dataset.table.Delete;
 import co.cask.cdap.api.dataset.table.Get;
 import co.cask.cdap.api.dataset.table.Increment;
+import co.cask.cdap.api.dataset.table.ParallelScanOptions;
 import co.cask.cdap.api.dataset.table.Put;
 import co.cask.cdap.api.dataset.table.Result;
 import co.cask.cdap.api.dataset.table.Row;
@@ -584,6 +585,12 @@ public class IndexedTable extends AbstractDataset implements Table {
     return table.scan(scan);
   }
 
+  @ReadOnly
+  @Override
+  public Scanner parallelScan(Scan scan, ParallelScanOptions options) {
+    return table.parallelScan(scan, options);
+  }
+
   /* BatchReadable implementation */
 
   @Override
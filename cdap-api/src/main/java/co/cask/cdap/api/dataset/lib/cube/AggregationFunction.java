@@ -18,10 +18,46 @@ package co.cask.cdap.api.dataset.lib.cube;
 
 /**
  * Function to be used when aggregating multiple data points.
+ * The percentile functions merge the data points into a {@link Distribution}, with each
+ * {@link MeasureType#DISTRIBUTION} data point contributing all of its values, and returns the value at the percentile.
  */
 public enum AggregationFunction {
   SUM,
   LATEST,
   MIN,
-  MAX
+  MAX,
+  P50(50),
+  P90(90),
+  P95(95),
+  P99(99),
+  P999(99.9);
+
+  private final double percentile;
+
+  AggregationFunction() {
+    this(-1);
+  }
+
+  AggregationFunction(double percentile) {
+    this.percentile = percentile;
+  }
+
+  /**
+   * Returns {@code true} if this function computes a percentile over a {@link Distribution} of values.
+   */
+  public boolean isPercentile() {
+    return percentile >= 0;
+  }
+
+  /**
+   * Returns the percentile computed by this function.
+   *
+   * @throws IllegalStateException if this function is not a percentile function
+   */
+  public double getPercentile() {
+    if (!isPercentile()) {
+      throw new IllegalStateException(this + " is not a percentile function");
+    }
+    return percentile;
+  }
 }
@@ -0,0 +1,257 @@
+/*
+ * Copyright 2018 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.api.dataset.lib.cube;
+
+import co.cask.cdap.api.annotation.Beta;
+
+import java.util.Arrays;
+
+/**
+ * A mergeable distribution of non-negative long values, for answering percentile queries.
+ * <p>
+ * Values are counted in log-linear buckets: every power of two range is divided into
+ * {@value #SUB_BUCKETS} equal sized buckets, which bounds the relative error of a percentile estimate to
+ * {@code 1/}{@value #SUB_BUCKETS}. Values smaller than {@value #SUB_BUCKETS} have a bucket of their own, hence
+ * are exact. Since the bucket boundaries are fixed, two distributions are merged by adding up the bucket counts,
+ * and the memory used is bounded by {@link #MAX_BUCKETS}, no matter how many values are added.
+ * Negative values are counted as zero.
+ * <p>
+ * This class is not thread safe.
+ */
+@Beta
+public final class Distribution {
+
+  private static final int SUB_BUCKET_BITS = 4;
+  private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+  private static final long[] EMPTY = new long[0];
+
+  /**
+   * Maximum number of buckets that a distribution can have.
+   */
+  public static final int MAX_BUCKETS = getBucket(Long.MAX_VALUE) + 1;
+
+  // Counts of the buckets in the range of [offset, offset + counts.length)
+  private int offset;
+  private long[] counts;
+  private long count;
+
+  /**
+   * Creates an empty distribution.
+   */
+  public Distribution() {
+    this.counts = EMPTY;
+  }
+
+  /**
+   * Creates a distribution that is a copy of the given one.
+   */
+  public Distribution(Distribution other) {
+    this.offset = other.offset;
+    this.counts = Arrays.copyOf(other.counts, other.counts.length);
+    this.count = other.count;
+  }
+
+  /**
+   * Adds a value to this distribution.
+   *
+   * @param value the value to add
+   * @return this instance
+   */
+  public Distribution add(long value) {
+    return addToBucket(getBucket(value), 1L);
+  }
+
+  /**
+   * Adds all the values in the given distribution to this distribution.
+   *
+   * @param other the distribution to merge from
+   * @return this instance
+   */
+  public Distribution add(Distribution other) {
+    for (int i = 0; i < other.counts.length; i++) {
+      if (other.counts[i] != 0) {
+        addToBucket(other.offset + i, other.counts[i]);
+      }
+    }
+    return this;
+  }
+
+  /**
+   * Adds the given number of values to a bucket.
+   *
+   * @param bucket the bucket index, as returned by {@link #getBucket(long)}
+   * @param count number of values to add
+   * @return this instance
+   */
+  public Distribution addToBucket(int bucket, long count) {
+    if (bucket < 0 || bucket >= MAX_BUCKETS) {
+      throw new IllegalArgumentException("Bucket must be in the range of [0, " + MAX_BUCKETS + ")");
+    }
+    if (count == 0) {
+      return this;
+    }
+    if (counts.length == 0) {
+      offset = bucket;
+      counts = new long[1];
+    } else if (bucket < offset) {
+      long[] newCounts = new long[counts.length + offset - bucket];
+      System.arraycopy(counts, 0, newCounts, offset - bucket, counts.length);
+      offset = bucket;
+      counts = newCounts;
+    } else if (bucket >= offset + counts.length) {
+      counts = Arrays.copyOf(counts, bucket - offset + 1);
+    }
+    counts[bucket - offset] += count;
+    this.count += count;
+    return this;
+  }
+
+  /**
+   * Returns the number of values in this distribution.
+   */
+  public long getCount() {
+    return count;
+  }
+
+  /**
+   * Returns {@code true} if there is no value in this distribution.
+   */
+  public boolean isEmpty() {
+    return count == 0;
+  }
+
+  /**
+   * Returns the smallest bucket index that has values, or {@code -1} if the distribution is empty.
+   */
+  public int getFirstBucket() {
+    return counts.length == 0 ? -1 : offset;
+  }
+
+  /**
+   * Returns the largest bucket index that has values, or {@code -1} if the distribution is empty.
+   */
+  public int getLastBucket() {
+    return counts.length == 0 ? -1 : offset + counts.length - 1;
+  }
+
+  /**
+   * Returns the number of values in the given bucket.
+   */
+  public long getBucketCount(int bucket) {
+    return bucket < offset || bucket >= offset + counts.length ? 0L : counts[bucket - offset];
+  }
+
+  /**
+   * Returns an estimate of the value at the given percentile. The estimate is the middle value of the bucket
+   * that contains the value at the given percentile.
+   *
+   * @param percentile the percentile, in the range of [0, 100]
+   * @return the estimated value, or {@code 0} if the distribution is empty
+   */
+  public long getPercentile(double percentile) {
+    if (percentile < 0 || percentile > 100) {
+      throw new IllegalArgumentException("Percentile must be in the range of [0, 100]");
+    }
+    if (count == 0) {
+      return 0L;
+    }
+
+    // The rank of the value at the given percentile, in the range of [1, count]
+    long rank = Math.max(1L, (long) Math.ceil(percentile / 100 * count));
+    long seen = 0;
+    int idx = 0;
+    while (idx < counts.length - 1) {
+      seen += counts[idx];
+      if (seen >= rank) {
+        break;
+      }
+      idx++;
+    }
+
+    int bucket = offset + idx;
+    long lowerBound = getBucketLowerBound(bucket);
+    long upperBound = bucket + 1 < MAX_BUCKETS ? getBucketLowerBound(bucket + 1) - 1 : Long.MAX_VALUE;
+    return lowerBound + (upperBound - lowerBound) / 2;
+  }
+
+  /**
+   * Returns the index of the bucket that the given value belongs to.
+   */
+  public static int getBucket(long value) {
+    if (value < SUB_BUCKETS) {
+      return value < 0 ? 0 : (int) value;
+    }
+    // The position of the highest one bit, which is >= SUB_BUCKET_BITS
+    int exponent = 63 - Long.numberOfLeadingZeros(value);
+    int subBucket = (int) (value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+    return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + subBucket;
+  }
+
+  /**
+   * Returns the smallest value that belongs to the given bucket.
+   */
+  public static long getBucketLowerBound(int bucket) {
+    if (bucket < SUB_BUCKETS) {
+      return bucket;
+    }
+    int exponent = bucket / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+    return (long) (SUB_BUCKETS | (bucket % SUB_BUCKETS)) << (exponent - SUB_BUCKET_BITS);
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (this == o) {
+      return true;
+    }
+    if (o == null || getClass() != o.getClass()) {
+      return false;
+    }
+
+    Distribution other = (Distribution) o;
+    if (count != other.count || getFirstBucket() != other.getFirstBucket()
+      || getLastBucket() != other.getLastBucket()) {
+      return false;
+    }
+    for (int i = 0; i < counts.length; i++) {
+      if (counts[i] != other.getBucketCount(offset + i)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  @Override
+  public int hashCode() {
+    int result = (int) (count ^ (count >>> 32));
+    for (int i = 0; i < counts.length; i++) {
+      if (counts[i] != 0) {
+        result = 31 * result + offset + i;
+        result = 31 * result + (int) (counts[i] ^ (counts[i] >>> 32));
+      }
+    }
+    return result;
+  }
+
+  @Override
+  public String toString() {
+    return "Distribution{" +
+      "count=" + count +
+      ", offset=" + offset +
+      ", counts=" + Arrays.toString(counts) +
+      '}';
+  }
+}
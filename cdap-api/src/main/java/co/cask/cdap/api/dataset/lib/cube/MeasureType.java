@@ -23,5 +23,9 @@ import co.cask.cdap.api.annotation.Beta;
 @Beta
 public enum MeasureType {
   COUNTER,
-  GAUGE
+  GAUGE,
+  /**
+   * A {@link Distribution} of values, which supports percentile queries.
+   */
+  DISTRIBUTION
 }
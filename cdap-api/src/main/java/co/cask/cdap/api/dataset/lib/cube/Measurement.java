@@ -16,6 +16,8 @@
 
 package co.cask.cdap.api.dataset.lib.cube;
 
+import javax.annotation.Nullable;
+
 /**
  * A single measurement in the {@link CubeFact}.
  */
@@ -23,9 +25,11 @@ public class Measurement {
   private final String name;
   private final MeasureType type;
   private final long value;
+  private final Distribution distribution;
 
   /**
-   * Creates a {@link Measurement}.
+   * Creates a {@link Measurement}. If the type is {@link MeasureType#DISTRIBUTION}, the measurement is
+   * a distribution with the given value as the only value.
    * @param name name of the measurement
    * @param type type of the measurement
    * @param value value of the measurement
@@ -33,7 +37,25 @@ public class Measurement {
   public Measurement(String name, MeasureType type, long value) {
     this.name = name;
     this.type = type;
-    this.value = value;
+    if (type == MeasureType.DISTRIBUTION) {
+      this.distribution = new Distribution().add(value);
+      this.value = distribution.getCount();
+    } else {
+      this.distribution = null;
+      this.value = value;
+    }
+  }
+
+  /**
+   * Creates a {@link Measurement} of type {@link MeasureType#DISTRIBUTION}.
+   * @param name name of the measurement
+   * @param distribution distribution of the values measured
+   */
+  public Measurement(String name, Distribution distribution) {
+    this.name = name;
+    this.type = MeasureType.DISTRIBUTION;
+    this.value = distribution.getCount();
+    this.distribution = distribution;
   }
 
   /**
@@ -45,6 +67,7 @@ public class Measurement {
     this.name = name;
     this.type = measurement.getType();
     this.value = measurement.getValue();
+    this.distribution = measurement.getDistribution();
   }
 
   /**
@@ -62,9 +85,19 @@ public class Measurement {
   }
 
   /**
-   * @return value of this {@link Measurement}
+   * @return value of this {@link Measurement}. For {@link MeasureType#DISTRIBUTION}, it is the number of values
+   *         in the distribution
    */
   public long getValue() {
     return value;
   }
+
+  /**
+   * @return the {@link Distribution} of this {@link Measurement} if it is of type {@link MeasureType#DISTRIBUTION};
+   *         otherwise {@code null}
+   */
+  @Nullable
+  public Distribution getDistribution() {
+    return distribution;
+  }
 }
@@ -0,0 +1,137 @@
+/*
+ * Copyright © 2018 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.api.dataset.table;
+
+import co.cask.cdap.api.annotation.Beta;
+
+/**
+ * Options for a parallel scan through {@link Table#parallelScan(Scan, ParallelScanOptions)}.
+ *
+ * The number of rows fetched per round trip by each sub-scan can be configured through the properties of the
+ * {@link Scan}, for example {@code hbase.client.scanner.caching} for HBase tables.
+ */
+@Beta
+public final class ParallelScanOptions {
+
+  private final int parallelism;
+  private final boolean ordered;
+  private final int bufferSize;
+
+  private ParallelScanOptions(int parallelism, boolean ordered, int bufferSize) {
+    this.parallelism = parallelism;
+    this.ordered = ordered;
+    this.bufferSize = bufferSize;
+  }
+
+  /**
+   * @return a builder with the default options: a parallelism of 4, rows returned in key order,
+   *         and a buffer of 1000 rows per sub-scan
+   */
+  public static Builder builder() {
+    return new Builder();
+  }
+
+  /**
+   * @return the maximum number of sub-scans that run concurrently
+   */
+  public int getParallelism() {
+    return parallelism;
+  }
+
+  /**
+   * @return whether the rows are returned in key order. If {@code false}, rows are returned in the order they are
+   *         read by the sub-scans, which allows all sub-scans to make progress independently
+   */
+  public boolean isOrdered() {
+    return ordered;
+  }
+
+  /**
+   * @return the maximum number of rows buffered for each running sub-scan. A sub-scan waits for the rows to be
+   *         consumed when its buffer is full
+   */
+  public int getBufferSize() {
+    return bufferSize;
+  }
+
+  @Override
+  public String toString() {
+    return "ParallelScanOptions{" +
+      "parallelism=" + parallelism +
+      ", ordered=" + ordered +
+      ", bufferSize=" + bufferSize +
+      '}';
+  }
+
+  /**
+   * A builder for {@link ParallelScanOptions}.
+   */
+  public static final class Builder {
+    private int parallelism = 4;
+    private boolean ordered = true;
+    private int bufferSize = 1000;
+
+    private Builder() {
+    }
+
+    /**
+     * Sets the maximum number of sub-scans that run concurrently.
+     *
+     * @param parallelism the number of sub-scans, must be positive
+     * @return this builder object to allow chaining
+     */
+    public Builder setParallelism(int parallelism) {
+      if (parallelism <= 0) {
+        throw new IllegalArgumentException("Parallelism must be positive: " + parallelism);
+      }
+      this.parallelism = parallelism;
+      return this;
+    }
+
+    /**
+     * Sets whether the rows are returned in key order.
+     *
+     * @param ordered {@code true} to return the rows in key order
+     * @return this builder object to allow chaining
+     */
+    public Builder setOrdered(boolean ordered) {
+      this.ordered = ordered;
+      return this;
+    }
+
+    /**
+     * Sets the maximum number of rows buffered for each running sub-scan.
+     *
+     * @param bufferSize the number of rows, must be positive
+     * @return this builder object to allow chaining
+     */
+    public Builder setBufferSize(int bufferSize) {
+      if (bufferSize <= 0) {
+        throw new IllegalArgumentException("Buffer size must be positive: " + bufferSize);
+      }
+      this.bufferSize = bufferSize;
+      return this;
+    }
+
+    /**
+     * @return a new {@link ParallelScanOptions}
+     */
+    public ParallelScanOptions build() {
+      return new ParallelScanOptions(parallelism, ordered, bufferSize);
+    }
+  }
+}
@@ -315,6 +315,23 @@ public interface Table extends BatchReadable<byte[], Row>, BatchWritable<byte[],
   @Beta
   Scanner scan(Scan scan);
 
+  /**
+   * Returns a {@link Scanner} as specified by a given {@link Scan}, which reads the table with multiple sub-scans in
+   * parallel. The scan is divided into sub-scans of disjoint key ranges, which are aligned with the regions of the
+   * table where the table is distributed, and at most {@link ParallelScanOptions#getParallelism()} of them run at
+   * the same time. The returned scanner must be closed to release its threads if it is not read to the end.
+   *
+   * The default implementation doesn't scan in parallel and returns the result of {@link #scan(Scan)}.
+   *
+   * @param scan a {@link Scan} instance
+   * @param options options of the parallel scan
+   * @return instance of {@link Scanner}
+   */
+  @Beta
+  default Scanner parallelScan(Scan scan, ParallelScanOptions options) {
+    return scan(scan);
+  }
+
   /**
    * Returns splits for a range of keys in the table.
    * 
@@ -22,11 +22,13 @@ import co.cask.cdap.proto.id.EntityId;
 import co.cask.cdap.proto.security.Action;
 import co.cask.cdap.proto.security.Authorizable;
 import co.cask.cdap.proto.security.AuthorizationPrivilege;
+import co.cask.cdap.proto.security.EnforcementRequest;
 import co.cask.cdap.proto.security.Principal;
 import co.cask.cdap.proto.security.Privilege;
 import co.cask.cdap.proto.security.VisibilityRequest;
 import co.cask.cdap.security.spi.authorization.AuthorizationEnforcer;
 import co.cask.cdap.security.spi.authorization.PrivilegesManager;
+import co.cask.cdap.security.spi.authorization.UnauthorizedException;
 import co.cask.http.HttpResponder;
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
@@ -38,6 +40,8 @@ import org.slf4j.LoggerFactory;
 
 import java.lang.reflect.Type;
 import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.Set;
 import javax.inject.Inject;
@@ -76,6 +80,38 @@ public class RemotePrivilegesHandler extends AbstractRemoteSystemOpsHandler {
     responder.sendStatus(HttpResponseStatus.OK);
   }
 
+  /**
+   * Enforces a set of actions on a set of entities for a principal with a single call. Responds with the
+   * {@link AuthorizationPrivilege privileges} that are not allowed, so that the caller can cache the result for
+   * each of them.
+   */
+  @POST
+  @Path("/enforceAll")
+  public void enforceAll(FullHttpRequest request, HttpResponder responder) throws Exception {
+    EnforcementRequest enforcementRequest = GSON.fromJson(request.content().toString(StandardCharsets.UTF_8),
+                                                          EnforcementRequest.class);
+    Principal principal = enforcementRequest.getPrincipal();
+    Set<EntityId> entityIds = enforcementRequest.getEntityIds();
+    Set<Action> actions = enforcementRequest.getActions();
+    LOG.debug("Enforcing {} on {} for principal {}", actions, entityIds, principal);
+    Set<AuthorizationPrivilege> disallowed = new HashSet<>();
+    try {
+      authorizationEnforcer.enforce(entityIds, principal, actions);
+    } catch (UnauthorizedException e) {
+      // Only narrow down to the individual privileges when the bulk check fails, which is the uncommon case
+      for (EntityId entityId : entityIds) {
+        for (Action action : actions) {
+          try {
+            authorizationEnforcer.enforce(Collections.singleton(entityId), principal, Collections.singleton(action));
+          } catch (UnauthorizedException ue) {
+            disallowed.add(new AuthorizationPrivilege(principal, entityId, action));
+          }
+        }
+      }
+    }
+    responder.sendJson(HttpResponseStatus.OK, GSON.toJson(disallowed));
+  }
+
   @POST
   @Path("/isVisible")
   public void isVisible(FullHttpRequest request, HttpResponder responder) throws Exception {
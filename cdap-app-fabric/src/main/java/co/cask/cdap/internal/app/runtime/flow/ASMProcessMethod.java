@@ -0,0 +1,136 @@
+/*
+ * Copyright © 2018 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package co.cask.cdap.internal.app.runtime.flow;
+
+import co.cask.cdap.api.annotation.Batch;
+import co.cask.cdap.api.flow.flowlet.Flowlet;
+import co.cask.cdap.api.flow.flowlet.InputContext;
+import co.cask.cdap.app.queue.InputDatum;
+import co.cask.cdap.internal.asm.ByteCodeClassLoader;
+import co.cask.cdap.internal.asm.ClassDefinition;
+import com.google.common.base.Preconditions;
+import com.google.common.reflect.TypeToken;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.reflect.Method;
+import java.util.Iterator;
+import javax.annotation.concurrent.NotThreadSafe;
+
+/**
+ * Represents a {@link ProcessMethod} that invocation is done through a {@link ProcessMethodInvoker} generated
+ * with ASM, which calls the process method directly instead of through reflection.
+ * @param <T> Type of input accepted by this process method.
+ */
+@NotThreadSafe
+public final class ASMProcessMethod<T> implements ProcessMethod<T> {
+
+  private static final Logger LOG = LoggerFactory.getLogger(ASMProcessMethod.class);
+
+  private final Flowlet flowlet;
+  private final Method method;
+  private final ProcessMethodInvoker invoker;
+  private final boolean hasParam;
+  private final boolean batch;
+  private final boolean needsIterator;
+  private final int maxRetries;
+
+  /**
+   * Creates a {@link ProcessMethod} for the given process method. It falls back to {@link ReflectionProcessMethod}
+   * if the process method cannot be called from a generated class, e.g. if it is not public.
+   */
+  public static <T> ProcessMethod<T> create(Flowlet flowlet, Method method, int maxRetries) {
+    if (ProcessMethodInvokerGenerator.isSupported(method)) {
+      try {
+        return new ASMProcessMethod<>(flowlet, method, createInvoker(flowlet, method), maxRetries);
+      } catch (Exception e) {
+        LOG.debug("Failed to generate invoker for process method {}. Using reflection instead.", method, e);
+      }
+    }
+    return ReflectionProcessMethod.create(flowlet, method, maxRetries);
+  }
+
+  private static ProcessMethodInvoker createInvoker(Flowlet flowlet, Method method) throws Exception {
+    ClassDefinition classDef = new ProcessMethodInvokerGenerator().generate(method);
+    // The generated class is loaded as a child of the flowlet ClassLoader so that it sees the same classes as the
+    // flowlet, except for the ProcessMethodInvoker interface, which is a preserved class of the ClassDefinition.
+    ByteCodeClassLoader classLoader = new ByteCodeClassLoader(method.getDeclaringClass().getClassLoader());
+    Class<?> invokerClass = classLoader.addClass(classDef).loadClass(classDef.getClassName());
+    return (ProcessMethodInvoker) invokerClass.getConstructor(Object.class).newInstance(flowlet);
+  }
+
+  private ASMProcessMethod(Flowlet flowlet, Method method, ProcessMethodInvoker invoker, int maxRetries) {
+    this.flowlet = flowlet;
+    this.method = method;
+    this.invoker = invoker;
+    this.maxRetries = maxRetries;
+
+    this.hasParam = method.getGenericParameterTypes().length > 0;
+    this.batch = method.isAnnotationPresent(Batch.class);
+    this.needsIterator = hasParam &&
+      TypeToken.of(method.getGenericParameterTypes()[0]).getRawType().equals(Iterator.class);
+  }
+
+  @Override
+  public boolean needsInput() {
+    return hasParam;
+  }
+
+  @Override
+  public int getMaxRetries() {
+    return maxRetries;
+  }
+
+  @SuppressWarnings("unchecked")
+  @Override
+  public ProcessResult<T> invoke(InputDatum<T> input) {
+    try {
+      Preconditions.checkState(!hasParam || input.needProcess(), "Empty input provided to method that needs input.");
+      InputContext inputContext = input.getInputContext();
+
+      if (hasParam) {
+        if (needsIterator) {
+          invoker.invoke(input.iterator(), inputContext);
+        } else {
+          for (T event : input) {
+            invoker.invoke(event, inputContext);
+          }
+        }
+      } else {
+        invoker.invoke(null, inputContext);
+      }
+
+      return createResult(input, null);
+    } catch (Throwable t) {
+      // Unlike reflection, the generated invoker throws exceptions from the process method as is
+      return createResult(input, t);
+    }
+  }
+
+  @Override
+  public String toString() {
+    return flowlet.getClass() + "." + method.toString();
+  }
+
+  @SuppressWarnings("unchecked")
+  private ProcessResult<T> createResult(InputDatum<T> input, Throwable failureCause) {
+    // If the method has param, then object for the result would be iterator or the first event (batch vs no-batch)
+    T event = hasParam ? (batch ? (T) input.iterator() : input.iterator().next()) : null;
+    return new DefaultProcessResult<>(event, failureCause);
+  }
+}
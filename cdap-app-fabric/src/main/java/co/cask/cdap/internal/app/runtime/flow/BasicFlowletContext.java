@@ -45,6 +45,7 @@ import org.apache.twill.discovery.DiscoveryServiceClient;
 
 import java.util.Set;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 import javax.annotation.Nullable;
 
 /**
@@ -60,6 +61,7 @@ final class BasicFlowletContext extends AbstractContext implements FlowletContex
   private volatile int instanceCount;
   private final LoadingCache<String, MetricsContext> queueMetrics;
   private final LoadingCache<ImmutablePair<String, String>, MetricsContext> producerMetrics;
+  private final AtomicLong enqueuedBytes = new AtomicLong();
 
   BasicFlowletContext(Program program, ProgramOptions programOptions, FlowletId flowletId,
                       int instanceId, int instanceCount, Set<String> datasets,
@@ -166,6 +168,20 @@ final class BasicFlowletContext extends AbstractContext implements FlowletContex
     return producerMetrics.getUnchecked(producerAndQueue);
   }
 
+  /**
+   * Adds the bytes enqueued to one output queue by the current process call.
+   */
+  void addEnqueuedBytes(long bytes) {
+    enqueuedBytes.addAndGet(bytes);
+  }
+
+  /**
+   * Returns the bytes enqueued to all output queues since the last call, and resets it to zero.
+   */
+  long resetEnqueuedBytes() {
+    return enqueuedBytes.getAndSet(0L);
+  }
+
   public long getGroupId() {
     return groupId;
   }
@@ -34,12 +34,29 @@ import java.util.Map;
 import javax.annotation.Nullable;
 
 /**
- * @param <T>
+ * An {@link OutputEmitter} that encodes the emitted objects with a {@link DatumWriter} and enqueues them to a
+ * {@link QueueProducer}. The producer keeps the entries until the transaction of the process call commits, at which
+ * point the entries emitted within the process call are persisted as one batch.
+ *
+ * Objects are encoded into a buffer that is reused by all the emitters on the same thread, so that emitting does not
+ * allocate anything other than the entry itself.
+ *
+ * @param <T> type of the emitted objects
  */
 public final class DatumOutputEmitter<T> implements OutputEmitter<T> {
 
   public static final Function<Object, Integer> PARTITION_MAP_TRANSFORMER = new PartitionMapTransformer();
 
+  // Buffers that grew beyond this size are not kept for reuse to avoid holding on to memory after a large object
+  private static final int MAX_RETAINED_BUFFER_SIZE = 1024 * 1024;
+
+  private static final ThreadLocal<EncodeBuffer> ENCODE_BUFFER = new ThreadLocal<EncodeBuffer>() {
+    @Override
+    protected EncodeBuffer initialValue() {
+      return new EncodeBuffer();
+    }
+  };
+
   private final Supplier<QueueProducer> producerSupplier;
   private final byte[] schemaHash;
   private final DatumWriter<T> writer;
@@ -62,17 +79,49 @@ public final class DatumOutputEmitter<T> implements OutputEmitter<T> {
 
   @Override
   public void emit(T data, Map<String, Object> partitions) {
+    Map<String, Integer> hashKeys = partitions.isEmpty()
+      ? ImmutableMap.<String, Integer>of()
+      : Maps.transformValues(partitions, PARTITION_MAP_TRANSFORMER);
     try {
-      ByteArrayOutputStream output = new ByteArrayOutputStream();
-      output.write(schemaHash);
-      writer.encode(data, new BinaryEncoder(output));
-      producerSupplier.get().enqueue(new QueueEntry(Maps.transformValues(partitions, PARTITION_MAP_TRANSFORMER),
-                                                    output.toByteArray()));
+      producerSupplier.get().enqueue(new QueueEntry(hashKeys, encode(data)));
     } catch (IOException e) {
       throw Throwables.propagate(e);
     }
   }
 
+  /**
+   * Encodes the given object, prefixed by the schema hash, with the buffer of the current thread.
+   */
+  private byte[] encode(T data) throws IOException {
+    EncodeBuffer buffer = ENCODE_BUFFER.get();
+    buffer.reset();
+    try {
+      buffer.write(schemaHash);
+      writer.encode(data, buffer.encoder);
+      return buffer.toByteArray();
+    } finally {
+      if (buffer.capacity() > MAX_RETAINED_BUFFER_SIZE) {
+        ENCODE_BUFFER.remove();
+      }
+    }
+  }
+
+  /**
+   * A {@link ByteArrayOutputStream} together with the {@link BinaryEncoder} writing to it.
+   */
+  private static final class EncodeBuffer extends ByteArrayOutputStream {
+
+    private final BinaryEncoder encoder = new BinaryEncoder(this);
+
+    EncodeBuffer() {
+      super(256);
+    }
+
+    int capacity() {
+      return buf.length;
+    }
+  }
+
   private static final class PartitionMapTransformer implements Function<Object, Integer> {
     @Override
     public Integer apply(@Nullable Object input) {
@@ -286,7 +286,14 @@ final class FlowletProcessDriver extends AbstractExecutionThreadService {
         if (input.getRetry() > 0) {
           input.reclaim();
         }
+        // The output queues add the bytes they enqueued when the transaction commits
+        flowletContext.resetEnqueuedBytes();
         txContext.finish();
+        long enqueuedBytes = flowletContext.resetEnqueuedBytes();
+        if (enqueuedBytes > 0) {
+          // Size of the batch of entries written to all output queues by one process call
+          flowletContext.getProgramMetrics().gauge("process.events.out.batch.bytes", enqueuedBytes);
+        }
       } else {
         failureCause = result.getCause();
         failureType = FailureReason.Type.USER;
@@ -0,0 +1,40 @@
+/*
+ * Copyright © 2018 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package co.cask.cdap.internal.app.runtime.flow;
+
+import co.cask.cdap.api.flow.flowlet.InputContext;
+
+import javax.annotation.Nullable;
+
+/**
+ * Calls a flowlet process method on a given flowlet instance. Implementations are generated by
+ * {@link ProcessMethodInvokerGenerator} and are loaded in a different {@link ClassLoader} than this class,
+ * hence this interface has to be public.
+ */
+public interface ProcessMethodInvoker {
+
+  /**
+   * Calls the process method.
+   *
+   * @param event the event to process or {@code null} if the process method doesn't take any parameter
+   * @param inputContext the {@link InputContext} of the event, only passed to the process method if it has
+   *                     an {@link InputContext} parameter
+   * @throws Exception any exception thrown by the process method, as is
+   */
+  void invoke(@Nullable Object event, InputContext inputContext) throws Exception;
+}
@@ -0,0 +1,181 @@
+/*
+ * Copyright © 2018 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package co.cask.cdap.internal.app.runtime.flow;
+
+import co.cask.cdap.api.flow.flowlet.InputContext;
+import co.cask.cdap.internal.asm.ClassDefinition;
+import co.cask.cdap.internal.asm.Methods;
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableList;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.Type;
+import org.objectweb.asm.commons.GeneratorAdapter;
+
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import javax.annotation.concurrent.NotThreadSafe;
+
+/**
+ * Generates a class bytecode that implements {@link ProcessMethodInvoker} for a given flowlet process method.
+ * The generated class calls the process method directly on the flowlet instance given to its constructor, e.g.
+ *
+ * <pre>{@code
+ * public final class MyFlowlet$GeneratedInvoker$process implements ProcessMethodInvoker {
+ *   private final MyFlowlet flowlet;
+ *
+ *   public MyFlowlet$GeneratedInvoker$process(Object flowlet) {
+ *     this.flowlet = (MyFlowlet) flowlet;
+ *   }
+ *
+ *   public void invoke(Object event, InputContext inputContext) {
+ *     flowlet.process((String) event, inputContext);
+ *   }
+ * }
+ * }</pre>
+ *
+ * The generated class is meant to be loaded by a {@link ClassLoader} that is a child of the flowlet
+ * {@link ClassLoader}, hence it can only call public methods of public classes (see {@link #isSupported(Method)}).
+ */
+@NotThreadSafe
+final class ProcessMethodInvokerGenerator {
+
+  private static final Type INVOKER_TYPE = Type.getType(ProcessMethodInvoker.class);
+
+  private ClassWriter classWriter;
+  private Type classType;
+  private Type flowletType;
+
+  /**
+   * Returns {@code true} if the given process method can be called from a generated {@link ProcessMethodInvoker}.
+   */
+  static boolean isSupported(Method method) {
+    if (!isPublic(method.getDeclaringClass()) || !Modifier.isPublic(method.getModifiers())
+      || Modifier.isStatic(method.getModifiers()) || method.getParameterTypes().length > 2) {
+      return false;
+    }
+    for (Class<?> paramType : method.getParameterTypes()) {
+      if (!isPublic(paramType)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Generates the {@link ProcessMethodInvoker} class for the given process method.
+   *
+   * @param method the process method; it must be supported as determined by {@link #isSupported(Method)}
+   * @return the {@link ClassDefinition} of the generated class, with the {@link ProcessMethodInvoker} interface
+   *         as a preserved class
+   */
+  ClassDefinition generate(Method method) {
+    Preconditions.checkArgument(isSupported(method), "Process method %s is not public", method);
+
+    Class<?> declaringClass = method.getDeclaringClass();
+    flowletType = Type.getType(declaringClass);
+    classType = Type.getObjectType(String.format("%s$GeneratedInvoker$%s",
+                                                 flowletType.getInternalName(), method.getName()));
+
+    classWriter = new ClassWriter(ClassWriter.COMPUTE_FRAMES);
+    classWriter.visit(Opcodes.V1_8, Opcodes.ACC_PUBLIC + Opcodes.ACC_FINAL + Opcodes.ACC_SUPER,
+                      classType.getInternalName(), null, Type.getInternalName(Object.class),
+                      new String[] { INVOKER_TYPE.getInternalName() });
+    classWriter.visitField(Opcodes.ACC_PRIVATE + Opcodes.ACC_FINAL, "flowlet", flowletType.getDescriptor(), null, null)
+      .visitEnd();
+
+    generateConstructor();
+    generateInvoke(method);
+
+    classWriter.visitEnd();
+
+    ClassDefinition classDefinition = new ClassDefinition(classWriter.toByteArray(), classType.getInternalName(),
+                                                          ImmutableList.of(ProcessMethodInvoker.class));
+    // DEBUG block. Uncomment for debug
+//    co.cask.cdap.internal.asm.Debugs.debugByteCode(classDefinition, new java.io.PrintWriter(System.out));
+    // End DEBUG block
+    return classDefinition;
+  }
+
+  /**
+   * Generates the constructor that takes the flowlet instance.
+   */
+  private void generateConstructor() {
+    GeneratorAdapter mg = new GeneratorAdapter(Opcodes.ACC_PUBLIC,
+                                               Methods.getMethod(void.class, "<init>", Object.class),
+                                               null, new Type[0], classWriter);
+    mg.loadThis();
+    mg.invokeConstructor(Type.getType(Object.class), Methods.getMethod(void.class, "<init>"));
+
+    // this.flowlet = (FlowletClass) flowlet;
+    mg.loadThis();
+    mg.loadArg(0);
+    mg.checkCast(flowletType);
+    mg.putField(classType, "flowlet", flowletType);
+    mg.returnValue();
+    mg.endMethod();
+  }
+
+  /**
+   * Generates the {@link ProcessMethodInvoker#invoke(Object, InputContext)} method.
+   */
+  private void generateInvoke(Method method) {
+    GeneratorAdapter mg = new GeneratorAdapter(Opcodes.ACC_PUBLIC,
+                                               Methods.getMethod(void.class, "invoke",
+                                                                 Object.class, InputContext.class),
+                                               null, new Type[] { Type.getType(Exception.class) }, classWriter);
+    mg.loadThis();
+    mg.getField(classType, "flowlet", flowletType);
+
+    // The first parameter is the event and the second one is the InputContext
+    Class<?>[] paramTypes = method.getParameterTypes();
+    for (int i = 0; i < paramTypes.length; i++) {
+      Type paramType = Type.getType(paramTypes[i]);
+      mg.loadArg(i);
+      if (paramTypes[i].isPrimitive()) {
+        mg.unbox(paramType);
+      } else if (!paramTypes[i].equals(Object.class) && !(i == 1 && paramTypes[i].equals(InputContext.class))) {
+        mg.checkCast(paramType);
+      }
+    }
+
+    org.objectweb.asm.commons.Method processMethod = org.objectweb.asm.commons.Method.getMethod(method);
+    if (method.getDeclaringClass().isInterface()) {
+      mg.invokeInterface(flowletType, processMethod);
+    } else {
+      mg.invokeVirtual(flowletType, processMethod);
+    }
+
+    // Discard the return value, if any
+    Type returnType = processMethod.getReturnType();
+    if (returnType.getSize() == 2) {
+      mg.pop2();
+    } else if (returnType.getSize() == 1) {
+      mg.pop();
+    }
+    mg.returnValue();
+    mg.endMethod();
+  }
+
+  private static boolean isPublic(Class<?> cls) {
+    while (cls.isArray()) {
+      cls = cls.getComponentType();
+    }
+    return cls.isPrimitive() || Modifier.isPublic(cls.getModifiers());
+  }
+}
@@ -121,32 +121,6 @@ public final class ReflectionProcessMethod<T> implements ProcessMethod<T> {
   private ProcessResult<T> createResult(InputDatum<T> input, Throwable failureCause) {
     // If the method has param, then object for the result would be iterator or the first event (batch vs no-batch)
     T event = hasParam ? (batch ? (T) input.iterator() : input.iterator().next()) : null;
-    return new ReflectionProcessResult<>(event, failureCause);
-  }
-
-  private static final class ReflectionProcessResult<V> implements ProcessResult<V> {
-
-    private final V event;
-    private final Throwable cause;
-
-    private ReflectionProcessResult(V event, Throwable cause) {
-      this.event = event;
-      this.cause = cause;
-    }
-
-    @Override
-    public V getEvent() {
-      return event;
-    }
-
-    @Override
-    public boolean isSuccess() {
-      return cause == null;
-    }
-
-    @Override
-    public Throwable getCause() {
-      return cause;
-    }
+    return new DefaultProcessResult<>(event, failureCause);
   }
 }
@@ -65,7 +65,6 @@ import co.cask.cdap.proto.id.ProgramRunId;
 import co.cask.cdap.proto.profile.Profile;
 import co.cask.cdap.proto.provisioner.ProvisionerDetail;
 import co.cask.cdap.proto.security.Action;
-import co.cask.cdap.proto.security.Principal;
 import co.cask.cdap.runtime.spi.profile.ProfileStatus;
 import co.cask.cdap.security.authorization.AuthorizationUtil;
 import co.cask.cdap.security.spi.authentication.AuthenticationContext;
@@ -864,24 +863,20 @@ public class ProgramLifecycleService {
           throw new Exception("Unknown program type: " + type.name());
       }
     }
-    return programRecords;
+    // check the visibility of all the programs in bulk rather than one program at a time
+    return AuthorizationUtil.isVisible(programRecords, authorizationEnforcer, authenticationContext.getPrincipal(),
+                                       record -> namespaceId.app(record.getApp()).program(type, record.getName()),
+                                       null);
   }
 
   private void createProgramRecords(NamespaceId namespaceId, String appId, ProgramType type,
                                     Iterable<? extends ProgramSpecification> programSpecs,
-                                    List<ProgramRecord> programRecords) throws Exception {
+                                    List<ProgramRecord> programRecords) {
     for (ProgramSpecification programSpec : programSpecs) {
-      if (hasAccess(namespaceId.app(appId).program(type, programSpec.getName()))) {
-        programRecords.add(new ProgramRecord(type, appId, programSpec.getName(), programSpec.getDescription()));
-      }
+      programRecords.add(new ProgramRecord(type, appId, programSpec.getName(), programSpec.getDescription()));
     }
   }
 
-  private boolean hasAccess(ProgramId programId) throws Exception {
-    Principal principal = authenticationContext.getPrincipal();
-    return !authorizationEnforcer.isVisible(Collections.singleton(programId), principal).isEmpty();
-  }
-
   private void setWorkerInstances(ProgramId programId, int instances)
     throws ExecutionException, InterruptedException, BadRequestException {
     int oldInstances = store.getWorkerInstances(programId);
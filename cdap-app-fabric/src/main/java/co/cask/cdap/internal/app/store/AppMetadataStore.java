@@ -68,10 +68,13 @@ import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
 import java.lang.reflect.Type;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.Deque;
+import java.util.EnumSet;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.LinkedHashMap;
@@ -80,6 +83,7 @@ import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
 import java.util.concurrent.TimeUnit;
+import java.util.function.BiPredicate;
 import java.util.function.Function;
 import java.util.function.Predicate;
 import java.util.stream.Collectors;
@@ -97,6 +101,15 @@ import javax.annotation.Nullable;
  * The run count will have the row key of format:
  * runRecordCount|namespace|app|version|programtype|program
  *
+ * Completed run records are also indexed by start time across all programs and by stop time for each status,
+ * so that time range queries don't have to scan the whole run history:
+ *
+ * runRecordStartIdx|inverted start time|namespace|app|version|programtype|program|runid -> status
+ * runRecordStopIdx|status|inverted stop time|namespace|app|version|programtype|program|runid -> start time
+ *
+ * Runs that completed before the indexes were introduced are not indexed. The stop time from which on all
+ * completed runs are indexed is stored in a separate row, queries on earlier time ranges scan the run records.
+ *
  * These rows get deleted whenever state changes, with a new record written on top. In addition, workflow node state
  * is stored as:
  *
@@ -114,6 +127,9 @@ public class AppMetadataStore extends MetadataStoreDataset {
   private static final Type MAP_STRING_STRING_TYPE = new TypeToken<Map<String, String>>() { }.getType();
   private static final Type BYTE_TYPE = new TypeToken<byte[]>() { }.getType();
   private static final byte[] APP_VERSION_UPGRADE_KEY = Bytes.toBytes("version.default.store");
+  private static final byte[] RUN_RECORD_INDEX_SINCE_KEY = Bytes.toBytes("run.record.index.since");
+  // Number of run records to fetch at once when resolving run record index entries
+  private static final int RUN_RECORD_FETCH_BATCH_SIZE = 100;
 
   private static final String TYPE_APP_META = "appMeta";
   private static final String TYPE_STREAM = "stream";
@@ -130,6 +146,8 @@ public class AppMetadataStore extends MetadataStoreDataset {
   private static final String TYPE_NAMESPACE = "namespace";
   private static final String TYPE_MESSAGE = "msg";
   private static final String TYPE_COUNT = "runRecordCount";
+  private static final String TYPE_RUN_RECORD_START_INDEX = "runRecordStartIdx";
+  private static final String TYPE_RUN_RECORD_STOP_INDEX = "runRecordStopIdx";
   private static final Map<ProgramRunStatus, String> STATUS_TYPE_MAP = ImmutableMap.<ProgramRunStatus, String>builder()
     .put(ProgramRunStatus.PENDING, TYPE_RUN_RECORD_ACTIVE)
     .put(ProgramRunStatus.STARTING, TYPE_RUN_RECORD_ACTIVE)
@@ -139,6 +157,8 @@ public class AppMetadataStore extends MetadataStoreDataset {
     .put(ProgramRunStatus.KILLED, TYPE_RUN_RECORD_COMPLETED)
     .put(ProgramRunStatus.FAILED, TYPE_RUN_RECORD_COMPLETED)
     .build();
+  private static final Set<ProgramRunStatus> COMPLETED_STATUSES =
+    EnumSet.of(ProgramRunStatus.COMPLETED, ProgramRunStatus.KILLED, ProgramRunStatus.FAILED);
 
   // These are for caching the upgraded state to avoid reading from Table again after upgrade is completed
   // The interval is to avoid frequent reading from Table before upgrade is completed
@@ -150,6 +170,7 @@ public class AppMetadataStore extends MetadataStoreDataset {
   private static long lastUpgradeCompletedCheck;
 
   private final CConfiguration cConf;
+  private final ApplicationMetaCache appMetaCache;
 
   /**
    * Static method for creating an instance of {@link AppMetadataStore}.
@@ -167,8 +188,14 @@ public class AppMetadataStore extends MetadataStoreDataset {
   }
 
   public AppMetadataStore(Table table, CConfiguration cConf) {
+    this(table, cConf, ApplicationMetaCache.get(cConf));
+  }
+
+  @VisibleForTesting
+  AppMetadataStore(Table table, CConfiguration cConf, ApplicationMetaCache appMetaCache) {
     super(table);
     this.cConf = cConf;
+    this.appMetaCache = appMetaCache;
   }
 
   @Override
@@ -185,6 +212,15 @@ public class AppMetadataStore extends MetadataStoreDataset {
         .build();
       //noinspection unchecked
       return (T) meta;
+    } else if (ApplicationMeta.class.equals(typeOfT)) {
+      // Parsing is expensive for large application specifications, hence reuse the result if the value is unchanged
+      ApplicationMeta meta = appMetaCache.get(key, serialized);
+      if (meta == null) {
+        meta = GSON.fromJson(Bytes.toString(serialized), ApplicationMeta.class);
+        appMetaCache.put(key, serialized, meta);
+      }
+      //noinspection unchecked
+      return (T) meta;
     } else {
       return GSON.fromJson(Bytes.toString(serialized), typeOfT);
     }
@@ -241,16 +277,21 @@ public class AppMetadataStore extends MetadataStoreDataset {
   }
 
   public void writeApplication(String namespaceId, String appId, String versionId, ApplicationSpecification spec) {
-    write(new MDSKey.Builder().add(TYPE_APP_META, namespaceId, appId, versionId).build(),
-          new ApplicationMeta(appId, spec));
+    MDSKey key = new MDSKey.Builder().add(TYPE_APP_META, namespaceId, appId, versionId).build();
+    write(key, new ApplicationMeta(appId, spec));
+    appMetaCache.invalidate(key);
   }
 
   public void deleteApplication(String namespaceId, String appId, String versionId) {
-    deleteAll(new MDSKey.Builder().add(TYPE_APP_META, namespaceId, appId, versionId).build());
+    MDSKey key = new MDSKey.Builder().add(TYPE_APP_META, namespaceId, appId, versionId).build();
+    deleteAll(key);
+    appMetaCache.invalidate(key);
   }
 
   public void deleteApplications(String namespaceId) {
-    deleteAll(new MDSKey.Builder().add(TYPE_APP_META, namespaceId).build());
+    MDSKey key = new MDSKey.Builder().add(TYPE_APP_META, namespaceId).build();
+    deleteAll(key);
+    appMetaCache.invalidate(key);
   }
 
   // todo: do we need appId? may be use from appSpec?
@@ -269,6 +310,7 @@ public class AppMetadataStore extends MetadataStoreDataset {
     updated = ApplicationMeta.updateSpec(existing, spec);
     LOG.trace("Application exists in mds: id: {}, spec: {}", existing);
     write(key, updated);
+    appMetaCache.invalidate(key);
   }
 
   /**
@@ -473,7 +515,7 @@ public class AppMetadataStore extends MetadataStoreDataset {
       .setCluster(cluster)
       .setSourceId(sourceId)
       .build();
-    write(key, meta);
+    writeCompletedRun(key, meta);
     LOG.trace("Recorded {} for program {}", ProgramRunClusterStatus.DEPROVISIONING, programRunId);
     return meta;
   }
@@ -512,7 +554,7 @@ public class AppMetadataStore extends MetadataStoreDataset {
       .setCluster(cluster)
       .setSourceId(sourceId)
       .build();
-    write(key, meta);
+    writeCompletedRun(key, meta);
     LOG.trace("Recorded {} for program {}", ProgramRunClusterStatus.DEPROVISIONED, programRunId);
     return meta;
   }
@@ -550,7 +592,7 @@ public class AppMetadataStore extends MetadataStoreDataset {
       .setCluster(cluster)
       .setSourceId(sourceId)
       .build();
-    write(key, meta);
+    writeCompletedRun(key, meta);
     LOG.trace("Recorded {} for program {}", ProgramRunClusterStatus.ORPHANED, programRunId);
     return meta;
   }
@@ -756,7 +798,7 @@ public class AppMetadataStore extends MetadataStoreDataset {
       .setStatus(runStatus)
       .setSourceId(sourceId)
       .build();
-    write(key, meta);
+    writeCompletedRun(key, meta);
     LOG.trace("Recorded {} for program {}", runStatus, programRunId);
     return meta;
   }
@@ -806,6 +848,45 @@ public class AppMetadataStore extends MetadataStoreDataset {
     return true;
   }
 
+  /**
+   * Writes the run record of a program run that is in a terminal state, together with its run record index entries.
+   */
+  private void writeCompletedRun(MDSKey key, RunRecordMeta meta) {
+    write(key, meta);
+
+    Long stopTs = meta.getStopTs();
+    if (stopTs == null || !COMPLETED_STATUSES.contains(meta.getStatus())) {
+      return;
+    }
+    ProgramRunId programRunId = meta.getProgramRunId();
+    write(getRunRecordIndexKey(new MDSKey.Builder().add(TYPE_RUN_RECORD_START_INDEX)
+                                 .add(getInvertedTsKeyPart(meta.getStartTs())), programRunId), meta.getStatus());
+    write(getRunRecordIndexKey(new MDSKey.Builder().add(TYPE_RUN_RECORD_STOP_INDEX, meta.getStatus().name())
+                                 .add(getInvertedTsKeyPart(stopTs)), programRunId), meta.getStartTs());
+
+    if (getRunRecordIndexSince() == null) {
+      // Runs recorded before the indexes existed can have stopped up to now, hence only time ranges starting
+      // after both now and the stop time of this run are fully covered by the indexes
+      long nowSecs = TimeUnit.MILLISECONDS.toSeconds(System.currentTimeMillis());
+      write(new MDSKey.Builder().add(RUN_RECORD_INDEX_SINCE_KEY).build(), Math.max(nowSecs, stopTs) + 1);
+    }
+  }
+
+  /**
+   * Deletes the run record index entries of the given completed run record.
+   */
+  private void deleteRunRecordIndexes(RunRecordMeta meta) {
+    Long stopTs = meta.getStopTs();
+    if (stopTs == null || !COMPLETED_STATUSES.contains(meta.getStatus())) {
+      return;
+    }
+    ProgramRunId programRunId = meta.getProgramRunId();
+    delete(getRunRecordIndexKey(new MDSKey.Builder().add(TYPE_RUN_RECORD_START_INDEX)
+                                  .add(getInvertedTsKeyPart(meta.getStartTs())), programRunId));
+    delete(getRunRecordIndexKey(new MDSKey.Builder().add(TYPE_RUN_RECORD_STOP_INDEX, meta.getStatus().name())
+                                  .add(getInvertedTsKeyPart(stopTs)), programRunId));
+  }
+
   public Map<ProgramRunId, RunRecordMeta> getRuns(Set<ProgramRunId> programRunIds) {
     return getRuns(programRunIds, Integer.MAX_VALUE);
   }
@@ -1022,6 +1103,9 @@ public class AppMetadataStore extends MetadataStoreDataset {
   private Map<ProgramRunId, RunRecordMeta> getHistoricalRuns(@Nullable ProgramId programId, ProgramRunStatus status,
                                                              final long startTime, final long endTime, int limit,
                                                              @Nullable Predicate<RunRecordMeta> filter) {
+    if (programId == null && isRunRecordIndexed(startTime)) {
+      return getHistoricalRunsFromIndex(status, startTime, endTime, limit, filter);
+    }
     if (programId == null || !programId.getVersion().equals(ApplicationId.DEFAULT_VERSION)) {
       MDSKey key = getProgramKeyBuilder(TYPE_RUN_RECORD_COMPLETED, programId).build();
       return getHistoricalRuns(key, status, startTime, endTime, limit, null, filter);
@@ -1044,6 +1128,27 @@ public class AppMetadataStore extends MetadataStoreDataset {
   public Map<ProgramRunId, RunRecordMeta> getHistoricalRuns(final Set<NamespaceId> namespaces,
                                                             final long earliestStopTime, final long latestStartTime,
                                                             final int limit) {
+    if (isRunRecordIndexed(earliestStopTime)) {
+      Set<String> namespaceNames = namespaces.stream().map(NamespaceId::getNamespace).collect(Collectors.toSet());
+      if (namespaceNames.isEmpty() || limit <= 0) {
+        return new HashMap<>();
+      }
+      // Runs are visited from the most recently stopped on, until every namespace has reached the limit
+      Map<String, Integer> namespaceCounts = new HashMap<>();
+      Set<MDSKey> keys = new HashSet<>();
+      scanStoppedSince(earliestStopTime, (programRunId, startTs) -> {
+        String namespace = programRunId.getNamespace();
+        int count = namespaceCounts.getOrDefault(namespace, 0);
+        if (startTs < latestStartTime && count < limit && namespaceNames.contains(namespace)) {
+          namespaceCounts.put(namespace, ++count);
+          keys.add(getProgramRunInvertedTimeKey(TYPE_RUN_RECORD_COMPLETED, programRunId, startTs));
+          return namespaceNames.stream().anyMatch(ns -> namespaceCounts.getOrDefault(ns, 0) < limit);
+        }
+        return true;
+      });
+      return keys.isEmpty() ? new HashMap<>() : getProgramRunIdMap(getKV(keys, RunRecordMeta.class));
+    }
+
     MDSKey keyPrefix = new MDSKey.Builder().add(TYPE_RUN_RECORD_COMPLETED).build();
     //return all records in each namespace
     return namespaces.stream()
@@ -1083,6 +1188,57 @@ public class AppMetadataStore extends MetadataStoreDataset {
                                      andPredicate(getPredicate(ProgramController.State.ERROR), valueFilter)));
   }
 
+  /**
+   * Fetches the historical run records of all programs that started in the given time range through the start time
+   * index, in descending order of start time. Only the run records that are returned are read.
+   */
+  private Map<ProgramRunId, RunRecordMeta> getHistoricalRunsFromIndex(ProgramRunStatus status,
+                                                                     long startTime, long endTime, int limit,
+                                                                     @Nullable Predicate<RunRecordMeta> filter) {
+    MDSKey prefix = new MDSKey.Builder().add(TYPE_RUN_RECORD_START_INDEX).build();
+    MDSKey start = new MDSKey.Builder(prefix).add(getInvertedTsScanKeyPart(endTime)).build();
+    MDSKey stop = new MDSKey.Builder(prefix).add(getInvertedTsScanKeyPart(startTime)).build();
+
+    Map<ProgramRunId, RunRecordMeta> result = new LinkedHashMap<>();
+    List<MDSKey> batch = new ArrayList<>();
+    scan(start, stop, ProgramRunStatus.class, (KeyValue<ProgramRunStatus> input) -> {
+      if (status == ProgramRunStatus.ALL || status == input.getValue()) {
+        MDSKey.Splitter splitter = input.getKey().split();
+        splitter.skipString();
+        long invertedStartTs = splitter.getLong();
+        batch.add(getRunRecordKey(TYPE_RUN_RECORD_COMPLETED, splitter, invertedStartTs));
+      }
+      if (batch.size() >= RUN_RECORD_FETCH_BATCH_SIZE) {
+        addRunRecords(batch, limit, filter, result);
+        batch.clear();
+      }
+      return result.size() < limit;
+    });
+    addRunRecords(batch, limit, filter, result);
+    return result;
+  }
+
+  /**
+   * Reads the run records of the given keys and adds the ones that pass the filter to the result map, in the order
+   * of the keys and up to the given limit.
+   */
+  private void addRunRecords(List<MDSKey> keys, int limit, @Nullable Predicate<RunRecordMeta> filter,
+                             Map<ProgramRunId, RunRecordMeta> result) {
+    if (keys.isEmpty() || result.size() >= limit) {
+      return;
+    }
+    Map<MDSKey, RunRecordMeta> records = getKV(new HashSet<>(keys), RunRecordMeta.class);
+    for (MDSKey key : keys) {
+      RunRecordMeta meta = records.get(key);
+      if (meta != null && (filter == null || filter.test(meta))) {
+        result.put(meta.getProgramRunId(), meta);
+        if (result.size() >= limit) {
+          return;
+        }
+      }
+    }
+  }
+
   private Predicate<RunRecordMeta> getPredicate(final ProgramController.State state) {
     return (record) -> record.getStatus().equals(state.getRunStatus());
   }
@@ -1131,16 +1287,24 @@ public class AppMetadataStore extends MetadataStoreDataset {
 
   public void deleteProgramHistory(String namespaceId, String appId, String versionId) {
     deleteAll(new MDSKey.Builder().add(TYPE_RUN_RECORD_ACTIVE, namespaceId, appId, versionId).build());
-    deleteAll(new MDSKey.Builder().add(TYPE_RUN_RECORD_COMPLETED, namespaceId, appId, versionId).build());
+    deleteCompletedRuns(new MDSKey.Builder().add(TYPE_RUN_RECORD_COMPLETED, namespaceId, appId, versionId).build());
     deleteAll(new MDSKey.Builder().add(TYPE_COUNT, namespaceId, appId, versionId).build());
   }
 
   public void deleteProgramHistory(String namespaceId) {
     deleteAll(new MDSKey.Builder().add(TYPE_RUN_RECORD_ACTIVE, namespaceId).build());
-    deleteAll(new MDSKey.Builder().add(TYPE_RUN_RECORD_COMPLETED, namespaceId).build());
+    deleteCompletedRuns(new MDSKey.Builder().add(TYPE_RUN_RECORD_COMPLETED, namespaceId).build());
     deleteAll(new MDSKey.Builder().add(TYPE_COUNT, namespaceId).build());
   }
 
+  private void deleteCompletedRuns(MDSKey prefix) {
+    scan(prefix, null, RunRecordMeta.class, (KeyValue<RunRecordMeta> input) -> {
+      deleteRunRecordIndexes(input.getValue());
+      return true;
+    });
+    deleteAll(prefix);
+  }
+
   public void createNamespace(NamespaceMeta metadata) {
     write(getNamespaceKey(metadata.getName()), metadata);
   }
@@ -1197,8 +1361,18 @@ public class AppMetadataStore extends MetadataStoreDataset {
     LOG.trace("Scan timeout = {}ms", scanTimeoutMills);
 
     Set<RunId> runIds = new HashSet<>();
-    Iterables.addAll(runIds, getRunningInRangeForStatus(TYPE_RUN_RECORD_COMPLETED, startTimeInSecs, endTimeInSecs,
-                                                        scanTimeoutMills));
+    if (isRunRecordIndexed(startTimeInSecs)) {
+      // Runs that stopped within or after the time range are looked up from the stop time index
+      scanStoppedSince(startTimeInSecs, (programRunId, startTs) -> {
+        if (startTs < endTimeInSecs) {
+          runIds.add(RunIds.fromString(programRunId.getRun()));
+        }
+        return true;
+      });
+    } else {
+      Iterables.addAll(runIds, getRunningInRangeForStatus(TYPE_RUN_RECORD_COMPLETED, startTimeInSecs, endTimeInSecs,
+                                                          scanTimeoutMills));
+    }
     Iterables.addAll(runIds, getRunningInRangeForStatus(TYPE_RUN_RECORD_ACTIVE, startTimeInSecs, endTimeInSecs,
                                                         scanTimeoutMills));
     return runIds;
@@ -1400,6 +1574,84 @@ public class AppMetadataStore extends MetadataStoreDataset {
     return (new ApplicationId(namespace, application, appVersion).program(ProgramType.valueOf(type), program));
   }
 
+  /**
+   * Returns whether all runs that stopped at or after the given time are in the run record indexes.
+   */
+  private boolean isRunRecordIndexed(long timeInSecs) {
+    Long indexSince = getRunRecordIndexSince();
+    return indexSince != null && timeInSecs >= indexSince;
+  }
+
+  /**
+   * Returns the stop time in seconds from which on all completed runs are indexed, or {@code null} if no run
+   * has been indexed yet.
+   */
+  @Nullable
+  private Long getRunRecordIndexSince() {
+    return get(new MDSKey.Builder().add(RUN_RECORD_INDEX_SINCE_KEY).build(), Long.class);
+  }
+
+  /**
+   * Visits the runs that stopped at or after the given time through the stop time indexes of all terminal statuses,
+   * in descending order of stop time. The indexes are read in batches and the scan ends as soon as the visitor
+   * returns {@code false}.
+   *
+   * @param stopTimeInSecs the earliest stop time in seconds
+   * @param visitor called with each program run and its start time in seconds, returns whether to continue
+   */
+  private void scanStoppedSince(long stopTimeInSecs, BiPredicate<ProgramRunId, Long> visitor) {
+    List<StopIndexCursor> cursors = new ArrayList<>();
+    for (ProgramRunStatus status : COMPLETED_STATUSES) {
+      cursors.add(new StopIndexCursor(status, stopTimeInSecs));
+    }
+    while (true) {
+      // Pick the most recently stopped run among the statuses, which has the smallest inverted stop time
+      StopIndexCursor next = null;
+      for (StopIndexCursor cursor : cursors) {
+        StoppedRun run = cursor.peek();
+        if (run != null && (next == null || run.invertedStopTs < next.peek().invertedStopTs)) {
+          next = cursor;
+        }
+      }
+      if (next == null) {
+        return;
+      }
+      StoppedRun run = next.poll();
+      if (!visitor.test(run.programRunId, run.startTs)) {
+        return;
+      }
+    }
+  }
+
+  /**
+   * Returns the key of a run record index entry, which is the given prefix followed by the program run.
+   */
+  private MDSKey getRunRecordIndexKey(MDSKey.Builder prefix, ProgramRunId runId) {
+    return prefix.add(runId.getNamespace(), runId.getApplication(), runId.getVersion(), runId.getType().name(),
+                      runId.getProgram(), runId.getRun()).build();
+  }
+
+  /**
+   * Reads a {@link ProgramRunId} from the remaining parts of a run record index key.
+   */
+  private static ProgramRunId getProgramRunId(MDSKey.Splitter splitter) {
+    String namespace = splitter.getString();
+    String application = splitter.getString();
+    String appVersion = splitter.getString();
+    String type = splitter.getString();
+    String program = splitter.getString();
+    String run = splitter.getString();
+    return new ApplicationId(namespace, application, appVersion).program(ProgramType.valueOf(type), program).run(run);
+  }
+
+  /**
+   * Returns the run record key for the program run in the remaining parts of a run record index key.
+   */
+  private MDSKey getRunRecordKey(String recordType, MDSKey.Splitter splitter, long invertedStartTs) {
+    ProgramRunId runId = getProgramRunId(splitter);
+    return getProgramKeyBuilder(recordType, runId.getParent()).add(invertedStartTs).add(runId.getRun()).build();
+  }
+
   private MDSKey getProgramRunInvertedTimeKey(String recordType, ProgramRunId runId, long startTs) {
     return getProgramKeyBuilder(recordType, runId.getParent())
       .add(getInvertedTsKeyPart(startTs))
@@ -1407,6 +1659,61 @@ public class AppMetadataStore extends MetadataStoreDataset {
       .build();
   }
 
+  /**
+   * A run read from the stop time index.
+   */
+  private static final class StoppedRun {
+    private final ProgramRunId programRunId;
+    private final long invertedStopTs;
+    private final long startTs;
+
+    StoppedRun(ProgramRunId programRunId, long invertedStopTs, long startTs) {
+      this.programRunId = programRunId;
+      this.invertedStopTs = invertedStopTs;
+      this.startTs = startTs;
+    }
+  }
+
+  /**
+   * Reads the stop time index of one status in batches, from the most recently stopped run back to a given time.
+   */
+  private final class StopIndexCursor {
+    private final MDSKey stopKey;
+    private final Deque<StoppedRun> buffer = new ArrayDeque<>();
+    private MDSKey startKey;
+    private boolean exhausted;
+
+    StopIndexCursor(ProgramRunStatus status, long stopTimeInSecs) {
+      this.startKey = new MDSKey.Builder().add(TYPE_RUN_RECORD_STOP_INDEX, status.name()).build();
+      this.stopKey = new MDSKey.Builder(startKey).add(getInvertedTsScanKeyPart(stopTimeInSecs)).build();
+    }
+
+    @Nullable
+    StoppedRun peek() {
+      if (buffer.isEmpty() && !exhausted) {
+        Map<MDSKey, Long> batch = listKV(startKey, stopKey, Long.class, RUN_RECORD_FETCH_BATCH_SIZE, x -> true);
+        for (Map.Entry<MDSKey, Long> entry : batch.entrySet()) {
+          MDSKey.Splitter splitter = entry.getKey().split();
+          splitter.skipString();
+          splitter.skipString();
+          long invertedStopTs = splitter.getLong();
+          buffer.add(new StoppedRun(getProgramRunId(splitter), invertedStopTs, entry.getValue()));
+          // key for the next batch is the last key + 1
+          startKey = new MDSKey(Bytes.stopKeyForPrefix(entry.getKey().getKey()));
+        }
+        exhausted = batch.size() < RUN_RECORD_FETCH_BATCH_SIZE;
+      }
+      return buffer.peek();
+    }
+
+    @Nullable
+    StoppedRun poll() {
+      StoppedRun run = peek();
+      buffer.poll();
+      return run;
+    }
+  }
+
   private static class AppVersionPredicate implements Predicate<MDSKey> {
     private final String version;
 
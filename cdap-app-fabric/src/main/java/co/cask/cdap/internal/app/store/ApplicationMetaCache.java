@@ -0,0 +1,134 @@
+/*
+ * Copyright © 2018 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.internal.app.store;
+
+import co.cask.cdap.api.common.Bytes;
+import co.cask.cdap.common.conf.CConfiguration;
+import co.cask.cdap.common.conf.Constants;
+import co.cask.cdap.data2.dataset2.lib.table.MDSKey;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.Weigher;
+import com.google.common.hash.HashCode;
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hashing;
+
+import javax.annotation.Nullable;
+
+/**
+ * Cache of parsed {@link ApplicationMeta}, shared by all {@link AppMetadataStore} instances in the process.
+ * Parsing the specification of a large application is expensive, and the same specification is read
+ * by most program lifecycle operations.
+ *
+ * Entries are keyed by the row key and versioned by a hash of the stored value. A cached entry is only returned if
+ * the value read from the table is the same as the one it was parsed from. Hence the cache never returns a stale
+ * specification, even if the table is updated by another process or the transaction that wrote it is rolled back.
+ */
+final class ApplicationMetaCache {
+
+  private static final HashFunction HASH_FUNCTION = Hashing.murmur3_128();
+  private static volatile ApplicationMetaCache instance;
+
+  @Nullable
+  private final Cache<MDSKey, Entry> cache;
+
+  /**
+   * Returns the cache for the process, creating it with the size configured in the given configuration if needed.
+   */
+  static ApplicationMetaCache get(CConfiguration cConf) {
+    ApplicationMetaCache cache = instance;
+    if (cache != null) {
+      return cache;
+    }
+    synchronized (ApplicationMetaCache.class) {
+      if (instance == null) {
+        instance = new ApplicationMetaCache(cConf.getLong(Constants.AppMetaStore.SPEC_CACHE_MAX_BYTES));
+      }
+      return instance;
+    }
+  }
+
+  ApplicationMetaCache(long maxBytes) {
+    this.cache = maxBytes <= 0 ? null : CacheBuilder.newBuilder()
+      .maximumWeight(maxBytes)
+      .weigher(new Weigher<MDSKey, Entry>() {
+        @Override
+        public int weigh(MDSKey key, Entry entry) {
+          return entry.size;
+        }
+      })
+      .build();
+  }
+
+  /**
+   * Returns the cached {@link ApplicationMeta} for the given row, or {@code null} if there is none that was parsed
+   * from the given serialized value.
+   */
+  @Nullable
+  ApplicationMeta get(MDSKey key, byte[] serialized) {
+    if (cache == null) {
+      return null;
+    }
+    Entry entry = cache.getIfPresent(key);
+    if (entry == null) {
+      return null;
+    }
+    if (entry.size != serialized.length || !entry.hash.equals(HASH_FUNCTION.hashBytes(serialized))) {
+      cache.invalidate(key);
+      return null;
+    }
+    return entry.meta;
+  }
+
+  /**
+   * Caches the {@link ApplicationMeta} parsed from the given serialized value of the given row.
+   */
+  void put(MDSKey key, byte[] serialized, ApplicationMeta meta) {
+    if (cache != null) {
+      cache.put(key, new Entry(serialized.length, HASH_FUNCTION.hashBytes(serialized), meta));
+    }
+  }
+
+  /**
+   * Removes the entries of all rows that start with the given key.
+   */
+  void invalidate(MDSKey keyPrefix) {
+    if (cache == null) {
+      return;
+    }
+    for (MDSKey key : cache.asMap().keySet()) {
+      if (Bytes.startsWith(key.getKey(), keyPrefix.getKey())) {
+        cache.invalidate(key);
+      }
+    }
+  }
+
+  /**
+   * A parsed {@link ApplicationMeta} together with the size and hash of the value it was parsed from.
+   */
+  private static final class Entry {
+    private final int size;
+    private final HashCode hash;
+    private final ApplicationMeta meta;
+
+    Entry(int size, HashCode hash, ApplicationMeta meta) {
+      this.size = size;
+      this.hash = hash;
+      this.meta = meta;
+    }
+  }
+}
@@ -0,0 +1,183 @@
+/*
+ * Copyright © 2018 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package co.cask.cdap.internal.app.runtime.flow;
+
+import co.cask.cdap.api.annotation.Batch;
+import co.cask.cdap.api.annotation.ProcessInput;
+import co.cask.cdap.api.annotation.Tick;
+import co.cask.cdap.api.flow.flowlet.AbstractFlowlet;
+import co.cask.cdap.api.flow.flowlet.InputContext;
+import com.google.common.collect.ImmutableList;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Test for {@link ASMProcessMethod}.
+ */
+public class ASMProcessMethodTest {
+
+  @Test
+  public void testInvoke() throws Exception {
+    TestFlowlet flowlet = new TestFlowlet();
+
+    ProcessMethod<String> method = create(flowlet, "process", String.class);
+    Assert.assertTrue(method instanceof ASMProcessMethod);
+    Assert.assertTrue(method.needsInput());
+    Assert.assertEquals(3, method.getMaxRetries());
+    ProcessMethod.ProcessResult<String> result = method.invoke(new ListInputDatum<>("a", "b"));
+    Assert.assertTrue(result.isSuccess());
+    Assert.assertEquals("a", result.getEvent());
+    Assert.assertEquals(ImmutableList.of("a", "b"), flowlet.events);
+
+    // Process method with InputContext
+    flowlet.events.clear();
+    ProcessMethod<Integer> contextMethod = create(flowlet, "process", Integer.class, InputContext.class);
+    Assert.assertTrue(contextMethod instanceof ASMProcessMethod);
+    Assert.assertTrue(contextMethod.invoke(new ListInputDatum<>(1)).isSuccess());
+    Assert.assertEquals(ImmutableList.<Object>of(1, "test"), flowlet.events);
+
+    // Primitive parameter with a return value
+    flowlet.events.clear();
+    ProcessMethod<Long> primitiveMethod = create(flowlet, "processLong", long.class);
+    Assert.assertTrue(primitiveMethod instanceof ASMProcessMethod);
+    Assert.assertTrue(primitiveMethod.invoke(new ListInputDatum<>(10L)).isSuccess());
+    Assert.assertEquals(ImmutableList.<Object>of(10L), flowlet.events);
+
+    // Tick method without parameter
+    flowlet.events.clear();
+    ProcessMethod<Object> tickMethod = create(flowlet, "tick");
+    Assert.assertTrue(tickMethod instanceof ASMProcessMethod);
+    Assert.assertFalse(tickMethod.needsInput());
+    ProcessMethod.ProcessResult<Object> tickResult = tickMethod.invoke(new ListInputDatum<>());
+    Assert.assertTrue(tickResult.isSuccess());
+    Assert.assertNull(tickResult.getEvent());
+    Assert.assertEquals(ImmutableList.<Object>of("tick"), flowlet.events);
+  }
+
+  @Test
+  public void testBatch() throws Exception {
+    TestFlowlet flowlet = new TestFlowlet();
+    ProcessMethod<String> method = create(flowlet, "processBatch", Iterator.class);
+    Assert.assertTrue(method instanceof ASMProcessMethod);
+
+    ProcessMethod.ProcessResult<String> result = method.invoke(new ListInputDatum<>("a", "b", "c"));
+    Assert.assertTrue(result.isSuccess());
+    // For batch process methods, the event of the result is the iterator of the batch
+    Assert.assertTrue((Object) result.getEvent() instanceof Iterator);
+    Assert.assertEquals(ImmutableList.of("a", "b", "c"), flowlet.events);
+  }
+
+  @Test
+  public void testFailure() throws Exception {
+    TestFlowlet flowlet = new TestFlowlet();
+    ProcessMethod<String> method = create(flowlet, "fail", String.class);
+    Assert.assertTrue(method instanceof ASMProcessMethod);
+
+    ProcessMethod.ProcessResult<String> result = method.invoke(new ListInputDatum<>("a"));
+    Assert.assertFalse(result.isSuccess());
+    Assert.assertEquals("a", result.getEvent());
+    Assert.assertTrue(result.getCause() instanceof IllegalStateException);
+    Assert.assertEquals("a", result.getCause().getMessage());
+  }
+
+  @Test
+  public void testReflectionFallback() throws Exception {
+    TestFlowlet flowlet = new TestFlowlet();
+    ProcessMethod<String> method = create(flowlet, "processPrivate", String.class);
+    Assert.assertTrue(method instanceof ReflectionProcessMethod);
+    Assert.assertTrue(method.invoke(new ListInputDatum<>("a")).isSuccess());
+    Assert.assertEquals(ImmutableList.of("a"), flowlet.events);
+
+    // Non-public flowlet class
+    PackageFlowlet packageFlowlet = new PackageFlowlet();
+    method = ASMProcessMethod.create(packageFlowlet,
+                                     PackageFlowlet.class.getMethod("process", String.class), 3);
+    Assert.assertTrue(method instanceof ReflectionProcessMethod);
+    Assert.assertTrue(method.invoke(new ListInputDatum<>("b")).isSuccess());
+    Assert.assertEquals(ImmutableList.of("b"), packageFlowlet.events);
+  }
+
+  private <T> ProcessMethod<T> create(TestFlowlet flowlet, String name, Class<?>... paramTypes) throws Exception {
+    return ASMProcessMethod.create(flowlet, TestFlowlet.class.getDeclaredMethod(name, paramTypes), 3);
+  }
+
+  /**
+   * Flowlet with different kinds of process methods.
+   */
+  public static final class TestFlowlet extends AbstractFlowlet {
+
+    private final List<Object> events = new ArrayList<>();
+
+    @ProcessInput
+    public void process(String event) {
+      events.add(event);
+    }
+
+    @ProcessInput
+    public void process(Integer event, InputContext context) {
+      events.add(event);
+      events.add(context.getOrigin());
+    }
+
+    @ProcessInput
+    public boolean processLong(long event) {
+      return events.add(event);
+    }
+
+    @Batch(10)
+    @ProcessInput
+    public void processBatch(Iterator<String> events) {
+      while (events.hasNext()) {
+        this.events.add(events.next());
+      }
+    }
+
+    @ProcessInput
+    public void fail(String event) {
+      throw new IllegalStateException(event);
+    }
+
+    @ProcessInput
+    private void processPrivate(String event) {
+      events.add(event);
+    }
+
+    @Tick(delay = 1L, unit = TimeUnit.SECONDS)
+    public void tick() {
+      events.add("tick");
+    }
+  }
+
+  /**
+   * Non-public flowlet, which cannot be called from a generated invoker.
+   */
+  static final class PackageFlowlet extends AbstractFlowlet {
+
+    private final List<Object> events = new ArrayList<>();
+
+    @ProcessInput
+    public void process(String event) {
+      events.add(event);
+    }
+  }
+}
@@ -0,0 +1,104 @@
+/*
+ * Copyright © 2018 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package co.cask.cdap.internal.app.runtime.flow;
+
+import co.cask.cdap.api.data.schema.Schema;
+import co.cask.cdap.api.data.schema.SchemaHash;
+import co.cask.cdap.common.io.BinaryDecoder;
+import co.cask.cdap.data2.queue.QueueEntry;
+import co.cask.cdap.data2.queue.QueueProducer;
+import co.cask.cdap.internal.io.ReflectionDatumReader;
+import co.cask.cdap.internal.io.ReflectionDatumWriter;
+import co.cask.cdap.internal.io.ReflectionSchemaGenerator;
+import com.google.common.base.Strings;
+import com.google.common.base.Suppliers;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Iterables;
+import com.google.common.reflect.TypeToken;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Test for {@link DatumOutputEmitter}.
+ */
+public class DatumOutputEmitterTest {
+
+  @Test
+  public void testEmit() throws Exception {
+    Schema schema = new ReflectionSchemaGenerator().generate(String.class);
+    CollectingQueueProducer producer = new CollectingQueueProducer();
+    DatumOutputEmitter<String> emitter = new DatumOutputEmitter<>(Suppliers.<QueueProducer>ofInstance(producer),
+                                                                  schema, new ReflectionDatumWriter<String>(schema));
+
+    // Emits values of different sizes, including one that is too large for the buffer to be retained,
+    // to make sure reusing the encode buffer doesn't affect entries already emitted.
+    List<String> values = new ArrayList<>();
+    values.add("long value " + Strings.repeat("x", 1000));
+    values.add("short");
+    values.add("large value " + Strings.repeat("y", 2 * 1024 * 1024));
+    values.add("");
+
+    emitter.emit(values.get(0));
+    emitter.emit(values.get(1), "key", "partition");
+    emitter.emit(values.get(2), ImmutableMap.<String, Object>of("k1", 1, "k2", "v2"));
+    emitter.emit(values.get(3), "key", 1);
+
+    Assert.assertEquals(values.size(), producer.entries.size());
+    ReflectionDatumReader<String> reader = new ReflectionDatumReader<>(schema, TypeToken.of(String.class));
+    for (int i = 0; i < values.size(); i++) {
+      ByteBuffer data = ByteBuffer.wrap(producer.entries.get(i).getData());
+      Assert.assertEquals(schema.getSchemaHash(), new SchemaHash(data));
+      BinaryDecoder decoder = new BinaryDecoder(new ByteArrayInputStream(data.array(), data.position(),
+                                                                         data.remaining()));
+      Assert.assertEquals(values.get(i), reader.read(decoder, schema));
+    }
+
+    Assert.assertTrue(producer.entries.get(0).getHashKeys().isEmpty());
+    Assert.assertEquals(ImmutableMap.of("key", "partition".hashCode()), producer.entries.get(1).getHashKeys());
+    Assert.assertEquals(ImmutableMap.of("k1", 1, "k2", "v2".hashCode()), producer.entries.get(2).getHashKeys());
+    Assert.assertEquals(ImmutableMap.of("key", 1), producer.entries.get(3).getHashKeys());
+  }
+
+  /**
+   * A {@link QueueProducer} that keeps all enqueued entries in memory.
+   */
+  private static final class CollectingQueueProducer implements QueueProducer {
+
+    private final List<QueueEntry> entries = new ArrayList<>();
+
+    @Override
+    public void enqueue(QueueEntry entry) {
+      entries.add(entry);
+    }
+
+    @Override
+    public void enqueue(Iterable<QueueEntry> entries) {
+      Iterables.addAll(this.entries, entries);
+    }
+
+    @Override
+    public void close() {
+      // no-op
+    }
+  }
+}
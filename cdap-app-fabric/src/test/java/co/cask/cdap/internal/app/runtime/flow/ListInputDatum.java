@@ -0,0 +1,93 @@
+/*
+ * Copyright © 2018 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package co.cask.cdap.internal.app.runtime.flow;
+
+import co.cask.cdap.api.flow.flowlet.InputContext;
+import co.cask.cdap.app.queue.InputDatum;
+import co.cask.cdap.common.queue.QueueName;
+import com.google.common.collect.ImmutableList;
+
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * An {@link InputDatum} over a fixed list of events, for calling {@link ProcessMethod} in tests and benchmarks.
+ *
+ * @param <T> Type of input.
+ */
+final class ListInputDatum<T> implements InputDatum<T> {
+
+  private final List<T> events;
+  private final InputContext inputContext = new InputContext() {
+    @Override
+    public String getOrigin() {
+      return "test";
+    }
+
+    @Override
+    public int getRetryCount() {
+      return retry;
+    }
+  };
+  private int retry;
+
+  @SafeVarargs
+  ListInputDatum(T... events) {
+    this.events = ImmutableList.copyOf(events);
+  }
+
+  @Override
+  public boolean needProcess() {
+    return !events.isEmpty();
+  }
+
+  @Override
+  public void incrementRetry() {
+    retry++;
+  }
+
+  @Override
+  public int getRetry() {
+    return retry;
+  }
+
+  @Override
+  public InputContext getInputContext() {
+    return inputContext;
+  }
+
+  @Override
+  public QueueName getQueueName() {
+    return null;
+  }
+
+  @Override
+  public void reclaim() {
+    // No-op
+  }
+
+  @Override
+  public int size() {
+    return events.size();
+  }
+
+  @Override
+  public Iterator<T> iterator() {
+    return events.iterator();
+  }
+}
@@ -0,0 +1,103 @@
+/*
+ * Copyright © 2018 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package co.cask.cdap.internal.app.runtime.flow;
+
+import co.cask.cdap.api.annotation.ProcessInput;
+import co.cask.cdap.api.flow.flowlet.AbstractFlowlet;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JMH benchmark for the dispatch overhead of calling a trivial flowlet process method through
+ * {@link ReflectionProcessMethod} and {@link ASMProcessMethod}, with a batch of events per invocation as
+ * dequeued by the flowlet.
+ *
+ * It can be run from the IDE or through the {@link #main(String[])} method with the test classpath.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ProcessMethodBenchmark {
+
+  private static final int BATCH_SIZE = 100;
+
+  private ProcessMethod<Integer> reflectionMethod;
+  private ProcessMethod<Integer> asmMethod;
+  private ListInputDatum<Integer> input;
+
+  @Setup
+  public void setup() throws Exception {
+    CountingFlowlet flowlet = new CountingFlowlet();
+    java.lang.reflect.Method method = CountingFlowlet.class.getMethod("process", Integer.class);
+    reflectionMethod = ReflectionProcessMethod.create(flowlet, method, 0);
+    asmMethod = ASMProcessMethod.create(flowlet, method, 0);
+
+    Integer[] events = new Integer[BATCH_SIZE];
+    for (int i = 0; i < BATCH_SIZE; i++) {
+      events[i] = i;
+    }
+    input = new ListInputDatum<>(events);
+  }
+
+  @Benchmark
+  public ProcessMethod.ProcessResult<Integer> reflection() {
+    return reflectionMethod.invoke(input);
+  }
+
+  @Benchmark
+  public ProcessMethod.ProcessResult<Integer> asm() {
+    return asmMethod.invoke(input);
+  }
+
+  public static void main(String[] args) throws RunnerException {
+    Options options = new OptionsBuilder()
+      .include(ProcessMethodBenchmark.class.getSimpleName())
+      .build();
+    new Runner(options).run();
+  }
+
+  /**
+   * A flowlet with a trivial process method.
+   */
+  public static final class CountingFlowlet extends AbstractFlowlet {
+
+    private long sum;
+
+    @ProcessInput
+    public void process(Integer event) {
+      sum += event;
+    }
+  }
+}
@@ -16,6 +16,9 @@
 
 package co.cask.cdap.internal.app.store;
 
+import co.cask.cdap.AllProgramsApp;
+import co.cask.cdap.WordCountApp;
+import co.cask.cdap.api.app.ApplicationSpecification;
 import co.cask.cdap.api.artifact.ArtifactId;
 import co.cask.cdap.api.dataset.DatasetProperties;
 import co.cask.cdap.api.dataset.table.Table;
@@ -24,6 +27,7 @@ import co.cask.cdap.common.conf.CConfiguration;
 import co.cask.cdap.data2.dataset2.DatasetFramework;
 import co.cask.cdap.data2.transaction.TransactionExecutorFactory;
 import co.cask.cdap.internal.AppFabricTestHelper;
+import co.cask.cdap.internal.app.deploy.Specifications;
 import co.cask.cdap.internal.app.runtime.SystemArguments;
 import co.cask.cdap.proto.ProgramRunStatus;
 import co.cask.cdap.proto.ProgramType;
@@ -36,6 +40,7 @@ import co.cask.cdap.proto.id.ProgramRunId;
 import com.google.common.base.Ticker;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Iterables;
 import com.google.common.collect.Lists;
 import com.google.inject.Injector;
@@ -623,6 +628,143 @@ public class AppMetadataStoreTest {
     });
   }
 
+  @Test
+  public void testApplicationSpecCache() throws Exception {
+    AppMetadataStore store = getMetadataStore("testApplicationSpecCache");
+    TransactionExecutor txnl = getTxExecutor(store);
+    ApplicationSpecification spec = Specifications.from(new AllProgramsApp());
+    ApplicationSpecification updatedSpec = Specifications.from(new WordCountApp());
+    ApplicationId appId = NamespaceId.DEFAULT.app(spec.getName());
+    String namespace = appId.getNamespace();
+    String app = appId.getApplication();
+    String version = appId.getVersion();
+
+    txnl.execute(() -> store.writeApplication(namespace, app, version, spec));
+    AtomicReference<ApplicationMeta> meta = new AtomicReference<>();
+    txnl.execute(() -> meta.set(store.getApplication(appId)));
+    Assert.assertEquals(spec.getName(), meta.get().getSpec().getName());
+    // reading the unchanged application again should not parse it again
+    txnl.execute(() -> Assert.assertSame(meta.get(), store.getApplication(appId)));
+    txnl.execute(() -> Assert.assertSame(meta.get(), Iterables.getOnlyElement(store.getAllApplications(namespace))));
+
+    // an update that is read back in its own transaction but rolled back must not be visible afterwards
+    try {
+      txnl.execute(() -> {
+        store.updateAppSpec(namespace, app, version, updatedSpec);
+        Assert.assertEquals(updatedSpec.getName(), store.getApplication(appId).getSpec().getName());
+        throw new IllegalStateException("rollback");
+      });
+      Assert.fail("Expected the transaction to fail");
+    } catch (TransactionFailureException e) {
+      // expected
+    }
+    txnl.execute(() -> Assert.assertEquals(spec.getName(), store.getApplication(appId).getSpec().getName()));
+
+    txnl.execute(() -> store.updateAppSpec(namespace, app, version, updatedSpec));
+    txnl.execute(() -> Assert.assertEquals(updatedSpec.getName(), store.getApplication(appId).getSpec().getName()));
+
+    txnl.execute(() -> store.deleteApplication(namespace, app, version));
+    txnl.execute(() -> Assert.assertNull(store.getApplication(appId)));
+  }
+
+  @Test
+  public void testRunRecordIndexes() throws Exception {
+    AppMetadataStore store = getMetadataStore("testRunRecordIndexes");
+    TransactionExecutor txnl = getTxExecutor(store);
+
+    // Runs in two namespaces, every 10 seconds with the run in the other namespace starting a second later.
+    // Each run takes 5 seconds. The times are in the future, so that the time ranges queried below are covered
+    // by the indexes.
+    long baseSecs = TimeUnit.MILLISECONDS.toSeconds(System.currentTimeMillis()) + TimeUnit.HOURS.toSeconds(1);
+    NamespaceId otherNamespace = new NamespaceId("other");
+    Map<ProgramRunId, ProgramRunStatus> statuses = new HashMap<>();
+    List<ProgramRunId> runs = new ArrayList<>();
+    for (int i = 0; i < 10; i++) {
+      for (NamespaceId namespace : Arrays.asList(NamespaceId.DEFAULT, otherNamespace)) {
+        ProgramId program = namespace.app("app" + (i % 2)).program(ProgramType.WORKFLOW, "program");
+        long startSecs = baseSecs + i * 10 + runs.size() % 2;
+        ProgramRunId programRunId = program.run(RunIds.generate(TimeUnit.SECONDS.toMillis(startSecs)));
+        ProgramRunStatus status = STOP_STATUSES.get(i % STOP_STATUSES.size());
+        txnl.execute(() -> {
+          recordProvisionAndStart(programRunId, store);
+          store.recordProgramRunning(programRunId, startSecs, null,
+                                     AppFabricTestHelper.createSourceId(sourceId.incrementAndGet()));
+          store.recordProgramStop(programRunId, startSecs + 5, status, null,
+                                  AppFabricTestHelper.createSourceId(sourceId.incrementAndGet()));
+        });
+        runs.add(programRunId);
+        statuses.put(programRunId, status);
+      }
+    }
+    // An active run that started after all others
+    ProgramRunId activeRun = NamespaceId.DEFAULT.app("app0").program(ProgramType.WORKFLOW, "program")
+      .run(RunIds.generate(TimeUnit.SECONDS.toMillis(baseSecs + 200)));
+    txnl.execute(() -> recordProvisionAndStart(activeRun, store));
+
+    // Runs 2, 3 and 4 of both namespaces were running between 25 and 45 seconds
+    Set<RunId> expectedRunIds = runs.subList(4, 10).stream()
+      .map(runId -> RunIds.fromString(runId.getRun())).collect(Collectors.toSet());
+    txnl.execute(() -> Assert.assertEquals(expectedRunIds, store.getRunningInRange(baseSecs + 25, baseSecs + 45)));
+    // The last runs of both namespaces and the active run were running after 95 seconds
+    Set<RunId> lastRunIds = Stream.concat(runs.subList(18, 20).stream(), Stream.of(activeRun))
+      .map(runId -> RunIds.fromString(runId.getRun())).collect(Collectors.toSet());
+    txnl.execute(() -> Assert.assertEquals(lastRunIds, store.getRunningInRange(baseSecs + 95, baseSecs + 300)));
+    // Time ranges that start before the first indexed run are served from the run records
+    Set<RunId> earlierRunIds = runs.subList(0, 10).stream()
+      .map(runId -> RunIds.fromString(runId.getRun())).collect(Collectors.toSet());
+    txnl.execute(() -> Assert.assertEquals(earlierRunIds, store.getRunningInRange(baseSecs, baseSecs + 45)));
+
+    // Historical runs of one namespace only, with and without a limit
+    Set<ProgramRunId> expectedDefaultRuns = runs.subList(4, 10).stream()
+      .filter(runId -> runId.getNamespaceId().equals(NamespaceId.DEFAULT)).collect(Collectors.toSet());
+    txnl.execute(() -> {
+      Map<ProgramRunId, RunRecordMeta> historical =
+        store.getHistoricalRuns(Collections.singleton(NamespaceId.DEFAULT), baseSecs + 25, baseSecs + 45, 100);
+      Assert.assertEquals(expectedDefaultRuns, historical.keySet());
+      for (Map.Entry<ProgramRunId, RunRecordMeta> entry : historical.entrySet()) {
+        Assert.assertEquals(statuses.get(entry.getKey()), entry.getValue().getStatus());
+      }
+      // The limit keeps the most recently stopped runs, regardless of their status
+      Assert.assertEquals(Collections.singleton(runs.get(8)),
+                          store.getHistoricalRuns(Collections.singleton(NamespaceId.DEFAULT),
+                                                  baseSecs + 25, baseSecs + 45, 1).keySet());
+      Assert.assertEquals(ImmutableSet.of(runs.get(8), runs.get(9)),
+                          store.getHistoricalRuns(ImmutableSet.of(NamespaceId.DEFAULT, otherNamespace),
+                                                  baseSecs + 25, baseSecs + 45, 1).keySet());
+    });
+
+    // Runs of all programs that started in a time range, in descending order of start time
+    txnl.execute(() -> {
+      List<ProgramRunId> expected = new ArrayList<>(runs.subList(4, 10));
+      Collections.reverse(expected);
+      List<ProgramRunId> actual = new ArrayList<>(
+        store.getRuns(null, ProgramRunStatus.ALL, baseSecs + 20, baseSecs + 50, 100, null).keySet());
+      Assert.assertEquals(expected.stream().map(ProgramRunId::getRun).collect(Collectors.toList()),
+                          actual.stream().map(ProgramRunId::getRun).collect(Collectors.toList()));
+
+      Map<ProgramRunId, RunRecordMeta> failed =
+        store.getRuns(null, ProgramRunStatus.FAILED, baseSecs + 10, baseSecs + 100, 3, null);
+      Assert.assertEquals(3, failed.size());
+      for (RunRecordMeta meta : failed.values()) {
+        Assert.assertEquals(ProgramRunStatus.FAILED, meta.getStatus());
+      }
+      Assert.assertEquals(3, store.getRuns(null, ProgramRunStatus.COMPLETED, baseSecs + 10, baseSecs + 100, 100,
+                                           meta -> meta.getProgramRunId().getNamespaceId().equals(otherNamespace))
+        .size());
+    });
+
+    // Deleting the run history of a namespace also removes its index entries
+    txnl.execute(() -> store.deleteProgramHistory(NamespaceId.DEFAULT.getNamespace()));
+    Set<RunId> otherRunIds = runs.subList(4, 10).stream()
+      .filter(runId -> runId.getNamespaceId().equals(otherNamespace))
+      .map(runId -> RunIds.fromString(runId.getRun())).collect(Collectors.toSet());
+    txnl.execute(() -> {
+      Assert.assertEquals(otherRunIds, store.getRunningInRange(baseSecs + 25, baseSecs + 45));
+      Assert.assertTrue(store.getHistoricalRuns(Collections.singleton(NamespaceId.DEFAULT),
+                                                baseSecs + 25, baseSecs + 45, 100).isEmpty());
+    });
+  }
+
   private <T> void assertSecondCallIsNull(Callable<T> callable) throws Exception {
     T result = callable.call();
     Assert.assertNotNull(result);
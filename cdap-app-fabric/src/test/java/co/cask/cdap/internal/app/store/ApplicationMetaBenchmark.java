@@ -0,0 +1,131 @@
+/*
+ * Copyright © 2018 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.internal.app.store;
+
+import co.cask.cdap.AllProgramsApp;
+import co.cask.cdap.api.app.ApplicationSpecification;
+import co.cask.cdap.api.artifact.ArtifactId;
+import co.cask.cdap.api.artifact.ArtifactScope;
+import co.cask.cdap.api.artifact.ArtifactVersion;
+import co.cask.cdap.api.plugin.Plugin;
+import co.cask.cdap.api.plugin.PluginClass;
+import co.cask.cdap.api.plugin.PluginProperties;
+import co.cask.cdap.api.plugin.PluginPropertyField;
+import co.cask.cdap.common.conf.CConfiguration;
+import co.cask.cdap.data2.dataset2.lib.table.MDSKey;
+import co.cask.cdap.data2.dataset2.lib.table.inmemory.InMemoryTable;
+import co.cask.cdap.internal.app.DefaultApplicationSpecification;
+import co.cask.cdap.internal.app.deploy.Specifications;
+import co.cask.cdap.proto.id.ApplicationId;
+import com.google.common.base.Strings;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JMH benchmark for reading the {@link ApplicationMeta} of a large application from the {@link AppMetadataStore},
+ * with and without the {@link ApplicationMetaCache}. The application resembles a data pipeline, with the pipeline
+ * configuration embedded in the application configuration and a plugin with a few properties for each stage.
+ *
+ * It can be run from the IDE or through the {@link #main(String[])} method with the test classpath.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ApplicationMetaBenchmark {
+
+  private static final int STAGES = 200;
+  private static final int PROPERTIES = 20;
+
+  @Param({ "0", "104857600" })
+  private long cacheMaxBytes;
+
+  private AppMetadataStore store;
+  private MDSKey key;
+  private byte[] serialized;
+
+  @Setup
+  public void setup() {
+    store = new AppMetadataStore(new InMemoryTable("benchmark"), CConfiguration.create(),
+                                 new ApplicationMetaCache(cacheMaxBytes));
+    ApplicationSpecification spec = createPipelineSpec();
+    key = new MDSKey.Builder().add("appMeta", "default", spec.getName(), ApplicationId.DEFAULT_VERSION).build();
+    serialized = store.serialize(new ApplicationMeta(spec.getName(), spec));
+  }
+
+  @Benchmark
+  public ApplicationMeta getApplication() {
+    return store.deserialize(key, serialized, ApplicationMeta.class);
+  }
+
+  private static ApplicationSpecification createPipelineSpec() {
+    ApplicationSpecification spec = Specifications.from(new AllProgramsApp());
+    ArtifactId artifactId = new ArtifactId("plugins", new ArtifactVersion("1.0.0"), ArtifactScope.SYSTEM);
+    // every stage shows up in the pipeline config and as a plugin
+    StringBuilder config = new StringBuilder("{\"stages\":[");
+    Map<String, Plugin> plugins = new HashMap<>();
+    for (int i = 0; i < STAGES; i++) {
+      Map<String, PluginPropertyField> fields = new HashMap<>();
+      Map<String, String> properties = new HashMap<>();
+      for (int j = 0; j < PROPERTIES; j++) {
+        String name = "property" + j;
+        fields.put(name, new PluginPropertyField(name, "Description of " + name, "string", false, true));
+        properties.put(name, Strings.repeat("value" + i + j, 20));
+      }
+      PluginClass pluginClass = new PluginClass("transform", "Stage" + i, "Plugin for stage " + i,
+                                                "co.cask.plugin.Stage" + i, "config", fields);
+      plugins.put("stage" + i, new Plugin(Collections.emptyList(), artifactId, pluginClass,
+                                          PluginProperties.builder().addAll(properties).build()));
+      config.append(i == 0 ? "" : ",").append("{\"name\":\"stage").append(i).append("\",\"properties\":\"")
+        .append(Strings.repeat("x", 2000)).append("\"}");
+    }
+    config.append("]}");
+
+    return new DefaultApplicationSpecification(spec.getName(), spec.getDescription(), config.toString(),
+                                               spec.getArtifactId(), spec.getStreams(), spec.getDatasetModules(),
+                                               spec.getDatasets(), spec.getFlows(), spec.getMapReduce(),
+                                               spec.getSpark(), spec.getWorkflows(), spec.getServices(),
+                                               spec.getProgramSchedules(), spec.getWorkers(), plugins);
+  }
+
+  public static void main(String[] args) throws RunnerException {
+    Options options = new OptionsBuilder()
+      .include(ApplicationMetaBenchmark.class.getSimpleName())
+      .build();
+    new Runner(options).run();
+  }
+}
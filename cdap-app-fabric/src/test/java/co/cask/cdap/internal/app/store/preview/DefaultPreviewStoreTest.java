@@ -15,12 +15,15 @@
  */
 package co.cask.cdap.internal.app.store.preview;
 
+import co.cask.cdap.api.data.format.StructuredRecord;
+import co.cask.cdap.api.data.schema.Schema;
 import co.cask.cdap.common.app.RunIds;
 import co.cask.cdap.internal.AppFabricTestHelper;
 import co.cask.cdap.proto.NamespaceMeta;
 import co.cask.cdap.proto.id.ApplicationId;
 import com.google.gson.Gson;
 import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
 import com.google.gson.reflect.TypeToken;
 import com.google.inject.Injector;
 import org.junit.Assert;
@@ -92,4 +95,26 @@ public class DefaultPreviewStoreTest {
     firstApplicationData = store.get(firstApplicationId, "mytracer");
     Assert.assertEquals(0, firstApplicationData.size());
   }
+
+  @Test
+  public void testStructuredRecord() throws Exception {
+    ApplicationId applicationId = new ApplicationId(NamespaceMeta.DEFAULT.getName(), RunIds.generate().getId());
+    Schema schema = Schema.recordOf("record",
+                                    Schema.Field.of("id", Schema.of(Schema.Type.INT)),
+                                    Schema.Field.of("name", Schema.nullableOf(Schema.of(Schema.Type.STRING))));
+    store.put(applicationId, "mytracer", "key", StructuredRecord.builder(schema).set("id", 1).set("name", "n").build());
+    store.put(applicationId, "mytracer", "key", StructuredRecord.builder(schema).set("id", 2).build());
+
+    // Records are stored as the schema together with an object of field name to value
+    List<JsonElement> values = store.get(applicationId, "mytracer").get("key");
+    Assert.assertEquals(2, values.size());
+    JsonObject fields = values.get(0).getAsJsonObject().getAsJsonObject("fields");
+    Assert.assertEquals(1, fields.get("id").getAsInt());
+    Assert.assertEquals("n", fields.get("name").getAsString());
+    Assert.assertTrue(values.get(0).getAsJsonObject().has("schema"));
+
+    fields = values.get(1).getAsJsonObject().getAsJsonObject("fields");
+    Assert.assertEquals(2, fields.get("id").getAsInt());
+    Assert.assertFalse(fields.has("name"));
+  }
 }
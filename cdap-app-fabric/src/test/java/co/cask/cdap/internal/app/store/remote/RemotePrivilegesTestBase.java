@@ -156,6 +156,36 @@ public abstract class RemotePrivilegesTestBase {
     privilegesManager.revoke(Authorizable.fromEntityId(NS));
   }
 
+  @Test
+  public void testBulkEnforce() throws Exception {
+    ProgramId program1 = APP.program(ProgramType.SERVICE, "service1");
+    privilegesManager.grant(Authorizable.fromEntityId(APP), ALICE, EnumSet.of(Action.READ, Action.ADMIN));
+    privilegesManager.grant(Authorizable.fromEntityId(program1), ALICE, EnumSet.of(Action.READ, Action.ADMIN));
+    privilegesManager.grant(Authorizable.fromEntityId(PROGRAM), ALICE, Collections.singleton(Action.READ));
+    authorizationEnforcer.enforce(ImmutableSet.of(APP, PROGRAM, program1), ALICE, Collections.singleton(Action.READ));
+    authorizationEnforcer.enforce(ImmutableSet.of(APP, program1), ALICE, EnumSet.of(Action.READ, Action.ADMIN));
+    try {
+      authorizationEnforcer.enforce(ImmutableSet.of(APP, PROGRAM, program1), ALICE,
+                                    EnumSet.of(Action.READ, Action.ADMIN));
+      Assert.fail("Alice should not have ADMIN privilege on " + PROGRAM);
+    } catch (UnauthorizedException e) {
+      // expected
+    }
+    // the outcome of the bulk check should be the same as checking each privilege individually
+    authorizationEnforcer.enforce(program1, ALICE, Action.ADMIN);
+    authorizationEnforcer.enforce(PROGRAM, ALICE, Action.READ);
+    try {
+      authorizationEnforcer.enforce(PROGRAM, ALICE, Action.ADMIN);
+      Assert.fail("Alice should not have ADMIN privilege on " + PROGRAM);
+    } catch (UnauthorizedException e) {
+      // expected
+    }
+
+    privilegesManager.revoke(Authorizable.fromEntityId(PROGRAM));
+    privilegesManager.revoke(Authorizable.fromEntityId(program1));
+    privilegesManager.revoke(Authorizable.fromEntityId(APP));
+  }
+
   @Test
   public void testVisibility() throws Exception {
     ApplicationId app1 = NS.app("app1");
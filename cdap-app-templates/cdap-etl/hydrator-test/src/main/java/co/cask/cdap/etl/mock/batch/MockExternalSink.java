@@ -30,12 +30,14 @@ import co.cask.cdap.etl.api.batch.BatchSink;
 import co.cask.cdap.etl.api.batch.BatchSinkContext;
 import co.cask.cdap.etl.proto.v2.ETLPlugin;
 import co.cask.cdap.internal.app.runtime.batch.BasicOutputFormatProvider;
+import co.cask.cdap.internal.io.StructuredRecordTypeAdapter;
 import com.google.common.base.Charsets;
 import com.google.common.base.Function;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Lists;
 import com.google.common.io.Files;
 import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
 import org.apache.hadoop.io.NullWritable;
 import org.apache.hadoop.mapreduce.lib.output.TextOutputFormat;
 
@@ -56,7 +58,9 @@ import javax.annotation.Nullable;
 public class MockExternalSink extends BatchSink<StructuredRecord, NullWritable, String> {
   public static final PluginClass PLUGIN_CLASS = getPluginClass();
   public static final String PLUGIN_NAME = "MockExternalSink";
-  private static final Gson GSON = new Gson();
+  private static final Gson GSON = new GsonBuilder()
+    .registerTypeAdapter(StructuredRecord.class, new StructuredRecordTypeAdapter())
+    .create();
   private final Config config;
 
   public MockExternalSink(Config config) {
@@ -352,6 +352,8 @@ public final class Constants {
    */
   public static final class AppMetaStore {
     public static final String TABLE = "app.meta";
+    /** Maximum total size in bytes of the serialized application specifications held parsed in memory */
+    public static final String SPEC_CACHE_MAX_BYTES = "app.meta.spec.cache.max.bytes";
   }
 
   /**
@@ -517,6 +519,7 @@ public final class Constants {
     public static final String PARTITION_DURATION = "stream.partition.duration";
     public static final String INDEX_INTERVAL = "stream.index.interval";
     public static final String FILE_PREFIX = "stream.file.prefix";
+    public static final String FILE_COMPRESSION_CODEC = "stream.file.compression.codec";
     public static final String INSTANCE_FILE_PREFIX = "stream.instance.file.prefix";
     public static final String CONSUMER_TABLE_PRESPLITS = "stream.consumer.table.presplits";
     public static final String FILE_CLEANUP_PERIOD = "stream.file.cleanup.period";
@@ -606,6 +609,8 @@ public final class Constants {
     public static final String CLIENT_BOSS_THREADS = "router.client.boss.threads";
     public static final String CLIENT_WORKER_THREADS = "router.client.worker.threads";
     public static final String CONNECTION_TIMEOUT_SECS = "router.connection.idle.timeout.secs";
+    public static final String CONNECTION_POOL_MAX_CONNECTIONS = "router.connection.pool.max.connections";
+    public static final String CONNECTION_POOL_ACQUIRE_TIMEOUT_MS = "router.connection.pool.acquire.timeout.ms";
     public static final String ROUTER_USERSERVICE_FALLBACK_STRAGEY = "router.userservice.fallback.strategy";
     public static final String ROUTER_AUDIT_PATH_CHECK_ENABLED = "router.audit.path.check.enabled";
     public static final String ROUTER_AUDIT_LOG_ENABLED = "router.audit.log.enabled";
@@ -642,6 +647,9 @@ public final class Constants {
     public static final String ENTITY_TABLE_NAME = "metrics.data.entity.tableName";
     public static final String METRICS_TABLE_PREFIX = "metrics.data.table.prefix";
     public static final String TIME_SERIES_TABLE_ROLL_TIME = "metrics.data.table.ts.rollTime";
+    // Key prefix for compaction period. The actual key is suffixed by the table resolution.
+    public static final String TIME_SERIES_TABLE_COMPACTION_PERIOD = "metrics.data.table.ts.compaction.period.";
+    public static final String COMPACTION_INTERVAL_SECONDS = "metrics.data.table.compaction.interval.seconds";
 
     // Key prefix for retention seconds. The actual key is suffixed by the table resolution.
     public static final String RETENTION_SECONDS = "metrics.data.table.retention.resolution.";
@@ -898,6 +906,8 @@ public final class Constants {
     public static final String TMS_APPENDER_QUEUE_SIZE = "log.tms.queue.size";
     public static final String NUM_PARTITIONS = "log.publish.num.partitions";
     public static final String LOG_PUBLISH_PARTITION_KEY = "log.publish.partition.key";
+    public static final String READER_FILE_PARALLELISM = "log.reader.file.parallelism";
+    public static final String READER_FILE_PREFETCH_EVENTS = "log.reader.file.prefetch.events";
 
     public static final String PIPELINE_CONFIG_DIR = "log.process.pipeline.config.dir";
     public static final String PIPELINE_LIBRARY_DIR = "log.process.pipeline.lib.dir";
@@ -965,6 +975,8 @@ public final class Constants {
     public static final String TOKEN_DIGEST_KEY_LENGTH = "security.token.digest.keylength";
     /** Time duration in milliseconds after which an active secret key should be retired. */
     public static final String TOKEN_DIGEST_KEY_EXPIRATION = "security.token.digest.key.expiration.ms";
+    /** Maximum number of validated access tokens cached by the token validator. */
+    public static final String TOKEN_VALIDATION_CACHE_SIZE = "security.token.validation.cache.size";
     /** Parent znode used for secret key distribution in ZooKeeper. */
     public static final String DIST_KEY_PARENT_ZNODE = "security.token.distributed.parent.znode";
     /**
@@ -1043,6 +1055,9 @@ public final class Constants {
       /** Upper limit on extension operation time after which the time is logged as WARN rather than TRACE */
       public static final String EXTENSION_OPERATION_TIME_WARN_THRESHOLD =
         "security.authorization.extension.operation.time.warn.threshold.ms";
+      /** Whether bulk enforcement treats privileges on a namespace as privileges on the entities in it */
+      public static final String NAMESPACE_PRIVILEGES_INHERITED =
+        "security.authorization.namespace.privileges.inherited";
     }
 
     /**
@@ -1242,6 +1257,7 @@ public final class Constants {
   public static final String CFG_DATA_LEVELDB_BLOCKSIZE = "data.local.storage.blocksize";
   public static final String CFG_DATA_LEVELDB_CACHESIZE = "data.local.storage.cachesize";
   public static final String CFG_DATA_LEVELDB_FSYNC = "data.local.storage.fsync";
+  public static final String CFG_DATA_LEVELDB_LOCK_STRIPES = "data.local.storage.lock.stripes";
 
   /**
    * Defaults for Data Fabric.
@@ -1250,6 +1266,7 @@ public final class Constants {
   public static final int DEFAULT_DATA_LEVELDB_BLOCKSIZE = 1024;
   public static final long DEFAULT_DATA_LEVELDB_CACHESIZE = 1024 * 1024 * 100;
   public static final boolean DEFAULT_DATA_LEVELDB_FSYNC = true;
+  public static final int DEFAULT_DATA_LEVELDB_LOCK_STRIPES = 64;
 
   /**
    * Config for Log Collection.
@@ -1367,6 +1384,11 @@ public final class Constants {
     public static final String LOCAL_DATA_CLEANUP_FREQUENCY = "messaging.local.data.cleanup.frequency.secs";
 
     public static final String CACHE_SIZE_MB = "messaging.cache.size.mb";
+    public static final String CACHE_TYPE = "messaging.cache.type";
+    public static final String CACHE_OFFHEAP_SEGMENT_SIZE_KB = "messaging.cache.offheap.segment.size.kb";
+
+    public static final String GROUP_COMMIT_LINGER_US = "messaging.group.commit.linger.us";
+    public static final String GROUP_COMMIT_MAX_BATCH_BYTES = "messaging.group.commit.max.batch.bytes";
 
     public static final String HBASE_MAX_SCAN_THREADS = "messaging.hbase.max.scan.threads";
     public static final String HBASE_SCAN_CACHE_ROWS = "messaging.hbase.scan.cache.rows";
@@ -1386,6 +1408,12 @@ public final class Constants {
     public static final String HTTP_SERVER_EXECUTOR_THREADS = "messaging.http.server.executor.threads";
     public static final String HTTP_SERVER_MAX_REQUEST_SIZE_MB = "messaging.http.server.max.request.size.mb";
     public static final String HTTP_SERVER_CONSUME_CHUNK_SIZE = "messaging.http.server.consume.chunk.size";
+    public static final String HTTP_SERVER_CONSUME_MAX_TIMEOUT_MS = "messaging.http.server.consume.max.timeout.ms";
+    public static final String HTTP_SERVER_CONSUME_POLL_DELAY_MS = "messaging.http.server.consume.poll.delay.ms";
+    public static final String HTTP_SERVER_CONSUME_POLL_THREADS = "messaging.http.server.consume.poll.threads";
+    public static final String HTTP_SERVER_FETCH_DEFAULT_LIMIT = "messaging.http.server.fetch.default.limit";
+    public static final String HTTP_SERVER_FETCH_MAX_LIMIT = "messaging.http.server.fetch.max.limit";
+    public static final String HTTP_CLIENT_CONSUME_TIMEOUT_MS = "messaging.http.client.consume.timeout.ms";
 
     // Distributed mode related configurations
     public static final String HA_FENCING_DELAY_SECONDS = "messaging.ha.fencing.delay.seconds";
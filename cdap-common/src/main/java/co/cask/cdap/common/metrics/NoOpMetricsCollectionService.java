@@ -18,6 +18,7 @@ package co.cask.cdap.common.metrics;
 
 import co.cask.cdap.api.metrics.MetricsCollectionService;
 import co.cask.cdap.api.metrics.MetricsContext;
+import co.cask.cdap.api.metrics.MetricsCounter;
 import com.google.common.util.concurrent.AbstractIdleService;
 
 import java.util.Collections;
@@ -51,6 +52,21 @@ public class NoOpMetricsCollectionService extends AbstractIdleService implements
         // no-op
       }
 
+      @Override
+      public void distribution(String metricName, long value) {
+        // no-op
+      }
+
+      @Override
+      public MetricsCounter counter(String metricName) {
+        return new MetricsCounter() {
+          @Override
+          public void increment(long value) {
+            // no-op
+          }
+        };
+      }
+
       @Override
       public MetricsContext childContext(Map<String, String> tags) {
         return this;
@@ -0,0 +1,210 @@
+/*
+ * Copyright © 2018 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package co.cask.cdap.internal.io;
+
+import co.cask.cdap.api.data.schema.Schema;
+import co.cask.cdap.common.io.DatumReader;
+import co.cask.cdap.common.io.Decoder;
+import co.cask.cdap.internal.asm.ByteCodeClassLoader;
+import co.cask.cdap.internal.asm.ClassDefinition;
+import com.google.common.base.Objects;
+import com.google.common.base.Throwables;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
+import com.google.common.reflect.TypeToken;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+
+import java.io.IOException;
+import javax.inject.Inject;
+
+/**
+ * A factory class for creating {@link DatumReader} instance for different data type and schema.
+ * It serves as an in memory cache for generated {@link DatumReader} {@link Class} using ASM.
+ * Since the schema resolution is done when generating the class, one class is generated for each
+ * source schema that the data to decode was written with.
+ *
+ * Generated classes are only weakly referenced by the cache, so that a class, together with the data type it
+ * decodes into, can be unloaded once no {@link DatumReader} created from it is in use anymore. This makes it
+ * safe to share a factory for data types loaded by program ClassLoaders, see {@link #shared()}.
+ */
+public final class ASMDatumReaderFactory implements DatumReaderFactory {
+
+  private static final ASMDatumReaderFactory SHARED = new ASMDatumReaderFactory(ASMFieldAccessorFactory.createWeak());
+
+  private final LoadingCache<CacheKey, Class<DatumReader<?>>> datumReaderClasses;
+  private final FieldAccessorFactory fieldAccessorFactory;
+
+  /**
+   * Returns a factory shared within the CDAP system ClassLoader, for use where no injected
+   * {@link DatumReaderFactory} is available, such as in datasets.
+   */
+  public static ASMDatumReaderFactory shared() {
+    return SHARED;
+  }
+
+  @Inject
+  public ASMDatumReaderFactory(FieldAccessorFactory fieldAccessorFactory) {
+    this.fieldAccessorFactory = fieldAccessorFactory;
+    this.datumReaderClasses = CacheBuilder.newBuilder().weakValues().build(new ASMCacheLoader());
+  }
+
+  /**
+   * Creates a {@link DatumReader} that is able to decode data into the given data type with the given
+   * {@link Schema}. The source schema is taken from the {@link DatumReader#read(Decoder, Schema)} call.
+   * The instance created is thread safe and reusable.
+   *
+   * @param type Type information of the data type to be decoded.
+   * @param schema Schema of the data type.
+   * @param <T> Type of the data type.
+   * @return A {@link DatumReader} instance.
+   */
+  @Override
+  public <T> DatumReader<T> create(TypeToken<T> type, Schema schema) {
+    return new SchemaResolvingDatumReader<>(type, schema);
+  }
+
+  /**
+   * Creates a {@link DatumReader} that is able to decode data written with the given source {@link Schema} into
+   * the given data type with the given {@link Schema}. The source schema passed to the
+   * {@link DatumReader#read(Decoder, Schema)} call of the instance created is ignored.
+   * The instance created is thread safe and reusable.
+   *
+   * @param type Type information of the data type to be decoded.
+   * @param schema Schema of the data type.
+   * @param sourceSchema Schema that the data to decode was written with.
+   * @param <T> Type of the data type.
+   * @return A {@link DatumReader} instance.
+   */
+  @SuppressWarnings("unchecked")
+  public <T> DatumReader<T> create(TypeToken<T> type, Schema schema, Schema sourceSchema) {
+    try {
+      Class<DatumReader<?>> readerClass = datumReaderClasses.getUnchecked(new CacheKey(schema, sourceSchema, type));
+      return (DatumReader<T>) readerClass.getConstructor(FieldAccessorFactory.class).newInstance(fieldAccessorFactory);
+    } catch (UncheckedExecutionException e) {
+      throw Throwables.propagate(e.getCause());
+    } catch (Exception e) {
+      throw Throwables.propagate(e);
+    }
+  }
+
+  /**
+   * A {@link DatumReader} that delegates to the generated {@link DatumReader} of the source schema passed to
+   * the {@link #read(Decoder, Schema)} call. Data is mostly decoded with the same source schema, hence the
+   * generated reader of the last source schema is kept to avoid the cache lookup.
+   */
+  private final class SchemaResolvingDatumReader<T> implements DatumReader<T> {
+
+    private final TypeToken<T> type;
+    private final Schema schema;
+    private volatile ResolvedReader<T> lastReader;
+
+    SchemaResolvingDatumReader(TypeToken<T> type, Schema schema) {
+      this.type = type;
+      this.schema = schema;
+    }
+
+    @Override
+    public T read(Decoder decoder, Schema sourceSchema) throws IOException {
+      ResolvedReader<T> reader = lastReader;
+      if (reader == null || (reader.sourceSchema != sourceSchema && !reader.sourceSchema.equals(sourceSchema))) {
+        try {
+          reader = new ResolvedReader<>(sourceSchema, create(type, schema, sourceSchema));
+        } catch (RuntimeException e) {
+          throw new IOException("Failed to create reader for " + type + " from schema " + sourceSchema, e);
+        }
+        lastReader = reader;
+      }
+      return reader.reader.read(decoder, sourceSchema);
+    }
+  }
+
+  /**
+   * A generated {@link DatumReader} together with the source schema it decodes from.
+   */
+  private static final class ResolvedReader<T> {
+    private final Schema sourceSchema;
+    private final DatumReader<T> reader;
+
+    private ResolvedReader(Schema sourceSchema, DatumReader<T> reader) {
+      this.sourceSchema = sourceSchema;
+      this.reader = reader;
+    }
+  }
+
+  /**
+   * A private {@link CacheLoader} for generating different {@link DatumReader} {@link Class}.
+   */
+  private static final class ASMCacheLoader extends CacheLoader<CacheKey, Class<DatumReader<?>>> {
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public Class<DatumReader<?>> load(CacheKey key) throws Exception {
+      ClassDefinition classDef = new DatumReaderGenerator().generate(key.getType(), key.getSchema(),
+                                                                     key.getSourceSchema());
+      // Each generated class has its own ClassLoader, so that it can be unloaded on its own.
+      // The ClassLoader of the generated DatumReader has CDAP system ClassLoader as parent.
+      // The ClassDefinition contains list of classes that should not be loaded by the generated class ClassLoader
+      ByteCodeClassLoader classloader = new ByteCodeClassLoader(ASMDatumReaderFactory.class.getClassLoader());
+      return (Class<DatumReader<?>>) classloader.addClass(classDef).loadClass(classDef.getClassName());
+    }
+  }
+
+  private static final class CacheKey {
+    private final Schema schema;
+    private final Schema sourceSchema;
+    private final TypeToken<?> type;
+
+    private CacheKey(Schema schema, Schema sourceSchema, TypeToken<?> type) {
+      this.schema = schema;
+      this.sourceSchema = sourceSchema;
+      this.type = type;
+    }
+
+    public Schema getSchema() {
+      return schema;
+    }
+
+    public Schema getSourceSchema() {
+      return sourceSchema;
+    }
+
+    public TypeToken<?> getType() {
+      return type;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (o == null || getClass() != o.getClass()) {
+        return false;
+      }
+
+      CacheKey cacheKey = (CacheKey) o;
+      return schema.equals(cacheKey.schema) && sourceSchema.equals(cacheKey.sourceSchema)
+        && type.equals(cacheKey.type);
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hashCode(schema, sourceSchema, type);
+    }
+  }
+}
@@ -35,7 +35,19 @@ public final class ASMFieldAccessorFactory implements FieldAccessorFactory {
   private final LoadingCache<FieldEntry, FieldAccessor> fieldAccessorCache;
 
   public ASMFieldAccessorFactory() {
-    this.fieldAccessorCache = CacheBuilder.newBuilder().build(new FieldAccessorLoader());
+    this(CacheBuilder.newBuilder());
+  }
+
+  private ASMFieldAccessorFactory(CacheBuilder<Object, Object> cacheBuilder) {
+    this.fieldAccessorCache = cacheBuilder.build(new FieldAccessorLoader());
+  }
+
+  /**
+   * Creates a factory that only weakly references the {@link FieldAccessor} instances it created, hence it doesn't
+   * keep the classes of the fields alive once the users of the accessors are gone.
+   */
+  static ASMFieldAccessorFactory createWeak() {
+    return new ASMFieldAccessorFactory(CacheBuilder.newBuilder().weakValues());
   }
 
   @Override
@@ -0,0 +1,1267 @@
+/*
+ * Copyright © 2018 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.internal.io;
+
+import co.cask.cdap.api.common.Bytes;
+import co.cask.cdap.api.data.schema.Schema;
+import co.cask.cdap.common.io.DatumReader;
+import co.cask.cdap.common.io.Decoder;
+import co.cask.cdap.common.lang.Instantiator;
+import co.cask.cdap.common.lang.InstantiatorFactory;
+import co.cask.cdap.internal.asm.ClassDefinition;
+import co.cask.cdap.internal.asm.Methods;
+import co.cask.cdap.internal.asm.Signatures;
+import co.cask.cdap.internal.lang.Fields;
+import com.google.common.base.Preconditions;
+import com.google.common.base.Throwables;
+import com.google.common.collect.HashMultimap;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Multimap;
+import com.google.common.primitives.Primitives;
+import com.google.common.reflect.TypeParameter;
+import com.google.common.reflect.TypeToken;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Label;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.Type;
+import org.objectweb.asm.commons.GeneratorAdapter;
+import org.objectweb.asm.commons.Method;
+import org.objectweb.asm.commons.TableSwitchGenerator;
+
+import java.io.IOException;
+import java.lang.reflect.Array;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.ParameterizedType;
+import java.net.URI;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.NotThreadSafe;
+
+/**
+ * Class for generating {@link DatumReader} bytecodes using ASM. The class generated decodes data written with a
+ * given source schema into a given type with a given target schema. All schema resolution, that is, which fields
+ * to skip, which primitive promotions to apply, how enum symbols map to enum constants and which target union
+ * branch to use for each source union branch, is done when generating the class, which has a skeleton looks like
+ * the following:
+ * <pre>
+ * {@code
+ *
+ *  public final class generatedClassName implements DatumReader<InputType> {
+ *    private final FieldAccessor recordType$fieldName;
+ *    private final Instantiator recordType;
+ *
+ *    public generatedClassName(FieldAccessorFactory accessorFactory) {
+ *      // Gets the field accessors and instantiators of the records and collections to decode
+ *    }
+ *
+ *    @Override
+ *    public Object read(Decoder decoder, Schema sourceSchema) throws IOException {
+ *      return generatedReadMethod(decoder);
+ *    }
+ *
+ *    private InputType generatedReadMethod(Decoder decoder) throws IOException {
+ *      // Do actual decoding by calling methods on decoder based on the source schema.
+ *    }
+ *
+ *    // Could have more generatedReadMethods and generatedSkipMethods...
+ *  }
+ * }
+ * </pre>
+ *
+ * For example, to decode a record with an {@code int} field and a {@code String} field that was written with an
+ * additional {@code long} field in between, a generated {@link DatumReader} will looks like this after decompile.
+ * <pre>
+ * {@code
+ *
+ *   public Object readRecordAAC7D9C5E3528DB8C539EE5C21FDDEAE11A3(Decoder decoder) throws IOException {
+ *     Object record = this.Record.create();
+ *     this.Record$i.setInt(record, readint9E688C58A5487B8EAF69C9E1005AD0BF...(decoder));
+ *     skip0A32C8F4B7D20E0C50AF2B80A6C25D39(decoder);
+ *     this.Record$s.set(record, readStringB2E6D1C8A8B8D7C5C55E7D0DDE1B5E2F...(decoder));
+ *     return record;
+ *   }
+ * }
+ * </pre>
+ */
+@NotThreadSafe
+final class DatumReaderGenerator {
+
+  private static final Type OBJECT_TYPE = Type.getType(Object.class);
+  private static final Type DECODER_TYPE = Type.getType(Decoder.class);
+  private static final Type IO_EXCEPTION_TYPE = Type.getType(IOException.class);
+
+  private final Map<String, Method> readMethods = Maps.newHashMap();
+  private final Map<String, Method> skipMethods = Maps.newHashMap();
+  private final Multimap<TypeToken<?>, String> fieldAccessorRequests = HashMultimap.create();
+  private final Map<String, Class<?>> instantiatorRequests = Maps.newHashMap();
+  private final Map<String, Class<?>> classRequests = Maps.newHashMap();
+  private final Map<String, Class<?>> enumRequests = Maps.newHashMap();
+  private ClassWriter classWriter;
+  private Type classType;
+  private List<Class<?>> preservedClasses;
+  private Method toByteArrayMethod;
+
+  /**
+   * Generates a {@link DatumReader} class for decoding data of the given input type.
+   *
+   * @param inputType Type information of the input data type.
+   * @param schema Schema of the input data type.
+   * @param sourceSchema Schema that the data to decode was written with.
+   * @return A {@link ClassDefinition} that contains generated class information.
+   */
+  ClassDefinition generate(TypeToken<?> inputType, Schema schema, Schema sourceSchema) {
+    classWriter = new ClassWriter(ClassWriter.COMPUTE_FRAMES);
+    preservedClasses = Lists.newArrayList();
+
+    TypeToken<?> interfaceType = getInterfaceType(inputType);
+
+    // Generate the class
+    String className = getClassName(interfaceType, schema, sourceSchema);
+    classType = Type.getObjectType(className);
+    classWriter.visit(Opcodes.V1_8, Opcodes.ACC_PUBLIC + Opcodes.ACC_FINAL,
+                      className, Signatures.getClassSignature(interfaceType),
+                      Type.getInternalName(Object.class),
+                      new String[]{Type.getInternalName(interfaceType.getRawType())});
+
+    // Read method
+    generateRead(inputType, schema, sourceSchema);
+
+    // Constructor
+    generateConstructor();
+
+    ClassDefinition classDefinition = new ClassDefinition(classWriter.toByteArray(), className, preservedClasses);
+    // DEBUG block. Uncomment for debug
+//    co.cask.cdap.internal.asm.Debugs.debugByteCode(classDefinition, new java.io.PrintWriter(System.out));
+    // End DEBUG block
+    return classDefinition;
+  }
+
+  /**
+   * Generates the constructor. The constructor generated has signature {@code (FieldAccessorFactory)}.
+   */
+  private void generateConstructor() {
+    Method constructor = getMethod(void.class, "<init>", FieldAccessorFactory.class);
+
+    // Constructor(FieldAccessorFactory accessorFactory)
+    GeneratorAdapter mg = new GeneratorAdapter(Opcodes.ACC_PUBLIC, constructor, null, null, classWriter);
+
+    // super(); // Calling Object constructor
+    mg.loadThis();
+    mg.invokeConstructor(OBJECT_TYPE, getMethod(void.class, "<init>"));
+
+    // For each record field that needs an accessor, get the accessor and store it in field.
+    for (Map.Entry<TypeToken<?>, String> entry : fieldAccessorRequests.entries()) {
+      String fieldAccessorName = getFieldAccessorName(entry.getKey(), entry.getValue());
+
+      classWriter.visitField(Opcodes.ACC_PRIVATE + Opcodes.ACC_FINAL,
+                             fieldAccessorName,
+                             Type.getDescriptor(FieldAccessor.class), null, null);
+      // this.fieldAccessorName
+      //  = accessorFactory.getFieldAccessor(TypeToken.of(Class.forName("className")), "fieldName");
+      mg.loadThis();
+      mg.loadArg(0);
+      loadClass(mg, entry.getKey().getRawType());
+      mg.invokeStatic(Type.getType(TypeToken.class), getMethod(TypeToken.class, "of", Class.class));
+      mg.push(entry.getValue());
+      mg.invokeInterface(Type.getType(FieldAccessorFactory.class),
+                         getMethod(FieldAccessor.class, "getFieldAccessor", TypeToken.class, String.class));
+      mg.putField(classType, fieldAccessorName, Type.getType(FieldAccessor.class));
+    }
+
+    // For each record, collection and map type, get the instantiator and store it in field.
+    if (!instantiatorRequests.isEmpty()) {
+      // InstantiatorFactory instantiatorFactory = new InstantiatorFactory(true);
+      Type factoryType = Type.getType(InstantiatorFactory.class);
+      int instantiatorFactory = mg.newLocal(factoryType);
+      mg.newInstance(factoryType);
+      mg.dup();
+      mg.push(true);
+      mg.invokeConstructor(factoryType, getMethod(void.class, "<init>", boolean.class));
+      mg.storeLocal(instantiatorFactory);
+
+      for (Map.Entry<String, Class<?>> entry : instantiatorRequests.entrySet()) {
+        classWriter.visitField(Opcodes.ACC_PRIVATE + Opcodes.ACC_FINAL, entry.getKey(),
+                               Type.getDescriptor(Instantiator.class), null, null);
+        // this.instantiatorName = instantiatorFactory.get(TypeToken.of(Class.forName("className")));
+        mg.loadThis();
+        mg.loadLocal(instantiatorFactory);
+        loadClass(mg, entry.getValue());
+        mg.invokeStatic(Type.getType(TypeToken.class), getMethod(TypeToken.class, "of", Class.class));
+        mg.invokeVirtual(factoryType, getMethod(Instantiator.class, "get", TypeToken.class));
+        mg.putField(classType, entry.getKey(), Type.getType(Instantiator.class));
+      }
+    }
+
+    // For each array component type that the generated class cannot refer to, store the class in field.
+    for (Map.Entry<String, Class<?>> entry : classRequests.entrySet()) {
+      classWriter.visitField(Opcodes.ACC_PRIVATE + Opcodes.ACC_FINAL, entry.getKey(),
+                             Type.getDescriptor(Class.class), null, null);
+      // this.className = Class.forName("className");
+      mg.loadThis();
+      loadClass(mg, entry.getValue());
+      mg.putField(classType, entry.getKey(), Type.getType(Class.class));
+    }
+
+    // For each enum type, store the enum constants in field.
+    for (Map.Entry<String, Class<?>> entry : enumRequests.entrySet()) {
+      classWriter.visitField(Opcodes.ACC_PRIVATE + Opcodes.ACC_FINAL, entry.getKey(),
+                             Type.getDescriptor(Object[].class), null, null);
+      // this.enumName = Class.forName("className").getEnumConstants();
+      mg.loadThis();
+      loadClass(mg, entry.getValue());
+      mg.invokeVirtual(Type.getType(Class.class), getMethod(Object[].class, "getEnumConstants"));
+      mg.putField(classType, entry.getKey(), Type.getType(Object[].class));
+    }
+
+    mg.returnValue();
+    mg.endMethod();
+  }
+
+  /**
+   * Generates the {@link DatumReader#read(Decoder, Schema)} method.
+   *
+   * @param inputType Type information of the data type to decode to
+   * @param schema Schema to decode to.
+   * @param sourceSchema Schema the data was written with.
+   */
+  private void generateRead(TypeToken<?> inputType, Schema schema, Schema sourceSchema) {
+    Method readMethod = getMethod(Object.class, "read", Decoder.class, Schema.class);
+    GeneratorAdapter mg = new GeneratorAdapter(Opcodes.ACC_PUBLIC, readMethod, null,
+                                               new Type[] {IO_EXCEPTION_TYPE}, classWriter);
+
+    // return actualReadMethod(decoder);
+    invokeRead(mg, inputType, sourceSchema, schema, OBJECT_TYPE);
+    mg.returnValue();
+    mg.endMethod();
+  }
+
+  /**
+   * Returns the read method for the given type and schemas. The same method will be returned if the same
+   * type and schemas have been passed to the method before. The method takes the {@link Decoder} as the
+   * only argument and returns the type given by {@link #getCallType(TypeToken, Schema)}.
+   *
+   * @param inputType Type information of the data type to decode to
+   * @param sourceSchema Schema the data was written with.
+   * @param schema Schema to decode to.
+   * @return A method for decoding the given type.
+   */
+  private Method getReadMethod(TypeToken<?> inputType, Schema sourceSchema, Schema schema) {
+    String key = String.format("%s%s%s", normalizeTypeName(inputType),
+                               sourceSchema.getSchemaHash(), schema.getSchemaHash());
+
+    Method method = readMethods.get(key);
+    if (method != null) {
+      return method;
+    }
+
+    method = new Method("read" + key, getCallType(inputType, schema), new Type[] {DECODER_TYPE});
+
+    // Put the method into map first before generating the body in order to support recursive data type.
+    readMethods.put(key, method);
+
+    GeneratorAdapter mg = new GeneratorAdapter(Opcodes.ACC_PRIVATE, method, null,
+                                               new Type[] {IO_EXCEPTION_TYPE}, classWriter);
+    generateReadBody(mg, inputType, sourceSchema, schema);
+    mg.endMethod();
+
+    return method;
+  }
+
+  /**
+   * Generates code that calls the read method for the given type and schemas, with the decoder of the
+   * current method, and converts the result to the given type.
+   */
+  private void invokeRead(GeneratorAdapter mg, TypeToken<?> inputType,
+                          Schema sourceSchema, Schema schema, Type resultType) {
+    Method method = getReadMethod(inputType, sourceSchema, schema);
+    mg.loadThis();
+    mg.loadArg(0);
+    mg.invokeVirtual(classType, method);
+    convert(mg, method.getReturnType(), resultType);
+  }
+
+  /**
+   * Generates the read method body, which always ends with returning the value or throwing an exception.
+   */
+  private void generateReadBody(GeneratorAdapter mg, TypeToken<?> inputType, Schema sourceSchema, Schema schema) {
+    Type callType = getCallType(inputType, schema);
+
+    if (sourceSchema.getType() == Schema.Type.UNION) {
+      readUnion(mg, inputType, sourceSchema, schema);
+      return;
+    }
+    if (schema.getType() == Schema.Type.UNION) {
+      // Use the first union branch that the source schema can be resolved to
+      Schema branchSchema = findUnionBranch(sourceSchema, schema);
+      if (branchSchema == null) {
+        throwResolveFailure(mg, sourceSchema, schema);
+        return;
+      }
+      invokeRead(mg, inputType, sourceSchema, branchSchema, callType);
+      mg.returnValue();
+      return;
+    }
+    if (!isResolvable(sourceSchema, schema)) {
+      throwResolveFailure(mg, sourceSchema, schema);
+      return;
+    }
+
+    switch (sourceSchema.getType()) {
+      case NULL:
+        // decoder.readNull(); return null;
+        mg.loadArg(0);
+        mg.invokeInterface(DECODER_TYPE, getMethod(Object.class, "readNull"));
+        mg.pop();
+        if (isPrimitive(callType)) {
+          throwResolveFailure(mg, sourceSchema, schema);
+          return;
+        }
+        mg.push((Type) null);
+        break;
+      case BYTES:
+        readBytes(mg, inputType);
+        convert(mg, getBytesType(inputType), callType);
+        break;
+      case ENUM:
+        readEnum(mg, inputType, sourceSchema, schema);
+        return;
+      case ARRAY:
+        if (inputType.isArray()) {
+          readArray(mg, inputType, sourceSchema, schema);
+        } else {
+          readCollection(mg, inputType, sourceSchema, schema);
+        }
+        break;
+      case MAP:
+        readMap(mg, inputType, sourceSchema, schema);
+        break;
+      case RECORD:
+        readRecord(mg, inputType, sourceSchema, schema);
+        break;
+      default:
+        // Simple types
+        if (!readSimple(mg, inputType, sourceSchema.getType(), schema.getType())) {
+          throwResolveFailure(mg, sourceSchema, schema);
+          return;
+        }
+        break;
+    }
+    mg.returnValue();
+  }
+
+  /**
+   * Generates method body for decoding a simple type, promoting the source type to the target type.
+   *
+   * @return {@code false} if the source type cannot be decoded to the input type
+   */
+  private boolean readSimple(GeneratorAdapter mg, TypeToken<?> inputType,
+                             Schema.Type sourceType, Schema.Type targetType) {
+    Class<?> rawType = inputType.getRawType();
+    Type callType = getCallType(inputType, Schema.of(targetType));
+
+    // value = decoder.readXXX();
+    Class<?> sourceClass = getSimpleClass(sourceType);
+    String readMethod = sourceType == Schema.Type.BOOLEAN
+      ? "readBool" : "read" + sourceType.name().charAt(0) + sourceType.name().substring(1).toLowerCase();
+    mg.loadArg(0);
+    mg.invokeInterface(DECODER_TYPE, getMethod(sourceClass, readMethod));
+
+    if (targetType == Schema.Type.STRING) {
+      if (sourceType != Schema.Type.STRING) {
+        // String.valueOf(value);
+        mg.invokeStatic(Type.getType(String.class), getMethod(String.class, "valueOf", sourceClass));
+      }
+      Type valueType = Type.getType(String.class);
+      if (URI.class.equals(rawType)) {
+        // URI.create(str);
+        mg.invokeStatic(Type.getType(URI.class), getMethod(URI.class, "create", String.class));
+        valueType = Type.getType(URI.class);
+      } else if (URL.class.equals(rawType)) {
+        // new URL(str);
+        valueType = Type.getType(URL.class);
+        mg.newInstance(valueType);
+        mg.dupX1();
+        mg.swap();
+        mg.invokeConstructor(valueType, getMethod(void.class, "<init>", String.class));
+      }
+      convert(mg, valueType, callType);
+      return true;
+    }
+
+    // Promote the value to the target schema type, then to the actual primitive type, e.g. int to short
+    Class<?> targetClass = getSimpleClass(targetType);
+    Class<?> primitiveClass = Primitives.unwrap(rawType);
+    if (!primitiveClass.isPrimitive()) {
+      primitiveClass = targetClass;
+    }
+    if ((boolean.class.equals(primitiveClass) || boolean.class.equals(sourceClass))
+      && !primitiveClass.equals(sourceClass)) {
+      return false;
+    }
+    mg.cast(Type.getType(sourceClass), Type.getType(targetClass));
+    mg.cast(Type.getType(targetClass), Type.getType(primitiveClass));
+    convert(mg, Type.getType(primitiveClass), callType);
+    return true;
+  }
+
+  /**
+   * Generates code for decoding a bytes value to the input type, which leaves the value on the stack, typed as
+   * returned by {@link #getBytesType(TypeToken)}.
+   */
+  private void readBytes(GeneratorAdapter mg, TypeToken<?> inputType) {
+    Class<?> rawType = inputType.getRawType();
+
+    // ByteBuffer buffer = decoder.readBytes();
+    mg.loadArg(0);
+    mg.invokeInterface(DECODER_TYPE, getMethod(ByteBuffer.class, "readBytes"));
+
+    if (byte[].class.equals(rawType)) {
+      mg.invokeStatic(classType, getToByteArrayMethod());
+    } else if (UUID.class.equals(rawType)) {
+      // new UUID(buffer.getLong(), buffer.getLong());
+      Type byteBufferType = Type.getType(ByteBuffer.class);
+      Type uuidType = Type.getType(UUID.class);
+      int buffer = mg.newLocal(byteBufferType);
+      mg.storeLocal(buffer);
+      mg.newInstance(uuidType);
+      mg.dup();
+      mg.loadLocal(buffer);
+      mg.invokeVirtual(byteBufferType, getMethod(long.class, "getLong"));
+      mg.loadLocal(buffer);
+      mg.invokeVirtual(byteBufferType, getMethod(long.class, "getLong"));
+      mg.invokeConstructor(uuidType, getMethod(void.class, "<init>", long.class, long.class));
+    }
+  }
+
+  private Type getBytesType(TypeToken<?> inputType) {
+    Class<?> rawType = inputType.getRawType();
+    if (byte[].class.equals(rawType) || UUID.class.equals(rawType)) {
+      return Type.getType(rawType);
+    }
+    return Type.getType(ByteBuffer.class);
+  }
+
+  /**
+   * Returns the static method that converts a {@link ByteBuffer} to a byte array, generating it if needed. The
+   * logic is like this:
+   *
+   * <pre>
+   * {@code
+   *
+   * if (buffer.hasArray() && buffer.remaining() == buffer.array().length) {
+   *   return buffer.array();
+   * }
+   * return Bytes.toBytes(buffer);
+   * }
+   * </pre>
+   */
+  private Method getToByteArrayMethod() {
+    if (toByteArrayMethod != null) {
+      return toByteArrayMethod;
+    }
+    toByteArrayMethod = getMethod(byte[].class, "toByteArray", ByteBuffer.class);
+    GeneratorAdapter mg = new GeneratorAdapter(Opcodes.ACC_PRIVATE + Opcodes.ACC_STATIC, toByteArrayMethod,
+                                               null, null, classWriter);
+    Type byteBufferType = Type.getType(ByteBuffer.class);
+    Label copy = mg.newLabel();
+    mg.loadArg(0);
+    mg.invokeVirtual(byteBufferType, getMethod(boolean.class, "hasArray"));
+    mg.ifZCmp(GeneratorAdapter.EQ, copy);
+    mg.loadArg(0);
+    mg.invokeVirtual(byteBufferType, getMethod(int.class, "remaining"));
+    mg.loadArg(0);
+    mg.invokeVirtual(byteBufferType, getMethod(byte[].class, "array"));
+    mg.arrayLength();
+    mg.ifICmp(GeneratorAdapter.NE, copy);
+    mg.loadArg(0);
+    mg.invokeVirtual(byteBufferType, getMethod(byte[].class, "array"));
+    mg.returnValue();
+    mg.mark(copy);
+    mg.loadArg(0);
+    mg.invokeStatic(Type.getType(Bytes.class), getMethod(byte[].class, "toBytes", ByteBuffer.class));
+    mg.returnValue();
+    mg.endMethod();
+    return toByteArrayMethod;
+  }
+
+  /**
+   * Generates method body for decoding an enum value. The source enum index is mapped to the enum constant with
+   * the same name when generating the code:
+   *
+   * <pre>
+   * {@code
+   *
+   * switch (decoder.readInt()) {
+   *   case 0:
+   *     return this.enumConstants[ordinalOfSourceSymbol0];
+   *   ...
+   *   default:
+   *     throw new IOException(...);
+   * }
+   * }
+   * </pre>
+   */
+  private void readEnum(final GeneratorAdapter mg, TypeToken<?> inputType, Schema sourceSchema, Schema schema) {
+    Class<?> enumClass = inputType.getRawType();
+    Preconditions.checkArgument(enumClass.isEnum(), "Only enum type is supported for enum value.");
+
+    // Enum type might be defined by the user, hence need to preserve class loading of it
+    preservedClasses.add(enumClass);
+    final String enumField = "enum$" + normalizeTypeName(TypeToken.of(enumClass));
+    enumRequests.put(enumField, enumClass);
+
+    final List<String> sourceValues = ImmutableList.copyOf(sourceSchema.getEnumValues());
+    final Map<String, Integer> ordinals = Maps.newHashMap();
+    for (Object constant : enumClass.getEnumConstants()) {
+      String name = ((Enum<?>) constant).name();
+      if (schema.getEnumValues().contains(name)) {
+        ordinals.put(name, ((Enum<?>) constant).ordinal());
+      }
+    }
+
+    mg.loadArg(0);
+    mg.invokeInterface(DECODER_TYPE, getMethod(int.class, "readInt"));
+    mg.tableSwitch(getIndices(sourceValues.size()), new TableSwitchGenerator() {
+      @Override
+      public void generateCase(int key, Label end) {
+        Integer ordinal = ordinals.get(sourceValues.get(key));
+        if (ordinal == null) {
+          mg.throwException(IO_EXCEPTION_TYPE,
+                            String.format("Enum value '%s' missing in target.", sourceValues.get(key)));
+          return;
+        }
+        mg.loadThis();
+        mg.getField(classType, enumField, Type.getType(Object[].class));
+        mg.push(ordinal);
+        mg.arrayLoad(OBJECT_TYPE);
+        mg.returnValue();
+      }
+
+      @Override
+      public void generateDefault() {
+        mg.throwException(IO_EXCEPTION_TYPE, "Invalid enum index.");
+      }
+    });
+  }
+
+  /**
+   * Generates method body for decoding a union value. The target schema of each source union branch is
+   * determined when generating the code:
+   *
+   * <pre>
+   * {@code
+   *
+   * switch (decoder.readInt()) {
+   *   case 0:
+   *     return readBranch0(decoder);
+   *   ...
+   *   default:
+   *     throw new IOException(...);
+   * }
+   * }
+   * </pre>
+   */
+  private void readUnion(final GeneratorAdapter mg, final TypeToken<?> inputType,
+                         Schema sourceSchema, final Schema schema) {
+    final Type callType = getCallType(inputType, schema);
+    final List<Schema> sourceBranches = sourceSchema.getUnionSchemas();
+
+    mg.loadArg(0);
+    mg.invokeInterface(DECODER_TYPE, getMethod(int.class, "readInt"));
+    mg.tableSwitch(getIndices(sourceBranches.size()), new TableSwitchGenerator() {
+      @Override
+      public void generateCase(int key, Label end) {
+        Schema sourceBranch = sourceBranches.get(key);
+        Schema targetBranch = schema;
+        if (schema.getType() == Schema.Type.UNION) {
+          // A simple optimization to try the union branch with the same index first.
+          targetBranch = key < schema.getUnionSchemas().size() ? schema.getUnionSchema(key) : null;
+          if (targetBranch == null || targetBranch.getType() != sourceBranch.getType()) {
+            targetBranch = findUnionBranch(sourceBranch, schema);
+          }
+        } else if (!isResolvable(sourceBranch, schema)) {
+          targetBranch = null;
+        }
+
+        if (targetBranch == null) {
+          throwResolveFailure(mg, sourceBranch, schema);
+          return;
+        }
+        invokeRead(mg, inputType, sourceBranch, targetBranch, callType);
+        mg.returnValue();
+      }
+
+      @Override
+      public void generateDefault() {
+        mg.throwException(IO_EXCEPTION_TYPE, "Invalid union index.");
+      }
+    });
+  }
+
+  /**
+   * Generates method body for decoding a Collection value. The logic is like this:
+   *
+   * <pre>
+   * {@code
+   *
+   * Collection collection = (Collection) this.collectionInstantiator.create();
+   * int len = decoder.readInt();
+   * while (len != 0) {
+   *   for (int i = 0; i < len; i++) {
+   *     collection.add(readElement(decoder));
+   *   }
+   *   len = decoder.readInt();
+   * }
+   * return collection;
+   * }
+   * </pre>
+   */
+  private void readCollection(GeneratorAdapter mg, TypeToken<?> inputType, Schema sourceSchema, Schema schema) {
+    Preconditions.checkArgument(Collection.class.isAssignableFrom(inputType.getRawType()),
+                                "Only array or collection type is supported for array value.");
+    Preconditions.checkArgument(inputType.getType() instanceof ParameterizedType,
+                                "Only parameterized collection type is supported.");
+    TypeToken<?> componentType = TypeToken.of(((ParameterizedType) inputType.getType()).getActualTypeArguments()[0]);
+
+    Type collectionType = Type.getType(Collection.class);
+    int collection = mg.newLocal(collectionType);
+    createInstance(mg, inputType.getRawType());
+    mg.checkCast(collectionType);
+    mg.storeLocal(collection);
+
+    int length = mg.newLocal(Type.INT_TYPE);
+    int idx = mg.newLocal(Type.INT_TYPE);
+    Loop blocks = beginBlocks(mg, length);
+    Loop elements = beginFor(mg, idx, length);
+    mg.loadLocal(collection);
+    invokeRead(mg, componentType, sourceSchema.getComponentSchema(), schema.getComponentSchema(), OBJECT_TYPE);
+    mg.invokeInterface(collectionType, getMethod(boolean.class, "add", Object.class));
+    mg.pop();
+    endFor(mg, idx, elements);
+    endBlocks(mg, length, blocks);
+
+    mg.loadLocal(collection);
+    convert(mg, collectionType, getCallType(inputType, schema));
+  }
+
+  /**
+   * Generates method body for decoding an array value. The logic is like this:
+   *
+   * <pre>
+   * {@code
+   *
+   * T[] array = null;
+   * int size = 0;
+   * int len = decoder.readInt();
+   * while (len != 0) {
+   *   if (array == null) {
+   *     array = new T[len];
+   *   } else {
+   *     array = Arrays.copyOf(array, size + len);
+   *   }
+   *   for (int i = 0; i < len; i++) {
+   *     array[size++] = readElement(decoder);
+   *   }
+   *   len = decoder.readInt();
+   * }
+   * return array == null ? new T[0] : array;
+   * }
+   * </pre>
+   *
+   * If the component type is not accessible from the generated class, the array is created with
+   * {@link Array#newInstance(Class, int)} and used as {@code Object[]}.
+   */
+  private void readArray(GeneratorAdapter mg, TypeToken<?> inputType, Schema sourceSchema, Schema schema) {
+    TypeToken<?> componentType = inputType.getComponentType();
+    Class<?> componentClass = componentType.getRawType();
+    Type elementType = isAccessible(componentClass) ? Type.getType(componentClass) : OBJECT_TYPE;
+    Type arrayType = Type.getType("[" + elementType.getDescriptor());
+    // The Arrays.copyOf method to use
+    Class<?> copyClass = componentClass.isPrimitive() ? inputType.getRawType() : Object[].class;
+
+    int array = mg.newLocal(arrayType);
+    int size = mg.newLocal(Type.INT_TYPE);
+    int length = mg.newLocal(Type.INT_TYPE);
+    int idx = mg.newLocal(Type.INT_TYPE);
+
+    mg.push((Type) null);
+    mg.storeLocal(array);
+    mg.push(0);
+    mg.storeLocal(size);
+
+    Loop blocks = beginBlocks(mg, length);
+    Label grow = mg.newLabel();
+    Label allocated = mg.newLabel();
+    mg.loadLocal(array);
+    mg.ifNonNull(grow);
+    // array = new T[len];
+    mg.loadLocal(length);
+    newArray(mg, componentType, elementType, arrayType);
+    mg.storeLocal(array);
+    mg.goTo(allocated);
+    // array = Arrays.copyOf(array, size + len);
+    mg.mark(grow);
+    mg.loadLocal(array);
+    mg.loadLocal(size);
+    mg.loadLocal(length);
+    mg.math(GeneratorAdapter.ADD, Type.INT_TYPE);
+    mg.invokeStatic(Type.getType(Arrays.class), getMethod(copyClass, "copyOf", copyClass, int.class));
+    mg.checkCast(arrayType);
+    mg.storeLocal(array);
+    mg.mark(allocated);
+
+    // array[size++] = readElement(decoder);
+    Loop elements = beginFor(mg, idx, length);
+    mg.loadLocal(array);
+    mg.loadLocal(size);
+    invokeRead(mg, componentType, sourceSchema.getComponentSchema(), schema.getComponentSchema(), elementType);
+    mg.arrayStore(elementType);
+    mg.iinc(size, 1);
+    endFor(mg, idx, elements);
+    endBlocks(mg, length, blocks);
+
+    // return array == null ? new T[0] : array;
+    Label notEmpty = mg.newLabel();
+    mg.loadLocal(array);
+    mg.ifNonNull(notEmpty);
+    mg.push(0);
+    newArray(mg, componentType, elementType, arrayType);
+    mg.storeLocal(array);
+    mg.mark(notEmpty);
+    mg.loadLocal(array);
+    convert(mg, arrayType, getCallType(inputType, schema));
+  }
+
+  /**
+   * Generates code that creates an array of the given component type, with the length on the stack.
+   */
+  private void newArray(GeneratorAdapter mg, TypeToken<?> componentType, Type elementType, Type arrayType) {
+    if (!OBJECT_TYPE.equals(elementType) || Object.class.equals(componentType.getRawType())) {
+      mg.newArray(elementType);
+      return;
+    }
+
+    // Component type might be defined by the user, hence need to preserve class loading of it
+    Class<?> componentClass = componentType.getRawType();
+    preservedClasses.add(getElementClass(componentClass));
+    String classField = "class$" + normalizeTypeName(componentType);
+    classRequests.put(classField, componentClass);
+
+    // (Object[]) Array.newInstance(this.componentClass, length);
+    mg.loadThis();
+    mg.getField(classType, classField, Type.getType(Class.class));
+    mg.swap();
+    mg.invokeStatic(Type.getType(Array.class), getMethod(Object.class, "newInstance", Class.class, int.class));
+    mg.checkCast(arrayType);
+  }
+
+  /**
+   * Generates method body for decoding a map value. The logic is like this:
+   *
+   * <pre>
+   * {@code
+   *
+   * Map map = (Map) this.mapInstantiator.create();
+   * int len = decoder.readInt();
+   * while (len != 0) {
+   *   for (int i = 0; i < len; i++) {
+   *     map.put(readKey(decoder), readValue(decoder));
+   *   }
+   *   len = decoder.readInt();
+   * }
+   * return map;
+   * }
+   * </pre>
+   */
+  private void readMap(GeneratorAdapter mg, TypeToken<?> inputType, Schema sourceSchema, Schema schema) {
+    Preconditions.checkArgument(Map.class.isAssignableFrom(inputType.getRawType()),
+                                "Only map type is supported for map value.");
+    Preconditions.checkArgument(inputType.getType() instanceof ParameterizedType,
+                                "Only parameterized map type is supported.");
+    java.lang.reflect.Type[] mapArgs = ((ParameterizedType) inputType.getType()).getActualTypeArguments();
+    Map.Entry<Schema, Schema> sourceMapSchema = sourceSchema.getMapSchema();
+    Map.Entry<Schema, Schema> mapSchema = schema.getMapSchema();
+
+    Type mapType = Type.getType(Map.class);
+    int map = mg.newLocal(mapType);
+    createInstance(mg, inputType.getRawType());
+    mg.checkCast(mapType);
+    mg.storeLocal(map);
+
+    int length = mg.newLocal(Type.INT_TYPE);
+    int idx = mg.newLocal(Type.INT_TYPE);
+    Loop blocks = beginBlocks(mg, length);
+    Loop entries = beginFor(mg, idx, length);
+    mg.loadLocal(map);
+    invokeRead(mg, TypeToken.of(mapArgs[0]), sourceMapSchema.getKey(), mapSchema.getKey(), OBJECT_TYPE);
+    invokeRead(mg, TypeToken.of(mapArgs[1]), sourceMapSchema.getValue(), mapSchema.getValue(), OBJECT_TYPE);
+    mg.invokeInterface(mapType, getMethod(Object.class, "put", Object.class, Object.class));
+    mg.pop();
+    endFor(mg, idx, entries);
+    endBlocks(mg, length, blocks);
+
+    mg.loadLocal(map);
+    convert(mg, mapType, getCallType(inputType, schema));
+  }
+
+  /**
+   * Generates method body for decoding a record. Fields that are not in the target schema are skipped, and
+   * fields that are not in the source schema are left untouched. The logic is like this:
+   *
+   * <pre>
+   * {@code
+   *
+   * Object record = this.recordInstantiator.create();
+   * this.recordType$field1.set(record, readField1(decoder));
+   * skipField2(decoder);
+   * ...
+   * return record;
+   * }
+   * </pre>
+   */
+  private void readRecord(GeneratorAdapter mg, TypeToken<?> inputType, Schema sourceSchema, Schema schema) {
+    try {
+      // Record type might be defined by the user, hence need to preserve class loading of it
+      preservedClasses.add(inputType.getRawType());
+
+      int record = mg.newLocal(OBJECT_TYPE);
+      createInstance(mg, inputType.getRawType());
+      mg.storeLocal(record);
+
+      for (Schema.Field sourceField : sourceSchema.getFields()) {
+        Schema.Field field = schema.getField(sourceField.getName());
+        if (field == null) {
+          invokeSkip(mg, sourceField.getSchema());
+          continue;
+        }
+
+        TypeToken<?> fieldType = inputType.resolveType(
+          Fields.findField(inputType.getType(), field.getName()).getGenericType());
+        fieldAccessorRequests.put(inputType, field.getName());
+
+        // this.recordType$fieldName.setXXX(record, readField(decoder));
+        mg.loadThis();
+        mg.getField(classType, getFieldAccessorName(inputType, field.getName()), Type.getType(FieldAccessor.class));
+        mg.loadLocal(record);
+        Class<?> fieldClass = fieldType.getRawType();
+        if (fieldClass.isPrimitive()) {
+          invokeRead(mg, fieldType, sourceField.getSchema(), field.getSchema(), Type.getType(fieldClass));
+          mg.invokeInterface(Type.getType(FieldAccessor.class),
+                             getMethod(void.class, String.format("set%c%s",
+                                                                 Character.toUpperCase(fieldClass.getName().charAt(0)),
+                                                                 fieldClass.getName().substring(1)),
+                                       Object.class, fieldClass));
+        } else {
+          invokeRead(mg, fieldType, sourceField.getSchema(), field.getSchema(), OBJECT_TYPE);
+          mg.invokeInterface(Type.getType(FieldAccessor.class),
+                             getMethod(void.class, "set", Object.class, Object.class));
+        }
+      }
+      mg.loadLocal(record);
+    } catch (Exception e) {
+      throw Throwables.propagate(e);
+    }
+  }
+
+  /**
+   * Generates code that calls the skip method for the given schema.
+   */
+  private void invokeSkip(GeneratorAdapter mg, Schema schema) {
+    mg.loadThis();
+    mg.loadArg(0);
+    mg.invokeVirtual(classType, getSkipMethod(schema));
+  }
+
+  /**
+   * Returns the method for skipping data of the given schema, generating it if needed.
+   */
+  private Method getSkipMethod(Schema schema) {
+    String key = schema.getSchemaHash().toString();
+    Method method = skipMethods.get(key);
+    if (method != null) {
+      return method;
+    }
+
+    method = getMethod(void.class, "skip" + key, Decoder.class);
+    // Put the method into map first before generating the body in order to support recursive data type.
+    skipMethods.put(key, method);
+
+    final GeneratorAdapter mg = new GeneratorAdapter(Opcodes.ACC_PRIVATE, method, null,
+                                                     new Type[] {IO_EXCEPTION_TYPE}, classWriter);
+    int length = mg.newLocal(Type.INT_TYPE);
+    int idx = mg.newLocal(Type.INT_TYPE);
+    Loop blocks;
+    Loop elements;
+    switch (schema.getType()) {
+      case NULL:
+        skipValue(mg, Object.class, "readNull");
+        break;
+      case BOOLEAN:
+        skipValue(mg, boolean.class, "readBool");
+        break;
+      case INT:
+      case ENUM:
+        skipValue(mg, int.class, "readInt");
+        break;
+      case LONG:
+        skipValue(mg, long.class, "readLong");
+        break;
+      case FLOAT:
+        skipValue(mg, void.class, "skipFloat");
+        break;
+      case DOUBLE:
+        skipValue(mg, void.class, "skipDouble");
+        break;
+      case BYTES:
+        skipValue(mg, void.class, "skipBytes");
+        break;
+      case STRING:
+        skipValue(mg, void.class, "skipString");
+        break;
+      case ARRAY:
+        blocks = beginBlocks(mg, length);
+        elements = beginFor(mg, idx, length);
+        invokeSkip(mg, schema.getComponentSchema());
+        endFor(mg, idx, elements);
+        endBlocks(mg, length, blocks);
+        break;
+      case MAP:
+        blocks = beginBlocks(mg, length);
+        elements = beginFor(mg, idx, length);
+        invokeSkip(mg, schema.getMapSchema().getKey());
+        invokeSkip(mg, schema.getMapSchema().getValue());
+        endFor(mg, idx, elements);
+        endBlocks(mg, length, blocks);
+        break;
+      case RECORD:
+        for (Schema.Field field : schema.getFields()) {
+          invokeSkip(mg, field.getSchema());
+        }
+        break;
+      case UNION:
+        final List<Schema> branches = schema.getUnionSchemas();
+        mg.loadArg(0);
+        mg.invokeInterface(DECODER_TYPE, getMethod(int.class, "readInt"));
+        mg.tableSwitch(getIndices(branches.size()), new TableSwitchGenerator() {
+          @Override
+          public void generateCase(int key, Label end) {
+            invokeSkip(mg, branches.get(key));
+            mg.goTo(end);
+          }
+
+          @Override
+          public void generateDefault() {
+            mg.throwException(IO_EXCEPTION_TYPE, "Invalid union index.");
+          }
+        });
+        break;
+    }
+    mg.returnValue();
+    mg.endMethod();
+    return method;
+  }
+
+  private void skipValue(GeneratorAdapter mg, Class<?> returnType, String method) {
+    mg.loadArg(0);
+    mg.invokeInterface(DECODER_TYPE, getMethod(returnType, method));
+    if (Type.getType(returnType).getSize() == 2) {
+      mg.pop2();
+    } else if (!void.class.equals(returnType)) {
+      mg.pop();
+    }
+  }
+
+  /**
+   * Generates the beginning of
+   * {@code for (int len = decoder.readInt(); len != 0; len = decoder.readInt())}, which loops over the blocks of
+   * an array or map value.
+   *
+   * @return the {@link Loop} to pass to {@link #endBlocks(GeneratorAdapter, int, Loop)}
+   */
+  private Loop beginBlocks(GeneratorAdapter mg, int length) {
+    mg.loadArg(0);
+    mg.invokeInterface(DECODER_TYPE, getMethod(int.class, "readInt"));
+    mg.storeLocal(length);
+    Loop loop = new Loop(mg.mark(), mg.newLabel());
+    mg.loadLocal(length);
+    mg.ifZCmp(GeneratorAdapter.EQ, loop.end);
+    return loop;
+  }
+
+  private void endBlocks(GeneratorAdapter mg, int length, Loop loop) {
+    mg.loadArg(0);
+    mg.invokeInterface(DECODER_TYPE, getMethod(int.class, "readInt"));
+    mg.storeLocal(length);
+    mg.goTo(loop.begin);
+    mg.mark(loop.end);
+  }
+
+  /**
+   * Generates the beginning of {@code for (int idx = 0; idx < length; idx++)}.
+   *
+   * @return the {@link Loop} to pass to {@link #endFor(GeneratorAdapter, int, Loop)}
+   */
+  private Loop beginFor(GeneratorAdapter mg, int idx, int length) {
+    mg.push(0);
+    mg.storeLocal(idx);
+    Loop loop = new Loop(mg.mark(), mg.newLabel());
+    mg.loadLocal(idx);
+    mg.loadLocal(length);
+    mg.ifICmp(GeneratorAdapter.GE, loop.end);
+    return loop;
+  }
+
+  private void endFor(GeneratorAdapter mg, int idx, Loop loop) {
+    mg.iinc(idx, 1);
+    mg.goTo(loop.begin);
+    mg.mark(loop.end);
+  }
+
+  /**
+   * Generates code that creates an instance of the given type with an {@link Instantiator}.
+   */
+  private void createInstance(GeneratorAdapter mg, Class<?> rawType) {
+    String instantiatorField = "instantiator$" + normalizeTypeName(TypeToken.of(rawType));
+    instantiatorRequests.put(instantiatorField, rawType);
+    mg.loadThis();
+    mg.getField(classType, instantiatorField, Type.getType(Instantiator.class));
+    mg.invokeInterface(Type.getType(Instantiator.class), getMethod(Object.class, "create"));
+  }
+
+  /**
+   * Generates code that loads the given class with {@link Class#forName(String)}.
+   */
+  private void loadClass(GeneratorAdapter mg, Class<?> cls) {
+    mg.push(cls.getName());
+    mg.invokeStatic(Type.getType(Class.class), getMethod(Class.class, "forName", String.class));
+  }
+
+  private void throwResolveFailure(GeneratorAdapter mg, Schema sourceSchema, Schema schema) {
+    mg.throwException(IO_EXCEPTION_TYPE, String.format("Fail to resolve %s to %s", sourceSchema, schema));
+  }
+
+  /**
+   * Returns the first branch of the given union schema that the given source schema can be resolved to, or
+   * {@code null} if there is none.
+   */
+  @Nullable
+  private Schema findUnionBranch(Schema sourceSchema, Schema unionSchema) {
+    for (Schema branch : unionSchema.getUnionSchemas()) {
+      if (isResolvable(sourceSchema, branch)) {
+        return branch;
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Returns whether data of the source schema can be decoded with the target schema, following the same rules as
+   * {@link ReflectionReader}. Only the top level types are checked.
+   */
+  private boolean isResolvable(Schema sourceSchema, Schema schema) {
+    Schema.Type sourceType = sourceSchema.getType();
+    Schema.Type targetType = schema.getType();
+    if (sourceType == targetType || sourceType == Schema.Type.UNION) {
+      return true;
+    }
+    if (targetType == Schema.Type.UNION) {
+      return findUnionBranch(sourceSchema, schema) != null;
+    }
+    switch (sourceType) {
+      case BOOLEAN:
+        return targetType == Schema.Type.STRING;
+      case INT:
+        return targetType == Schema.Type.LONG || targetType == Schema.Type.FLOAT
+          || targetType == Schema.Type.DOUBLE || targetType == Schema.Type.STRING;
+      case LONG:
+        return targetType == Schema.Type.FLOAT || targetType == Schema.Type.DOUBLE
+          || targetType == Schema.Type.STRING;
+      case FLOAT:
+        return targetType == Schema.Type.DOUBLE || targetType == Schema.Type.STRING;
+      case DOUBLE:
+        return targetType == Schema.Type.STRING;
+      default:
+        return false;
+    }
+  }
+
+  /**
+   * Returns the type returned by the read method for the given type and schema. This is needed to work with
+   * private classes that the generated DatumReader doesn't have access to.
+   */
+  private Type getCallType(TypeToken<?> inputType, Schema schema) {
+    Schema.Type schemaType = schema.getType();
+    if (schemaType == Schema.Type.RECORD || schemaType == Schema.Type.UNION || schemaType == Schema.Type.ENUM) {
+      return OBJECT_TYPE;
+    }
+    Class<?> rawType = inputType.getRawType();
+    return isAccessible(rawType) ? Type.getType(rawType) : OBJECT_TYPE;
+  }
+
+  /**
+   * Returns whether the generated class can refer to the given class, which is the case for primitive types and
+   * public classes of the JDK, and arrays of them.
+   */
+  private boolean isAccessible(Class<?> cls) {
+    cls = getElementClass(cls);
+    if (cls.isPrimitive()) {
+      return true;
+    }
+    if (cls.getClassLoader() != null) {
+      return false;
+    }
+    for (Class<?> c = cls; c != null; c = c.getEnclosingClass()) {
+      if (!Modifier.isPublic(c.getModifiers())) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private Class<?> getElementClass(Class<?> cls) {
+    while (cls.isArray()) {
+      cls = cls.getComponentType();
+    }
+    return cls;
+  }
+
+  private boolean isPrimitive(Type type) {
+    return type.getSort() != Type.OBJECT && type.getSort() != Type.ARRAY;
+  }
+
+  /**
+   * Generates code that converts the value on the stack from one type to another, by boxing, unboxing,
+   * primitive casting or type checking.
+   */
+  private void convert(GeneratorAdapter mg, Type from, Type to) {
+    if (from.equals(to)) {
+      return;
+    }
+    boolean fromPrimitive = isPrimitive(from);
+    boolean toPrimitive = isPrimitive(to);
+    if (fromPrimitive && toPrimitive) {
+      mg.cast(from, to);
+    } else if (fromPrimitive) {
+      mg.valueOf(from);
+      if (!OBJECT_TYPE.equals(to)) {
+        mg.checkCast(to);
+      }
+    } else if (toPrimitive) {
+      mg.unbox(to);
+    } else if (!OBJECT_TYPE.equals(to)) {
+      mg.checkCast(to);
+    }
+  }
+
+  private Class<?> getSimpleClass(Schema.Type schemaType) {
+    switch (schemaType) {
+      case BOOLEAN:
+        return boolean.class;
+      case INT:
+        return int.class;
+      case LONG:
+        return long.class;
+      case FLOAT:
+        return float.class;
+      case DOUBLE:
+        return double.class;
+      case STRING:
+        return String.class;
+    }
+    throw new IllegalArgumentException("Not a simple type: " + schemaType);
+  }
+
+  private int[] getIndices(int size) {
+    int[] indices = new int[size];
+    for (int i = 0; i < size; i++) {
+      indices[i] = i;
+    }
+    return indices;
+  }
+
+  private <T> TypeToken<DatumReader<T>> getInterfaceType(TypeToken<T> type) {
+    return new TypeToken<DatumReader<T>>() {
+    }.where(new TypeParameter<T>() {
+    }, type);
+  }
+
+  private String getClassName(TypeToken<?> interfaceType, Schema schema, Schema sourceSchema) {
+    return String.format("%s/%s%s%s%s",
+                         interfaceType.getRawType().getPackage().getName().replace('.', '/'),
+                         normalizeTypeName(TypeToken.of(((ParameterizedType) interfaceType.getType())
+                                                          .getActualTypeArguments()[0])),
+                         interfaceType.getRawType().getSimpleName(),
+                         schema.getSchemaHash(), sourceSchema.getSchemaHash());
+  }
+
+  private String normalizeTypeName(TypeToken<?> type) {
+    String typeName = type.toString();
+    int dimension = 0;
+    while (type.isArray()) {
+      type = type.getComponentType();
+      typeName = type.toString();
+      dimension++;
+    }
+
+    typeName = typeName.replace(".", "")
+                        .replace("<", "Of")
+                        .replace(">", "")
+                        .replace(",", "To")
+                        .replace(" ", "")
+                        .replace("$", "")
+                        .replace("?", "Wildcard");
+    if (dimension > 0) {
+      typeName = "Array" + dimension + typeName;
+    }
+    return typeName;
+  }
+
+  private Method getMethod(Class<?> returnType, String name, Class<?>...args) {
+    return Methods.getMethod(returnType, name, args);
+  }
+
+  /**
+   * Generates the name of the class field for storing {@link FieldAccessor} for the given record field.
+   * @param recordType Type of the record.
+   * @param fieldName name of the field.
+   * @return name of the class field.
+   */
+  private String getFieldAccessorName(TypeToken<?> recordType, String fieldName) {
+    return String.format("%s$%s", normalizeTypeName(recordType), fieldName);
+  }
+
+  /**
+   * Labels of the beginning and the end of a generated loop.
+   */
+  private static final class Loop {
+    private final Label begin;
+    private final Label end;
+
+    private Loop(Label begin, Label end) {
+      this.begin = begin;
+      this.end = end;
+    }
+  }
+}
@@ -0,0 +1,423 @@
+/*
+ * Copyright © 2018 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package co.cask.cdap.io;
+
+import co.cask.cdap.api.data.schema.Schema;
+import co.cask.cdap.api.data.schema.UnsupportedTypeException;
+import co.cask.cdap.api.flow.flowlet.StreamEvent;
+import co.cask.cdap.common.io.BinaryDecoder;
+import co.cask.cdap.common.io.BinaryEncoder;
+import co.cask.cdap.common.io.DatumReader;
+import co.cask.cdap.internal.io.ASMDatumReaderFactory;
+import co.cask.cdap.internal.io.ASMDatumWriterFactory;
+import co.cask.cdap.internal.io.ASMFieldAccessorFactory;
+import co.cask.cdap.internal.io.ReflectionDatumWriter;
+import co.cask.cdap.internal.io.ReflectionSchemaGenerator;
+import com.google.common.base.Charsets;
+import com.google.common.base.Objects;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.reflect.TypeToken;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.URI;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Tests for the {@link DatumReader} generated by {@link ASMDatumReaderFactory}.
+ */
+public class ASMDatumReaderTest {
+
+  private static final ASMDatumWriterFactory DATUM_WRITER_FACTORY
+    = new ASMDatumWriterFactory(new ASMFieldAccessorFactory());
+  private static final ASMDatumReaderFactory DATUM_READER_FACTORY
+    = new ASMDatumReaderFactory(new ASMFieldAccessorFactory());
+
+  /**
+   *
+   */
+  public enum TestEnum {
+    VALUE1, VALUE2, VALUE3, VALUE4
+  }
+
+  /**
+   *
+   */
+  public enum ReducedEnum {
+    VALUE4, VALUE2
+  }
+
+  private static Schema getSchema(TypeToken<?> type) throws UnsupportedTypeException {
+    return new ReflectionSchemaGenerator().generate(type.getType());
+  }
+
+  private static <T> byte[] encode(TypeToken<T> type, T value) throws UnsupportedTypeException, IOException {
+    ByteArrayOutputStream os = new ByteArrayOutputStream();
+    DATUM_WRITER_FACTORY.create(type, getSchema(type)).encode(value, new BinaryEncoder(os));
+    return os.toByteArray();
+  }
+
+  private static <T> T decode(TypeToken<T> type, Schema sourceSchema,
+                              byte[] bytes) throws UnsupportedTypeException, IOException {
+    DatumReader<T> reader = DATUM_READER_FACTORY.create(type, getSchema(type));
+    return reader.read(new BinaryDecoder(new ByteArrayInputStream(bytes)), sourceSchema);
+  }
+
+  private static <T> T roundTrip(TypeToken<T> type, T value) throws UnsupportedTypeException, IOException {
+    return decode(type, getSchema(type), encode(type, value));
+  }
+
+  @Test
+  public void testSimpleTypes() throws UnsupportedTypeException, IOException {
+    Assert.assertEquals(Boolean.TRUE, roundTrip(TypeToken.of(Boolean.class), true));
+    Assert.assertEquals(Byte.valueOf((byte) 12), roundTrip(TypeToken.of(Byte.class), (byte) 12));
+    Assert.assertEquals(Short.valueOf((short) 3000), roundTrip(TypeToken.of(Short.class), (short) 3000));
+    Assert.assertEquals(Character.valueOf('x'), roundTrip(TypeToken.of(Character.class), 'x'));
+    Assert.assertEquals(Integer.valueOf(12234234), roundTrip(TypeToken.of(Integer.class), 12234234));
+    Assert.assertEquals(Long.valueOf(-1234567890123L), roundTrip(TypeToken.of(Long.class), -1234567890123L));
+    Assert.assertEquals(3.14f, roundTrip(TypeToken.of(Float.class), 3.14f), 0.000001f);
+    Assert.assertEquals(3.14d, roundTrip(TypeToken.of(Double.class), 3.14d), 0.000001d);
+    Assert.assertEquals("Testing message", roundTrip(TypeToken.of(String.class), "Testing message"));
+    Assert.assertArrayEquals(new byte[] {1, 2, 3}, roundTrip(TypeToken.of(byte[].class), new byte[] {1, 2, 3}));
+
+    ByteBuffer buffer = ByteBuffer.wrap("buffer".getBytes(Charsets.UTF_8));
+    Assert.assertEquals(buffer, roundTrip(TypeToken.of(ByteBuffer.class), buffer));
+
+    UUID uuid = UUID.randomUUID();
+    Assert.assertEquals(uuid, roundTrip(TypeToken.of(UUID.class), uuid));
+
+    URI uri = URI.create("http://www.abc.com");
+    Assert.assertEquals(uri, roundTrip(TypeToken.of(URI.class), uri));
+  }
+
+  @Test
+  public void testSharedFactory() throws UnsupportedTypeException, IOException {
+    TypeToken<Map<String, List<Integer>>> type = new TypeToken<Map<String, List<Integer>>>() { };
+    Schema schema = getSchema(type);
+    DatumReader<Map<String, List<Integer>>> reader = ASMDatumReaderFactory.shared().create(type, schema, schema);
+    // The generated class is reused for the same type and schema while it is in use
+    Assert.assertSame(reader.getClass(), ASMDatumReaderFactory.shared().create(type, schema, schema).getClass());
+
+    Map<String, List<Integer>> value = ImmutableMap.<String, List<Integer>>of("a", ImmutableList.of(1, 2));
+    Assert.assertEquals(value, reader.read(new BinaryDecoder(new ByteArrayInputStream(encode(type, value))), schema));
+  }
+
+  @Test
+  public void testEnum() throws UnsupportedTypeException, IOException {
+    TypeToken<TestEnum> type = TypeToken.of(TestEnum.class);
+    for (TestEnum value : TestEnum.values()) {
+      Assert.assertEquals(value, roundTrip(type, value));
+    }
+
+    // Decode to an enum with less constants in a different order
+    Schema sourceSchema = getSchema(type);
+    Assert.assertEquals(ReducedEnum.VALUE4,
+                        decode(TypeToken.of(ReducedEnum.class), sourceSchema, encode(type, TestEnum.VALUE4)));
+    Assert.assertEquals(ReducedEnum.VALUE2,
+                        decode(TypeToken.of(ReducedEnum.class), sourceSchema, encode(type, TestEnum.VALUE2)));
+    try {
+      decode(TypeToken.of(ReducedEnum.class), sourceSchema, encode(type, TestEnum.VALUE1));
+      Assert.fail("Expected failure for enum value not in the target schema");
+    } catch (IOException e) {
+      // Expected
+    }
+  }
+
+  @Test
+  public void testArrays() throws UnsupportedTypeException, IOException {
+    int[] ints = {1, 2, 3, 4, -5, -6, -7, -8};
+    Assert.assertArrayEquals(ints, roundTrip(TypeToken.of(int[].class), ints));
+    Assert.assertArrayEquals(new int[0], roundTrip(TypeToken.of(int[].class), new int[0]));
+
+    String[] strings = {"1", "2", null, "3"};
+    Assert.assertArrayEquals(strings, roundTrip(TypeToken.of(String[].class), strings));
+
+    Record[][] records = {{new Record(10, "testing", ImmutableList.of("a", "b", "c"), TestEnum.VALUE2)}, {}};
+    Assert.assertArrayEquals(records, roundTrip(TypeToken.of(Record[][].class), records));
+  }
+
+  @Test
+  public void testCollections() throws UnsupportedTypeException, IOException {
+    TypeToken<List<Long>> listType = new TypeToken<List<Long>>() { };
+    List<Long> list = ImmutableList.of(1L, 10L, 100L, 1000L);
+    Assert.assertEquals(list, roundTrip(listType, list));
+
+    TypeToken<Map<String, List<String>>> mapType = new TypeToken<Map<String, List<String>>>() { };
+    Map<String, List<String>> map = ImmutableMap.<String, List<String>>of("k1", Lists.newArrayList("v1"),
+                                                                          "k2", Lists.newArrayList("v2", null));
+    Assert.assertEquals(map, roundTrip(mapType, map));
+
+    TypeToken<List<URI>> uriType = new TypeToken<List<URI>>() { };
+    List<URI> uris = ImmutableList.of(URI.create("http://www.abc.com"));
+    Assert.assertEquals(uris, roundTrip(uriType, uris));
+
+    // Decode a list to a set and an array
+    Schema sourceSchema = getSchema(new TypeToken<List<String>>() { });
+    byte[] bytes = encode(new TypeToken<List<String>>() { }, ImmutableList.of("1", "2", "3"));
+    Assert.assertEquals(ImmutableSet.of("1", "2", "3"), decode(new TypeToken<Set<String>>() { }, sourceSchema, bytes));
+    Assert.assertArrayEquals(new String[] {"1", "2", "3"}, decode(TypeToken.of(String[].class), sourceSchema, bytes));
+  }
+
+  @Test
+  public void testRecord() throws UnsupportedTypeException, IOException {
+    TypeToken<Record> type = TypeToken.of(Record.class);
+    Record record = new Record(10, "testing", ImmutableList.of("a", "b", "c"), TestEnum.VALUE2);
+    Assert.assertEquals(record, roundTrip(type, record));
+
+    TypeToken<List<Record>> listType = new TypeToken<List<Record>>() { };
+    Assert.assertEquals(ImmutableList.of(record), roundTrip(listType, ImmutableList.of(record)));
+  }
+
+  @Test
+  public void testTree() throws UnsupportedTypeException, IOException {
+    Node root = new Node((short) 1,
+                         new Node((short) 2, null,
+                                  new Node((short) 3, null, null)),
+                         new Node((short) 4,
+                                  new Node((short) 5, null, null), null));
+    Assert.assertEquals(root, roundTrip(TypeToken.of(Node.class), root));
+  }
+
+  @Test
+  public void testStreamEvent() throws UnsupportedTypeException, IOException {
+    StreamEvent event = new StreamEvent(ImmutableMap.of("key", "value"),
+                                        ByteBuffer.wrap("Testing message".getBytes(Charsets.UTF_8)));
+    StreamEvent value = roundTrip(TypeToken.of(StreamEvent.class), event);
+
+    Assert.assertEquals(event.getHeaders(), value.getHeaders());
+    Assert.assertEquals(event.getBody(), value.getBody());
+  }
+
+  @Test
+  public void testTypeProject() throws UnsupportedTypeException, IOException {
+    Record1 r1 = new Record1(10, Maps.<Integer, String>newHashMap(), new URL("http://www.yahoo.com"));
+    r1.properties.put(1, "Name1");
+    r1.properties.put(2, null);
+
+    Schema sourceSchema = new ReflectionSchemaGenerator().generate(Record1.class);
+    ByteArrayOutputStream os = new ByteArrayOutputStream();
+    new ReflectionDatumWriter<Record1>(sourceSchema).encode(r1, new BinaryEncoder(os));
+    Record2 r2 = decode(TypeToken.of(Record2.class), sourceSchema, os.toByteArray());
+
+    Assert.assertEquals(10L, r2.i.longValue());
+    Assert.assertEquals(2, r2.properties.size());
+    Assert.assertEquals("Name1", r2.properties.get("1"));
+    Assert.assertTrue(r2.properties.containsKey("2"));
+    Assert.assertNull(r2.properties.get("2"));
+    Assert.assertNull(r2.name);
+    Assert.assertArrayEquals(new long[] {1L, 2L}, r2.numbers);
+    Assert.assertEquals(3.5d, r2.ratio, 0.000001d);
+    Assert.assertEquals(URI.create("http://www.yahoo.com"), r2.url);
+    Assert.assertEquals(r1.uuid, r2.uuid);
+  }
+
+  @Test
+  public void testReduceProjection() throws UnsupportedTypeException, IOException {
+    MoreFields moreFields = new MoreFields(10, 20.2, "30", ImmutableList.of("1", "2"));
+    Schema sourceSchema = getSchema(TypeToken.of(MoreFields.class));
+    LessFields lessFields = decode(TypeToken.of(LessFields.class), sourceSchema,
+                                   encode(TypeToken.of(MoreFields.class), moreFields));
+
+    Assert.assertEquals("30", lessFields.k);
+    Assert.assertEquals(moreFields.inner.b, lessFields.inner.b);
+  }
+
+  @Test
+  public void testSourceSchemaChange() throws UnsupportedTypeException, IOException {
+    // The same reader decodes data written with different source schemas
+    DatumReader<LessFields> reader = DATUM_READER_FACTORY.create(TypeToken.of(LessFields.class),
+                                                                 getSchema(TypeToken.of(LessFields.class)));
+    MoreFields moreFields = new MoreFields(10, 20.2, "30", ImmutableList.of("1", "2"));
+    byte[] moreBytes = encode(TypeToken.of(MoreFields.class), moreFields);
+    LessFields lessFields = new LessFields();
+    lessFields.k = "k";
+    lessFields.inner = new LessFields.Inner();
+    lessFields.inner.b = "b";
+    byte[] lessBytes = encode(TypeToken.of(LessFields.class), lessFields);
+
+    for (int i = 0; i < 3; i++) {
+      LessFields value = reader.read(new BinaryDecoder(new ByteArrayInputStream(moreBytes)),
+                                     getSchema(TypeToken.of(MoreFields.class)));
+      Assert.assertEquals("30", value.k);
+      value = reader.read(new BinaryDecoder(new ByteArrayInputStream(lessBytes)),
+                          getSchema(TypeToken.of(LessFields.class)));
+      Assert.assertEquals("k", value.k);
+      Assert.assertEquals("b", value.inner.b);
+    }
+  }
+
+  @Test(expected = IOException.class)
+  public void testUnresolvable() throws UnsupportedTypeException, IOException {
+    decode(TypeToken.of(Integer.class), Schema.of(Schema.Type.STRING), encode(TypeToken.of(String.class), "a"));
+  }
+
+  private static class Record {
+    private int i;
+    private String s;
+    private List<String> list;
+    private TestEnum e;
+
+    Record(int i, String s, List<String> list, TestEnum e) {
+      this.i = i;
+      this.s = s;
+      this.list = list;
+      this.e = e;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (o == null || getClass() != o.getClass()) {
+        return false;
+      }
+
+      Record record = (Record) o;
+
+      return i == record.i && e == record.e && list.equals(record.list) && s.equals(record.s);
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hashCode(i, s, list, e);
+    }
+  }
+
+  /**
+   *
+   */
+  public static final class Node {
+    public short data;
+    public Node left;
+    public Node right;
+
+    public Node(short data, Node left, Node right) {
+      this.data = data;
+      this.left = left;
+      this.right = right;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (o == null || getClass() != o.getClass()) {
+        return false;
+      }
+
+      Node node = (Node) o;
+
+      return data == node.data && Objects.equal(left, node.left) && Objects.equal(right, node.right);
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hashCode(data, left, right);
+    }
+  }
+
+  /**
+   *
+   */
+  public static final class Record1 {
+    private final int i;
+    private final Map<Integer, String> properties;
+    private final int[] numbers;
+    private final float ratio;
+    private final URL url;
+    private final UUID uuid;
+
+    Record1(int i, Map<Integer, String> properties, URL url) {
+      this.i = i;
+      this.properties = properties;
+      this.numbers = new int[] {1, 2};
+      this.ratio = 3.5f;
+      this.url = url;
+      this.uuid = UUID.randomUUID();
+    }
+  }
+
+  /**
+   *
+   */
+  public static final class Record2 {
+    private Long i;
+    private Map<String, String> properties;
+    private String name;
+    private long[] numbers;
+    private double ratio;
+    private URI url;
+    private UUID uuid;
+  }
+
+  /**
+   *
+   */
+  public static final class MoreFields {
+
+    static final class Inner {
+      final Map<String, String> map;
+      final String b;
+
+      Inner(String b) {
+        this.b = b;
+        map = ImmutableMap.of("b", b);
+      }
+    }
+
+    final int i;
+    final double d;
+    final String k;
+    final List<String> list;
+    final Inner inner;
+
+    MoreFields(int i, double d, String k, List<String> list) {
+      this.i = i;
+      this.d = d;
+      this.k = k;
+      this.list = list;
+      inner = new Inner("inner");
+    }
+  }
+
+  /**
+   *
+   */
+  public static final class LessFields {
+    static final class Inner {
+      String b;
+    }
+
+    String k;
+    Inner inner;
+  }
+}
@@ -0,0 +1,143 @@
+/*
+ * Copyright © 2018 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package co.cask.cdap.io;
+
+import co.cask.cdap.api.data.schema.Schema;
+import co.cask.cdap.api.data.schema.UnsupportedTypeException;
+import co.cask.cdap.common.io.BinaryDecoder;
+import co.cask.cdap.common.io.BinaryEncoder;
+import co.cask.cdap.common.io.DatumReader;
+import co.cask.cdap.internal.io.ASMDatumReaderFactory;
+import co.cask.cdap.internal.io.ASMFieldAccessorFactory;
+import co.cask.cdap.internal.io.ReflectionDatumReader;
+import co.cask.cdap.internal.io.ReflectionDatumWriter;
+import co.cask.cdap.internal.io.ReflectionSchemaGenerator;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.reflect.TypeToken;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JMH benchmark comparing the {@link ReflectionDatumReader} with the {@link DatumReader} generated by
+ * {@link ASMDatumReaderFactory}, both for decoding data written with the same schema and for decoding
+ * into a type that has fewer fields than the data was written with.
+ *
+ * It can be run from the IDE or through the {@link #main(String[])} method with the test classpath.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class DatumReaderBenchmark {
+
+  private Schema fullSchema;
+  private Schema projectedSchema;
+  private byte[] encoded;
+
+  private DatumReader<FullRecord> reflectionReader;
+  private DatumReader<FullRecord> generatedReader;
+  private DatumReader<ProjectedRecord> reflectionProjectionReader;
+  private DatumReader<ProjectedRecord> generatedProjectionReader;
+
+  @Setup(Level.Trial)
+  public void setup() throws UnsupportedTypeException, IOException {
+    fullSchema = new ReflectionSchemaGenerator().generate(FullRecord.class);
+    projectedSchema = new ReflectionSchemaGenerator().generate(ProjectedRecord.class);
+
+    ByteArrayOutputStream os = new ByteArrayOutputStream();
+    new ReflectionDatumWriter<FullRecord>(fullSchema).encode(new FullRecord(), new BinaryEncoder(os));
+    encoded = os.toByteArray();
+
+    ASMDatumReaderFactory factory = new ASMDatumReaderFactory(new ASMFieldAccessorFactory());
+    reflectionReader = new ReflectionDatumReader<>(fullSchema, TypeToken.of(FullRecord.class));
+    generatedReader = factory.create(TypeToken.of(FullRecord.class), fullSchema);
+    reflectionProjectionReader = new ReflectionDatumReader<>(projectedSchema, TypeToken.of(ProjectedRecord.class));
+    generatedProjectionReader = factory.create(TypeToken.of(ProjectedRecord.class), projectedSchema);
+  }
+
+  @Benchmark
+  public FullRecord reflection() throws IOException {
+    return reflectionReader.read(new BinaryDecoder(new ByteArrayInputStream(encoded)), fullSchema);
+  }
+
+  @Benchmark
+  public FullRecord generated() throws IOException {
+    return generatedReader.read(new BinaryDecoder(new ByteArrayInputStream(encoded)), fullSchema);
+  }
+
+  @Benchmark
+  public ProjectedRecord reflectionProjection() throws IOException {
+    return reflectionProjectionReader.read(new BinaryDecoder(new ByteArrayInputStream(encoded)), fullSchema);
+  }
+
+  @Benchmark
+  public ProjectedRecord generatedProjection() throws IOException {
+    return generatedProjectionReader.read(new BinaryDecoder(new ByteArrayInputStream(encoded)), fullSchema);
+  }
+
+  public static void main(String[] args) throws RunnerException {
+    Options options = new OptionsBuilder()
+      .include(DatumReaderBenchmark.class.getSimpleName())
+      .build();
+    new Runner(options).run();
+  }
+
+  /**
+   * The record type that the data is written with.
+   */
+  public static final class FullRecord {
+    private int id = 12345;
+    private long timestamp = System.currentTimeMillis();
+    private double value = 3.14d;
+    private String name = "benchmark";
+    private List<String> tags = ImmutableList.of("a", "b", "c", "d");
+    private Map<String, String> properties = ImmutableMap.of("k1", "v1", "k2", "v2");
+    private int[] counts = {1, 2, 3, 4, 5, 6, 7, 8};
+  }
+
+  /**
+   * The record type with a subset of the fields of {@link FullRecord}, with {@code id} promoted to {@code long}.
+   */
+  public static final class ProjectedRecord {
+    private long id;
+    private String name;
+  }
+}
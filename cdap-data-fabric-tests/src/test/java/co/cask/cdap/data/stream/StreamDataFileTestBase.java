@@ -994,6 +994,183 @@ public abstract class StreamDataFileTestBase {
     reader.close();
   }
 
+  @Test
+  public void testCompressedReadWrite() throws Exception {
+    Location dir = StreamFileTestUtils.createTempDir(getLocationFactory());
+    Location eventFile = dir.getTempFile(".dat");
+    Location indexFile = dir.getTempFile(".idx");
+    Location uncompressedEventFile = dir.getTempFile(".dat");
+    Location uncompressedIndexFile = dir.getTempFile(".idx");
+
+    StreamDataFileWriter writer = new StreamDataFileWriter(
+      Locations.newOutputSupplier(eventFile), Locations.newOutputSupplier(indexFile), 10L,
+      ImmutableMap.of(StreamDataFileConstants.Property.Key.CODEC, "deflate"));
+    StreamDataFileWriter uncompressedWriter = new StreamDataFileWriter(
+      Locations.newOutputSupplier(uncompressedEventFile), Locations.newOutputSupplier(uncompressedIndexFile), 10L);
+
+    // Write 100 timestamps with 10 events each. The events of the timestamp 50 have empty body, which compresses
+    // to fewer bytes than the number of events.
+    List<StreamEvent> expected = Lists.newArrayList();
+    for (int i = 0; i < 100; i++) {
+      for (int j = 0; j < 10; j++) {
+        expected.add(StreamFileTestUtils.createEvent(i, i == 50 ? "" : "Compressed testing " + (i * 10 + j)));
+      }
+    }
+    List<StreamEvent> sameTimestampEvents = Lists.newArrayList();
+    for (int j = 0; j < 1000; j++) {
+      sameTimestampEvents.add(StreamFileTestUtils.createEvent(100, ""));
+    }
+    for (FileWriter<StreamEvent> fileWriter : ImmutableList.<FileWriter<StreamEvent>>of(writer, uncompressedWriter)) {
+      fileWriter.appendAll(expected.iterator());
+      fileWriter.appendAll(sameTimestampEvents.iterator());
+      fileWriter.close();
+    }
+    expected.addAll(sameTimestampEvents);
+
+    Assert.assertTrue(eventFile.length() < uncompressedEventFile.length());
+
+    // Read all events and verify that positions are increasing
+    StreamDataFileReader reader = StreamDataFileReader.create(Locations.newInputSupplier(eventFile));
+    List<PositionStreamEvent> events = Lists.newArrayList();
+    Assert.assertEquals(expected.size(), reader.read(events, expected.size() + 1, 0, TimeUnit.SECONDS));
+    Assert.assertEquals(-1, reader.read(Lists.newArrayList(), 1, 0, TimeUnit.SECONDS));
+    reader.close();
+
+    long lastPosition = -1L;
+    for (int i = 0; i < expected.size(); i++) {
+      PositionStreamEvent event = events.get(i);
+      Assert.assertEquals(expected.get(i).getTimestamp(), event.getTimestamp());
+      Assert.assertEquals(expected.get(i).getBody(), event.getBody());
+      Assert.assertTrue(event.getStart() > lastPosition);
+      Assert.assertTrue(event.getStart() < eventFile.length());
+      lastPosition = event.getStart();
+    }
+
+    // Reading from each event position or an offset before it should start from that event
+    Random random = new Random();
+    for (PositionStreamEvent event : events) {
+      long offset = random.nextBoolean() ? event.getStart() : event.getStart() - random.nextInt(3) - 1;
+      reader = StreamDataFileReader.createWithOffset(Locations.newInputSupplier(eventFile),
+                                                     Locations.newInputSupplier(indexFile), offset);
+      List<PositionStreamEvent> result = Lists.newArrayList();
+      Assert.assertEquals(1, reader.read(result, 1, 0, TimeUnit.SECONDS));
+      reader.close();
+      if (offset == event.getStart()) {
+        Assert.assertEquals(event.getStart(), result.get(0).getStart());
+      } else {
+        Assert.assertTrue(result.get(0).getStart() <= event.getStart());
+      }
+    }
+
+    // Reading by start time uses the index, which points to the compressed block boundaries
+    for (int i = 0; i <= 100; i += 7) {
+      reader = StreamDataFileReader.createByStartTime(Locations.newInputSupplier(eventFile),
+                                                      Locations.newInputSupplier(indexFile), i);
+      List<PositionStreamEvent> result = Lists.newArrayList();
+      Assert.assertEquals(1, reader.read(result, 1, 0, TimeUnit.SECONDS));
+      reader.close();
+      Assert.assertEquals(i, result.get(0).getTimestamp());
+    }
+  }
+
+  @Test
+  public void testCompressedSplits() throws Exception {
+    Location dir = StreamFileTestUtils.createTempDir(getLocationFactory());
+    Location eventFile = dir.getTempFile(".dat");
+    Location indexFile = dir.getTempFile(".idx");
+
+    StreamDataFileWriter writer = new StreamDataFileWriter(
+      Locations.newOutputSupplier(eventFile), Locations.newOutputSupplier(indexFile), 10L,
+      ImmutableMap.of(StreamDataFileConstants.Property.Key.CODEC, "deflate"));
+    for (int i = 0; i < 1000; i++) {
+      writer.append(StreamFileTestUtils.createEvent(i / 10, "Testing " + i));
+    }
+    writer.close();
+
+    // Read the file in splits the same way as the StreamRecordReader does. Each event should be read exactly once.
+    long length = eventFile.length();
+    for (long splitSize : new long[] { 1L, 7L, 100L, length }) {
+      List<String> bodies = Lists.newArrayList();
+      for (long start = 0; start < length; start += splitSize) {
+        StreamDataFileReader reader = StreamDataFileReader.createWithOffset(Locations.newInputSupplier(eventFile),
+                                                                            Locations.newInputSupplier(indexFile),
+                                                                            start);
+        List<PositionStreamEvent> events = Lists.newArrayList();
+        while (reader.read(events, 1, 0, TimeUnit.SECONDS) > 0) {
+          PositionStreamEvent event = events.remove(0);
+          if (event.getStart() - start >= splitSize) {
+            break;
+          }
+          bodies.add(Charsets.UTF_8.decode(event.getBody()).toString());
+        }
+        reader.close();
+      }
+      Assert.assertEquals(1000, bodies.size());
+      for (int i = 0; i < 1000; i++) {
+        Assert.assertEquals("Testing " + i, bodies.get(i));
+      }
+    }
+  }
+
+  @Test
+  public void testCompressedLiveStream() throws Exception {
+    String streamName = "compressedLive";
+    StreamId streamId = NamespaceId.DEFAULT.stream(streamName);
+    String filePrefix = "prefix";
+    // Use a long partition so that all events are written to the same file of the current partition
+    long partitionDuration = TimeUnit.HOURS.toMillis(1);
+    long partitionStart = StreamUtils.getPartitionStartTime(System.currentTimeMillis(), partitionDuration);
+    Location location = getLocationFactory().create(streamName);
+    location.mkdirs();
+
+    StreamConfig config = new StreamConfig(streamId, partitionDuration, 10000, Long.MAX_VALUE, location, null, 1000);
+    FileWriter<StreamEvent> writer = new TimePartitionedStreamFileWriter(location, partitionDuration, filePrefix,
+                                                                         config.getIndexInterval(), "deflate",
+                                                                         streamId, impersonator);
+    Location eventLocation = StreamUtils.createStreamLocation(
+      StreamUtils.createPartitionLocation(location, partitionStart, partitionDuration),
+      filePrefix, 0, StreamFileType.EVENT);
+    FileReader<PositionStreamEvent, StreamFileOffset> reader
+      = new LiveStreamFileReader(config, new StreamFileOffset(eventLocation, 0L, 0), 100);
+    try {
+      // Tail the file while it is being written, with events in the same partition
+      List<PositionStreamEvent> events = Lists.newArrayList();
+      for (int i = 0; i < 20; i++) {
+        for (int j = 0; j < 5; j++) {
+          writer.append(StreamFileTestUtils.createEvent(partitionStart + i, "Testing " + (i * 5 + j)));
+        }
+        writer.flush();
+        Stopwatch stopwatch = new Stopwatch().start();
+        while (stopwatch.elapsedTime(TimeUnit.SECONDS) < 10 && events.size() != (i + 1) * 5) {
+          reader.read(events, 5, 100, TimeUnit.MILLISECONDS);
+        }
+        Assert.assertEquals((i + 1) * 5, events.size());
+      }
+
+      for (int i = 0; i < 100; i++) {
+        Assert.assertEquals("Testing " + i, Charsets.UTF_8.decode(events.get(i).getBody()).toString());
+      }
+
+      // Resuming from the reader position should get nothing more
+      reader.close();
+      reader = new LiveStreamFileReader(config, reader.getPosition(), 100);
+      writer.close();
+      events.clear();
+      Assert.assertEquals(0, reader.read(events, 1, 500, TimeUnit.MILLISECONDS));
+    } finally {
+      Closeables.closeQuietly(writer);
+      reader.close();
+    }
+  }
+
+  @Test (expected = IOException.class)
+  public void testUnknownCodec() throws Exception {
+    Location dir = StreamFileTestUtils.createTempDir(getLocationFactory());
+    new StreamDataFileWriter(Locations.newOutputSupplier(dir.getTempFile(".dat")),
+                             Locations.newOutputSupplier(dir.getTempFile(".idx")), 10L,
+                             ImmutableMap.of(StreamDataFileConstants.Property.Key.CODEC, "unknown"));
+  }
+
   private FileWriter<StreamEvent> createWriter(StreamConfig config, String prefix) {
     return new TimePartitionedStreamFileWriter(config.getLocation(), config.getPartitionDuration(),
                                                prefix, config.getIndexInterval(), config.getStreamId(),
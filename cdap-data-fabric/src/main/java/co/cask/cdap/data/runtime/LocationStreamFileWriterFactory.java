@@ -26,6 +26,7 @@ import co.cask.cdap.data.stream.TimePartitionedStreamFileWriter;
 import co.cask.cdap.data2.transaction.stream.StreamConfig;
 import co.cask.cdap.security.impersonation.Impersonator;
 import com.google.common.base.Preconditions;
+import com.google.common.base.Strings;
 import com.google.common.base.Throwables;
 import com.google.inject.Inject;
 import org.apache.twill.filesystem.Location;
@@ -40,11 +41,13 @@ import java.util.concurrent.Callable;
 public final class LocationStreamFileWriterFactory implements StreamFileWriterFactory {
 
   private final String filePrefix;
+  private final String compressionCodec;
   private final Impersonator impersonator;
 
   @Inject
   public LocationStreamFileWriterFactory(CConfiguration cConf, Impersonator impersonator) {
     this.filePrefix = cConf.get(Constants.Stream.INSTANCE_FILE_PREFIX);
+    this.compressionCodec = Strings.emptyToNull(cConf.get(Constants.Stream.FILE_COMPRESSION_CODEC, "").trim());
     this.impersonator = impersonator;
   }
 
@@ -70,7 +73,7 @@ public final class LocationStreamFileWriterFactory implements StreamFileWriterFa
 
       return new TimePartitionedStreamFileWriter(baseLocation, config.getPartitionDuration(),
                                                  filePrefix, config.getIndexInterval(),
-                                                 config.getStreamId(), impersonator);
+                                                 compressionCodec, config.getStreamId(), impersonator);
     } catch (Exception e) {
       Throwables.propagateIfPossible(e, IOException.class);
       throw new IOException(e);
@@ -0,0 +1,160 @@
+/*
+ * Copyright © 2018 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package co.cask.cdap.data.stream;
+
+import co.cask.cdap.common.io.BufferedEncoder;
+import com.google.common.io.ByteStreams;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.io.compress.CodecPool;
+import org.apache.hadoop.io.compress.CompressionCodec;
+import org.apache.hadoop.io.compress.CompressionCodecFactory;
+import org.apache.hadoop.io.compress.CompressionInputStream;
+import org.apache.hadoop.io.compress.CompressionOutputStream;
+import org.apache.hadoop.io.compress.Compressor;
+import org.apache.hadoop.io.compress.Decompressor;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.NotThreadSafe;
+
+/**
+ * Compresses and decompresses stream data blocks with a Hadoop {@link CompressionCodec}. The codec is looked up
+ * by the name recorded in the stream file header, which can be either a codec alias such as {@code snappy},
+ * {@code lz4} or {@code deflate}, or a codec class name.
+ *
+ * Each instance holds a {@link Compressor} or {@link Decompressor} borrowed from the {@link CodecPool}, which is
+ * reused for every data block and returned on {@link #close()}.
+ */
+@NotThreadSafe
+final class StreamDataBlockCodec implements Closeable {
+
+  private static volatile CompressionCodecFactory codecFactory;
+
+  private final String name;
+  private final CompressionCodec codec;
+  private final Compressor compressor;
+  private final Decompressor decompressor;
+  private boolean closed;
+
+  /**
+   * Creates an instance for compressing data blocks with the given codec.
+   *
+   * @throws IOException if the codec is unknown or cannot be used, e.g. because of a missing native library
+   */
+  static StreamDataBlockCodec forCompression(String name) throws IOException {
+    CompressionCodec codec = getCodec(name);
+    try {
+      return new StreamDataBlockCodec(name, codec, CodecPool.getCompressor(codec), null);
+    } catch (RuntimeException e) {
+      throw new IOException("Compression codec " + name + " is not usable", e);
+    }
+  }
+
+  /**
+   * Creates an instance for decompressing data blocks with the given codec.
+   *
+   * @throws IOException if the codec is unknown or cannot be used, e.g. because of a missing native library
+   */
+  static StreamDataBlockCodec forDecompression(String name) throws IOException {
+    CompressionCodec codec = getCodec(name);
+    try {
+      return new StreamDataBlockCodec(name, codec, null, CodecPool.getDecompressor(codec));
+    } catch (RuntimeException e) {
+      throw new IOException("Compression codec " + name + " is not usable", e);
+    }
+  }
+
+  private StreamDataBlockCodec(String name, CompressionCodec codec,
+                               @Nullable Compressor compressor, @Nullable Decompressor decompressor) {
+    this.name = name;
+    this.codec = codec;
+    this.compressor = compressor;
+    this.decompressor = decompressor;
+  }
+
+  /**
+   * Returns the name of the codec.
+   */
+  String getName() {
+    return name;
+  }
+
+  /**
+   * Compresses all the bytes buffered in the given {@link BufferedEncoder} to the given output. The encoder will
+   * be reset afterwards. The output stream is not closed by this method.
+   */
+  void compress(BufferedEncoder encoder, OutputStream output) throws IOException {
+    CompressionOutputStream compressionOutput;
+    if (compressor == null) {
+      compressionOutput = codec.createOutputStream(output);
+    } else {
+      compressor.reset();
+      compressionOutput = codec.createOutputStream(output, compressor);
+    }
+    encoder.writeTo(compressionOutput);
+    compressionOutput.finish();
+    compressionOutput.flush();
+  }
+
+  /**
+   * Decompresses bytes from the given input until the given buffer is filled up to the given size.
+   *
+   * @throws java.io.EOFException if the input ends before the given number of bytes were decompressed
+   */
+  void decompress(InputStream input, byte[] buffer, int size) throws IOException {
+    CompressionInputStream decompressionInput;
+    if (decompressor == null) {
+      decompressionInput = codec.createInputStream(input);
+    } else {
+      decompressor.reset();
+      decompressionInput = codec.createInputStream(input, decompressor);
+    }
+    ByteStreams.readFully(decompressionInput, buffer, 0, size);
+  }
+
+  @Override
+  public void close() {
+    // Guard against returning the same compressor or decompressor to the pool more than once
+    if (closed) {
+      return;
+    }
+    closed = true;
+    if (compressor != null) {
+      CodecPool.returnCompressor(compressor);
+    }
+    if (decompressor != null) {
+      CodecPool.returnDecompressor(decompressor);
+    }
+  }
+
+  private static CompressionCodec getCodec(String name) throws IOException {
+    CompressionCodecFactory factory = codecFactory;
+    if (factory == null) {
+      // Creating the factory loads the Hadoop configuration, hence only do it once.
+      factory = codecFactory = new CompressionCodecFactory(new Configuration());
+    }
+    CompressionCodec codec = factory.getCodecByName(name);
+    if (codec == null) {
+      throw new IOException("Unknown compression codec " + name);
+    }
+    return codec;
+  }
+}
@@ -36,6 +36,10 @@ import java.util.List;
  *
  * Each split produced will also carries {@code startTime} and {@code endTime} so that only stream events within
  * the given time range will get processed.
+ *
+ * Splitting works the same for files with compressed data blocks, since events in a compressed block have
+ * positions within the block boundaries (see {@link StreamDataFileWriter}). The reader of a split decompresses
+ * the block containing the split start and skips the events positioned before it.
  */
 final class StreamDataFileSplitter {
 
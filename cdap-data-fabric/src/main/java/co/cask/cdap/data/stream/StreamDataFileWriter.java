@@ -32,6 +32,7 @@ import com.google.common.io.OutputSupplier;
 import com.google.common.primitives.Longs;
 import org.apache.hadoop.fs.Syncable;
 
+import java.io.ByteArrayOutputStream;
 import java.io.Flushable;
 import java.io.IOException;
 import java.io.OutputStream;
@@ -59,6 +60,26 @@ import javax.annotation.concurrent.NotThreadSafe;
  * }
  * </pre>
  *
+ * If a compression codec is given through the {@link StreamDataFileConstants.Property.Key#CODEC} property,
+ * the file is written with header "E" "3" and each data block is compressed:
+ *
+ * <pre>
+ * {@code
+ *
+ * data = <timestamp> <length> <compressed_block>
+ * length = Avro encoded int32 for size in bytes of the <compressed_block>
+ * compressed_block = <uncompressed_length> <compressed_stream_events> <padding>
+ * uncompressed_length = Avro encoded int32 for size in bytes for all <stream_event>s before compression
+ * compressed_stream_events = <stream_event>+ compressed with the codec
+ * padding = zero bytes to make the <compressed_block> no smaller than the number of <stream_event>s in it
+ *
+ * }
+ * </pre>
+ *
+ * The position of an event in a compressed block is the position of the {@code <compressed_block>} plus
+ * the index of the event in the block, which is why the block is padded. This keeps event positions unique and
+ * within the block boundaries, hence offset based seeking and file splitting work the same for both formats.
+ *
  * Stream index file:
  *
  * <pre>
@@ -84,9 +105,14 @@ public final class StreamDataFileWriter implements TimestampCloseable, Flushable
   private final long indexInterval;
   private final BufferedEncoder encoder;
   private final BufferedEncoder lengthEncoder;
+  private final StreamDataBlockCodec blockCodec;
+  private final ByteArrayOutputStream compressedBlock;
+  private final Encoder compressedBlockEncoder;
 
   // Timestamp for the current block
   private long currentTimestamp;
+  // Number of events in the current block
+  private int blockEvents;
   private long position;
   private long nextIndexTime;
   private boolean synced;
@@ -110,8 +136,10 @@ public final class StreamDataFileWriter implements TimestampCloseable, Flushable
    * @param eventOutputSupplier the provider of the {@link OutputStream} for writing events
    * @param indexOutputSupplier the provider of the {@link OutputStream} for writing the index
    * @param indexInterval the time interval in milliseconds for emitting a new index entry
-   * @param properties the property set that will be stored as file properties
-   * @throws IOException if there is an error in preparing the output streams
+   * @param properties the property set that will be stored as file properties. If it contains the
+   *                   {@link StreamDataFileConstants.Property.Key#CODEC} property, data blocks will be compressed
+   *                   with the given codec
+   * @throws IOException if there is an error in preparing the output streams or if the codec is not usable
    */
   public StreamDataFileWriter(OutputSupplier<? extends OutputStream> eventOutputSupplier,
                               OutputSupplier<? extends OutputStream> indexOutputSupplier,
@@ -131,13 +159,24 @@ public final class StreamDataFileWriter implements TimestampCloseable, Flushable
     this.encoder = new BufferedEncoder(BUFFER_SIZE, encoderFactory);
     this.lengthEncoder = new BufferedEncoder(5, encoderFactory);
 
+    StreamDataBlockCodec blockCodec = null;
     try {
-      init(properties);
+      String codec = properties.get(StreamDataFileConstants.Property.Key.CODEC);
+      if (codec != null) {
+        blockCodec = StreamDataBlockCodec.forCompression(codec);
+      }
+      init(properties, blockCodec != null);
     } catch (IOException e) {
+      if (blockCodec != null) {
+        blockCodec.close();
+      }
       Closeables.closeQuietly(eventOutput);
       Closeables.closeQuietly(indexOutput);
       throw e;
     }
+    this.blockCodec = blockCodec;
+    this.compressedBlock = blockCodec == null ? null : new ByteArrayOutputStream(BUFFER_SIZE);
+    this.compressedBlockEncoder = blockCodec == null ? null : new BinaryEncoder(compressedBlock);
   }
 
 
@@ -178,7 +217,11 @@ public final class StreamDataFileWriter implements TimestampCloseable, Flushable
       try {
         eventOutput.close();
       } finally {
-        indexOutput.close();
+        try {
+          indexOutput.close();
+        } finally {
+          closeCodec();
+        }
       }
     }
   }
@@ -222,6 +265,7 @@ public final class StreamDataFileWriter implements TimestampCloseable, Flushable
 
       // Encodes the event data into buffer.
       StreamEventDataCodec.encode(event, encoder);
+      blockEvents++;
 
       // Optionally flush if already filled up the buffer.
       if (encoder.size() >= flushLimit) {
@@ -233,9 +277,9 @@ public final class StreamDataFileWriter implements TimestampCloseable, Flushable
     }
   }
 
-  private void init(Map<String, String> properties) throws IOException {
+  private void init(Map<String, String> properties, boolean compressed) throws IOException {
     // Writes the header for event file
-    encoder.writeRaw(StreamDataFileConstants.MAGIC_HEADER_V2);
+    encoder.writeRaw(compressed ? StreamDataFileConstants.MAGIC_HEADER_V3 : StreamDataFileConstants.MAGIC_HEADER_V2);
 
     Map<String, String> headers = Maps.newHashMap(properties);
     headers.put(StreamDataFileConstants.Property.Key.SCHEMA, StreamEventDataCodec.STREAM_DATA_SCHEMA.toString());
@@ -278,16 +322,20 @@ public final class StreamDataFileWriter implements TimestampCloseable, Flushable
       indexOffset = position - Bytes.SIZEOF_LONG;
     }
 
-    // Writes the size of the encoded event
-    lengthEncoder.writeInt(encoder.size());
-    int size = lengthEncoder.size();
-    lengthEncoder.writeTo(eventOutput);
-    position += size;
-
-    // Writes all encoded data from the buffer to the output.
-    size = encoder.size();
-    encoder.writeTo(eventOutput);
-    position += size;
+    if (blockCodec == null) {
+      // Writes the size of the encoded event
+      lengthEncoder.writeInt(encoder.size());
+      int size = lengthEncoder.size();
+      lengthEncoder.writeTo(eventOutput);
+      position += size;
+
+      // Writes all encoded data from the buffer to the output.
+      size = encoder.size();
+      encoder.writeTo(eventOutput);
+      position += size;
+    } else {
+      writeCompressedBlock();
+    }
     if (sync) {
       sync(eventOutput);
     }
@@ -307,9 +355,38 @@ public final class StreamDataFileWriter implements TimestampCloseable, Flushable
 
     // Reset the current timestamp so that a data block will start.
     currentTimestamp = -1L;
+    blockEvents = 0;
     synced = sync;
   }
 
+  /**
+   * Compresses the buffered data and writes it as a compressed block to the underlying output stream.
+   */
+  private void writeCompressedBlock() throws IOException {
+    compressedBlock.reset();
+    compressedBlockEncoder.writeInt(encoder.size());
+    blockCodec.compress(encoder, compressedBlock);
+
+    // Pads the block so that each event in it can have a distinct position within the block
+    while (compressedBlock.size() < blockEvents) {
+      compressedBlock.write(0);
+    }
+
+    lengthEncoder.writeInt(compressedBlock.size());
+    int size = lengthEncoder.size();
+    lengthEncoder.writeTo(eventOutput);
+    position += size;
+
+    compressedBlock.writeTo(eventOutput);
+    position += compressedBlock.size();
+  }
+
+  private void closeCodec() {
+    if (blockCodec != null) {
+      blockCodec.close();
+    }
+  }
+
   private void sync(OutputStream output) throws IOException {
     if (output instanceof Syncable) {
       ((Syncable) output).hsync();
@@ -326,6 +403,7 @@ public final class StreamDataFileWriter implements TimestampCloseable, Flushable
     closed = true;
     Closeables.closeQuietly(eventOutput);
     Closeables.closeQuietly(indexOutput);
+    closeCodec();
     throw ex;
   }
 
@@ -24,6 +24,7 @@ import co.cask.cdap.common.stream.StreamEventDataCodec;
 import co.cask.cdap.data.file.ReadFilter;
 import co.cask.common.io.ByteBufferInputStream;
 
+import java.io.ByteArrayInputStream;
 import java.io.EOFException;
 import java.io.IOException;
 import java.nio.ByteBuffer;
@@ -33,6 +34,10 @@ import javax.annotation.concurrent.NotThreadSafe;
 /**
  * A buffer for holding encoded stream events. It is used by {@link StreamDataFileReader} for holding
  * encoded stream events in each data block.
+ *
+ * For an uncompressed data block, the position of an event is the file position of the encoded event. For a
+ * compressed data block, the position of an event is the file position of the compressed block plus the index of
+ * the event in the block, as described in {@link StreamDataFileWriter}.
  */
 @NotThreadSafe
 final class StreamEventBuffer {
@@ -42,6 +47,10 @@ final class StreamEventBuffer {
 
   private ByteBuffer buffer;
   private long basePosition;
+  private long endPosition;
+  private boolean compressed;
+  private int eventIndex;
+  private byte[] compressedBuffer;
 
   StreamEventBuffer() {
     this.buffer = ByteBuffers.EMPTY_BUFFER;
@@ -64,14 +73,9 @@ final class StreamEventBuffer {
 
     try {
       basePosition = input.getPos();
-      int bytesRead = 0;
-      while (bytesRead != size) {
-        int len = input.read(buffer.array(), bytesRead, size - bytesRead);
-        if (len < 0) {
-          throw new EOFException("Expected to read " + size + ", but only " + bytesRead + " was read");
-        }
-        bytesRead += len;
-      }
+      endPosition = basePosition + size;
+      compressed = false;
+      readFully(input, buffer.array(), size);
       buffer.limit(size);
       bufferInput.reset(buffer);
     } catch (IOException e) {
@@ -82,6 +86,44 @@ final class StreamEventBuffer {
     }
   }
 
+  /**
+   * Fills the internal buffer by reading a compressed block from the given input stream and decompressing it.
+   *
+   * @param input input stream to read from
+   * @param size number of bytes in the compressed block
+   * @param codec the {@link StreamDataBlockCodec} for decompressing the block
+   * @throws IOException if failed to read from the stream or to decompress
+   * @throws EOFException if failed to read the given number of bytes from the input
+   */
+  void fillBuffer(SeekableInputStream input, int size, StreamDataBlockCodec codec) throws IOException {
+    buffer.clear();
+
+    try {
+      basePosition = input.getPos();
+      endPosition = basePosition + size;
+      compressed = true;
+      eventIndex = 0;
+
+      // Reads the whole compressed block first, so that a partially written block is detected by EOFException
+      if (compressedBuffer == null || compressedBuffer.length < size) {
+        compressedBuffer = new byte[size];
+      }
+      readFully(input, compressedBuffer, size);
+
+      ByteArrayInputStream blockInput = new ByteArrayInputStream(compressedBuffer, 0, size);
+      int uncompressedSize = new BinaryDecoder(blockInput).readInt();
+      buffer = ensureCapacity(buffer, uncompressedSize);
+      codec.decompress(blockInput, buffer.array(), uncompressedSize);
+      buffer.limit(uncompressedSize);
+      bufferInput.reset(buffer);
+    } catch (IOException e) {
+      // Make the buffer has nothing to read
+      buffer.position(buffer.limit());
+      basePosition = -1L;
+      throw e;
+    }
+  }
+
   /**
    * Returns {@code true} if there are events in the buffer, {@code false} otherwise.
    */
@@ -94,7 +136,13 @@ final class StreamEventBuffer {
    * read from the stream.
    */
   long getPosition() {
-    return basePosition >= 0 ? basePosition + buffer.position() : -1L;
+    if (basePosition < 0) {
+      return -1L;
+    }
+    if (!compressed) {
+      return basePosition + buffer.position();
+    }
+    return hasEvent() ? basePosition + eventIndex : endPosition;
   }
 
   /**
@@ -102,7 +150,7 @@ final class StreamEventBuffer {
    * been read from the stream.
    */
   long getEndPosition() {
-    return basePosition >= 0 ? basePosition + buffer.limit() : -1L;
+    return basePosition >= 0 ? endPosition : -1L;
   }
 
   /**
@@ -120,7 +168,13 @@ final class StreamEventBuffer {
       throw new IOException("No more event in the buffer");
     }
 
-    long eventPos = basePosition + buffer.position();
+    long eventPos = getPosition();
+    if (compressed) {
+      if (eventPos >= endPosition) {
+        throw new IOException("Number of events exceeds the size of the compressed block at " + basePosition);
+      }
+      eventIndex++;
+    }
     if (filter.acceptOffset(eventPos)) {
       return new PositionStreamEvent(StreamEventDataCodec.decode(decoder, defaultHeaders), timestamp, eventPos);
     }
@@ -128,6 +182,17 @@ final class StreamEventBuffer {
     return null;
   }
 
+  private void readFully(SeekableInputStream input, byte[] bytes, int size) throws IOException {
+    int bytesRead = 0;
+    while (bytesRead != size) {
+      int len = input.read(bytes, bytesRead, size - bytesRead);
+      if (len < 0) {
+        throw new EOFException("Expected to read " + size + ", but only " + bytesRead + " was read");
+      }
+      bytesRead += len;
+    }
+  }
+
   /**
    * Ensures that the given {@link ByteBuffer} is of sufficient size.
    *
@@ -23,6 +23,7 @@ import co.cask.cdap.api.dataset.lib.cube.CubeExploreQuery;
 import co.cask.cdap.api.dataset.lib.cube.CubeFact;
 import co.cask.cdap.api.dataset.lib.cube.CubeQuery;
 import co.cask.cdap.api.dataset.lib.cube.DimensionValue;
+import co.cask.cdap.api.dataset.lib.cube.Distribution;
 import co.cask.cdap.api.dataset.lib.cube.TimeSeries;
 import co.cask.cdap.api.dataset.lib.cube.TimeValue;
 import co.cask.cdap.api.dataset.metrics.MeteredDataset;
@@ -35,6 +36,7 @@ import co.cask.cdap.data2.dataset2.lib.timeseries.FactScanner;
 import co.cask.cdap.data2.dataset2.lib.timeseries.FactTable;
 import com.google.common.collect.HashBasedTable;
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Iterables;
 import com.google.common.collect.Iterators;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
@@ -159,7 +161,8 @@ public class DefaultCube implements Cube, MeteredDataset {
       'measureType'='COUNTER'
 
       3) While scanning build a table: dimension values -> time -> value. Use measureType as values aggregate
-         function if needed.
+         function if needed. For percentile functions, the values are merged into distributions while scanning,
+         and the percentiles are computed from the distributions after the scan.
     */
 
     incrementMetric("cube.query.request.count", 1);
@@ -240,6 +243,40 @@ public class DefaultCube implements Cube, MeteredDataset {
     }
   }
 
+  /**
+   * Compacts the facts of all aggregations in the given resolution and time range.
+   * See {@link FactTable#compact(FactScan)} for details. The time range starts no earlier than the end of the
+   * previous compaction, which is persisted in the fact table once all aggregations are compacted.
+   *
+   * @param resolution resolution of the facts to compact
+   * @param startTs start of the time range, in seconds
+   * @param endTs end of the time range, in seconds
+   * @return number of compacted rows written
+   */
+  public int compact(int resolution, long startTs, long endTs) {
+    FactTable factTable = resolutionToFactTable.get(resolution);
+    if (factTable == null) {
+      throw new IllegalArgumentException("There's no data aggregated for resolution " + resolution);
+    }
+    if (!factTable.isCompactionEnabled()) {
+      return 0;
+    }
+    startTs = Math.max(startTs, factTable.getCompactedTs());
+    if (startTs >= endTs) {
+      return 0;
+    }
+    int compacted = 0;
+    for (Aggregation agg : aggregations.values()) {
+      List<DimensionValue> dimensionValues = Lists.newArrayList();
+      for (String dimensionName : agg.getDimensionNames()) {
+        dimensionValues.add(new DimensionValue(dimensionName, null));
+      }
+      compacted += factTable.compact(new FactScan(startTs, endTs, Collections.<String>emptyList(), dimensionValues));
+    }
+    factTable.setCompactedTs(endTs);
+    return compacted;
+  }
+
   @Override
   public Collection<DimensionValue> findDimensionValues(CubeExploreQuery query) {
     LOG.trace("Searching for next-level context, query: {}", query);
@@ -332,6 +369,8 @@ public class DefaultCube implements Cube, MeteredDataset {
   private Table<Map<String, String>, String, Map<Long, Long>> getTimeSeries(CubeQuery query, FactScanner scanner) {
     // {dimension values, measure} -> {time -> value}s
     Table<Map<String, String>, String, Map<Long, Long>> result = HashBasedTable.create();
+    // {dimension values, measure} -> {time -> distribution}s, for measures queried with percentile function
+    Table<Map<String, String>, String, Map<Long, Distribution>> distributions = HashBasedTable.create();
 
     int count = 0;
     while (scanner.hasNext()) {
@@ -366,13 +405,43 @@ public class DefaultCube implements Cube, MeteredDataset {
         continue;
       }
 
-      for (TimeValue timeValue : next) {
+      AggregationFunction function = query.getMeasurements().get(next.getMeasureName());
+      if (function != null && function.isPercentile()) {
+        Map<Long, Distribution> timeDistributions = distributions.get(seriesDimensions, next.getMeasureName());
+        if (timeDistributions == null) {
+          timeDistributions = Maps.newHashMap();
+          distributions.put(seriesDimensions, next.getMeasureName(), timeDistributions);
+        }
+        // Non-distribution values are merged as individual values of the distribution
+        for (TimeValue timeValue : next) {
+          timeDistributions.computeIfAbsent(timeValue.getTimestamp(), k -> new Distribution())
+            .add(timeValue.getValue());
+        }
+        for (Map.Entry<Long, Distribution> entry : next.getDistributions().entrySet()) {
+          timeDistributions.computeIfAbsent(entry.getKey(), k -> new Distribution()).add(entry.getValue());
+        }
+        if (++count >= MAX_RECORDS_TO_SCAN) {
+          break;
+        }
+        continue;
+      }
+
+      // For non-percentile functions, a distribution value is the number of values in it
+      Iterable<TimeValue> values = next;
+      if (!next.getDistributions().isEmpty()) {
+        List<TimeValue> distributionCounts = Lists.newArrayList();
+        for (Map.Entry<Long, Distribution> entry : next.getDistributions().entrySet()) {
+          distributionCounts.add(new TimeValue(entry.getKey(), entry.getValue().getCount()));
+        }
+        values = Iterables.concat(next, distributionCounts);
+      }
+
+      for (TimeValue timeValue : values) {
         Map<Long, Long> timeValues = result.get(seriesDimensions, next.getMeasureName());
         if (timeValues == null) {
           result.put(seriesDimensions, next.getMeasureName(), Maps.<Long, Long>newHashMap());
         }
 
-        AggregationFunction function = query.getMeasurements().get(next.getMeasureName());
         if (AggregationFunction.SUM == function) {
           Long value =  result.get(seriesDimensions, next.getMeasureName()).get(timeValue.getTimestamp());
           value = value == null ? 0 : value;
@@ -397,6 +466,16 @@ public class DefaultCube implements Cube, MeteredDataset {
         break;
       }
     }
+
+    // Compute the percentiles from the merged distributions
+    for (Table.Cell<Map<String, String>, String, Map<Long, Distribution>> cell : distributions.cellSet()) {
+      double percentile = query.getMeasurements().get(cell.getColumnKey()).getPercentile();
+      Map<Long, Long> timeValues = Maps.newHashMap();
+      for (Map.Entry<Long, Distribution> entry : cell.getValue().entrySet()) {
+        timeValues.put(entry.getKey(), entry.getValue().getPercentile(percentile));
+      }
+      result.put(cell.getRowKey(), cell.getColumnKey(), timeValues);
+    }
     return result;
   }
 
@@ -26,6 +26,7 @@ import co.cask.cdap.api.dataset.metrics.MeteredDataset;
 import co.cask.cdap.api.dataset.table.ConflictDetection;
 import co.cask.cdap.api.dataset.table.Filter;
 import co.cask.cdap.api.dataset.table.Get;
+import co.cask.cdap.api.dataset.table.ParallelScanOptions;
 import co.cask.cdap.api.dataset.table.Result;
 import co.cask.cdap.api.dataset.table.Row;
 import co.cask.cdap.api.dataset.table.Scan;
@@ -36,7 +37,9 @@ import co.cask.cdap.api.metrics.MetricsCollector;
 import co.cask.cdap.common.conf.Constants;
 import com.google.common.base.Function;
 import com.google.common.base.Preconditions;
+import com.google.common.base.Predicate;
 import com.google.common.collect.AbstractIterator;
+import com.google.common.collect.Iterators;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 import org.apache.tephra.Transaction;
@@ -53,7 +56,7 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.NavigableMap;
-import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.Callable;
 import javax.annotation.Nullable;
 
 /**
@@ -95,9 +98,9 @@ public abstract class BufferingTable extends AbstractTable implements MeteredDat
   // Whether read-less increments should be used when increment() is called
   private final boolean enableReadlessIncrements;
 
-  // In-memory buffer that keeps not yet persisted data. It is row->(column->value) map. Value can be null which means
-  // that the corresponded column was removed.
-  private NavigableMap<byte[], NavigableMap<byte[], Update>> buff;
+  // In-memory buffer that keeps not yet persisted data, as row->(column->value) changes. Value can be a put of null
+  // which means that the corresponded column was removed.
+  private WriteBuffer buff;
 
   // Keeps track of what was persisted so far
   private NavigableMap<byte[], NavigableMap<byte[], Update>> toUndo;
@@ -150,7 +153,7 @@ public abstract class BufferingTable extends AbstractTable implements MeteredDat
     // we want it to be of format length+value to avoid conflicts like table="ab", row="cd" vs table="abc", row="d"
     // Default uses the above scheme. Subclasses can change it by overriding the #getNameAsTxChangePrefix method
     this.nameAsTxChangePrefix = Bytes.add(new byte[]{(byte) name.length()}, Bytes.toBytes(name));
-    this.buff = new ConcurrentSkipListMap<>(Bytes.BYTES_COMPARATOR);
+    this.buff = new WriteBuffer();
   }
 
   /**
@@ -178,8 +181,8 @@ public abstract class BufferingTable extends AbstractTable implements MeteredDat
   /**
    * Persists in-memory buffer. After this method returns we assume that data can be visible to other table clients
    * (of course other clients may choose still not to see it based on transaction isolation logic).
-   * @param buff in-memory buffer to persist. Map is described as row->(column->value). Map can contain null values
-   *             which means that the corresponded column was deleted
+   * @param buff in-memory buffer to persist. Map is described as row->(column->value), sorted by row and column.
+   *             Map can contain puts of null values which means that the corresponded column was deleted
    * @throws Exception
    */
   protected abstract void persist(NavigableMap<byte[], NavigableMap<byte[], Update>> buff)
@@ -308,23 +311,23 @@ public abstract class BufferingTable extends AbstractTable implements MeteredDat
 
   private Collection<byte[]> getRowChanges() {
     // we resolve conflicts on row level of individual table
-    List<byte[]> changes = new ArrayList<>(buff.size());
-    for (byte[] changedRow : buff.keySet()) {
-      changes.add(Bytes.add(getNameAsTxChangePrefix(), changedRow));
+    List<byte[]> changes = new ArrayList<>();
+    Iterator<Map.Entry<byte[], NavigableMap<byte[], Update>>> changedRows = buff.getRows(null, null);
+    while (changedRows.hasNext()) {
+      changes.add(Bytes.add(getNameAsTxChangePrefix(), changedRows.next().getKey()));
     }
     return changes;
   }
 
   private Collection<byte[]> getColumnChanges() {
     // we resolve conflicts on row level of individual table
-    List<byte[]> changes = new ArrayList<>(buff.size());
-    for (Map.Entry<byte[], NavigableMap<byte[], Update>> rowChange : buff.entrySet()) {
-      if (rowChange.getValue() == null) {
-        // NOTE: as of now we cannot detect conflict between delete whole row and row's column value change.
-        //       this is not a big problem as of now, as row deletion is now act as deletion of every column, but this
-        //       will change in future, so we will have to address the issue.
-        continue;
-      }
+    List<byte[]> changes = new ArrayList<>();
+    Iterator<Map.Entry<byte[], NavigableMap<byte[], Update>>> changedRows = buff.getRows(null, null);
+    while (changedRows.hasNext()) {
+      // NOTE: as of now we cannot detect conflict between delete whole row and row's column value change.
+      //       this is not a big problem as of now, as row deletion is now act as deletion of every column, but this
+      //       will change in future, so we will have to address the issue.
+      Map.Entry<byte[], NavigableMap<byte[], Update>> rowChange = changedRows.next();
 
       // using length + value format to prevent conflicts like row="ab", column="cd" vs row="abc", column="d"
       byte[] rowTxChange = Bytes.add(Bytes.toBytes(rowChange.getKey().length), rowChange.getKey());
@@ -341,11 +344,10 @@ public abstract class BufferingTable extends AbstractTable implements MeteredDat
     if (!buff.isEmpty()) {
       // We first assume that all data will be persisted. So that if exception happen during persist we try to
       // rollback everything we had in in-memory buffer.
-      toUndo = buff;
-      // clearing up in-memory buffer by initializing new map.
-      // NOTE: we want to init map here so that if no changes are made we re-use same instance of the map in next tx
-      // NOTE: we could cache two maps and swap them to avoid creation of map instances, but code would be ugly
-      buff = new ConcurrentSkipListMap<>(Bytes.BYTES_COMPARATOR);
+      // NOTE: the buffer sorts the changes only once here, and the persisted map is built from the sorted changes
+      toUndo = buff.toSortedMap();
+      // clearing up in-memory buffer, it is re-used in next tx
+      buff.clear();
       // TODO: tracking of persisted items can be optimized by returning a pair {succeededOrNot, persisted} which
       //       tells if persisting succeeded and what was persisted (i.e. what we will have to undo in case of rollback)
       persist(toUndo);
@@ -415,7 +417,7 @@ public abstract class BufferingTable extends AbstractTable implements MeteredDat
     ensureTransactionIsStarted();
     reportRead(1);
     // checking if the row was deleted inside this tx
-    NavigableMap<byte[], Update> buffCols = buff.get(row);
+    NavigableMap<byte[], Update> buffCols = buff.getRow(row);
 
     // NOTE: since we cannot tell the exact column set, we always have to go to persisted store.
     //       potential improvement: do not fetch columns available in in-mem buffer (we know them at this point)
@@ -467,7 +469,7 @@ public abstract class BufferingTable extends AbstractTable implements MeteredDat
         rowColumns.putAll(persistedRow);
 
         byte[] row = get.getRow();
-        NavigableMap<byte[], Update> buffCols = buff.get(row);
+        NavigableMap<byte[], Update> buffCols = buff.getRow(row);
 
         // merge what was in the buffer and what was persisted
         if (buffCols != null) {
@@ -500,23 +502,15 @@ public abstract class BufferingTable extends AbstractTable implements MeteredDat
   }
 
   private void putInternal(byte[] row, byte[][] columns, byte[][] values) {
-    NavigableMap<byte[], Update> colVals = buff.get(row);
-    boolean newRow = false;
-    if (colVals == null) {
-      colVals = Maps.newTreeMap(Bytes.BYTES_COMPARATOR);
-      newRow = true;
-    }
+    // NOTE: we copy passed row's byte arrays to protect buffer against possible changes of this array on client
+    byte[] rowCopy = copy(row);
     for (int i = 0; i < columns.length; i++) {
       // NOTE: we copy passed column's and value's byte arrays to protect buffer against possible changes of these
       // arrays on client
       if (values[i] != null && values[i].length == 0) {
         warnAboutEmptyValue(columns[i]);
       }
-      colVals.put(copy(columns[i]), new PutValue(copy(values[i])));
-    }
-    if (newRow) {
-      // NOTE: we copy passed row's byte arrays to protect buffer against possible changes of this array on client
-      buff.put(copy(row), colVals);
+      buff.add(rowCopy, copy(columns[i]), new PutValue(copy(values[i])));
     }
   }
 
@@ -620,13 +614,10 @@ public abstract class BufferingTable extends AbstractTable implements MeteredDat
   public void increment(byte[] row, byte[][] columns, long[] amounts) {
     ensureTransactionIsStarted();
     if (enableReadlessIncrements) {
-      NavigableMap<byte[], Update> colVals = buff.get(row);
-      if (colVals == null) {
-        colVals = Maps.newTreeMap(Bytes.BYTES_COMPARATOR);
-        buff.put(row, colVals);
-      }
+      // the buffer merges the increments with earlier changes of the same columns
+      byte[] rowCopy = copy(row);
       for (int i = 0; i < columns.length; i++) {
-        colVals.put(columns[i], Updates.mergeUpdates(colVals.get(columns[i]), new IncrementValue(amounts[i])));
+        buff.add(rowCopy, copy(columns[i]), new IncrementValue(amounts[i]));
       }
       reportWrite(1, getSize(row) + getSize(columns) + getSize(amounts));
     } else {
@@ -695,9 +686,9 @@ public abstract class BufferingTable extends AbstractTable implements MeteredDat
   @Override
   public Scanner scan(Scan scan) {
     ensureTransactionIsStarted();
-    NavigableMap<byte[], NavigableMap<byte[], Update>> bufferMap = scanBuffer(scan);
+    Iterator<Map.Entry<byte[], NavigableMap<byte[], Update>>> bufferRows = scanBuffer(scan);
     try {
-      return new BufferingScanner(bufferMap, scanPersisted(scan));
+      return new BufferingScanner(bufferRows, scanPersisted(scan));
     } catch (Exception e) {
       LOG.debug("scan failed for table: " + getTransactionAwareName() +
           ", scan: " + scan.toString(), e);
@@ -705,39 +696,91 @@ public abstract class BufferingTable extends AbstractTable implements MeteredDat
     }
   }
 
-  private NavigableMap<byte[], NavigableMap<byte[], Update>> scanBuffer(Scan scan) {
-    NavigableMap<byte[], NavigableMap<byte[], Update>> bufferMap;
-    byte[] startRow = scan.getStartRow();
-    byte[] stopRow = scan.getStopRow();
-    if (startRow == null && stopRow == null) {
-      bufferMap = buff;
-    } else if (startRow == null) {
-      bufferMap = buff.headMap(stopRow, false);
-    } else if (stopRow == null) {
-      bufferMap = buff.tailMap(startRow, true);
-    } else {
-      bufferMap = buff.subMap(startRow, true, stopRow, false);
+  @ReadOnly
+  @Override
+  public Scanner parallelScan(Scan scan, ParallelScanOptions options) {
+    ensureTransactionIsStarted();
+    List<KeyRange> ranges;
+    try {
+      ranges = getScanRanges(scan.getStartRow(), scan.getStopRow(), options.getParallelism());
+    } catch (Exception e) {
+      LOG.debug("scan failed for table: " + getTransactionAwareName() +
+          ", scan: " + scan.toString(), e);
+      throw new DataSetException("scan failed", e);
     }
-    bufferMap = applyFilter(bufferMap, scan.getFilter());
-    return bufferMap;
+    if (ranges.size() <= 1) {
+      return scan(scan);
+    }
+
+    List<Callable<Scanner>> subScans = new ArrayList<>(ranges.size());
+    for (int i = 0; i < ranges.size(); i++) {
+      // the first and last range must include the keys before and after the ranges returned by getScanRanges
+      byte[] start = i == 0 ? scan.getStartRow() : ranges.get(i).getStart();
+      byte[] stop = i == ranges.size() - 1 ? scan.getStopRow() : ranges.get(i).getStop();
+      final Scan subScan = new Scan(start, stop, scan.getFilter());
+      for (Map.Entry<String, String> property : scan.getProperties().entrySet()) {
+        subScan.setProperty(property.getKey(), property.getValue());
+      }
+      subScans.add(new Callable<Scanner>() {
+        @Override
+        public Scanner call() throws Exception {
+          return scanPersistedInParallel(subScan);
+        }
+      });
+    }
+    // the buffer is not thread-safe, hence it is merged by the thread that reads the scanner. Merging requires the
+    // persisted rows in key order, unless there are no buffered rows
+    Iterator<Map.Entry<byte[], NavigableMap<byte[], Update>>> bufferRows = scanBuffer(scan);
+    boolean ordered = options.isOrdered() || bufferRows.hasNext();
+    return new BufferingScanner(bufferRows, new ParallelScanner(subScans, options.getParallelism(), ordered,
+                                                                options.getBufferSize()));
   }
 
-  private NavigableMap<byte[], NavigableMap<byte[], Update>> applyFilter(
-                                                        NavigableMap<byte[], NavigableMap<byte[], Update>> bufferMap,
-                                                        @Nullable Filter filter) {
+  /**
+   * Scans the persisted rows of one range of a parallel scan. This is called concurrently by the threads of the
+   * sub-scans, hence subclasses must override it if {@link #scanPersisted(Scan)} is not thread-safe.
+   *
+   * @param scan the scan of the range
+   * @return instance of {@link Scanner}
+   */
+  protected Scanner scanPersistedInParallel(Scan scan) throws Exception {
+    return scanPersisted(scan);
+  }
+
+  /**
+   * Returns the key ranges that a parallel scan is divided into, in key order. Subclasses should override this if
+   * the table is distributed, to align the ranges with the distribution of the table. Sub-scans of the ranges call
+   * {@link #scanPersistedInParallel(Scan)} concurrently.
+   *
+   * @param start If non-null, the returned ranges will only cover keys that are greater or equal.
+   * @param stop If non-null, the returned ranges will only cover keys that are less.
+   * @param parallelism the maximum number of ranges that are scanned concurrently
+   * @return list of {@link KeyRange}
+   */
+  protected List<KeyRange> getScanRanges(@Nullable byte[] start, @Nullable byte[] stop,
+                                         int parallelism) throws Exception {
+    return SplitsUtil.primitiveGetSplits(parallelism, start, stop);
+  }
+
+  private Iterator<Map.Entry<byte[], NavigableMap<byte[], Update>>> scanBuffer(Scan scan) {
+    return applyFilter(buff.getRows(scan.getStartRow(), scan.getStopRow()), scan.getFilter());
+  }
+
+  private Iterator<Map.Entry<byte[], NavigableMap<byte[], Update>>> applyFilter(
+                                                  Iterator<Map.Entry<byte[], NavigableMap<byte[], Update>>> bufferRows,
+                                                  @Nullable final Filter filter) {
     if (filter == null) {
-      return bufferMap;
+      return bufferRows;
     }
 
     // todo: currently we support only FuzzyRowFilter as an experimental feature
     if (filter instanceof FuzzyRowFilter) {
-      NavigableMap<byte[], NavigableMap<byte[], Update>> result = Maps.newTreeMap(Bytes.BYTES_COMPARATOR);
-      for (Map.Entry<byte[], NavigableMap<byte[], Update>> entry : bufferMap.entrySet()) {
-        if (FuzzyRowFilter.ReturnCode.INCLUDE == ((FuzzyRowFilter) filter).filterRow(entry.getKey())) {
-          result.put(entry.getKey(), entry.getValue());
+      return Iterators.filter(bufferRows, new Predicate<Map.Entry<byte[], NavigableMap<byte[], Update>>>() {
+        @Override
+        public boolean apply(Map.Entry<byte[], NavigableMap<byte[], Update>> entry) {
+          return FuzzyRowFilter.ReturnCode.INCLUDE == ((FuzzyRowFilter) filter).filterRow(entry.getKey());
         }
-      }
-      return result;
+      });
     } else {
       throw new DataSetException("Unknown filter type: " + filter);
     }
@@ -745,13 +788,7 @@ public abstract class BufferingTable extends AbstractTable implements MeteredDat
 
   private Map<byte[], byte[]> getRowMap(byte[] row) throws Exception {
     NavigableMap<byte[], byte[]> result = Maps.newTreeMap(Bytes.BYTES_COMPARATOR);
-    // checking if the row was deleted inside this tx
-    NavigableMap<byte[], Update> buffCols = buff.get(row);
-    boolean rowDeleted = buffCols == null && buff.containsKey(row);
-    if (rowDeleted) {
-      return Collections.emptyMap();
-    }
-
+    NavigableMap<byte[], Update> buffCols = buff.getRow(row);
     Map<byte[], byte[]> persisted = getPersisted(row, null);
 
 
@@ -766,8 +803,7 @@ public abstract class BufferingTable extends AbstractTable implements MeteredDat
 
   private Map<byte[], byte[]> getRowMap(byte[] row, byte[][] columns) throws Exception {
     NavigableMap<byte[], byte[]> result = Maps.newTreeMap(Bytes.BYTES_COMPARATOR);
-    // checking if the row was deleted inside this tx
-    NavigableMap<byte[], Update> buffCols = buff.get(row);
+    NavigableMap<byte[], Update> buffCols = buff.getRow(row);
 
     // if nothing locally, return all from server
     if (buffCols == null) {
@@ -962,11 +998,10 @@ public abstract class BufferingTable extends AbstractTable implements MeteredDat
   // they get annotated
 
   @ReadOnly
-  private Iterator<byte[]> getBufferKeyIterator(NavigableMap<byte[], NavigableMap<byte[], Update>> buffer) {
-    final Iterator<byte[]> iterator = buffer.keySet().iterator();
-    return new AbstractIterator<byte[]>() {
+  private <T> Iterator<T> getBufferIterator(final Iterator<T> iterator) {
+    return new AbstractIterator<T>() {
       @Override
-      protected byte[] computeNext() {
+      protected T computeNext() {
         return BufferingTable.this.hasNext(iterator) ? BufferingTable.this.next(iterator) : endOfData();
       }
     };
@@ -982,28 +1017,20 @@ public abstract class BufferingTable extends AbstractTable implements MeteredDat
     return iterator.next();
   }
 
-  @ReadOnly
-  private NavigableMap<byte[], Update> getFromBuffer(NavigableMap<byte[], NavigableMap<byte[], Update>> buffer,
-                                                     byte[] key) {
-    return buffer.get(key);
-  }
-
   /**
    * Scanner implementation that overlays buffered data on top of already persisted data.
    */
   private class BufferingScanner implements Scanner {
-    private final NavigableMap<byte[], NavigableMap<byte[], Update>> buffer;
     private final Scanner persistedScanner;
-    private final Iterator<byte[]> keyIter;
+    private final Iterator<Map.Entry<byte[], NavigableMap<byte[], Update>>> bufferIter;
+    private Map.Entry<byte[], NavigableMap<byte[], Update>> currentBuffered;
     private byte[] currentKey;
     private Row currentRow;
 
-    private BufferingScanner(NavigableMap<byte[], NavigableMap<byte[], Update>> buffer, Scanner persistedScanner) {
-      this.buffer = buffer;
-      this.keyIter = getBufferKeyIterator(buffer);
-      if (this.keyIter.hasNext()) {
-        currentKey = keyIter.next();
-      }
+    private BufferingScanner(Iterator<Map.Entry<byte[], NavigableMap<byte[], Update>>> buffer,
+                             Scanner persistedScanner) {
+      this.bufferIter = getBufferIterator(buffer);
+      nextBuffered();
       this.persistedScanner = persistedScanner;
       this.currentRow = this.persistedScanner.next();
     }
@@ -1035,22 +1062,27 @@ public abstract class BufferingTable extends AbstractTable implements MeteredDat
       } else if (order < 0) {
         // buffer row comes first or persisted scanner is empty
         Map<byte[], byte[]> persistedRow = Maps.newTreeMap(Bytes.BYTES_COMPARATOR);
-        mergeToPersisted(persistedRow, getFromBuffer(buffer, currentKey), null);
+        mergeToPersisted(persistedRow, currentBuffered.getValue(), null);
         result = new Result(copy(currentKey), persistedRow);
 
-        currentKey = keyIter.hasNext() ? keyIter.next() : null;
+        nextBuffered();
       } else {
         // if currentKey and currentRow are equal, merge and advance both
         Map<byte[], byte[]> persisted = currentRow.getColumns();
-        mergeToPersisted(persisted, getFromBuffer(buffer, currentKey), null);
+        mergeToPersisted(persisted, currentBuffered.getValue(), null);
         result = new Result(currentRow.getRow(), persisted);
 
         currentRow = persistedScanner.next();
-        currentKey = keyIter.hasNext() ? keyIter.next() : null;
+        nextBuffered();
       }
       return result;
     }
 
+    private void nextBuffered() {
+      currentBuffered = bufferIter.hasNext() ? bufferIter.next() : null;
+      currentKey = currentBuffered == null ? null : currentBuffered.getKey();
+    }
+
     @Override
     public void close() {
       this.persistedScanner.close();
@@ -69,6 +69,16 @@ public interface MetricsTable extends Dataset {
    */
   void increment(NavigableMap<byte[], NavigableMap<byte[], Long>> updates);
 
+  /**
+   * Write multiple rows and batch increment multiple rows in a single batch, which is the same as calling
+   * {@link #put(SortedMap)} followed by {@link #increment(NavigableMap)}, but with less round trips to the storage.
+   * A column that is in both is written with the put value plus the increment.
+   * @param puts rows, each with multiple individual columns to write.
+   * @param increments rows, each with multiple individual columns to increment.
+   */
+  void putAndIncrement(SortedMap<byte[], ? extends SortedMap<byte[], Long>> puts,
+                       NavigableMap<byte[], NavigableMap<byte[], Long>> increments);
+
   /**
    * Increment a single column of a row and return the new value.
    * @return the new value after the increment.
@@ -0,0 +1,280 @@
+/*
+ * Copyright © 2018 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.data2.dataset2.lib.table;
+
+import co.cask.cdap.api.dataset.DataSetException;
+import co.cask.cdap.api.dataset.table.Row;
+import co.cask.cdap.api.dataset.table.Scanner;
+import org.apache.twill.common.Threads;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import javax.annotation.Nullable;
+
+/**
+ * A {@link Scanner} that runs sub-scans of disjoint key ranges on a bounded number of threads, and returns their
+ * rows either in key order or in the order they are read.
+ *
+ * Every running sub-scan hands its rows to the reading thread through a bounded queue, and waits if the queue is
+ * full, hence sub-scans never read ahead more than the configured buffer size. In key order, the sub-scans are
+ * started in key order and each has its own queue, which is drained completely before the next one. Otherwise, all
+ * sub-scans share one queue. A sub-scan counts as running until the reading thread has taken its completion from
+ * the queue, so that at most {@code parallelism} queues hold rows at any time.
+ *
+ * The threads are shared by all parallel scans of the process. A sub-scan that doesn't get a thread because all of
+ * them are busy is read by the thread that reads the scanner, so that scans never wait for the threads of other
+ * scans to become free.
+ */
+final class ParallelScanner implements Scanner {
+
+  private static final Logger LOG = LoggerFactory.getLogger(ParallelScanner.class);
+  private static final int MAX_THREADS = Runtime.getRuntime().availableProcessors() * 4;
+  private static final ExecutorService EXECUTOR = createExecutor();
+
+  private final List<Callable<Scanner>> subScans;
+  private final int parallelism;
+  private final boolean ordered;
+  private final int bufferSize;
+  // In key order, the queue of each sub-scan is created when the sub-scan is started
+  private final List<BlockingQueue<Object>> queues;
+  private volatile boolean closed;
+
+  // the following are guarded by this
+  private final List<Future<?>> futures = new ArrayList<>();
+  // sub-scans to be read by the reading thread, in the order to read them
+  private final Deque<Integer> inlineSubScans = new ArrayDeque<>();
+  private int nextSubScan;
+  private int running;
+
+  // the following are only accessed by the reading thread
+  // number of sub-scans that are completely read
+  private int completed;
+  private Scanner inlineScanner;
+
+  /**
+   * Creates a scanner and starts the sub-scans.
+   *
+   * @param subScans opens the scanner of each sub-scan, called from the sub-scan threads. In key order, the sub-scans
+   *                 must be given in key order
+   * @param parallelism the maximum number of sub-scans to run concurrently
+   * @param ordered whether to return the rows in the order of the sub-scans
+   * @param bufferSize the maximum number of rows buffered for each running sub-scan
+   */
+  ParallelScanner(List<Callable<Scanner>> subScans, int parallelism, boolean ordered, int bufferSize) {
+    this.subScans = subScans;
+    this.parallelism = parallelism;
+    this.ordered = ordered;
+    this.bufferSize = bufferSize;
+    this.queues = new ArrayList<>();
+    if (ordered) {
+      queues.addAll(Collections.nCopies(subScans.size(), null));
+    } else {
+      queues.add(new ArrayBlockingQueue<>(bufferSize * Math.max(1, Math.min(parallelism, subScans.size()))));
+    }
+    startSubScans();
+  }
+
+  @Nullable
+  @Override
+  public Row next() {
+    while (completed < subScans.size()) {
+      if (inlineScanner == null) {
+        Integer inlineSubScan = nextInlineSubScan();
+        if (inlineSubScan != null) {
+          inlineScanner = openInline(inlineSubScan);
+        }
+      }
+      if (inlineScanner != null) {
+        Row row = inlineScanner.next();
+        if (row != null) {
+          return row;
+        }
+        inlineScanner.close();
+        inlineScanner = null;
+        completed++;
+        startSubScans();
+        continue;
+      }
+
+      Object item;
+      try {
+        item = queues.get(ordered ? completed : 0).take();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        close();
+        throw new DataSetException("Interrupted while waiting for the parallel scan", e);
+      }
+      if (item instanceof Row) {
+        return (Row) item;
+      }
+      Throwable failure = ((Completion) item).failure;
+      if (failure != null) {
+        close();
+        throw new DataSetException("Parallel scan failed", failure);
+      }
+      if (ordered) {
+        // the queue of the sub-scan is drained
+        queues.set(completed, null);
+      }
+      completed++;
+      subScanFinished();
+    }
+    close();
+    return null;
+  }
+
+  @Override
+  public void close() {
+    if (closed) {
+      return;
+    }
+    closed = true;
+    synchronized (this) {
+      // interrupts the sub-scans that wait for their buffers to be drained, they close their scanners
+      for (Future<?> future : futures) {
+        future.cancel(true);
+      }
+    }
+    if (inlineScanner != null) {
+      inlineScanner.close();
+      inlineScanner = null;
+    }
+  }
+
+  /**
+   * Starts sub-scans in order until the parallelism is reached. If no thread is available, the next sub-scan is
+   * left to the reading thread.
+   */
+  private synchronized void startSubScans() {
+    while (!closed && running < parallelism && nextSubScan < subScans.size()) {
+      int subScan = nextSubScan++;
+      if (ordered) {
+        queues.set(subScan, new ArrayBlockingQueue<>(bufferSize));
+      }
+      try {
+        futures.add(EXECUTOR.submit(new SubScan(subScans.get(subScan), queues.get(ordered ? subScan : 0))));
+        running++;
+      } catch (RejectedExecutionException e) {
+        if (ordered) {
+          queues.set(subScan, null);
+        }
+        inlineSubScans.add(subScan);
+        return;
+      }
+    }
+  }
+
+  /**
+   * Returns the next sub-scan to be read by the reading thread, or {@code null} if the next rows come from the
+   * queue. The next sub-scans are started when the completion of a sub-scan is taken from the queue, hence a
+   * sub-scan that is left to the reading thread is always known when the reading thread gets to it.
+   */
+  @Nullable
+  private synchronized Integer nextInlineSubScan() {
+    if (ordered) {
+      if (completed >= nextSubScan) {
+        startSubScans();
+      }
+      Integer next = inlineSubScans.peek();
+      return next != null && next == completed ? inlineSubScans.poll() : null;
+    }
+    return inlineSubScans.poll();
+  }
+
+  private Scanner openInline(int subScan) {
+    try {
+      return subScans.get(subScan).call();
+    } catch (Exception e) {
+      close();
+      throw new DataSetException("Parallel scan failed", e);
+    }
+  }
+
+  private synchronized void subScanFinished() {
+    running--;
+    startSubScans();
+  }
+
+  private static ExecutorService createExecutor() {
+    // no queuing of sub-scans, a sub-scan either gets a thread or is read by the reading thread
+    return new ThreadPoolExecutor(0, MAX_THREADS, 60L, TimeUnit.SECONDS, new SynchronousQueue<>(),
+                                  Threads.createDaemonThreadFactory("parallel-scan-%d"));
+  }
+
+  /**
+   * Marks the completion of a sub-scan in its queue.
+   */
+  private static final class Completion {
+    private final Throwable failure;
+
+    private Completion(@Nullable Throwable failure) {
+      this.failure = failure;
+    }
+  }
+
+  /**
+   * Reads the rows of a sub-scan into its queue.
+   */
+  private final class SubScan implements Runnable {
+    private final Callable<Scanner> scannerFactory;
+    private final BlockingQueue<Object> queue;
+
+    private SubScan(Callable<Scanner> scannerFactory, BlockingQueue<Object> queue) {
+      this.scannerFactory = scannerFactory;
+      this.queue = queue;
+    }
+
+    @Override
+    public void run() {
+      Throwable failure = null;
+      try (Scanner scanner = scannerFactory.call()) {
+        Row row = scanner.next();
+        while (!closed && row != null) {
+          queue.put(row);
+          row = scanner.next();
+        }
+      } catch (InterruptedException e) {
+        // the scanner was closed
+        return;
+      } catch (Throwable t) {
+        LOG.debug("Sub-scan of parallel scan failed", t);
+        failure = t;
+      }
+      try {
+        if (!closed) {
+          queue.put(new Completion(failure));
+        }
+      } catch (InterruptedException e) {
+        // the scanner was closed
+      }
+    }
+  }
+}
@@ -0,0 +1,283 @@
+/*
+ * Copyright © 2018 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.data2.dataset2.lib.table;
+
+import co.cask.cdap.api.common.Bytes;
+import com.google.common.collect.AbstractIterator;
+import com.google.common.collect.ImmutableSortedMap;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.hash.BloomFilter;
+import com.google.common.hash.Funnels;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import javax.annotation.Nullable;
+
+/**
+ * Transaction write buffer of {@link BufferingTable}.
+ *
+ * Changes are appended to a log, which is only sorted when the buffer is read. Every sort turns the log into a
+ * sorted run, and runs of similar size are merged, such that a lookup only needs a binary search in a few runs.
+ * A bloom filter over the buffered rows allows to skip the lookup for rows that were not changed in the
+ * transaction. Changes to the same cell are merged in the order they were made, using
+ * {@link Updates#mergeUpdates(Update, Update)}.
+ *
+ * This class is not thread-safe.
+ */
+final class WriteBuffer {
+
+  private static final int INITIAL_BLOOM_CAPACITY = 256;
+  private static final double BLOOM_FALSE_POSITIVE_RATE = 0.01;
+
+  private static final Comparator<Cell> CELL_COMPARATOR = new Comparator<Cell>() {
+    @Override
+    public int compare(Cell left, Cell right) {
+      int cmp = Bytes.compareTo(left.row, right.row);
+      return cmp == 0 ? Bytes.compareTo(left.column, right.column) : cmp;
+    }
+  };
+
+  // changes not yet sorted, in the order they were made
+  private final List<Cell> log = Lists.newArrayList();
+  // sorted runs of changes with at most one cell per row and column, from oldest to latest
+  private final List<Cell[]> runs = Lists.newArrayList();
+
+  private BloomFilter<byte[]> rows;
+  private int bloomCapacity;
+  private int bloomInsertions;
+
+  /**
+   * Appends a change. The row and column must not be modified after this call.
+   */
+  void add(byte[] row, byte[] column, Update update) {
+    if (rows == null) {
+      createBloomFilter(INITIAL_BLOOM_CAPACITY);
+    } else if (bloomInsertions >= bloomCapacity) {
+      // the filter is full and would degrade, rebuild it with twice the capacity
+      createBloomFilter(bloomCapacity * 2);
+      for (Cell[] run : runs) {
+        addToBloomFilter(Arrays.asList(run));
+      }
+      addToBloomFilter(log);
+    }
+    log.add(new Cell(row, column, update));
+    rows.put(row);
+    bloomInsertions++;
+  }
+
+  boolean isEmpty() {
+    return log.isEmpty() && runs.isEmpty();
+  }
+
+  void clear() {
+    log.clear();
+    runs.clear();
+    rows = null;
+  }
+
+  /**
+   * Returns the buffered changes of a row, or {@code null} if the row was not changed.
+   */
+  @Nullable
+  NavigableMap<byte[], Update> getRow(byte[] row) {
+    if (rows == null || !rows.mightContain(row)) {
+      return null;
+    }
+    sortLog();
+    NavigableMap<byte[], Update> result = null;
+    for (Cell[] run : runs) {
+      for (int i = lowerBound(run, row); i < run.length && Bytes.equals(row, run[i].row); i++) {
+        if (result == null) {
+          result = Maps.newTreeMap(Bytes.BYTES_COMPARATOR);
+        }
+        result.put(run[i].column, Updates.mergeUpdates(result.get(run[i].column), run[i].update));
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Returns an iterator over the changed rows from {@code startRow} inclusive to {@code stopRow} exclusive, where
+   * {@code null} means unbounded. The iterator is not affected by changes made after this call.
+   */
+  Iterator<Map.Entry<byte[], NavigableMap<byte[], Update>>> getRows(@Nullable byte[] startRow,
+                                                                     @Nullable final byte[] stopRow) {
+    final Cell[] cells = compact();
+    final int start = startRow == null ? 0 : lowerBound(cells, startRow);
+    return new AbstractIterator<Map.Entry<byte[], NavigableMap<byte[], Update>>>() {
+      private int next = start;
+
+      @Override
+      protected Map.Entry<byte[], NavigableMap<byte[], Update>> computeNext() {
+        if (next >= cells.length || (stopRow != null && Bytes.compareTo(cells[next].row, stopRow) >= 0)) {
+          return endOfData();
+        }
+        byte[] row = cells[next].row;
+        NavigableMap<byte[], Update> columns = Maps.newTreeMap(Bytes.BYTES_COMPARATOR);
+        for (; next < cells.length && Bytes.equals(row, cells[next].row); next++) {
+          columns.put(cells[next].column, cells[next].update);
+        }
+        return Maps.immutableEntry(row, columns);
+      }
+    };
+  }
+
+  /**
+   * Returns all changes as a map sorted by row and column, built from the sorted changes without re-sorting them.
+   */
+  NavigableMap<byte[], NavigableMap<byte[], Update>> toSortedMap() {
+    Cell[] cells = compact();
+    ImmutableSortedMap.Builder<byte[], NavigableMap<byte[], Update>> result =
+      ImmutableSortedMap.orderedBy(Bytes.BYTES_COMPARATOR);
+    int i = 0;
+    while (i < cells.length) {
+      byte[] row = cells[i].row;
+      ImmutableSortedMap.Builder<byte[], Update> columns = ImmutableSortedMap.orderedBy(Bytes.BYTES_COMPARATOR);
+      for (; i < cells.length && Bytes.equals(row, cells[i].row); i++) {
+        columns.put(cells[i].column, cells[i].update);
+      }
+      result.put(row, columns.build());
+    }
+    return result.build();
+  }
+
+  private void createBloomFilter(int capacity) {
+    rows = BloomFilter.create(Funnels.byteArrayFunnel(), capacity, BLOOM_FALSE_POSITIVE_RATE);
+    bloomCapacity = capacity;
+    bloomInsertions = 0;
+  }
+
+  private void addToBloomFilter(List<Cell> cells) {
+    for (Cell cell : cells) {
+      rows.put(cell.row);
+      bloomInsertions++;
+    }
+  }
+
+  /**
+   * Sorts the log into a new run and merges the latest runs while they are of similar size, which keeps the number
+   * of runs logarithmic in the number of changes.
+   */
+  private void sortLog() {
+    if (log.isEmpty()) {
+      return;
+    }
+    Cell[] sorted = log.toArray(new Cell[log.size()]);
+    log.clear();
+    // the sort is stable, hence changes to the same cell stay in the order they were made
+    Arrays.sort(sorted, CELL_COMPARATOR);
+    int size = 0;
+    for (Cell cell : sorted) {
+      if (size > 0 && CELL_COMPARATOR.compare(sorted[size - 1], cell) == 0) {
+        sorted[size - 1] = sorted[size - 1].merge(cell);
+      } else {
+        sorted[size++] = cell;
+      }
+    }
+    runs.add(size == sorted.length ? sorted : Arrays.copyOf(sorted, size));
+
+    while (runs.size() > 1 && runs.get(runs.size() - 1).length * 2 >= runs.get(runs.size() - 2).length) {
+      Cell[] latest = runs.remove(runs.size() - 1);
+      Cell[] previous = runs.remove(runs.size() - 1);
+      runs.add(merge(previous, latest));
+    }
+  }
+
+  /**
+   * Merges all changes into a single sorted run and returns it.
+   */
+  private Cell[] compact() {
+    sortLog();
+    while (runs.size() > 1) {
+      Cell[] latest = runs.remove(runs.size() - 1);
+      Cell[] previous = runs.remove(runs.size() - 1);
+      runs.add(merge(previous, latest));
+    }
+    return runs.isEmpty() ? new Cell[0] : runs.get(0);
+  }
+
+  /**
+   * Merges two sorted runs into a new one. Changes from the latest run are applied on top of the previous run.
+   */
+  private static Cell[] merge(Cell[] previous, Cell[] latest) {
+    Cell[] result = new Cell[previous.length + latest.length];
+    int size = 0;
+    int i = 0;
+    int j = 0;
+    while (i < previous.length && j < latest.length) {
+      int cmp = CELL_COMPARATOR.compare(previous[i], latest[j]);
+      if (cmp < 0) {
+        result[size++] = previous[i++];
+      } else if (cmp > 0) {
+        result[size++] = latest[j++];
+      } else {
+        result[size++] = previous[i++].merge(latest[j++]);
+      }
+    }
+    while (i < previous.length) {
+      result[size++] = previous[i++];
+    }
+    while (j < latest.length) {
+      result[size++] = latest[j++];
+    }
+    return size == result.length ? result : Arrays.copyOf(result, size);
+  }
+
+  /**
+   * Returns the index of the first cell in a sorted run with a row greater than or equal to the given row.
+   */
+  private static int lowerBound(Cell[] run, byte[] row) {
+    int low = 0;
+    int high = run.length;
+    while (low < high) {
+      int mid = (low + high) >>> 1;
+      if (Bytes.compareTo(run[mid].row, row) < 0) {
+        low = mid + 1;
+      } else {
+        high = mid;
+      }
+    }
+    return low;
+  }
+
+  /**
+   * A buffered change of a single column.
+   */
+  private static final class Cell {
+    private final byte[] row;
+    private final byte[] column;
+    private final Update update;
+
+    Cell(byte[] row, byte[] column, Update update) {
+      this.row = row;
+      this.column = column;
+      this.update = update;
+    }
+
+    /**
+     * Returns a cell with the given later change of the same column applied on top of this one.
+     */
+    Cell merge(Cell later) {
+      return new Cell(row, column, Updates.mergeUpdates(update, later.update));
+    }
+  }
+}
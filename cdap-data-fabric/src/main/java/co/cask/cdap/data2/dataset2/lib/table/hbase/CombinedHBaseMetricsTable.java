@@ -126,6 +126,13 @@ public class CombinedHBaseMetricsTable implements MetricsTable {
     v3HBaseTable.increment(updates);
   }
 
+  @Override
+  public void putAndIncrement(SortedMap<byte[], ? extends SortedMap<byte[], Long>> puts,
+                              NavigableMap<byte[], NavigableMap<byte[], Long>> increments) {
+    deleteColumns(puts);
+    v3HBaseTable.putAndIncrement(puts, increments);
+  }
+
   @Override
   public long incrementAndGet(byte[] row, byte[] column, long delta) {
     // This method will not be called from FactTable
@@ -39,6 +39,7 @@ import co.cask.cdap.hbase.wd.DistributedScanner;
 import co.cask.cdap.hbase.wd.RowKeyDistributorByHashPrefix;
 import co.cask.cdap.proto.id.NamespaceId;
 import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.hbase.client.Delete;
 import org.apache.hadoop.hbase.client.Get;
@@ -250,11 +251,49 @@ public class HBaseMetricsTable implements MetricsTable {
 
   @Override
   public void increment(NavigableMap<byte[], NavigableMap<byte[], Long>> updates) {
-    List<Put> puts = Lists.newArrayList();
-    for (Map.Entry<byte[], NavigableMap<byte[], Long>> row : updates.entrySet()) {
+    List<Put> puts = Lists.newArrayListWithCapacity(updates.size());
+    addIncrementalPuts(updates, puts);
+
+    try {
+      hTable.put(puts);
+      hTable.flushCommits();
+    } catch (IOException e) {
+      // figure out whether this is an illegal increment
+      // currently there is not other way to extract that from the HBase exception than string match
+      if (e.getMessage() != null && e.getMessage().contains("isn't 64 bits wide")) {
+        throw new NumberFormatException("Attempted to increment a value that is not convertible to long.");
+      }
+      throw new DataSetException("Increment failed on table " + tableId, e);
+    }
+  }
+
+  @Override
+  public void putAndIncrement(SortedMap<byte[], ? extends SortedMap<byte[], Long>> updates,
+                              NavigableMap<byte[], NavigableMap<byte[], Long>> increments) {
+    // Puts and increments are sent with a single batch. A put and an increment of the same cell in one batch may get
+    // the same timestamp, which makes the resulting value undefined. Hence a column that is in both is only written
+    // by the put, with the increment added to its value, which is the same as calling put() and then increment().
+    List<Put> puts = Lists.newArrayListWithCapacity(updates.size() + increments.size());
+    for (Map.Entry<byte[], ? extends SortedMap<byte[], Long>> row : updates.entrySet()) {
+      NavigableMap<byte[], Long> rowIncrements = increments.get(row.getKey());
       byte[] distributedKey = createDistributedRowKey(row.getKey());
-      Put increment = getIncrementalPut(distributedKey, row.getValue());
-      puts.add(increment);
+      PutBuilder put = tableUtil.buildPut(distributedKey);
+      for (Map.Entry<byte[], Long> column : row.getValue().entrySet()) {
+        Long increment = rowIncrements == null ? null : rowIncrements.get(column.getKey());
+        long value = increment == null ? column.getValue() : column.getValue() + increment;
+        put.add(columnFamily, column.getKey(), Bytes.toBytes(value));
+      }
+      puts.add(put.build());
+    }
+    for (Map.Entry<byte[], NavigableMap<byte[], Long>> row : increments.entrySet()) {
+      SortedMap<byte[], Long> rowPuts = updates.get(row.getKey());
+      Map<byte[], Long> rowIncrements = row.getValue();
+      if (rowPuts != null) {
+        rowIncrements = Maps.filterKeys(rowIncrements, column -> !rowPuts.containsKey(column));
+      }
+      if (!rowIncrements.isEmpty()) {
+        puts.add(getIncrementalPut(createDistributedRowKey(row.getKey()), rowIncrements));
+      }
     }
 
     try {
@@ -266,7 +305,14 @@ public class HBaseMetricsTable implements MetricsTable {
       if (e.getMessage() != null && e.getMessage().contains("isn't 64 bits wide")) {
         throw new NumberFormatException("Attempted to increment a value that is not convertible to long.");
       }
-      throw new DataSetException("Increment failed on table " + tableId, e);
+      throw new DataSetException("PutAndIncrement failed on table " + tableId, e);
+    }
+  }
+
+  private void addIncrementalPuts(NavigableMap<byte[], NavigableMap<byte[], Long>> updates, List<Put> puts) {
+    for (Map.Entry<byte[], NavigableMap<byte[], Long>> row : updates.entrySet()) {
+      byte[] distributedKey = createDistributedRowKey(row.getKey());
+      puts.add(getIncrementalPut(distributedKey, row.getValue()));
     }
   }
 
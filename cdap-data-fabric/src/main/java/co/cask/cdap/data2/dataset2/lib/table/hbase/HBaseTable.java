@@ -30,6 +30,7 @@ import co.cask.cdap.common.utils.ImmutablePair;
 import co.cask.cdap.data2.dataset2.lib.table.BufferingTable;
 import co.cask.cdap.data2.dataset2.lib.table.FuzzyRowFilter;
 import co.cask.cdap.data2.dataset2.lib.table.IncrementValue;
+import co.cask.cdap.data2.dataset2.lib.table.KeyRange;
 import co.cask.cdap.data2.dataset2.lib.table.PutValue;
 import co.cask.cdap.data2.dataset2.lib.table.Update;
 import co.cask.cdap.data2.dataset2.lib.table.inmemory.PrefixedNamespaces;
@@ -437,6 +438,20 @@ public class HBaseTable extends BufferingTable {
   @ReadOnly
   @Override
   protected Scanner scanPersisted(co.cask.cdap.api.dataset.table.Scan scan) throws Exception {
+    return scanPersisted(scan, hTable);
+  }
+
+  @ReadOnly
+  @Override
+  protected Scanner scanPersistedInParallel(co.cask.cdap.api.dataset.table.Scan scan) throws Exception {
+    // HTable is not thread-safe, hence the sub-scans of a parallel scan open their scanners one at a time. Once opened,
+    // a scanner only uses the connection of the table, which is thread-safe
+    synchronized (hTable) {
+      return scanPersisted(scan, hTable);
+    }
+  }
+
+  private Scanner scanPersisted(co.cask.cdap.api.dataset.table.Scan scan, HTable table) throws Exception {
     ScanBuilder hScan = tableUtil.buildScan();
     hScan.addFamily(columnFamily);
 
@@ -475,10 +490,40 @@ public class HBaseTable extends BufferingTable {
     setFilterIfNeeded(hScan, scan.getFilter());
     hScan.setAttribute(TxConstants.TX_OPERATION_ATTRIBUTE_KEY, getEncodedTx());
 
-    ResultScanner resultScanner = wrapResultScanner(hTable.getScanner(hScan.build()));
+    ResultScanner resultScanner = wrapResultScanner(table.getScanner(hScan.build()));
     return new HBaseScanner(resultScanner, columnFamily);
   }
 
+  @Override
+  protected List<KeyRange> getScanRanges(@Nullable byte[] start, @Nullable byte[] stop,
+                                         int parallelism) throws Exception {
+    // encode the tx here, such that the sub-scans don't race to do so
+    getEncodedTx();
+    // align the ranges with the regions, such that each region is served by a single sub-scan
+    List<byte[]> regionStarts = new ArrayList<>();
+    for (byte[] regionStart : hTable.getStartKeys()) {
+      if (regionStart.length == 0 || (start != null && Bytes.compareTo(regionStart, start) <= 0)) {
+        continue;
+      }
+      if (stop != null && Bytes.compareTo(regionStart, stop) >= 0) {
+        break;
+      }
+      regionStarts.add(regionStart);
+    }
+    // group consecutive regions into at most parallelism ranges of about the same number of regions
+    int regions = regionStarts.size() + 1;
+    int numRanges = Math.min(regions, Math.max(1, parallelism));
+    List<KeyRange> ranges = new ArrayList<>(numRanges);
+    byte[] rangeStart = start;
+    for (int i = 1; i < numRanges; i++) {
+      byte[] rangeStop = regionStarts.get(i * regions / numRanges - 1);
+      ranges.add(new KeyRange(rangeStart, rangeStop));
+      rangeStart = rangeStop;
+    }
+    ranges.add(new KeyRange(rangeStart, stop));
+    return ranges;
+  }
+
   private void setFilterIfNeeded(ScanBuilder scan, @Nullable Filter filter) {
     if (filter == null) {
       return;
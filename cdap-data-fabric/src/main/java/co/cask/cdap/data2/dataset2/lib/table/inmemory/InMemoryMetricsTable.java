@@ -57,14 +57,7 @@ public class InMemoryMetricsTable implements MetricsTable {
 
   @Override
   public byte[] get(byte[] row, byte[] column) {
-    NavigableMap<byte[], NavigableMap<Long, byte[]>> rowMap = InMemoryTableService.get(tableName, row, null);
-    if (rowMap != null) {
-      NavigableMap<Long, byte[]> valueMap = rowMap.get(column);
-      if (valueMap != null && !valueMap.isEmpty()) {
-        return valueMap.firstEntry().getValue();
-      }
-    }
-    return null;
+    return InMemoryTableService.get(tableName, row, column, null);
   }
 
   @Override
@@ -73,7 +66,7 @@ public class InMemoryMetricsTable implements MetricsTable {
     for (NavigableMap.Entry<byte[], ? extends SortedMap<byte[], Long>> entry : updates.entrySet()) {
       convertedUpdates.put(entry.getKey(), Maps.transformValues(entry.getValue(), Updates.LONG_TO_UPDATE));
     }
-    InMemoryTableService.merge(tableName, convertedUpdates, System.currentTimeMillis());
+    InMemoryTableService.merge(tableName, convertedUpdates, InMemoryTableService.NON_TX_VERSION);
   }
 
   @Override
@@ -82,7 +75,7 @@ public class InMemoryMetricsTable implements MetricsTable {
     for (NavigableMap.Entry<byte[], ? extends SortedMap<byte[], byte[]>> entry : updates.entrySet()) {
       convertedUpdates.put(entry.getKey(), Maps.transformValues(entry.getValue(), Updates.BYTES_TO_UPDATE));
     }
-    InMemoryTableService.merge(tableName, convertedUpdates, System.currentTimeMillis());
+    InMemoryTableService.merge(tableName, convertedUpdates, InMemoryTableService.NON_TX_VERSION);
   }
 
   @Override
@@ -102,6 +95,13 @@ public class InMemoryMetricsTable implements MetricsTable {
     }
   }
 
+  @Override
+  public void putAndIncrement(SortedMap<byte[], ? extends SortedMap<byte[], Long>> puts,
+                              NavigableMap<byte[], NavigableMap<byte[], Long>> increments) {
+    put(puts);
+    increment(increments);
+  }
+
   @Override
   public long incrementAndGet(byte[] row, byte[] column, long delta) {
     return InMemoryTableService.increment(tableName, row, ImmutableMap.of(column, delta)).get(column);
@@ -117,26 +117,7 @@ public class InMemoryMetricsTable implements MetricsTable {
   @Override
   public Scanner scan(@Nullable byte[] start, @Nullable byte[] stop,
                       @Nullable FuzzyRowFilter filter) {
-
-    // todo: a lot of inefficient copying from one map to another
-    NavigableMap<byte[], NavigableMap<byte[], NavigableMap<Long, byte[]>>> rowRange =
-      InMemoryTableService.getRowRange(tableName, start, stop, null);
-    NavigableMap<byte[], NavigableMap<byte[], byte[]>> rows = getLatest(rowRange);
-
-    return new InMemoryScanner(rows.entrySet().iterator(), filter, null);
-  }
-
-  private NavigableMap<byte[], NavigableMap<byte[], byte[]>> getLatest(
-    NavigableMap<byte[], NavigableMap<byte[], NavigableMap<Long, byte[]>>> versionedRows) {
-    NavigableMap<byte[], NavigableMap<byte[], byte[]>> rows = Maps.newTreeMap(Bytes.BYTES_COMPARATOR);
-    for (Map.Entry<byte[], NavigableMap<byte[], NavigableMap<Long, byte[]>>> versionedRow : versionedRows.entrySet()) {
-      NavigableMap<byte[], byte[]> columns = Maps.newTreeMap(Bytes.BYTES_COMPARATOR);
-      for (Map.Entry<byte[], NavigableMap<Long, byte[]>> versionedColumn : versionedRow.getValue().entrySet()) {
-        columns.put(versionedColumn.getKey(), versionedColumn.getValue().firstEntry().getValue());
-      }
-      rows.put(versionedRow.getKey(), columns);
-    }
-    return rows;
+    return new InMemoryScanner(InMemoryTableService.scan(tableName, start, stop, null), filter, null);
   }
 
   @Override
@@ -18,7 +18,6 @@ package co.cask.cdap.data2.dataset2.lib.table.inmemory;
 
 import co.cask.cdap.api.annotation.ReadOnly;
 import co.cask.cdap.api.annotation.WriteOnly;
-import co.cask.cdap.api.common.Bytes;
 import co.cask.cdap.api.dataset.DataSetException;
 import co.cask.cdap.api.dataset.DatasetContext;
 import co.cask.cdap.api.dataset.DatasetSpecification;
@@ -32,10 +31,7 @@ import co.cask.cdap.data2.dataset2.lib.table.FuzzyRowFilter;
 import co.cask.cdap.data2.dataset2.lib.table.Update;
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.collect.AbstractIterator;
-import com.google.common.collect.Maps;
-import org.apache.tephra.Transaction;
 
-import java.io.IOException;
 import java.util.Iterator;
 import java.util.Map;
 import java.util.NavigableMap;
@@ -122,12 +118,7 @@ public class InMemoryTable extends BufferingTable {
   @Override
   protected NavigableMap<byte[], byte[]> getPersisted(byte[] row, byte[] startColumn, byte[] stopColumn, int limit)
     throws Exception {
-
-    NavigableMap<byte[], byte[]> rowMap = getInternal(row, null);
-    if (rowMap == null) {
-      return EMPTY_ROW_MAP;
-    }
-    return getRange(rowMap, startColumn, stopColumn, limit);
+    return head(getInternal(row, startColumn, stopColumn), limit);
   }
 
   @Override
@@ -138,129 +129,55 @@ public class InMemoryTable extends BufferingTable {
   @ReadOnly
   @Override
   protected Scanner scanPersisted(Scan scan) {
-    // todo: a lot of inefficient copying from one map to another
-    byte[] startRow = scan.getStartRow();
-    byte[] stopRow = scan.getStopRow();
-    NavigableMap<byte[], NavigableMap<byte[], NavigableMap<Long, byte[]>>> rowRange =
-      InMemoryTableService.getRowRange(getTableName(), startRow, stopRow,
-          tx == null ? null : tx);
-    NavigableMap<byte[], NavigableMap<byte[], byte[]>> visibleRowRange = getLatestNotExcludedRows(rowRange, tx);
-    NavigableMap<byte[], NavigableMap<byte[], byte[]>> rows = unwrapDeletesForRows(visibleRowRange);
-
-    rows = applyFilter(rows, scan.getFilter());
-
-    return new InMemoryScanner(wrapIterator(rows.entrySet().iterator()));
-  }
-
-  private NavigableMap<byte[], NavigableMap<byte[], byte[]>> applyFilter(
-                                                    NavigableMap<byte[], NavigableMap<byte[], byte[]>> map,
-                                                    @Nullable Filter filter) {
-
-    if (filter == null) {
-      return map;
-    }
-
+    Filter filter = scan.getFilter();
     // todo: currently we support only FuzzyRowFilter as an experimental feature
-    if (filter instanceof FuzzyRowFilter) {
-      NavigableMap<byte[], NavigableMap<byte[], byte[]>> result = Maps.newTreeMap(Bytes.BYTES_COMPARATOR);
-      for (Map.Entry<byte[], NavigableMap<byte[], byte[]>> entry : map.entrySet()) {
-        if (FuzzyRowFilter.ReturnCode.INCLUDE == ((FuzzyRowFilter) filter).filterRow(entry.getKey())) {
-          result.put(entry.getKey(), entry.getValue());
-        }
-      }
-      return result;
-    } else {
+    if (filter != null && !(filter instanceof FuzzyRowFilter)) {
       throw new DataSetException("Unknown filter type: " + filter);
     }
+    Iterator<Map.Entry<byte[], NavigableMap<byte[], byte[]>>> rows =
+      InMemoryTableService.scan(getTableName(), scan.getStartRow(), scan.getStopRow(), tx);
+    return new InMemoryScanner(wrapIterator(removeDeletes(rows)), (FuzzyRowFilter) filter, null);
   }
 
   @ReadOnly
-  private NavigableMap<byte[], byte[]> getInternal(byte[] row, @Nullable byte[][] columns) throws IOException {
-    // no tx logic needed
-    if (tx == null) {
-      NavigableMap<byte[], NavigableMap<Long, byte[]>> rowMap =
-        InMemoryTableService.get(getTableName(), row, tx);
-
-      return unwrapDeletes(filterByColumns(getLatest(rowMap), columns));
-    }
-
-    NavigableMap<byte[], NavigableMap<Long, byte[]>> rowMap =
-      InMemoryTableService.get(getTableName(), row, tx);
-
-    if (rowMap == null) {
-      return EMPTY_ROW_MAP;
-    }
-
-    // if exclusion list is empty, do simple "read last" value call todo: explain
-    if (!tx.hasExcludes()) {
-      return unwrapDeletes(filterByColumns(getLatest(rowMap), columns));
-    }
-
-    NavigableMap<byte[], byte[]> result = filterByColumns(getLatestNotExcluded(rowMap, tx), columns);
-    return unwrapDeletes(result);
+  private NavigableMap<byte[], byte[]> getInternal(byte[] row, @Nullable byte[][] columns) {
+    return removeDeletes(InMemoryTableService.getLatest(getTableName(), row, columns, tx));
   }
 
-  private NavigableMap<byte[], byte[]> filterByColumns(NavigableMap<byte[], byte[]> rowMap,
-                                                       @Nullable byte[][] columns) {
-    if (columns == null) {
-      return rowMap;
-    }
-    NavigableMap<byte[], byte[]> result = Maps.newTreeMap(Bytes.BYTES_COMPARATOR);
-    for (byte[] column : columns) {
-      byte[] val = rowMap.get(column);
-      if (val != null) {
-        result.put(column, val);
-      }
-    }
-    return result;
-
-  }
-
-  private NavigableMap<byte[], byte[]> getLatest(NavigableMap<byte[], NavigableMap<Long, byte[]>> rowMap) {
-    if (rowMap == null) {
-      return EMPTY_ROW_MAP;
-    }
-
-    NavigableMap<byte[], byte[]> result = Maps.newTreeMap(Bytes.BYTES_COMPARATOR);
-    for (Map.Entry<byte[], NavigableMap<Long, byte[]>> column : rowMap.entrySet()) {
-      // latest go first
-      result.put(column.getKey(), column.getValue().firstEntry().getValue());
-    }
-    return result;
+  @ReadOnly
+  private NavigableMap<byte[], byte[]> getInternal(byte[] row, @Nullable byte[] startColumn,
+                                                   @Nullable byte[] stopColumn) {
+    return removeDeletes(InMemoryTableService.getLatest(getTableName(), row, startColumn, stopColumn, tx));
   }
 
-  protected static NavigableMap<byte[], byte[]> getLatestNotExcluded(
-    NavigableMap<byte[], NavigableMap<Long, byte[]>> rowMap, Transaction tx) {
-
-    // todo: for some subclasses it is ok to do changes in place...
-    NavigableMap<byte[], byte[]> result = Maps.newTreeMap(Bytes.BYTES_COMPARATOR);
-    for (Map.Entry<byte[], NavigableMap<Long, byte[]>> column : rowMap.entrySet()) {
-      // NOTE: versions map already sorted, first comes latest version
-      // todo: not cool to rely on external implementation specifics
-      for (Map.Entry<Long, byte[]> versionAndValue : column.getValue().entrySet()) {
-        // NOTE: we know that excluded versions are ordered
-        if (tx == null || tx.isVisible(versionAndValue.getKey())) {
-          result.put(column.getKey(), versionAndValue.getValue());
-          break;
-        }
+  /**
+   * Removes the deleted columns from a row returned by {@link InMemoryTableService}, in place.
+   */
+  private static NavigableMap<byte[], byte[]> removeDeletes(NavigableMap<byte[], byte[]> rowMap) {
+    Iterator<byte[]> values = rowMap.values().iterator();
+    while (values.hasNext()) {
+      if (unwrapDeleteIfNeeded(values.next()) == null) {
+        values.remove();
       }
     }
-
-    return result;
+    return rowMap;
   }
 
-  protected static NavigableMap<byte[], NavigableMap<byte[], byte[]>> getLatestNotExcludedRows(
-    NavigableMap<byte[], NavigableMap<byte[], NavigableMap<Long, byte[]>>> rows, Transaction tx) {
-    NavigableMap<byte[], NavigableMap<byte[], byte[]>> result = Maps.newTreeMap(Bytes.BYTES_COMPARATOR);
+  private static Iterator<Map.Entry<byte[], NavigableMap<byte[], byte[]>>> removeDeletes(
+    final Iterator<Map.Entry<byte[], NavigableMap<byte[], byte[]>>> rows) {
 
-    for (Map.Entry<byte[], NavigableMap<byte[], NavigableMap<Long, byte[]>>> rowMap : rows.entrySet()) {
-      NavigableMap<byte[], byte[]> visibleRowMap = getLatestNotExcluded(rowMap.getValue(), tx);
-      if (visibleRowMap.size() > 0) {
-        result.put(rowMap.getKey(), visibleRowMap);
+    return new AbstractIterator<Map.Entry<byte[], NavigableMap<byte[], byte[]>>>() {
+      @Override
+      protected Map.Entry<byte[], NavigableMap<byte[], byte[]>> computeNext() {
+        while (rows.hasNext()) {
+          Map.Entry<byte[], NavigableMap<byte[], byte[]>> row = rows.next();
+          if (!removeDeletes(row.getValue()).isEmpty()) {
+            return row;
+          }
+        }
+        return endOfData();
       }
-    }
-
-    return result;
+    };
   }
 
   // Following methods assist the Dataset authorization of the scanner
@@ -22,203 +22,148 @@ import co.cask.cdap.data2.dataset2.lib.table.PutValue;
 import co.cask.cdap.data2.dataset2.lib.table.Update;
 import co.cask.cdap.data2.dataset2.lib.table.Updates;
 import com.google.common.base.Preconditions;
-import com.google.common.base.Predicate;
+import com.google.common.collect.AbstractIterator;
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Iterators;
 import com.google.common.collect.Maps;
 import com.google.common.collect.Ordering;
+import com.google.common.collect.PeekingIterator;
 import com.google.common.primitives.Longs;
 import org.apache.tephra.Transaction;
 
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Comparator;
+import java.util.Iterator;
 import java.util.Map;
 import java.util.NavigableMap;
 import java.util.SortedMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.ConcurrentNavigableMap;
 import java.util.concurrent.ConcurrentSkipListMap;
 import javax.annotation.Nullable;
 
 /**
  * Holds all in-memory tables for {@link InMemoryTable}.
+ *
+ * Each table is a single {@link ConcurrentSkipListMap} of cells keyed by (row, column, version), with the versions
+ * of a column ordered latest first. Writes are atomic per cell and never block, and reads pick the latest version
+ * of each column that is visible to the given transaction, which gives them a consistent snapshot without locking
+ * the table or copying it. Reads without a transaction see the latest version of each column.
  */
-// todo: use locks instead of synchronize
-// todo: consider using SortedMap instead of NavigableMap in APIs
 public class InMemoryTableService {
-  private static Map<String, ConcurrentNavigableMap<byte[], NavigableMap<byte[], NavigableMap<Long, Update>>>> tables =
-    Maps.newHashMap();
 
-  public static synchronized boolean exists(String tableName) {
+  /**
+   * Version used for the non-transactional writes of {@link InMemoryMetricsTable}. Keeping a single version per cell
+   * allows {@link #increment(String, byte[], Map)} and {@link #swap(String, byte[], byte[], byte[], byte[])} to be
+   * applied atomically to that cell.
+   */
+  static final long NON_TX_VERSION = 0L;
+
+  private static final ConcurrentMap<String, ConcurrentNavigableMap<Cell, Update>> tables = new ConcurrentHashMap<>();
+
+  public static boolean exists(String tableName) {
     return tables.containsKey(tableName);
   }
 
-  public static synchronized void create(String tableName) {
-    if (!tables.containsKey(tableName)) {
-      tables.put(tableName, new ConcurrentSkipListMap<byte[],
-        NavigableMap<byte[], NavigableMap<Long, Update>>>(Bytes.BYTES_COMPARATOR));
-    }
+  public static void create(String tableName) {
+    tables.putIfAbsent(tableName, new ConcurrentSkipListMap<Cell, Update>());
   }
 
-  public static synchronized void truncate(String tableName) {
+  public static void truncate(String tableName) {
     tables.get(tableName).clear();
   }
 
-  public static synchronized void drop(String tableName) {
+  public static void drop(String tableName) {
     tables.remove(tableName);
   }
 
-  public static synchronized void reset() {
+  public static void reset() {
     tables.clear();
   }
 
   // no nulls
-  public static synchronized void merge(String tableName,
-                                        SortedMap<byte[], ? extends SortedMap<byte[], ? extends Update>> changes,
-                                        long version) {
-    // todo: handle nulls
-    ConcurrentNavigableMap<byte[], NavigableMap<byte[], NavigableMap<Long, Update>>> table = tables.get(tableName);
-    SortedMap<byte[], ? extends SortedMap<byte[], Update>> changesCopy = deepCopyUpdates(changes);
-    for (Map.Entry<byte[], ? extends SortedMap<byte[], Update>> change : changesCopy.entrySet()) {
-      merge(table, change.getKey(), change.getValue(), version);
-    }
-  }
-
-  private static void merge(ConcurrentNavigableMap<byte[], NavigableMap<byte[], NavigableMap<Long, Update>>> table,
-                            byte[] row, Map<byte[], Update> changes, long version) {
-    // get the correct row from the table, create it if it doesn't exist
-    NavigableMap<byte[], NavigableMap<Long, Update>> rowMap = table.get(row);
-    if (rowMap == null) {
-      rowMap = Maps.newTreeMap(Bytes.BYTES_COMPARATOR);
-      table.put(row, rowMap);
-    }
-    // now merge the changes into the row, one by one
-    for (Map.Entry<byte[], Update> keyVal : changes.entrySet()) {
-      // create the column in the row if it does not exist
-      NavigableMap<Long, Update> colMap = rowMap.get(keyVal.getKey());
-      if (colMap == null) {
-        colMap = Maps.newTreeMap();
-        rowMap.put(keyVal.getKey(), colMap);
+  public static void merge(String tableName, SortedMap<byte[], ? extends SortedMap<byte[], ? extends Update>> changes,
+                           long version) {
+    ConcurrentNavigableMap<Cell, Update> table = tables.get(tableName);
+    for (Map.Entry<byte[], ? extends SortedMap<byte[], ? extends Update>> rowChanges : changes.entrySet()) {
+      // copy the keys and values, the caller may change them after this call
+      byte[] row = copy(rowChanges.getKey());
+      for (Map.Entry<byte[], ? extends Update> change : rowChanges.getValue().entrySet()) {
+        Update update = change.getValue().deepCopy();
+        table.merge(new Cell(row, copy(change.getKey()), version), update, Updates::mergeUpdates);
       }
-      // put into the column with given version
-      Update merged = Updates.mergeUpdates(colMap.get(version), keyVal.getValue());
-      colMap.put(version, merged);
     }
   }
 
   // todo: remove it from here: only used by "system" metrics table, which should be revised
   @Deprecated
-  public static synchronized Map<byte[], Long> increment(String tableName, byte[] row, Map<byte[], Long> increments) {
+  public static Map<byte[], Long> increment(String tableName, byte[] row, Map<byte[], Long> increments) {
     Map<byte[], Long> resultMap = Maps.newTreeMap(Bytes.BYTES_COMPARATOR);
-    ConcurrentNavigableMap<byte[], NavigableMap<byte[], NavigableMap<Long, Update>>> table = tables.get(tableName);
-    // get the correct row from the table, create it if it doesn't exist
-    NavigableMap<byte[], NavigableMap<Long, Update>> rowMap = table.get(row);
-    if (rowMap == null) {
-      rowMap = Maps.newTreeMap(Bytes.BYTES_COMPARATOR);
-      table.put(row, rowMap);
-    }
-    // now increment each column, one by one
-    long versionForWrite = System.currentTimeMillis();
+    ConcurrentNavigableMap<Cell, Update> table = tables.get(tableName);
+    byte[] rowCopy = copy(row);
     for (Map.Entry<byte[], Long> inc : increments.entrySet()) {
-      IncrementValue increment = new IncrementValue(inc.getValue());
-      // create the column in the row if it does not exist
-      NavigableMap<Long, Update> colMap = rowMap.get(inc.getKey());
-      Update last = null;
-      if (colMap == null) {
-        colMap = Maps.newTreeMap();
-        rowMap.put(inc.getKey(), colMap);
-      } else {
-        last = colMap.lastEntry().getValue();
-      }
-      Update merged = Updates.mergeUpdates(last, increment);
-      // put into the column with given version
-      long newValue = Bytes.toLong(merged.getBytes());
-      resultMap.put(inc.getKey(), newValue);
-      colMap.put(versionForWrite, merged);
+      Update merged = table.merge(new Cell(rowCopy, copy(inc.getKey()), NON_TX_VERSION),
+                                  new IncrementValue(inc.getValue()), Updates::mergeUpdates);
+      resultMap.put(inc.getKey(), Bytes.toLong(merged.getBytes()));
     }
     return resultMap;
   }
 
-  public static synchronized boolean swap(String tableName, byte[] row, byte[] column,
-                                          byte[] oldValue, byte[] newValue) {
-    ConcurrentNavigableMap<byte[], NavigableMap<byte[], NavigableMap<Long, Update>>> table = tables.get(tableName);
-    // get the correct row from the table, create it if it doesn't exist
-    NavigableMap<byte[], NavigableMap<Long, Update>> rowMap = table.get(row);
-    Update existingValue = null;
-    if (rowMap != null) {
-      NavigableMap<Long, Update> columnMap = rowMap.get(column);
-      if (columnMap != null) {
-        existingValue = columnMap.lastEntry().getValue();
+  public static boolean swap(String tableName, byte[] row, byte[] column, byte[] oldValue, byte[] newValue) {
+    ConcurrentNavigableMap<Cell, Update> table = tables.get(tableName);
+    Cell cell = new Cell(copy(row), copy(column), NON_TX_VERSION);
+    Update newPut = newValue == null ? null : new PutValue(copy(newValue));
+    // retry until the value is either replaced or found to not match, in case it changed concurrently
+    while (true) {
+      Update existing = table.get(cell);
+      // verify existing value matches
+      if (oldValue == null && existing != null) {
+        return false;
       }
-    }
-    // verify existing value matches
-    if (oldValue == null && existingValue != null) {
-      return false;
-    }
-    if (oldValue != null && (existingValue == null || !Bytes.equals(oldValue, existingValue.getBytes()))) {
-      return false;
-    }
-    // write new value
-    if (newValue == null) {
-      if (rowMap != null) {
-        rowMap.remove(column);
-      }
-    } else {
-      if (rowMap == null) {
-        rowMap = Maps.newTreeMap(Bytes.BYTES_COMPARATOR);
-        table.put(row, rowMap);
+      if (oldValue != null && (existing == null || !Bytes.equals(oldValue, existing.getBytes()))) {
+        return false;
       }
-      NavigableMap<Long, Update> columnMap = rowMap.get(column);
-      if (columnMap == null) {
-        columnMap = Maps.newTreeMap();
-        rowMap.put(column, columnMap);
+      // write new value
+      if (newPut == null) {
+        if (existing == null || table.remove(cell, existing)) {
+          return true;
+        }
+      } else if (existing == null ? table.putIfAbsent(cell, newPut) == null : table.replace(cell, existing, newPut)) {
+        return true;
       }
-      PutValue newPut = new PutValue(newValue);
-      columnMap.put(System.currentTimeMillis(), newPut);
     }
-    return true;
   }
 
-  public static synchronized void undo(String tableName,
-                                       NavigableMap<byte[], NavigableMap<byte[], Update>> changes,
-                                       long version) {
-    // todo: handle nulls
-    ConcurrentNavigableMap<byte[], NavigableMap<byte[], NavigableMap<Long, Update>>> table = tables.get(tableName);
+  public static void undo(String tableName, NavigableMap<byte[], NavigableMap<byte[], Update>> changes,
+                          long version) {
+    ConcurrentNavigableMap<Cell, Update> table = tables.get(tableName);
     for (Map.Entry<byte[], NavigableMap<byte[], Update>> change : changes.entrySet()) {
-      byte[] row = change.getKey();
-      NavigableMap<byte[], NavigableMap<Long, Update>> rowMap = table.get(row);
-      if (rowMap != null) {
-        for (byte[] column : change.getValue().keySet()) {
-          NavigableMap<Long, Update> values = rowMap.get(column);
-          values.remove(version);
-        }
+      for (byte[] column : change.getValue().keySet()) {
+        table.remove(new Cell(change.getKey(), column, version));
       }
     }
   }
 
-  public static synchronized void delete(String tableName, Iterable<byte[]> rows) {
-    ConcurrentNavigableMap<byte[], NavigableMap<byte[], NavigableMap<Long, Update>>> table = tables.get(tableName);
+  public static void delete(String tableName, Iterable<byte[]> rows) {
+    ConcurrentNavigableMap<Cell, Update> table = tables.get(tableName);
     for (byte[] row : rows) {
-      table.remove(row);
+      table.subMap(Cell.first(row), true, Cell.last(row), true).clear();
     }
   }
 
-  public static synchronized void deleteColumns(String tableName, byte[] row, byte[] column) {
-    ConcurrentNavigableMap<byte[], NavigableMap<byte[], NavigableMap<Long, Update>>> table = tables.get(tableName);
-    NavigableMap<byte[], NavigableMap<Long, Update>> columnValues = table.get(row);
-    columnValues.remove(column);
+  public static void deleteColumns(String tableName, byte[] row, byte[] column) {
+    ConcurrentNavigableMap<Cell, Update> table = tables.get(tableName);
+    table.subMap(new Cell(row, column, Long.MAX_VALUE), true, new Cell(row, column, Long.MIN_VALUE), true).clear();
   }
 
-  public static synchronized void delete(String tableName, byte[] rowPrefix) {
-    ConcurrentNavigableMap<byte[], NavigableMap<byte[], NavigableMap<Long, Update>>> table = tables.get(tableName);
+  public static void delete(String tableName, byte[] rowPrefix) {
+    ConcurrentNavigableMap<Cell, Update> table = tables.get(tableName);
     if (rowPrefix.length == 0) {
       table.clear();
     } else {
-      byte[] rowAfter = rowAfterPrefix(rowPrefix);
-      if (rowAfter == null) {
-        table.tailMap(rowPrefix).clear();
-      } else {
-        table.subMap(rowPrefix, rowAfter).clear();
-      }
+      getRows(table, rowPrefix, rowAfterPrefix(rowPrefix)).clear();
     }
   }
 
@@ -239,116 +184,189 @@ public class InMemoryTableService {
     return null;
   }
 
-  public static synchronized NavigableMap<byte[], NavigableMap<Long, byte[]>> get(String tableName,
-                                                                                  byte[] row,
-                                                                                  @Nullable Transaction tx) {
-    // todo: handle nulls
-    ConcurrentNavigableMap<byte[], NavigableMap<byte[], NavigableMap<Long, Update>>> table = tables.get(tableName);
-    Preconditions.checkArgument(table != null, "table not found: " + tableName);
-    NavigableMap<byte[], NavigableMap<Long, Update>> rowMap = table.get(row);
-    return deepCopy(Updates.rowToBytes(getVisible(rowMap, tx)));
+  /**
+   * Returns the latest visible value of a column, or {@code null} if there is none. A deleted column has a latest
+   * visible value of {@code null} as well.
+   */
+  @Nullable
+  public static byte[] get(String tableName, byte[] row, byte[] column, @Nullable Transaction tx) {
+    ConcurrentNavigableMap<Cell, Update> table = getTable(tableName);
+    NavigableMap<Cell, Update> versions =
+      table.subMap(new Cell(row, column, Long.MAX_VALUE), true, new Cell(row, column, Long.MIN_VALUE), true);
+    for (Map.Entry<Cell, Update> cell : versions.entrySet()) {
+      if (isVisible(cell.getKey(), tx)) {
+        return copy(cell.getValue().getBytes());
+      }
+    }
+    return null;
   }
 
-  public static synchronized NavigableMap<byte[], NavigableMap<byte[], NavigableMap<Long, byte[]>>>
-                             getRowRange(String tableName,
-                                         byte[] startRow,
-                                         byte[] stopRow,
-                                         @Nullable Transaction tx) {
-    // todo: handle nulls
-    ConcurrentNavigableMap<byte[], NavigableMap<byte[], NavigableMap<Long, Update>>> tableData = tables.get(tableName);
-    NavigableMap<byte[], NavigableMap<byte[], NavigableMap<Long, Update>>> rows;
-    if (startRow == null && stopRow == null) {
-      rows = tableData;
-    } else if (startRow == null) {
-      rows = tableData.headMap(stopRow, false);
-    } else if (stopRow == null) {
-      rows = tableData.tailMap(startRow, true);
-    } else {
-      rows = tableData.subMap(startRow, true, stopRow, false);
+  /**
+   * Returns the latest visible value of the given columns of a row, or of all its columns if {@code columns} is
+   * {@code null}. Given columns without a value are left out, whereas all deleted columns of a row are included
+   * with a {@code null} value. The returned map is owned by the caller.
+   */
+  public static NavigableMap<byte[], byte[]> getLatest(String tableName, byte[] row, @Nullable byte[][] columns,
+                                                       @Nullable Transaction tx) {
+    if (columns == null) {
+      return getLatest(tableName, row, null, null, tx);
     }
-
-    NavigableMap<byte[], NavigableMap<byte[], NavigableMap<Long, byte[]>>> result =
-      Maps.newTreeMap(Bytes.BYTES_COMPARATOR);
-    for (Map.Entry<byte[], NavigableMap<byte[], NavigableMap<Long, Update>>> rowMap : rows.entrySet()) {
-      NavigableMap<byte[], NavigableMap<Long, Update>> columns =
-        tx == null ? rowMap.getValue() : getVisible(rowMap.getValue(), tx);
-      result.put(copy(rowMap.getKey()), deepCopy(Updates.rowToBytes(columns)));
+    NavigableMap<byte[], byte[]> result = Maps.newTreeMap(Bytes.BYTES_COMPARATOR);
+    for (byte[] column : columns) {
+      byte[] value = get(tableName, row, column, tx);
+      if (value != null) {
+        result.put(column, value);
+      }
     }
-
     return result;
   }
 
-  public static synchronized Collection<String> list() {
-    return ImmutableList.copyOf(tables.keySet());
+  /**
+   * Returns the latest visible value of the columns of a row in the range from {@code startColumn} inclusive to
+   * {@code stopColumn} exclusive, where {@code null} means unbounded. Deleted columns are included with a
+   * {@code null} value. The returned map is owned by the caller.
+   */
+  public static NavigableMap<byte[], byte[]> getLatest(String tableName, byte[] row, @Nullable byte[] startColumn,
+                                                       @Nullable byte[] stopColumn, @Nullable Transaction tx) {
+    ConcurrentNavigableMap<Cell, Update> table = getTable(tableName);
+    Cell start = startColumn == null ? Cell.first(row) : new Cell(row, startColumn, Long.MAX_VALUE);
+    Cell stop = stopColumn == null ? Cell.last(row) : new Cell(row, stopColumn, Long.MAX_VALUE);
+    NavigableMap<byte[], byte[]> result = Maps.newTreeMap(Bytes.BYTES_COMPARATOR);
+    for (Map.Entry<Cell, Update> cell : table.subMap(start, true, stop, stopColumn == null).entrySet()) {
+      addIfLatestVisible(result, cell, tx);
+    }
+    return result;
   }
 
-  private static NavigableMap<byte[], NavigableMap<Long, Update>> getVisible(
-    NavigableMap<byte[], NavigableMap<Long, Update>> rowMap, final Transaction tx) {
+  /**
+   * Returns an iterator over the rows from {@code startRow} inclusive to {@code stopRow} exclusive, where
+   * {@code null} means unbounded, with the latest visible value of each column. Deleted columns are included with a
+   * {@code null} value, and rows without any visible column are skipped. The rows are read lazily from the table,
+   * hence a scan without a transaction may or may not see concurrent writes.
+   */
+  public static Iterator<Map.Entry<byte[], NavigableMap<byte[], byte[]>>> scan(String tableName,
+                                                                              @Nullable byte[] startRow,
+                                                                              @Nullable byte[] stopRow,
+                                                                              @Nullable final Transaction tx) {
+    ConcurrentNavigableMap<Cell, Update> table = getTable(tableName);
+    final PeekingIterator<Map.Entry<Cell, Update>> cells =
+      Iterators.peekingIterator(getRows(table, startRow, stopRow).entrySet().iterator());
+
+    return new AbstractIterator<Map.Entry<byte[], NavigableMap<byte[], byte[]>>>() {
+      @Override
+      protected Map.Entry<byte[], NavigableMap<byte[], byte[]>> computeNext() {
+        while (cells.hasNext()) {
+          byte[] row = cells.peek().getKey().row;
+          NavigableMap<byte[], byte[]> columns = Maps.newTreeMap(Bytes.BYTES_COMPARATOR);
+          while (cells.hasNext() && Bytes.equals(row, cells.peek().getKey().row)) {
+            addIfLatestVisible(columns, cells.next(), tx);
+          }
+          if (!columns.isEmpty()) {
+            return Maps.immutableEntry(copy(row), columns);
+          }
+        }
+        return endOfData();
+      }
+    };
+  }
 
-    if (rowMap == null) {
+  /**
+   * Returns all visible versions of all columns of a row, or {@code null} if the row does not exist.
+   */
+  @Nullable
+  public static NavigableMap<byte[], NavigableMap<Long, byte[]>> get(String tableName,
+                                                                     byte[] row,
+                                                                     @Nullable Transaction tx) {
+    ConcurrentNavigableMap<Cell, Update> table = getTable(tableName);
+    NavigableMap<Cell, Update> cells = table.subMap(Cell.first(row), true, Cell.last(row), true);
+    if (cells.isEmpty()) {
       return null;
     }
-    NavigableMap<byte[], NavigableMap<Long, Update>> result = Maps.newTreeMap(Bytes.BYTES_COMPARATOR);
-    for (Map.Entry<byte[], NavigableMap<Long, Update>> column : rowMap.entrySet()) {
-      SortedMap<Long, Update> visbleValues = column.getValue();
-      if (tx != null) {
-        visbleValues = Maps.filterKeys(visbleValues, new Predicate<Long>() {
-          @Override
-          public boolean apply(Long version) {
-            return tx.isVisible(version);
-          }
-        });
+    NavigableMap<byte[], NavigableMap<Long, byte[]>> result = Maps.newTreeMap(Bytes.BYTES_COMPARATOR);
+    for (Map.Entry<Cell, Update> cell : cells.entrySet()) {
+      addIfVisible(result, cell, tx);
+    }
+    return result;
+  }
+
+  /**
+   * Returns all visible versions of all columns of the rows from {@code startRow} inclusive to {@code stopRow}
+   * exclusive, where {@code null} means unbounded.
+   */
+  public static NavigableMap<byte[], NavigableMap<byte[], NavigableMap<Long, byte[]>>>
+                getRowRange(String tableName,
+                            @Nullable byte[] startRow,
+                            @Nullable byte[] stopRow,
+                            @Nullable Transaction tx) {
+    ConcurrentNavigableMap<Cell, Update> table = getTable(tableName);
+    NavigableMap<byte[], NavigableMap<byte[], NavigableMap<Long, byte[]>>> result =
+      Maps.newTreeMap(Bytes.BYTES_COMPARATOR);
+    NavigableMap<byte[], NavigableMap<Long, byte[]>> columns = null;
+    for (Map.Entry<Cell, Update> cell : getRows(table, startRow, stopRow).entrySet()) {
+      if (!isVisible(cell.getKey(), tx)) {
+        continue;
       }
-      if (visbleValues.size() > 0) {
-        NavigableMap<Long, Update> colMap = createVersionedValuesMap(visbleValues);
-        result.put(column.getKey(), colMap);
+      if (columns == null || !Bytes.equals(result.lastKey(), cell.getKey().row)) {
+        columns = Maps.newTreeMap(Bytes.BYTES_COMPARATOR);
+        result.put(copy(cell.getKey().row), columns);
       }
+      addIfVisible(columns, cell, tx);
     }
     return result;
   }
 
-  private static NavigableMap<Long, Update> createVersionedValuesMap(SortedMap<Long, Update> copy) {
-    NavigableMap<Long, Update> map = Maps.newTreeMap(VERSIONED_VALUE_MAP_COMPARATOR);
-    map.putAll(copy);
-    return map;
+  public static Collection<String> list() {
+    return ImmutableList.copyOf(tables.keySet());
   }
 
-  private static SortedMap<byte[], SortedMap<byte[], Update>> deepCopyUpdates(
-    SortedMap<byte[], ? extends SortedMap<byte[], ? extends Update>> src) {
-
-    SortedMap<byte[], SortedMap<byte[], Update>> copy = Maps.newTreeMap(Bytes.BYTES_COMPARATOR);
-    for (Map.Entry<byte[], ? extends SortedMap<byte[], ? extends Update>> entry : src.entrySet()) {
-      byte[] key = copy(entry.getKey());
-      SortedMap<byte[], Update> columnUpdates = Maps.newTreeMap(Bytes.BYTES_COMPARATOR);
-      copy.put(key, columnUpdates);
-      for (Map.Entry<byte[], ? extends Update> updateEntry : entry.getValue().entrySet()) {
-        byte[] col = copy(updateEntry.getKey());
-        columnUpdates.put(col, updateEntry.getValue().deepCopy());
-      }
-    }
+  private static ConcurrentNavigableMap<Cell, Update> getTable(String tableName) {
+    ConcurrentNavigableMap<Cell, Update> table = tables.get(tableName);
+    Preconditions.checkArgument(table != null, "table not found: " + tableName);
+    return table;
+  }
 
-    return copy;
+  private static NavigableMap<Cell, Update> getRows(ConcurrentNavigableMap<Cell, Update> table,
+                                                    @Nullable byte[] startRow, @Nullable byte[] stopRow) {
+    if (startRow == null && stopRow == null) {
+      return table;
+    } else if (startRow == null) {
+      return table.headMap(Cell.first(stopRow), false);
+    } else if (stopRow == null) {
+      return table.tailMap(Cell.first(startRow), true);
+    } else {
+      return table.subMap(Cell.first(startRow), true, Cell.first(stopRow), false);
+    }
   }
 
-  @Nullable
-  private static NavigableMap<byte[], NavigableMap<Long, byte[]>> deepCopy(
-    @Nullable NavigableMap<byte[], NavigableMap<Long, byte[]>> src) {
+  private static boolean isVisible(Cell cell, @Nullable Transaction tx) {
+    return tx == null || tx.isVisible(cell.version);
+  }
 
-    if (src == null) {
-      return null;
+  /**
+   * Adds the value of a cell to a row, if it is visible and no later version of the same column was added before.
+   * Relies on the cells of a row being passed in order.
+   */
+  private static void addIfLatestVisible(NavigableMap<byte[], byte[]> columns, Map.Entry<Cell, Update> cell,
+                                         @Nullable Transaction tx) {
+    byte[] column = cell.getKey().column;
+    if (!isVisible(cell.getKey(), tx) || (!columns.isEmpty() && Bytes.equals(columns.lastKey(), column))) {
+      return;
     }
+    columns.put(copy(column), copy(cell.getValue().getBytes()));
+  }
 
-    NavigableMap<byte[], NavigableMap<Long, byte[]>> copy = Maps.newTreeMap(Bytes.BYTES_COMPARATOR);
-    for (Map.Entry<byte[], NavigableMap<Long, byte[]>> entry : src.entrySet()) {
-      byte[] key = copy(entry.getKey());
-      NavigableMap<Long, byte[]> columnValues = Maps.newTreeMap(VERSIONED_VALUE_MAP_COMPARATOR);
-      copy.put(key, columnValues);
-      for (Map.Entry<Long, byte[]> valueEntry : entry.getValue().entrySet()) {
-        columnValues.put(valueEntry.getKey(), copy(valueEntry.getValue()));
-      }
+  private static void addIfVisible(NavigableMap<byte[], NavigableMap<Long, byte[]>> columns,
+                                   Map.Entry<Cell, Update> cell, @Nullable Transaction tx) {
+    if (!isVisible(cell.getKey(), tx)) {
+      return;
     }
-
-    return copy;
+    byte[] column = cell.getKey().column;
+    NavigableMap<Long, byte[]> versions = columns.isEmpty() ? null : columns.get(columns.lastKey());
+    if (versions == null || !Bytes.equals(columns.lastKey(), column)) {
+      versions = Maps.newTreeMap(VERSIONED_VALUE_MAP_COMPARATOR);
+      columns.put(copy(column), versions);
+    }
+    versions.put(cell.getKey().version, copy(cell.getValue().getBytes()));
   }
 
   @Nullable
@@ -365,4 +383,55 @@ public class InMemoryTableService {
       return Longs.compare(right, left);
     }
   };
+
+  /**
+   * Key of a value in a table, ordered by row, then column, then version with the latest version first.
+   * A {@code null} column is used as the upper bound of a row and sorts after all columns of the row.
+   */
+  private static final class Cell implements Comparable<Cell> {
+    private final byte[] row;
+    private final byte[] column;
+    private final long version;
+
+    Cell(byte[] row, @Nullable byte[] column, long version) {
+      this.row = row;
+      this.column = column;
+      this.version = version;
+    }
+
+    /**
+     * Returns a key that sorts before all cells of the given row.
+     */
+    static Cell first(byte[] row) {
+      return new Cell(row, Bytes.EMPTY_BYTE_ARRAY, Long.MAX_VALUE);
+    }
+
+    /**
+     * Returns a key that sorts after all cells of the given row.
+     */
+    static Cell last(byte[] row) {
+      return new Cell(row, null, Long.MIN_VALUE);
+    }
+
+    @Override
+    public int compareTo(Cell other) {
+      int cmp = Bytes.compareTo(row, other.row);
+      if (cmp != 0) {
+        return cmp;
+      }
+      if (column != other.column) {
+        if (column == null) {
+          return 1;
+        }
+        if (other.column == null) {
+          return -1;
+        }
+        cmp = Bytes.compareTo(column, other.column);
+        if (cmp != 0) {
+          return cmp;
+        }
+      }
+      return Longs.compare(other.version, version);
+    }
+  }
 }
@@ -58,8 +58,20 @@ public class LevelDBMetricsTable implements MetricsTable {
 
   public LevelDBMetricsTable(DatasetContext datasetContext, String tableName,
                              LevelDBTableService service, CConfiguration cConf) throws IOException {
-    this.core = new LevelDBTableCore(PrefixedNamespaces.namespace(cConf, datasetContext.getNamespaceId(), tableName),
-                                     service);
+    this(datasetContext, tableName, service, cConf, false);
+  }
+
+  /**
+   * Creates an instance of {@link LevelDBMetricsTable}.
+   *
+   * @param rowPacked whether the table stores each row as a single LevelDB entry, see {@link PackedLevelDBTableCore}
+   */
+  public LevelDBMetricsTable(DatasetContext datasetContext, String tableName,
+                             LevelDBTableService service, CConfiguration cConf, boolean rowPacked) throws IOException {
+    String namespacedName = PrefixedNamespaces.namespace(cConf, datasetContext.getNamespaceId(), tableName);
+    this.core = rowPacked
+      ? new PackedLevelDBTableCore(namespacedName, service)
+      : new LevelDBTableCore(namespacedName, service);
     this.tableName = tableName;
   }
 
@@ -97,7 +109,7 @@ public class LevelDBMetricsTable implements MetricsTable {
   }
 
   @Override
-  public synchronized boolean swap(byte[] row, byte[] column, byte[] oldValue, byte[] newValue) {
+  public boolean swap(byte[] row, byte[] column, byte[] oldValue, byte[] newValue) {
     try {
       return core.swap(row, column, oldValue, newValue);
     } catch (IOException e) {
@@ -123,6 +135,18 @@ public class LevelDBMetricsTable implements MetricsTable {
     }
   }
 
+  @Override
+  public void putAndIncrement(SortedMap<byte[], ? extends SortedMap<byte[], Long>> puts,
+                              NavigableMap<byte[], NavigableMap<byte[], Long>> increments) {
+    SortedMap<byte[], ? extends SortedMap<byte[], byte[]>> convertedPuts =
+      Maps.transformValues(puts, TRANSFORM_MAP_LONG_TO_BYTE_ARRAY);
+    try {
+      core.putAndIncrement(convertedPuts, increments);
+    } catch (IOException e) {
+      throw new DataSetException("PutAndIncrement failed on table " + tableName, e);
+    }
+  }
+
   @Override
   public long incrementAndGet(byte[] row, byte[] column, long delta) {
     try {
@@ -18,7 +18,9 @@ package co.cask.cdap.data2.dataset2.lib.table.leveldb;
 
 import co.cask.cdap.api.dataset.DatasetAdmin;
 import co.cask.cdap.api.dataset.DatasetContext;
+import co.cask.cdap.api.dataset.DatasetProperties;
 import co.cask.cdap.api.dataset.DatasetSpecification;
+import co.cask.cdap.api.dataset.IncompatibleUpdateException;
 import co.cask.cdap.data2.dataset2.lib.table.AbstractTableDefinition;
 import co.cask.cdap.data2.dataset2.lib.table.MetricsTable;
 import com.google.inject.Inject;
@@ -41,7 +43,8 @@ public class LevelDBMetricsTableDefinition extends AbstractTableDefinition<Metri
   @Override
   public MetricsTable getDataset(DatasetContext datasetContext, DatasetSpecification spec,
                                  Map<String, String> arguments, ClassLoader classLoader) throws IOException {
-    return new LevelDBMetricsTable(datasetContext, spec.getName(), service, cConf);
+    return new LevelDBMetricsTable(datasetContext, spec.getName(), service, cConf,
+                                   LevelDBTableAdmin.isRowPacked(spec.getProperties()));
   }
 
   @Override
@@ -50,4 +53,11 @@ public class LevelDBMetricsTableDefinition extends AbstractTableDefinition<Metri
     // the table management is the same as in ordered table
     return new LevelDBTableAdmin(datasetContext, spec, service, cConf);
   }
+
+  @Override
+  public DatasetSpecification reconfigure(String instanceName, DatasetProperties properties,
+                                          DatasetSpecification currentSpec) throws IncompatibleUpdateException {
+    LevelDBTableAdmin.validateUpdate(properties, currentSpec);
+    return super.reconfigure(instanceName, properties, currentSpec);
+  }
 }
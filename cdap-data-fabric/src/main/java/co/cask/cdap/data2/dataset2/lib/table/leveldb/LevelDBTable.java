@@ -52,7 +52,9 @@ public class LevelDBTable extends BufferingTable {
                       DatasetSpecification spec) throws IOException {
     super(PrefixedNamespaces.namespace(cConf, datasetContext.getNamespaceId(), tableName),
           false, spec.getProperties());
-    this.core = new LevelDBTableCore(getTableName(), service);
+    this.core = LevelDBTableAdmin.isRowPacked(spec.getProperties())
+      ? new PackedLevelDBTableCore(getTableName(), service)
+      : new LevelDBTableCore(getTableName(), service);
   }
 
   @WriteOnly
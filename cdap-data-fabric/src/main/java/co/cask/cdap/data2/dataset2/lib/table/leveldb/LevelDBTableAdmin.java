@@ -18,17 +18,28 @@ package co.cask.cdap.data2.dataset2.lib.table.leveldb;
 
 import co.cask.cdap.api.dataset.DatasetAdmin;
 import co.cask.cdap.api.dataset.DatasetContext;
+import co.cask.cdap.api.dataset.DatasetProperties;
 import co.cask.cdap.api.dataset.DatasetSpecification;
+import co.cask.cdap.api.dataset.IncompatibleUpdateException;
 import co.cask.cdap.common.conf.CConfiguration;
+import co.cask.cdap.common.conf.Constants;
+import co.cask.cdap.data2.datafabric.dataset.DatasetsUtil;
 import co.cask.cdap.data2.dataset2.lib.table.inmemory.PrefixedNamespaces;
 
 import java.io.IOException;
+import java.util.Map;
 
 /**
  *
  */
 public class LevelDBTableAdmin implements DatasetAdmin {
 
+  /**
+   * Property to create a table that stores each row as a single LevelDB entry, see {@link PackedLevelDBTableCore}.
+   * It can't be changed once the table is created, and is only allowed for tables that are not transactional.
+   */
+  public static final String PROPERTY_ROW_PACKED = "leveldb.row.packed";
+
   private final LevelDBTableService service;
   private final String name;
 
@@ -38,6 +49,38 @@ public class LevelDBTableAdmin implements DatasetAdmin {
     this.name = PrefixedNamespaces.namespace(cConf, datasetContext.getNamespaceId(), spec.getName());
   }
 
+  /**
+   * Returns whether the table with the given properties stores each row as a single LevelDB entry.
+   */
+  static boolean isRowPacked(Map<String, String> properties) {
+    return Boolean.parseBoolean(properties.get(PROPERTY_ROW_PACKED));
+  }
+
+  /**
+   * Validates that a table with the given properties is only row packed if it is not transactional, because a row
+   * packed table only keeps the latest versions of a column, which transactions reading older snapshots may need.
+   */
+  static void validateRowPacked(Map<String, String> properties) {
+    if (isRowPacked(properties) && DatasetsUtil.isTransactional(properties)) {
+      throw new IllegalArgumentException(String.format(
+        "Property %s is only allowed for tables with %s set to true.",
+        PROPERTY_ROW_PACKED, Constants.Dataset.TABLE_TX_DISABLED));
+    }
+  }
+
+  /**
+   * Validates that the new properties of a table don't change its storage layout.
+   */
+  static void validateUpdate(DatasetProperties newProperties,
+                             DatasetSpecification currentSpec) throws IncompatibleUpdateException {
+    boolean wasRowPacked = isRowPacked(currentSpec.getProperties());
+    boolean isRowPacked = isRowPacked(newProperties.getProperties());
+    if (wasRowPacked != isRowPacked) {
+      throw new IncompatibleUpdateException(String.format(
+        "Attempt to change whether the table is row packed from %s to %s.", wasRowPacked, isRowPacked));
+    }
+  }
+
   @Override
   public boolean exists() throws IOException {
     try {
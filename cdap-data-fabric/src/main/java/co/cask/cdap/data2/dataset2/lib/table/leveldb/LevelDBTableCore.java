@@ -26,7 +26,10 @@ import com.google.common.base.Preconditions;
 import com.google.common.base.Throwables;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSortedMap;
+import com.google.common.collect.Iterables;
 import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import com.google.common.util.concurrent.Striped;
 import org.apache.tephra.Transaction;
 import org.iq80.leveldb.DB;
 import org.iq80.leveldb.DBIterator;
@@ -39,9 +42,12 @@ import java.io.IOException;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
 import java.util.Map;
 import java.util.NavigableMap;
+import java.util.Set;
+import java.util.concurrent.locks.Lock;
 import javax.annotation.Nullable;
 
 /**
@@ -51,13 +57,13 @@ public class LevelDBTableCore {
 
   private static final Logger LOG = LoggerFactory.getLogger(LevelDBTableCore.class);
 
-  private static final Scanner EMPTY_SCANNER = createEmptyScanner();
+  static final Scanner EMPTY_SCANNER = createEmptyScanner();
 
   // this represents deleted values
   protected static final byte[] DELETE_MARKER = { };
 
   // we use the empty column family for all data
-  private static final byte[] DATA_COLFAM = { };
+  static final byte[] DATA_COLFAM = { };
 
   // we will never write this, but use it as an upper bound for scans
   private static final byte[] NEXT_COLFAM = { 0x00 };
@@ -77,65 +83,141 @@ public class LevelDBTableCore {
 
   private final String tableName;
   private final LevelDBTableService service;
+  // Locks for read-modify-write operations, shared by all the instances of the same table
+  private final Striped<Lock> rowLocks;
 
   public LevelDBTableCore(String tableName, LevelDBTableService service) throws IOException {
     this.tableName = tableName;
     this.service = service;
+    this.rowLocks = service.getRowLocks(tableName);
   }
 
-  private DB getDB() throws IOException {
+  DB getDB() throws IOException {
     return service.getTable(tableName);
   }
 
-  private WriteOptions getWriteOptions() {
+  WriteOptions getWriteOptions() {
     return service.getWriteOptions();
   }
 
 
-  public synchronized boolean swap(byte[] row, byte[] column, byte[] oldValue, byte[] newValue) throws IOException {
-    byte[] existing = getRow(row, new byte[][] { column }, null, null, -1, null).get(column);
-    // verify
-    if (oldValue == null && existing != null) {
-      return false;
-    }
-    if (oldValue != null && (existing == null || !Bytes.equals(oldValue, existing))) {
-      return false;
-    }
-    // write
-    if (newValue == null) {
-      // to-do
-      deleteColumn(row, column);
-    } else {
-      persist(Collections.singletonMap(row, Collections.singletonMap(column, newValue)), System.currentTimeMillis());
+  public boolean swap(byte[] row, byte[] column, byte[] oldValue, byte[] newValue) throws IOException {
+    Lock lock = getRowLock(row);
+    lock.lock();
+    try {
+      byte[] existing = getRow(row, new byte[][] { column }, null, null, -1, null).get(column);
+      // verify
+      if (oldValue == null && existing != null) {
+        return false;
+      }
+      if (oldValue != null && (existing == null || !Bytes.equals(oldValue, existing))) {
+        return false;
+      }
+      // write
+      if (newValue == null) {
+        // to-do
+        deleteColumn(row, column);
+      } else {
+        persist(Collections.singletonMap(row, Collections.singletonMap(column, newValue)), System.currentTimeMillis());
+      }
+      return true;
+    } finally {
+      lock.unlock();
     }
-    return true;
   }
 
-  public synchronized Map<byte[], Long> increment(byte[] row, Map<byte[], Long> increments) throws IOException {
-    Map<byte[], Long> result = getResultMap(row, increments);
-    Map<byte[], byte[]> replacing = Maps.newTreeMap(Bytes.BYTES_COMPARATOR);
-    for (Map.Entry<byte[], Long> entry : result.entrySet()) {
-      replacing.put(entry.getKey(), Bytes.toBytes(entry.getValue()));
+  public Map<byte[], Long> increment(byte[] row, Map<byte[], Long> increments) throws IOException {
+    Lock lock = getRowLock(row);
+    lock.lock();
+    try {
+      Map<byte[], Long> result = getResultMap(row, increments);
+      Map<byte[], byte[]> replacing = Maps.newTreeMap(Bytes.BYTES_COMPARATOR);
+      for (Map.Entry<byte[], Long> entry : result.entrySet()) {
+        replacing.put(entry.getKey(), Bytes.toBytes(entry.getValue()));
+      }
+      persist(ImmutableMap.of(row, replacing), System.currentTimeMillis());
+      return result;
+    } finally {
+      lock.unlock();
     }
-    persist(ImmutableMap.of(row, replacing), System.currentTimeMillis());
-    return result;
   }
 
 
-  public synchronized void increment(NavigableMap<byte[], NavigableMap<byte[], Long>> updates) throws IOException {
-    Map<byte[], Map<byte[], byte[]>> resultMap = Maps.newHashMap();
-    for (NavigableMap.Entry<byte[], NavigableMap<byte[], Long>> row : updates.entrySet()) {
-      NavigableMap<byte[], Long> increments = row.getValue();
+  public void increment(NavigableMap<byte[], NavigableMap<byte[], Long>> updates) throws IOException {
+    putAndIncrement(Collections.<byte[], Map<byte[], byte[]>>emptyMap(), updates);
+  }
+
+  /**
+   * Writes the given values and applies the given increments. If a column is in both, the increment is applied on
+   * top of the written value, same as writing first and then incrementing. Rows are grouped by their lock stripe,
+   * and the rows of each stripe are read and written with a single write batch while holding the stripe lock.
+   * Hence concurrent calls only wait on each other for the rows that share a stripe, and the changes are atomic
+   * per stripe rather than for the whole call.
+   */
+  public void putAndIncrement(Map<byte[], ? extends Map<byte[], byte[]>> puts,
+                              Map<byte[], ? extends Map<byte[], Long>> increments) throws IOException {
+    for (Map.Entry<Lock, Set<byte[]>> entry :
+      groupRowsByLock(Iterables.concat(puts.keySet(), increments.keySet())).entrySet()) {
+      Lock lock = entry.getKey();
+      lock.lock();
+      try {
+        putAndIncrement(entry.getValue(), puts, increments);
+      } finally {
+        lock.unlock();
+      }
+    }
+  }
+
+  /**
+   * Writes the given values and applies the given increments of the given rows with a single write batch. The
+   * caller must hold the locks of the rows.
+   */
+  private void putAndIncrement(Set<byte[]> rows, Map<byte[], ? extends Map<byte[], byte[]>> puts,
+                               Map<byte[], ? extends Map<byte[], Long>> increments) throws IOException {
+    Map<byte[], Map<byte[], byte[]>> resultMap = Maps.newTreeMap(Bytes.BYTES_COMPARATOR);
+    for (byte[] row : rows) {
       Map<byte[], byte[]> replacing = Maps.newTreeMap(Bytes.BYTES_COMPARATOR);
-      Map<byte[], Long> result = getResultMap(row.getKey(), increments);
-      for (Map.Entry<byte[], Long> entry : result.entrySet()) {
-        replacing.put(entry.getKey(), Bytes.toBytes(entry.getValue()));
+      Map<byte[], byte[]> rowPuts = puts.get(row);
+      if (rowPuts != null) {
+        replacing.putAll(rowPuts);
+      }
+      Map<byte[], Long> rowIncrements = increments.get(row);
+      if (rowIncrements != null) {
+        Map<byte[], Long> result = getResultMap(row, rowIncrements);
+        for (Map.Entry<byte[], Long> entry : result.entrySet()) {
+          byte[] value = replacing.get(entry.getKey());
+          long newValue = value == null
+            ? entry.getValue()
+            : toLong(row, entry.getKey(), value) + rowIncrements.get(entry.getKey());
+          replacing.put(entry.getKey(), Bytes.toBytes(newValue));
+        }
       }
-      resultMap.put(row.getKey(), replacing);
+      resultMap.put(row, replacing);
     }
     persist(resultMap, System.currentTimeMillis());
   }
 
+  Lock getRowLock(byte[] row) {
+    return rowLocks.get(Bytes.hashCode(row));
+  }
+
+  /**
+   * Groups the given rows by their lock, with the rows of each lock in sorted order.
+   */
+  Map<Lock, Set<byte[]>> groupRowsByLock(Iterable<byte[]> rows) {
+    Map<Lock, Set<byte[]>> rowsByLock = new IdentityHashMap<>();
+    for (byte[] row : rows) {
+      Lock lock = getRowLock(row);
+      Set<byte[]> lockRows = rowsByLock.get(lock);
+      if (lockRows == null) {
+        lockRows = Sets.newTreeSet(Bytes.BYTES_COMPARATOR);
+        rowsByLock.put(lock, lockRows);
+      }
+      lockRows.add(row);
+    }
+    return rowsByLock;
+  }
+
   private Map<byte[], Long> getResultMap(byte[] row, Map<byte[], Long> increments) throws IOException {
     NavigableMap<byte[], byte[]> existing =
       getRow(row, increments.keySet().toArray(new byte[increments.size()][]), null, null, -1, null);
@@ -144,12 +226,7 @@ public class LevelDBTableCore {
       long existingValue = 0L;
       byte[] existingBytes = existing.get(increment.getKey());
       if (existingBytes != null) {
-        if (existingBytes.length != Bytes.SIZEOF_LONG) {
-          throw new NumberFormatException("Attempted to increment a value that is not convertible to long," +
-                                            " row: " + Bytes.toStringBinary(row) +
-                                            " column: " + Bytes.toStringBinary(increment.getKey()));
-        }
-        existingValue = Bytes.toLong(existingBytes);
+        existingValue = toLong(row, increment.getKey(), existingBytes);
       }
       long newValue = existingValue + increment.getValue();
       result.put(increment.getKey(), newValue);
@@ -157,6 +234,15 @@ public class LevelDBTableCore {
     return result;
   }
 
+  private long toLong(byte[] row, byte[] column, byte[] value) {
+    if (value.length != Bytes.SIZEOF_LONG) {
+      throw new NumberFormatException("Attempted to increment a value that is not convertible to long," +
+                                        " row: " + Bytes.toStringBinary(row) +
+                                        " column: " + Bytes.toStringBinary(column));
+    }
+    return Bytes.toLong(value);
+  }
+
   public void persist(Map<byte[], ? extends Map<byte[], byte[]>> changes, long version) throws IOException {
     DB db = getDB();
     // todo support writing null when no transaction
@@ -550,7 +636,7 @@ public class LevelDBTableCore {
     return new KeyValue(rowKey, DATA_COLFAM, columnKey, version, KeyValue.Type.Put).getKey();
   }
 
-  private static byte[] createStartKey(byte[] row) { // the first possible key of a row
+  static byte[] createStartKey(byte[] row) { // the first possible key of a row
     return new KeyValue(row, DATA_COLFAM, null, KeyValue.LATEST_TIMESTAMP, KeyValue.Type.Maximum).getKey();
   }
 
@@ -17,7 +17,9 @@
 package co.cask.cdap.data2.dataset2.lib.table.leveldb;
 
 import co.cask.cdap.api.dataset.DatasetContext;
+import co.cask.cdap.api.dataset.DatasetProperties;
 import co.cask.cdap.api.dataset.DatasetSpecification;
+import co.cask.cdap.api.dataset.IncompatibleUpdateException;
 import co.cask.cdap.api.dataset.table.Table;
 import co.cask.cdap.data2.dataset2.lib.table.AbstractTableDefinition;
 import com.google.inject.Inject;
@@ -37,6 +39,12 @@ public class LevelDBTableDefinition extends AbstractTableDefinition<Table, Level
     super(name);
   }
 
+  @Override
+  public DatasetSpecification configure(String name, DatasetProperties properties) {
+    LevelDBTableAdmin.validateRowPacked(properties.getProperties());
+    return super.configure(name, properties);
+  }
+
   @Override
   public Table getDataset(DatasetContext datasetContext, DatasetSpecification spec,
                           Map<String, String> arguments, ClassLoader classLoader) throws IOException {
@@ -48,4 +56,11 @@ public class LevelDBTableDefinition extends AbstractTableDefinition<Table, Level
                                     ClassLoader classLoader) throws IOException {
     return new LevelDBTableAdmin(datasetContext, spec, service, cConf);
   }
+
+  @Override
+  public DatasetSpecification reconfigure(String instanceName, DatasetProperties properties,
+                                          DatasetSpecification currentSpec) throws IncompatibleUpdateException {
+    LevelDBTableAdmin.validateUpdate(properties, currentSpec);
+    return super.reconfigure(instanceName, properties, currentSpec);
+  }
 }
@@ -27,6 +27,7 @@ import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Maps;
 import com.google.common.io.Closeables;
+import com.google.common.util.concurrent.Striped;
 import com.google.inject.Inject;
 import com.google.inject.Singleton;
 import org.iq80.leveldb.DB;
@@ -44,6 +45,7 @@ import java.net.URLEncoder;
 import java.util.Collection;
 import java.util.Map;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.locks.Lock;
 
 import static org.iq80.leveldb.impl.Iq80DBFactory.factory;
 
@@ -59,9 +61,11 @@ public class LevelDBTableService implements AutoCloseable {
   private long cacheSize;
   private String basePath;
   private WriteOptions writeOptions;
+  private int lockStripes = Constants.DEFAULT_DATA_LEVELDB_LOCK_STRIPES;
   private boolean isClosed;
 
   private final ConcurrentMap<String, DB> tables = Maps.newConcurrentMap();
+  private final ConcurrentMap<String, Striped<Lock>> rowLocks = Maps.newConcurrentMap();
 
   /**
    * To avoid database locking issues make sure that the single LevelDBTableService instance
@@ -91,6 +95,7 @@ public class LevelDBTableService implements AutoCloseable {
     cacheSize = config.getLong(Constants.CFG_DATA_LEVELDB_CACHESIZE, Constants.DEFAULT_DATA_LEVELDB_CACHESIZE);
     writeOptions = new WriteOptions().sync(
       config.getBoolean(Constants.CFG_DATA_LEVELDB_FSYNC, Constants.DEFAULT_DATA_LEVELDB_FSYNC));
+    lockStripes = config.getInt(Constants.CFG_DATA_LEVELDB_LOCK_STRIPES, Constants.DEFAULT_DATA_LEVELDB_LOCK_STRIPES);
   }
 
   /**
@@ -101,6 +106,7 @@ public class LevelDBTableService implements AutoCloseable {
       Closeables.closeQuietly(entries);
     }
     tables.clear();
+    rowLocks.clear();
   }
 
   private void ensureOpen() {
@@ -172,6 +178,20 @@ public class LevelDBTableService implements AutoCloseable {
     return writeOptions;
   }
 
+  /**
+   * Returns the locks for read-modify-write operations on the rows of the given table. All the callers get the same
+   * locks for the same table, so that they can be shared by all the dataset instances of the table.
+   */
+  public Striped<Lock> getRowLocks(String tableName) {
+    Striped<Lock> locks = rowLocks.get(tableName);
+    if (locks == null) {
+      locks = Striped.lock(lockStripes);
+      Striped<Lock> existing = rowLocks.putIfAbsent(tableName, locks);
+      locks = existing == null ? locks : existing;
+    }
+    return locks;
+  }
+
   public DB getTable(String tableName) throws IOException {
     ensureOpen();
     DB db = tables.get(tableName);
@@ -243,6 +263,7 @@ public class LevelDBTableService implements AutoCloseable {
     if (db != null) {
       db.close();
     }
+    rowLocks.remove(name);
     String dbPath = getDBPath(basePath, name);
     factory.destroy(new File(dbPath), new Options());
   }
@@ -0,0 +1,434 @@
+/*
+ * Copyright © 2018 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.data2.dataset2.lib.table.leveldb;
+
+import co.cask.cdap.api.common.Bytes;
+import co.cask.cdap.api.dataset.table.Result;
+import co.cask.cdap.api.dataset.table.Row;
+import co.cask.cdap.api.dataset.table.Scanner;
+import co.cask.cdap.common.io.BinaryDecoder;
+import co.cask.cdap.common.io.BinaryEncoder;
+import co.cask.cdap.data2.dataset2.lib.table.FuzzyRowFilter;
+import com.google.common.base.Preconditions;
+import com.google.common.base.Throwables;
+import com.google.common.collect.Maps;
+import org.apache.tephra.Transaction;
+import org.iq80.leveldb.DB;
+import org.iq80.leveldb.DBIterator;
+import org.iq80.leveldb.WriteBatch;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.locks.Lock;
+import java.util.function.BiConsumer;
+import javax.annotation.Nullable;
+
+/**
+ * A {@link LevelDBTableCore} that stores each row as a single LevelDB entry, instead of one entry per cell. The value
+ * of the entry is a block with the columns of the row in sorted order, each with its most recent versions, latest
+ * first. Reading a row takes a single seek and the row key is stored once, at the cost of rewriting the block of the
+ * row on every write.
+ *
+ * Only the latest {@link #MAX_VERSIONS} versions of a column are kept, hence a transaction could miss the value of
+ * a column if it started before that many later writes to the column. Therefore tables using this layout must not
+ * be transactional, see {@link LevelDBTableAdmin#PROPERTY_ROW_PACKED}.
+ */
+public class PackedLevelDBTableCore extends LevelDBTableCore {
+
+  private static final Logger LOG = LoggerFactory.getLogger(PackedLevelDBTableCore.class);
+
+  static final int MAX_VERSIONS = 8;
+
+  // number of rows to delete with a single write batch in deleteRange
+  private static final int DELETE_ROWS_PER_ROUND = 1024;
+
+  public PackedLevelDBTableCore(String tableName, LevelDBTableService service) throws IOException {
+    super(tableName, service);
+  }
+
+  @Override
+  public void persist(final Map<byte[], ? extends Map<byte[], byte[]>> changes, final long version)
+    throws IOException {
+    update(changes.keySet(), (row, columns) -> {
+      for (Map.Entry<byte[], byte[]> column : changes.get(row).entrySet()) {
+        NavigableMap<Long, byte[]> versions = columns.get(column.getKey());
+        if (versions == null) {
+          versions = new TreeMap<>(Collections.reverseOrder());
+          columns.put(column.getKey(), versions);
+        }
+        versions.put(version, column.getValue() == null ? DELETE_MARKER : column.getValue());
+        while (versions.size() > MAX_VERSIONS) {
+          versions.pollLastEntry();
+        }
+      }
+    });
+  }
+
+  @Override
+  public void put(byte[] row, byte[] column, byte[] value, long version) throws IOException {
+    persist(Collections.singletonMap(row, Collections.singletonMap(column, value)), version);
+  }
+
+  @Override
+  public void undo(final Map<byte[], ? extends Map<byte[], ?>> persisted, final long version) throws IOException {
+    if (persisted.isEmpty()) {
+      return;
+    }
+    update(persisted.keySet(), (row, columns) -> {
+      for (byte[] column : persisted.get(row).keySet()) {
+        NavigableMap<Long, byte[]> versions = columns.get(column);
+        if (versions != null) {
+          versions.remove(version);
+          if (versions.isEmpty()) {
+            columns.remove(column);
+          }
+        }
+      }
+    });
+  }
+
+  @Override
+  public Scanner scan(byte[] startRow, byte[] stopRow,
+                      @Nullable FuzzyRowFilter filter, @Nullable byte[][] columns, @Nullable Transaction tx)
+    throws IOException {
+    if (columns != null) {
+      if (columns.length == 0) {
+        return EMPTY_SCANNER;
+      }
+      columns = Arrays.copyOf(columns, columns.length);
+      Arrays.sort(columns, Bytes.BYTES_COMPARATOR);
+    }
+    return new PackedScanner(seek(getDB().iterator(), startRow), stopRow, filter, columns, tx);
+  }
+
+  @Override
+  public NavigableMap<byte[], byte[]> getRow(byte[] row, @Nullable byte[][] columns,
+                                             byte[] startCol, byte[] stopCol,
+                                             int limit, Transaction tx) throws IOException {
+    if (columns != null) {
+      if (columns.length == 0) {
+        return EMPTY_ROW_MAP;
+      }
+      columns = Arrays.copyOf(columns, columns.length);
+      Arrays.sort(columns, Bytes.BYTES_COMPARATOR);
+      limit = columns.length;
+    }
+    byte[] block = getDB().get(createRowKey(row));
+    if (block == null) {
+      return Maps.newTreeMap(Bytes.BYTES_COMPARATOR);
+    }
+    return selectColumns(decode(block), columns, startCol, stopCol, limit, tx);
+  }
+
+  @Override
+  public void deleteRows(byte[] prefix) throws IOException {
+    Preconditions.checkNotNull(prefix, "prefix must not be null");
+    DB db = getDB();
+    WriteBatch batch = db.createWriteBatch();
+    try (DBIterator iterator = db.iterator()) {
+      iterator.seek(createStartKey(prefix));
+      while (iterator.hasNext()) {
+        Map.Entry<byte[], byte[]> entry = iterator.next();
+        if (!Bytes.startsWith(KeyValue.fromKey(entry.getKey()).getRow(), prefix)) {
+          // iterator is past prefix
+          break;
+        }
+        batch.delete(entry.getKey());
+      }
+      db.write(batch, getWriteOptions());
+    }
+  }
+
+  @Override
+  public void deleteRows(Collection<byte[]> toDelete) throws IOException {
+    if (toDelete.isEmpty()) {
+      return;
+    }
+    DB db = getDB();
+    WriteBatch batch = db.createWriteBatch();
+    for (byte[] row : toDelete) {
+      batch.delete(createRowKey(row));
+    }
+    db.write(batch, getWriteOptions());
+  }
+
+  @Override
+  public void deleteRange(byte[] startRow, byte[] stopRow, @Nullable FuzzyRowFilter filter,
+                          @Nullable final byte[][] columns) throws IOException {
+    if (columns != null && columns.length == 0) {
+      return;
+    }
+    DB db = getDB();
+    try (DBIterator iterator = seek(db.iterator(), startRow)) {
+      List<byte[]> rows = new ArrayList<>();
+      Map.Entry<byte[], byte[]> entry;
+      do {
+        entry = nextEntry(iterator, stopRow, filter);
+        if (entry != null) {
+          rows.add(KeyValue.fromKey(entry.getKey()).getRow());
+        }
+        // perform the deletes when we have built up a batch or reached the end of the range
+        if (rows.size() >= DELETE_ROWS_PER_ROUND || (entry == null && !rows.isEmpty())) {
+          if (columns == null) {
+            deleteRows(rows);
+          } else {
+            update(rows, (row, rowColumns) -> {
+              for (byte[] column : columns) {
+                rowColumns.remove(column);
+              }
+            });
+          }
+          rows.clear();
+        }
+      } while (entry != null);
+    }
+  }
+
+  @Override
+  public void deleteColumn(byte[] row, final byte[] column) throws IOException {
+    update(Collections.singleton(row), (r, columns) -> columns.remove(column));
+  }
+
+  /**
+   * Applies the given update to the columns of each of the given rows. The rows of each lock are read and written
+   * with a single write batch while holding the lock. Rows left without columns are deleted.
+   */
+  private void update(Collection<byte[]> rows,
+                      BiConsumer<byte[], NavigableMap<byte[], NavigableMap<Long, byte[]>>> updater)
+    throws IOException {
+    DB db = getDB();
+    for (Map.Entry<Lock, Set<byte[]>> entry : groupRowsByLock(rows).entrySet()) {
+      Lock lock = entry.getKey();
+      lock.lock();
+      try {
+        WriteBatch batch = db.createWriteBatch();
+        for (byte[] row : entry.getValue()) {
+          byte[] key = createRowKey(row);
+          byte[] block = db.get(key);
+          NavigableMap<byte[], NavigableMap<Long, byte[]>> columns =
+            block == null ? new TreeMap<byte[], NavigableMap<Long, byte[]>>(Bytes.BYTES_COMPARATOR) : decode(block);
+          updater.accept(row, columns);
+          if (columns.isEmpty()) {
+            batch.delete(key);
+          } else {
+            batch.put(key, encode(columns));
+          }
+        }
+        db.write(batch, getWriteOptions());
+      } finally {
+        lock.unlock();
+      }
+    }
+  }
+
+  /**
+   * Returns the latest visible value of the given columns of a row.
+   *
+   * @param rowColumns all the columns of the row, with their versions
+   * @param columns If non-null, only columns contained in this will be returned. The given columns should be sorted.
+   * @param startCol If non-null, only columns starting from this one will be returned.
+   * @param stopCol If non-null, only columns before this one will be returned.
+   * @param limit If positive, at most this many columns will be returned.
+   * @param tx The transaction to use for visibility.
+   */
+  private static NavigableMap<byte[], byte[]> selectColumns(
+    NavigableMap<byte[], NavigableMap<Long, byte[]>> rowColumns, @Nullable byte[][] columns,
+    @Nullable byte[] startCol, @Nullable byte[] stopCol, int limit, @Nullable Transaction tx) {
+    if (columns == null) {
+      if (startCol != null) {
+        rowColumns = rowColumns.tailMap(startCol, true);
+      }
+      if (stopCol != null) {
+        rowColumns = rowColumns.headMap(stopCol, false);
+      }
+    }
+    NavigableMap<byte[], byte[]> result = Maps.newTreeMap(Bytes.BYTES_COMPARATOR);
+    for (Map.Entry<byte[], NavigableMap<Long, byte[]>> column : rowColumns.entrySet()) {
+      if (columns != null && Arrays.binarySearch(columns, column.getKey(), Bytes.BYTES_COMPARATOR) < 0) {
+        continue;
+      }
+      byte[] value = getLatestVisible(column.getValue(), tx);
+      // only add to map if it is not a delete
+      if (value != null && (tx == null || !Bytes.equals(value, DELETE_MARKER))) {
+        result.put(column.getKey(), value);
+        if (limit > 0 && result.size() >= limit) {
+          break;
+        }
+      }
+    }
+    return result;
+  }
+
+  @Nullable
+  private static byte[] getLatestVisible(NavigableMap<Long, byte[]> versions, @Nullable Transaction tx) {
+    for (Map.Entry<Long, byte[]> version : versions.entrySet()) {
+      if (tx == null || tx.isVisible(version.getKey())) {
+        return version.getValue();
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Returns the next entry of the given iterator that is before the stop row and matches the filter, and advances
+   * the iterator past it, or returns {@code null} if there is no such entry.
+   */
+  @Nullable
+  private static Map.Entry<byte[], byte[]> nextEntry(DBIterator iterator, @Nullable byte[] stopRow,
+                                                     @Nullable FuzzyRowFilter filter) {
+    while (iterator.hasNext()) {
+      Map.Entry<byte[], byte[]> entry = iterator.peekNext();
+      byte[] row = KeyValue.fromKey(entry.getKey()).getRow();
+      if (stopRow != null && Bytes.compareTo(row, stopRow) >= 0) {
+        return null;
+      }
+      // apply row filter if any
+      if (filter != null) {
+        FuzzyRowFilter.ReturnCode code = filter.filterRow(row);
+        if (code == FuzzyRowFilter.ReturnCode.DONE) {
+          return null;
+        }
+        if (code == FuzzyRowFilter.ReturnCode.SEEK_NEXT_USING_HINT) {
+          // row does not match but another one could. seek to next possible matching row and iterate
+          iterator.seek(createStartKey(filter.getNextRowHint(row)));
+          continue;
+        }
+      }
+      return iterator.next();
+    }
+    return null;
+  }
+
+  private static DBIterator seek(DBIterator iterator, @Nullable byte[] startRow) {
+    if (startRow != null) {
+      iterator.seek(createStartKey(startRow));
+    } else {
+      iterator.seekToFirst();
+    }
+    return iterator;
+  }
+
+  private static byte[] createRowKey(byte[] row) {
+    return new KeyValue(row, DATA_COLFAM, null, 0L, KeyValue.Type.Put).getKey();
+  }
+
+  /**
+   * Encodes the columns of a row as the number of columns, followed by each column name with its number of versions,
+   * followed by each version with its value.
+   */
+  private static byte[] encode(NavigableMap<byte[], NavigableMap<Long, byte[]>> columns) {
+    ByteArrayOutputStream os = new ByteArrayOutputStream();
+    BinaryEncoder encoder = new BinaryEncoder(os);
+    try {
+      encoder.writeInt(columns.size());
+      for (Map.Entry<byte[], NavigableMap<Long, byte[]>> column : columns.entrySet()) {
+        encoder.writeBytes(column.getKey());
+        encoder.writeInt(column.getValue().size());
+        for (Map.Entry<Long, byte[]> version : column.getValue().entrySet()) {
+          encoder.writeLong(version.getKey());
+          encoder.writeBytes(version.getValue());
+        }
+      }
+    } catch (IOException e) {
+      // Shouldn't happen when writing to memory
+      throw Throwables.propagate(e);
+    }
+    return os.toByteArray();
+  }
+
+  private static NavigableMap<byte[], NavigableMap<Long, byte[]>> decode(byte[] block) {
+    BinaryDecoder decoder = new BinaryDecoder(new ByteArrayInputStream(block));
+    NavigableMap<byte[], NavigableMap<Long, byte[]>> columns = new TreeMap<>(Bytes.BYTES_COMPARATOR);
+    try {
+      int columnCount = decoder.readInt();
+      for (int i = 0; i < columnCount; i++) {
+        byte[] column = decoder.readBytes().array();
+        int versionCount = decoder.readInt();
+        NavigableMap<Long, byte[]> versions = new TreeMap<>(Collections.reverseOrder());
+        for (int j = 0; j < versionCount; j++) {
+          long version = decoder.readLong();
+          versions.put(version, decoder.readBytes().array());
+        }
+        columns.put(column, versions);
+      }
+    } catch (IOException e) {
+      // Shouldn't happen when reading from memory
+      throw Throwables.propagate(e);
+    }
+    return columns;
+  }
+
+  /**
+   * A scanner for a range of rows.
+   */
+  private static final class PackedScanner implements Scanner {
+
+    private final DBIterator iterator;
+    private final byte[] stopRow;
+    private final FuzzyRowFilter filter;
+    private final byte[][] columns;
+    private final Transaction tx;
+
+    PackedScanner(DBIterator iterator, @Nullable byte[] stopRow, @Nullable FuzzyRowFilter filter,
+                  @Nullable byte[][] columns, @Nullable Transaction tx) {
+      this.iterator = iterator;
+      this.stopRow = stopRow;
+      this.filter = filter;
+      this.columns = columns;
+      this.tx = tx;
+    }
+
+    @Nullable
+    @Override
+    public Row next() {
+      try {
+        Map.Entry<byte[], byte[]> entry;
+        while ((entry = nextEntry(iterator, stopRow, filter)) != null) {
+          NavigableMap<byte[], byte[]> result = selectColumns(decode(entry.getValue()), columns, null, null, -1, tx);
+          // skip rows without any visible column
+          if (!result.isEmpty()) {
+            return new Result(KeyValue.fromKey(entry.getKey()).getRow(), result);
+          }
+        }
+        return null;
+      } catch (Exception e) {
+        throw Throwables.propagate(e);
+      }
+    }
+
+    @Override
+    public void close() {
+      try {
+        iterator.close();
+      } catch (Exception e) {
+        LOG.warn("Error closing LevelDB iterator", e);
+      }
+    }
+  }
+}
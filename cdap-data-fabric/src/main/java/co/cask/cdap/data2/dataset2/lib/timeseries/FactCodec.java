@@ -18,11 +18,20 @@ package co.cask.cdap.data2.dataset2.lib.timeseries;
 
 import co.cask.cdap.api.common.Bytes;
 import co.cask.cdap.api.dataset.lib.cube.DimensionValue;
+import co.cask.cdap.api.dataset.lib.cube.Distribution;
+import co.cask.cdap.api.dataset.lib.cube.TimeValue;
+import co.cask.cdap.common.io.BinaryDecoder;
+import co.cask.cdap.common.io.BinaryEncoder;
 import com.google.common.base.Preconditions;
+import com.google.common.base.Throwables;
 import com.google.common.collect.Lists;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
@@ -36,6 +45,10 @@ public class FactCodec {
   // current version
   private static final byte[] VERSION = new byte[] {0};
 
+  // Column holding the compacted values of a row. Being a single byte, it can't be confused with the two bytes value
+  // columns or the four bytes distribution columns, and it sorts before them.
+  private static final byte[] COMPACTED_COLUMN = new byte[] {0};
+
   // encoding types
   private static final String TYPE_MEASURE_NAME = "measureName";
   private static final String TYPE_DIMENSIONS_GROUP = "tagsGroup";
@@ -66,6 +79,31 @@ public class FactCodec {
     return createRowKey(dimensionValues, measureName, ts, false, false);
   }
 
+  /**
+   * Builds a row key template for write operations of multiple measures with the same dimension values and
+   * timestamp. The dimension values are encoded once, and the row key of each measure is created from the template
+   * with {@link #createRowKey(byte[], String)}.
+   * @param dimensionValues dimension values
+   * @param ts timestamp
+   * @return row key template
+   */
+  public byte[] createRowKeyTemplate(List<DimensionValue> dimensionValues, long ts) {
+    return createRowKey(dimensionValues, null, ts, false, false);
+  }
+
+  /**
+   * Builds row key for write and get operations from a row key template.
+   * @param rowKeyTemplate row key template created by {@link #createRowKeyTemplate(List, long)}
+   * @param measureName measure name
+   * @return row key
+   */
+  public byte[] createRowKey(byte[] rowKeyTemplate, String measureName) {
+    byte[] rowKey = Arrays.copyOf(rowKeyTemplate, rowKeyTemplate.length);
+    // measure name is always the last part of the row key
+    writeEncoded(TYPE_MEASURE_NAME, measureName, rowKey, rowKey.length - entityTable.getIdSize());
+    return rowKey;
+  }
+
   /**
    * Builds start row key for scan operation.
    * @param dimensionValues dimension values
@@ -226,6 +264,115 @@ public class FactCodec {
     return deltaCache[(int) ((ts - timeBase) / resolution)];
   }
 
+  /**
+   * Creates the column for storing the count of a {@link Distribution} bucket at the given timestamp.
+   * It is the column created by {@link #createColumn(long)} followed by the bucket index, hence all buckets of
+   * the same timestamp are stored next to each other and {@link #getTimestamp(byte[], byte[])} works with it.
+   */
+  public byte[] createDistributionColumn(long ts, int bucket) {
+    byte[] column = Arrays.copyOf(createColumn(ts), Bytes.SIZEOF_SHORT * 2);
+    Bytes.putShort(column, Bytes.SIZEOF_SHORT, (short) bucket);
+    return column;
+  }
+
+  /**
+   * Returns {@code true} if the given column was created by {@link #createDistributionColumn(long, int)}.
+   */
+  public boolean isDistributionColumn(byte[] column) {
+    return column.length == Bytes.SIZEOF_SHORT * 2;
+  }
+
+  /**
+   * Returns the {@link Distribution} bucket index of a column created by {@link #createDistributionColumn(long, int)}.
+   */
+  public int getDistributionBucket(byte[] column) {
+    return Bytes.toShort(column, Bytes.SIZEOF_SHORT);
+  }
+
+  /**
+   * Returns the column for storing the compacted values of a row, see {@link #encodeCompacted(byte[], List)}.
+   */
+  public byte[] getCompactedColumn() {
+    return COMPACTED_COLUMN;
+  }
+
+  /**
+   * Returns {@code true} if the given column is the column returned by {@link #getCompactedColumn()}.
+   */
+  public boolean isCompactedColumn(byte[] column) {
+    return column.length == COMPACTED_COLUMN.length;
+  }
+
+  /**
+   * Encodes values into the value of the compacted column of the given row. Timestamps are stored as var-length
+   * deltas from the previous timestamp (the timebase of the row for the first one) in number of resolutions,
+   * and values as zig-zag var-length deltas from the previous value.
+   * @param rowKey row key of the row to store the values in
+   * @param timeValues values to encode, sorted by timestamp with no duplicated timestamp and not before the timebase
+   *                   of the row
+   * @return encoded values
+   */
+  public byte[] encodeCompacted(byte[] rowKey, List<TimeValue> timeValues) {
+    ByteArrayOutputStream os = new ByteArrayOutputStream(timeValues.size() * 3);
+    BinaryEncoder encoder = new BinaryEncoder(os);
+    long prevTs = getRowTimeBase(rowKey);
+    long prevValue = 0;
+    try {
+      for (TimeValue timeValue : timeValues) {
+        encoder.writeInt((int) ((timeValue.getTimestamp() - prevTs) / resolution));
+        encoder.writeLong(timeValue.getValue() - prevValue);
+        prevTs = timeValue.getTimestamp();
+        prevValue = timeValue.getValue();
+      }
+    } catch (IOException e) {
+      // Shouldn't happen when writing to memory
+      throw Throwables.propagate(e);
+    }
+    return os.toByteArray();
+  }
+
+  /**
+   * Decodes the value of the compacted column of the given row encoded by {@link #encodeCompacted(byte[], List)}.
+   * @param rowKey row key of the row the values are stored in
+   * @param encoded encoded values
+   * @return values sorted by timestamp
+   */
+  public List<TimeValue> decodeCompacted(byte[] rowKey, byte[] encoded) {
+    ByteArrayInputStream is = new ByteArrayInputStream(encoded);
+    BinaryDecoder decoder = new BinaryDecoder(is);
+    List<TimeValue> timeValues = new ArrayList<>();
+    long ts = getRowTimeBase(rowKey);
+    long value = 0;
+    try {
+      while (is.available() > 0) {
+        ts += (long) decoder.readInt() * resolution;
+        value += decoder.readLong();
+        timeValues.add(new TimeValue(ts, value));
+      }
+    } catch (IOException e) {
+      // Shouldn't happen when reading from memory
+      throw Throwables.propagate(e);
+    }
+    return timeValues;
+  }
+
+  /**
+   * Returns the timebase of the given row.
+   */
+  public long getRowTimeBase(byte[] rowKey) {
+    // timebase is encoded as unsigned int after the encoded agg group
+    return Bytes.toInt(rowKey, VERSION.length + entityTable.getIdSize()) & 0xFFFFFFFFL;
+  }
+
+  /**
+   * Returns a copy of the given row key with the timebase computed from the given timestamp.
+   */
+  public byte[] changeTimeBase(byte[] rowKey, long ts) {
+    byte[] newRowKey = Arrays.copyOf(rowKey, rowKey.length);
+    Bytes.putInt(newRowKey, VERSION.length + entityTable.getIdSize(), getTimeBase(roundToResolution(ts)));
+    return newRowKey;
+  }
+
   public String getMeasureName(byte[] rowKey) {
     // last encoded is measure name
     long encoded = readEncoded(rowKey, rowKey.length - entityTable.getIdSize());
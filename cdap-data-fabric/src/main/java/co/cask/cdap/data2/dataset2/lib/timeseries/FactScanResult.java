@@ -17,10 +17,13 @@
 package co.cask.cdap.data2.dataset2.lib.timeseries;
 
 import co.cask.cdap.api.dataset.lib.cube.DimensionValue;
+import co.cask.cdap.api.dataset.lib.cube.Distribution;
 import co.cask.cdap.api.dataset.lib.cube.TimeValue;
 
+import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 
 /**
  * An single result item returned by {@link FactScanner}.
@@ -29,11 +32,18 @@ public final class FactScanResult implements Iterable<TimeValue> {
   private final String measureName;
   private final List<DimensionValue> dimensionValues;
   private final Iterable<TimeValue> timeValues;
+  private final Map<Long, Distribution> distributions;
 
   public FactScanResult(String measureName, List<DimensionValue> dimensionValues, Iterable<TimeValue> timeValues) {
+    this(measureName, dimensionValues, timeValues, Collections.emptyMap());
+  }
+
+  public FactScanResult(String measureName, List<DimensionValue> dimensionValues, Iterable<TimeValue> timeValues,
+                        Map<Long, Distribution> distributions) {
     this.measureName = measureName;
     this.dimensionValues = dimensionValues;
     this.timeValues = timeValues;
+    this.distributions = distributions;
   }
 
   public String getMeasureName() {
@@ -44,6 +54,14 @@ public final class FactScanResult implements Iterable<TimeValue> {
     return dimensionValues;
   }
 
+  /**
+   * Returns the {@link Distribution} values of the measure, keyed by timestamp.
+   * The values iterated by {@link #iterator()} don't include the distribution values.
+   */
+  public Map<Long, Distribution> getDistributions() {
+    return distributions;
+  }
+
   @Override
   public Iterator<TimeValue> iterator() {
     return timeValues.iterator();
@@ -18,6 +18,7 @@ package co.cask.cdap.data2.dataset2.lib.timeseries;
 
 import co.cask.cdap.api.common.Bytes;
 import co.cask.cdap.api.dataset.lib.cube.DimensionValue;
+import co.cask.cdap.api.dataset.lib.cube.Distribution;
 import co.cask.cdap.api.dataset.lib.cube.TimeValue;
 import co.cask.cdap.api.dataset.table.Row;
 import co.cask.cdap.api.dataset.table.Scanner;
@@ -25,11 +26,17 @@ import com.google.common.collect.AbstractIterator;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Lists;
 
+import java.util.ArrayDeque;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Deque;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.NavigableMap;
 import java.util.Set;
+import java.util.TreeMap;
 
 /**
  * Scans facts in a {@link FactTable}.
@@ -51,16 +58,26 @@ public final class FactScanner implements Iterator<FactScanResult> {
   // set of measureNames - useful to process measures that are requested while scanning.
   private final Set<String> measureNames;
 
+  private final int compactionPeriod;
+  // results to return before reading more rows
+  private final Deque<FactScanResult> results = new ArrayDeque<>();
+  // results of the compacted rows of the current compaction period. They are only returned once all rows of the
+  // period are read, as value columns of the same facts in other rows of the period can replace compacted values
+  private final NavigableMap<byte[], CompactedResult> compactedResults = new TreeMap<>(Bytes.BYTES_COMPARATOR);
+  private long currentPeriod = -1;
+
   /**
    * Construct a FactScanner. Should only be called by FactTable.
    */
-  FactScanner(Scanner scanner, FactCodec codec, long startTs, long endTs, Collection<String> measureNames) {
+  FactScanner(Scanner scanner, FactCodec codec, long startTs, long endTs, Collection<String> measureNames,
+              int compactionPeriod) {
     this.scanner = scanner;
     this.codec = codec;
     this.internalIterator = createIterator();
     this.startTs = startTs;
     this.endTs = endTs;
     this.measureNames = ImmutableSet.copyOf(measureNames);
+    this.compactionPeriod = compactionPeriod;
   }
 
   public void close() {
@@ -90,11 +107,23 @@ public final class FactScanner implements Iterator<FactScanResult> {
     return new AbstractIterator<FactScanResult>() {
       @Override
       protected FactScanResult computeNext() {
-        Row rowResult;
-        while ((rowResult = scanner.next()) != null) {
+        while (results.isEmpty()) {
+          Row rowResult = scanner.next();
+          if (rowResult == null) {
+            break;
+          }
           rowScanned++;
           byte[] rowKey = rowResult.getRow();
 
+          // Rows are sorted by timebase first, hence all rows of a compaction period are read before the next one
+          if (compactionPeriod > 0) {
+            long period = codec.getRowTimeBase(rowKey) / compactionPeriod * compactionPeriod;
+            if (period != currentPeriod) {
+              flushCompacted();
+              currentPeriod = period;
+            }
+          }
+
           // Decode context and metric from key
           String measureName = codec.getMeasureName(rowKey);
           // if measureNames is empty we include all metrics
@@ -107,9 +136,17 @@ public final class FactScanner implements Iterator<FactScanResult> {
           List<DimensionValue> dimensionValues = codec.getDimensionValues(rowKey);
 
           boolean exhausted = false;
+          byte[] compactedValue = null;
           List<TimeValue> timeValues = Lists.newLinkedList();
+          Map<Long, Distribution> distributions = new LinkedHashMap<>();
           // todo: entry set is ordered by ts?
           for (Map.Entry<byte[], byte[]> columnValue : rowResult.getColumns().entrySet()) {
+            if (codec.isCompactedColumn(columnValue.getKey())) {
+              // The compacted column holds values beyond the timebase of the row
+              compactedValue = columnValue.getValue();
+              continue;
+            }
+
             long ts = codec.getTimestamp(rowKey, columnValue.getKey());
             if (ts < startTs) {
               continue;
@@ -120,22 +157,97 @@ public final class FactScanner implements Iterator<FactScanResult> {
               break;
             }
 
+            if (codec.isDistributionColumn(columnValue.getKey())) {
+              distributions.computeIfAbsent(ts, k -> new Distribution())
+                .addToBucket(codec.getDistributionBucket(columnValue.getKey()), Bytes.toLong(columnValue.getValue()));
+              continue;
+            }
+
             // todo: move Bytes.toLong into codec?
             TimeValue timeValue = new TimeValue(ts, Bytes.toLong(columnValue.getValue()));
             timeValues.add(timeValue);
           }
 
-          if (timeValues.isEmpty() && exhausted) {
+          if (timeValues.isEmpty() && distributions.isEmpty() && compactedValue == null && exhausted) {
             break;
           }
 
+          if (compactedValue != null) {
+            CompactedResult compacted = new CompactedResult(measureName, dimensionValues);
+            for (TimeValue timeValue : codec.decodeCompacted(rowKey, compactedValue)) {
+              if (timeValue.getTimestamp() >= startTs && timeValue.getTimestamp() <= endTs) {
+                compacted.values.put(timeValue.getTimestamp(), timeValue.getValue());
+              }
+            }
+            compacted.add(timeValues, distributions);
+            compactedResults.put(rowKey, compacted);
+            continue;
+          }
+
+          if (!compactedResults.isEmpty()) {
+            // values of a fact written after its period was compacted replace the compacted values
+            CompactedResult compacted = compactedResults.get(codec.changeTimeBase(rowKey, currentPeriod));
+            if (compacted != null) {
+              compacted.add(timeValues, distributions);
+              continue;
+            }
+          }
+
           // todo: can return empty list, if all data is < startTs or > endTs
-          return new FactScanResult(measureName, dimensionValues, timeValues);
+          results.add(new FactScanResult(measureName, dimensionValues, timeValues, distributions));
         }
 
-        scanner.close();
-        return endOfData();
+        if (results.isEmpty()) {
+          flushCompacted();
+        }
+        if (results.isEmpty()) {
+          scanner.close();
+          return endOfData();
+        }
+        return results.poll();
       }
     };
   }
+
+  /**
+   * Adds the results of the compacted rows of the current compaction period to the results to return.
+   */
+  private void flushCompacted() {
+    for (CompactedResult compacted : compactedResults.values()) {
+      List<TimeValue> timeValues = new ArrayList<>(compacted.values.size());
+      for (Map.Entry<Long, Long> entry : compacted.values.entrySet()) {
+        timeValues.add(new TimeValue(entry.getKey(), entry.getValue()));
+      }
+      results.add(new FactScanResult(compacted.measureName, compacted.dimensionValues, timeValues,
+                                     compacted.distributions));
+    }
+    compactedResults.clear();
+  }
+
+  /**
+   * Values of a fact in a compaction period that has a compacted row.
+   */
+  private static final class CompactedResult {
+    private final String measureName;
+    private final List<DimensionValue> dimensionValues;
+    private final Map<Long, Long> values = new TreeMap<>();
+    private final Map<Long, Distribution> distributions = new TreeMap<>();
+
+    private CompactedResult(String measureName, List<DimensionValue> dimensionValues) {
+      this.measureName = measureName;
+      this.dimensionValues = dimensionValues;
+    }
+
+    /**
+     * Adds the values of value columns of the fact, which replace the compacted values of the same time.
+     */
+    void add(List<TimeValue> timeValues, Map<Long, Distribution> distributions) {
+      for (TimeValue timeValue : timeValues) {
+        values.put(timeValue.getTimestamp(), timeValue.getValue());
+      }
+      for (Map.Entry<Long, Distribution> entry : distributions.entrySet()) {
+        this.distributions.computeIfAbsent(entry.getKey(), k -> new Distribution()).add(entry.getValue());
+      }
+    }
+  }
 }
@@ -17,15 +17,16 @@ package co.cask.cdap.data2.dataset2.lib.timeseries;
 
 import co.cask.cdap.api.common.Bytes;
 import co.cask.cdap.api.dataset.lib.cube.DimensionValue;
+import co.cask.cdap.api.dataset.lib.cube.Distribution;
 import co.cask.cdap.api.dataset.lib.cube.MeasureType;
 import co.cask.cdap.api.dataset.lib.cube.Measurement;
+import co.cask.cdap.api.dataset.lib.cube.TimeValue;
 import co.cask.cdap.api.dataset.table.Row;
 import co.cask.cdap.api.dataset.table.Scanner;
 import co.cask.cdap.api.metrics.MetricsCollector;
 import co.cask.cdap.common.utils.ImmutablePair;
 import co.cask.cdap.data2.dataset2.lib.table.FuzzyRowFilter;
 import co.cask.cdap.data2.dataset2.lib.table.MetricsTable;
-import com.google.common.base.Function;
 import com.google.common.base.Preconditions;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Lists;
@@ -46,6 +47,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.NavigableMap;
 import java.util.Set;
+import java.util.TreeMap;
 import javax.annotation.Nullable;
 
 /**
@@ -61,13 +63,10 @@ public final class FactTable implements Closeable {
   private static final int MAX_RECORDS_TO_SCAN_DURING_SEARCH = 10 * 1000 * 1000;
   private static final int MAX_SCANS_DURING_SEARCH = 10 * 1000;
 
-  private static final Function<NavigableMap<byte[], byte[]>, NavigableMap<byte[], Long>>
-    TRANSFORM_MAP_BYTE_ARRAY_TO_LONG = new Function<NavigableMap<byte[], byte[]>, NavigableMap<byte[], Long>>() {
-    @Override
-    public NavigableMap<byte[], Long> apply(NavigableMap<byte[], byte[]> input) {
-      return Maps.transformValues(input, Bytes::toLong);
-    }
-  };
+  // Row and column holding the time up to which the table is compacted. Fact rows start with the codec version,
+  // which is a zero byte, hence they can't clash with this row.
+  private static final byte[] COMPACTION_ROW = Bytes.toBytes("compaction");
+  private static final byte[] COMPACTED_TS_COLUMN = Bytes.toBytes("ts");
 
   private final MetricsTable timeSeriesTable;
   private final EntityTable entityTable;
@@ -75,6 +74,7 @@ public final class FactTable implements Closeable {
   private final int resolution;
   // todo: should not be used outside of codec
   private final int rollTime;
+  private final int compactionPeriod;
 
   private final String putCountMetric;
   private final String incrementCountMetric;
@@ -95,14 +95,39 @@ public final class FactTable implements Closeable {
    */
   public FactTable(MetricsTable timeSeriesTable,
                    EntityTable entityTable, int resolution, int rollTime) {
+    this(timeSeriesTable, entityTable, resolution, rollTime, 0);
+  }
+
+  /**
+   * Creates an instance of {@link FactTable} that supports {@link #compact(FactScan) compaction}.
+   *
+   * @param timeSeriesTable A table for storing facts information.
+   * @param entityTable The table for storing dimension encoding mappings.
+   * @param resolution Resolution in seconds
+   * @param rollTime Number of resolution for writing to a new row with a new timebase.
+   *                 Meaning the differences between timebase of two consecutive rows divided by
+   *                 resolution seconds. It essentially defines how many columns per row in the table.
+   *                 This value should be < 65535.
+   * @param compactionPeriod Time span in seconds of the values compacted into a single row, or {@code 0} to
+   *                         disable compaction. It must be a multiple of both the resolution and the roll time,
+   *                         and must not be changed once the table has compacted rows.
+   */
+  public FactTable(MetricsTable timeSeriesTable,
+                   EntityTable entityTable, int resolution, int rollTime, int compactionPeriod) {
     // Two bytes for column name, which is a delta timestamp
     Preconditions.checkArgument(rollTime <= MAX_ROLL_TIME, "Rolltime should be <= " + MAX_ROLL_TIME);
+    // Compacted rows are stored in the row with the timebase at the start of the compaction period
+    Preconditions.checkArgument(compactionPeriod >= 0 && compactionPeriod % resolution == 0
+                                  && compactionPeriod % rollTime == 0,
+                                "Compaction period should be a multiple of resolution and rolltime: "
+                                  + compactionPeriod);
 
     this.entityTable = entityTable;
     this.timeSeriesTable = timeSeriesTable;
     this.codec = new FactCodec(entityTable, resolution, rollTime);
     this.resolution = resolution;
     this.rollTime = rollTime;
+    this.compactionPeriod = compactionPeriod;
     this.putCountMetric = "factTable." + resolution + ".put.count";
     this.incrementCountMetric = "factTable." + resolution + ".increment.count";
   }
@@ -112,34 +137,40 @@ public final class FactTable implements Closeable {
   }
 
   public void add(List<Fact> facts) {
-    // Simply collecting all rows/cols/values that need to be put to the underlying table.
-    NavigableMap<byte[], NavigableMap<byte[], byte[]>> gaugesTable = Maps.newTreeMap(Bytes.BYTES_COMPARATOR);
-    NavigableMap<byte[], NavigableMap<byte[], byte[]>> incrementsTable = Maps.newTreeMap(Bytes.BYTES_COMPARATOR);
+    // Simply collecting all rows/cols/values that need to be written to the underlying table.
+    // Values are aggregated per row and column: increments are summed up and the last gauge value wins.
+    NavigableMap<byte[], NavigableMap<byte[], Long>> gaugesTable = Maps.newTreeMap(Bytes.BYTES_COMPARATOR);
+    NavigableMap<byte[], NavigableMap<byte[], Long>> incrementsTable = Maps.newTreeMap(Bytes.BYTES_COMPARATOR);
     for (Fact fact : facts) {
+      // Dimension values are encoded once and shared by the row keys of all measurements of the fact
+      byte[] rowKeyTemplate = codec.createRowKeyTemplate(fact.getDimensionValues(), fact.getTimestamp());
+      byte[] column = codec.createColumn(fact.getTimestamp());
+
       for (Measurement measurement : fact.getMeasurements()) {
-        byte[] rowKey = codec.createRowKey(fact.getDimensionValues(), measurement.getName(), fact.getTimestamp());
-        byte[] column = codec.createColumn(fact.getTimestamp());
+        byte[] rowKey = codec.createRowKey(rowKeyTemplate, measurement.getName());
 
         if (MeasureType.COUNTER == measurement.getType()) {
           inc(incrementsTable, rowKey, column, measurement.getValue());
+        } else if (MeasureType.DISTRIBUTION == measurement.getType()) {
+          // Each bucket of the distribution is a counter, so that distributions are merged by the increments
+          Distribution distribution = measurement.getDistribution();
+          for (int bucket = distribution.getFirstBucket(); bucket <= distribution.getLastBucket(); bucket++) {
+            long count = distribution.getBucketCount(bucket);
+            if (count != 0) {
+              inc(incrementsTable, rowKey, codec.createDistributionColumn(fact.getTimestamp(), bucket), count);
+            }
+          }
         } else {
-          set(gaugesTable, rowKey, column, Bytes.toBytes(measurement.getValue()));
+          set(gaugesTable, rowKey, column, measurement.getValue());
         }
       }
     }
 
-    NavigableMap<byte[], NavigableMap<byte[], Long>> convertedIncrementsTable =
-      Maps.transformValues(incrementsTable, TRANSFORM_MAP_BYTE_ARRAY_TO_LONG);
-
-    NavigableMap<byte[], NavigableMap<byte[], Long>> convertedGaugesTable =
-      Maps.transformValues(gaugesTable, TRANSFORM_MAP_BYTE_ARRAY_TO_LONG);
-
-    // todo: replace with single call, to be able to optimize rpcs in underlying table
-    timeSeriesTable.put(convertedGaugesTable);
-    timeSeriesTable.increment(convertedIncrementsTable);
+    // Gauges and increments are written with a single call, so that the underlying table can batch them together
+    timeSeriesTable.putAndIncrement(gaugesTable, incrementsTable);
     if (metrics != null) {
-      metrics.increment(putCountMetric, convertedGaugesTable.size());
-      metrics.increment(incrementCountMetric, convertedIncrementsTable.size());
+      metrics.increment(putCountMetric, gaugesTable.size());
+      metrics.increment(incrementCountMetric, incrementsTable.size());
     }
   }
 
@@ -157,7 +188,8 @@ public final class FactTable implements Closeable {
   }
 
   public FactScanner scan(FactScan scan) {
-    return new FactScanner(getScanner(scan), codec, scan.getStartTs(), scan.getEndTs(), scan.getMeasureNames());
+    return new FactScanner(getScanner(scan), codec, scan.getStartTs(), scan.getEndTs(), scan.getMeasureNames(),
+                           compactionPeriod);
   }
 
   private List<String> getSortedMeasures(Collection<String> measures) {
@@ -180,7 +212,7 @@ public final class FactTable implements Closeable {
 
     byte[] startRow = codec.createStartRowKey(scan.getDimensionValues(),
                                               measureNames.isEmpty() ? null : measureNames.get(0),
-                                              scan.getStartTs(), false);
+                                              getScanStartTs(scan.getStartTs()), false);
     byte[] endRow = codec.createEndRowKey(scan.getDimensionValues(),
                                           measureNames.isEmpty() ? null : measureNames.get(measureNames.size() - 1),
                                           scan.getEndTs(), false);
@@ -219,7 +251,13 @@ public final class FactTable implements Closeable {
         List<byte[]> columns = Lists.newArrayList();
 
         boolean exhausted = false;
-        for (byte[] column : row.getColumns().keySet()) {
+        for (Map.Entry<byte[], byte[]> columnValue : row.getColumns().entrySet()) {
+          byte[] column = columnValue.getKey();
+          if (codec.isCompactedColumn(column)) {
+            deleteCompacted(row.getRow(), columnValue.getValue(), scan.getStartTs(), scan.getEndTs());
+            continue;
+          }
+
           long ts = codec.getTimestamp(row.getRow(), column);
           if (ts < scan.getStartTs()) {
             continue;
@@ -234,7 +272,9 @@ public final class FactTable implements Closeable {
         }
 
         // todo: do deletes efficiently, in batches, not one-by-one
-        timeSeriesTable.delete(row.getRow(), columns.toArray(new byte[columns.size()][]));
+        if (!columns.isEmpty()) {
+          timeSeriesTable.delete(row.getRow(), columns.toArray(new byte[columns.size()][]));
+        }
 
         if (exhausted) {
           break;
@@ -289,7 +329,7 @@ public final class FactTable implements Closeable {
     int scannedRecords = 0;
 
     // build a scan
-    byte[] startRow = codec.createStartRowKey(allDimensions, null, startTs, false);
+    byte[] startRow = codec.createStartRowKey(allDimensions, null, getScanStartTs(startTs), false);
     byte[] endRow = codec.createEndRowKey(allDimensions, null, endTs, false);
     endRow = Bytes.stopKeyForPrefix(endRow);
     FuzzyRowFilter fuzzyRowFilter =
@@ -306,7 +346,7 @@ public final class FactTable implements Closeable {
         }
         byte[] rowKey = rowResult.getRow();
         // filter out columns by time range (scan configuration only filters whole rows)
-        if (codec.getTimestamp(rowKey, codec.createColumn(startTs)) < startTs) {
+        if (isBefore(rowResult, startTs)) {
           continue;
         }
         if (codec.getTimestamp(rowKey, codec.createColumn(endTs)) > endTs) {
@@ -372,7 +412,7 @@ public final class FactTable implements Closeable {
       allDimensions.add(new DimensionValue(dimensionName, dimensionSlice.get(dimensionName)));
     }
 
-    byte[] startRow = codec.createStartRowKey(allDimensions, null, startTs, false);
+    byte[] startRow = codec.createStartRowKey(allDimensions, null, getScanStartTs(startTs), false);
     byte[] endRow = codec.createEndRowKey(allDimensions, null, endTs, false);
     endRow = Bytes.stopKeyForPrefix(endRow);
     FuzzyRowFilter fuzzyRowFilter =
@@ -391,7 +431,7 @@ public final class FactTable implements Closeable {
         }
         byte[] rowKey = rowResult.getRow();
         // filter out columns by time range (scan configuration only filters whole rows)
-        if (codec.getTimestamp(rowKey, codec.createColumn(startTs)) < startTs) {
+        if (isBefore(rowResult, startTs)) {
           continue;
         }
         if (codec.getTimestamp(rowKey, codec.createColumn(endTs)) > endTs) {
@@ -407,6 +447,176 @@ public final class FactTable implements Closeable {
     return measureNames;
   }
 
+  /**
+   * Compacts the values of the facts in the given scan. For each compaction period that ends within the scan time
+   * range, the values of a fact are moved into the compacted column of the row at the start of the period, hence
+   * reading the period takes a single row instead of one row per timebase. The values of {@link Distribution}s are
+   * not compacted. Does nothing if compaction is not enabled for this table.
+   *
+   * Compaction is meant for time ranges that no longer receive writes. A value written after compaction is kept in
+   * its value column and replaces the compacted value of the same time, both when reading and when compacting again,
+   * as if it was a gauge. Hence an increment after compaction loses the compacted value it increments.
+   *
+   * The compacted rows are written before the compacted value columns are deleted. If compaction fails in between,
+   * compacting again finds value columns with the same values as the compacted ones, which only get deleted.
+   *
+   * @param scan specifies the facts and time range to compact
+   * @return number of compacted rows written
+   */
+  public int compact(FactScan scan) {
+    if (compactionPeriod == 0) {
+      return 0;
+    }
+    // Only compact whole periods
+    long startTs = getScanStartTs(scan.getStartTs());
+    long endTs = (scan.getEndTs() + 1) / compactionPeriod * compactionPeriod - 1;
+    if (endTs < startTs) {
+      return 0;
+    }
+
+    int compacted = 0;
+    // The scan covers the facts of a single aggregation, which is a single prefix of the row keys, hence its rows are
+    // sorted by timebase first and a period is fully read before reading the next one. This does not hold for a scan
+    // across aggregations, which callers must compact one at a time
+    long period = -1;
+    NavigableMap<byte[], CompactedRow> compactedRows = Maps.newTreeMap(Bytes.BYTES_COMPARATOR);
+    NavigableMap<byte[], List<byte[]>> compactedColumns = Maps.newTreeMap(Bytes.BYTES_COMPARATOR);
+    try (Scanner scanner = getScanner(new FactScan(startTs, endTs, scan.getMeasureNames(),
+                                                   scan.getDimensionValues()))) {
+      Row row;
+      while ((row = scanner.next()) != null) {
+        byte[] rowKey = row.getRow();
+        long rowPeriod = codec.getRowTimeBase(rowKey) / compactionPeriod * compactionPeriod;
+        if (rowPeriod > endTs) {
+          break;
+        }
+        if (rowPeriod != period) {
+          compacted += writeCompacted(compactedRows, compactedColumns);
+          period = rowPeriod;
+        }
+
+        byte[] compactedRowKey = codec.changeTimeBase(rowKey, rowPeriod);
+        CompactedRow compactedRow = compactedRows.computeIfAbsent(compactedRowKey, k -> new CompactedRow());
+        List<byte[]> columns = new ArrayList<>();
+        for (Map.Entry<byte[], byte[]> columnValue : row.getColumns().entrySet()) {
+          byte[] column = columnValue.getKey();
+          if (codec.isCompactedColumn(column)) {
+            for (TimeValue timeValue : codec.decodeCompacted(rowKey, columnValue.getValue())) {
+              compactedRow.compacted.put(timeValue.getTimestamp(), timeValue.getValue());
+            }
+          } else if (!codec.isDistributionColumn(column)) {
+            compactedRow.written.put(codec.getTimestamp(rowKey, column), Bytes.toLong(columnValue.getValue()));
+            columns.add(column);
+          }
+        }
+        if (!columns.isEmpty()) {
+          compactedColumns.put(rowKey, columns);
+        }
+      }
+      compacted += writeCompacted(compactedRows, compactedColumns);
+    }
+    return compacted;
+  }
+
+  /**
+   * Returns whether {@link #compact(FactScan) compaction} is enabled for this table.
+   */
+  public boolean isCompactionEnabled() {
+    return compactionPeriod > 0;
+  }
+
+  /**
+   * Returns the time up to which the table is compacted, as set by {@link #setCompactedTs(long)}, or {@code 0} if
+   * it was never set.
+   */
+  public long getCompactedTs() {
+    byte[] value = timeSeriesTable.get(COMPACTION_ROW, COMPACTED_TS_COLUMN);
+    return value == null ? 0L : Bytes.toLong(value);
+  }
+
+  /**
+   * Persists the time up to which the table is compacted, so that compaction can resume from there.
+   */
+  public void setCompactedTs(long ts) {
+    NavigableMap<byte[], byte[]> columns = Maps.newTreeMap(Bytes.BYTES_COMPARATOR);
+    columns.put(COMPACTED_TS_COLUMN, Bytes.toBytes(ts));
+    NavigableMap<byte[], NavigableMap<byte[], byte[]>> updates = Maps.newTreeMap(Bytes.BYTES_COMPARATOR);
+    updates.put(COMPACTION_ROW, columns);
+    timeSeriesTable.putBytes(updates);
+  }
+
+  /**
+   * Writes the compacted rows that have new values, then deletes the value columns that were compacted.
+   *
+   * @return number of compacted rows written
+   */
+  private int writeCompacted(NavigableMap<byte[], CompactedRow> compactedRows,
+                             NavigableMap<byte[], List<byte[]>> compactedColumns) {
+    NavigableMap<byte[], NavigableMap<byte[], byte[]>> updates = Maps.newTreeMap(Bytes.BYTES_COMPARATOR);
+    for (Map.Entry<byte[], CompactedRow> entry : compactedRows.entrySet()) {
+      if (entry.getValue().isChanged()) {
+        NavigableMap<byte[], byte[]> columns = Maps.newTreeMap(Bytes.BYTES_COMPARATOR);
+        columns.put(codec.getCompactedColumn(),
+                    codec.encodeCompacted(entry.getKey(), entry.getValue().getSortedValues()));
+        updates.put(entry.getKey(), columns);
+      }
+    }
+    if (!updates.isEmpty()) {
+      timeSeriesTable.putBytes(updates);
+    }
+    for (Map.Entry<byte[], List<byte[]>> entry : compactedColumns.entrySet()) {
+      timeSeriesTable.delete(entry.getKey(), entry.getValue().toArray(new byte[entry.getValue().size()][]));
+    }
+    compactedRows.clear();
+    compactedColumns.clear();
+    return updates.size();
+  }
+
+  /**
+   * Deletes the values in the given time range from the compacted column of a row.
+   */
+  private void deleteCompacted(byte[] rowKey, byte[] encoded, long startTs, long endTs) {
+    List<TimeValue> timeValues = codec.decodeCompacted(rowKey, encoded);
+    List<TimeValue> remaining = new ArrayList<>(timeValues.size());
+    for (TimeValue timeValue : timeValues) {
+      if (timeValue.getTimestamp() < startTs || timeValue.getTimestamp() > endTs) {
+        remaining.add(timeValue);
+      }
+    }
+    if (remaining.size() == timeValues.size()) {
+      return;
+    }
+    if (remaining.isEmpty()) {
+      timeSeriesTable.delete(rowKey, new byte[][] {codec.getCompactedColumn()});
+      return;
+    }
+    NavigableMap<byte[], byte[]> columns = Maps.newTreeMap(Bytes.BYTES_COMPARATOR);
+    columns.put(codec.getCompactedColumn(), codec.encodeCompacted(rowKey, remaining));
+    NavigableMap<byte[], NavigableMap<byte[], byte[]>> updates = Maps.newTreeMap(Bytes.BYTES_COMPARATOR);
+    updates.put(rowKey, columns);
+    timeSeriesTable.putBytes(updates);
+  }
+
+  /**
+   * Returns the start time for scanning rows with values at or after the given timestamp. With compaction, it is
+   * the start of the compaction period, as values of the period can be stored in the row at the start of it.
+   */
+  private long getScanStartTs(long startTs) {
+    return compactionPeriod == 0 ? startTs : startTs / compactionPeriod * compactionPeriod;
+  }
+
+  /**
+   * Returns {@code true} if the given row has no values at or after the given timestamp.
+   */
+  private boolean isBefore(Row row, long ts) {
+    byte[] rowKey = row.getRow();
+    if (codec.getTimestamp(rowKey, codec.createColumn(ts)) >= ts) {
+      return false;
+    }
+    // A compacted row can have values up to the end of the compaction period that starts at its timebase
+    return row.get(codec.getCompactedColumn()) == null || codec.getRowTimeBase(rowKey) + compactionPeriod <= ts;
+  }
+
   @Override
   public void close() throws IOException {
     timeSeriesTable.close();
@@ -440,37 +650,56 @@ public final class FactTable implements Closeable {
     return new FuzzyRowFilter(ImmutableList.of(new ImmutablePair<>(startRow, fuzzyRowMask)));
   }
 
-  // todo: shouldn't we aggregate "before" writing to FactTable? We could do it really efficient outside
-  //       also: the underlying datasets will do aggregation in memory anyways
-  private static void inc(NavigableMap<byte[], NavigableMap<byte[], byte[]>> incrementsTable,
-                   byte[] rowKey, byte[] column, long value) {
-    byte[] oldValue = get(incrementsTable, rowKey, column);
-    long newValue = value;
-    if (oldValue != null) {
-      if (Bytes.SIZEOF_LONG == oldValue.length) {
-        newValue = Bytes.toLong(oldValue) + value;
-      } else if (Bytes.SIZEOF_INT == oldValue.length) {
-        // In 2.4 and older versions we stored it as int
-        newValue = Bytes.toInt(oldValue) + value;
-      } else {
-        // should NEVER happen, unless the table is screwed up manually
-        throw new IllegalStateException(
-          String.format("Could not parse measure @row %s @column %s value %s as int or long",
-                        Bytes.toStringBinary(rowKey), Bytes.toStringBinary(column), Bytes.toStringBinary(oldValue)));
+  /**
+   * Values of a compacted row gathered during compaction.
+   */
+  private static final class CompactedRow {
+    // values of the compacted column
+    private final Map<Long, Long> compacted = new TreeMap<>();
+    // values of the value columns of the period
+    private final Map<Long, Long> written = new TreeMap<>();
+
+    /**
+     * Returns whether the compacted column has to be written. Value columns with the same value as the compacted
+     * column are left over by a compaction that failed before deleting them, and don't change it.
+     */
+    boolean isChanged() {
+      for (Map.Entry<Long, Long> entry : written.entrySet()) {
+        if (!entry.getValue().equals(compacted.get(entry.getKey()))) {
+          return true;
+        }
       }
+      return false;
+    }
 
+    /**
+     * Returns the values sorted by timestamp. A value column replaces the compacted value of the same timestamp.
+     */
+    List<TimeValue> getSortedValues() {
+      Map<Long, Long> sorted = new TreeMap<>(compacted);
+      sorted.putAll(written);
+      List<TimeValue> values = new ArrayList<>(sorted.size());
+      for (Map.Entry<Long, Long> entry : sorted.entrySet()) {
+        values.add(new TimeValue(entry.getKey(), entry.getValue()));
+      }
+      return values;
     }
-    set(incrementsTable, rowKey, column, Bytes.toBytes(newValue));
   }
 
-  private static byte[] get(NavigableMap<byte[], NavigableMap<byte[], byte[]>> table, byte[] row, byte[] column) {
-    NavigableMap<byte[], byte[]> rowMap = table.get(row);
-    return rowMap == null ? null : rowMap.get(column);
+  private static void inc(NavigableMap<byte[], NavigableMap<byte[], Long>> incrementsTable,
+                          byte[] rowKey, byte[] column, long value) {
+    NavigableMap<byte[], Long> rowMap = getRowMap(incrementsTable, rowKey);
+    Long oldValue = rowMap.get(column);
+    rowMap.put(column, oldValue == null ? value : oldValue + value);
+  }
+
+  private static void set(NavigableMap<byte[], NavigableMap<byte[], Long>> table,
+                          byte[] row, byte[] column, long value) {
+    getRowMap(table, row).put(column, value);
   }
 
-  private static void set(NavigableMap<byte[], NavigableMap<byte[], byte[]>> table,
-                          byte[] row, byte[] column, byte[] value) {
-    NavigableMap<byte[], byte[]> rowMap = table.computeIfAbsent(row, k -> Maps.newTreeMap(Bytes.BYTES_COMPARATOR));
-    rowMap.put(column, value);
+  private static NavigableMap<byte[], Long> getRowMap(NavigableMap<byte[], NavigableMap<byte[], Long>> table,
+                                                      byte[] row) {
+    return table.computeIfAbsent(row, k -> Maps.newTreeMap(Bytes.BYTES_COMPARATOR));
   }
 }
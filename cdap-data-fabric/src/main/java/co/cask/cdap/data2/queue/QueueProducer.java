@@ -29,7 +29,8 @@ public interface QueueProducer extends Closeable {
   void enqueue(QueueEntry entry) throws IOException;
 
   /**
-   * Enqueues a list of {@link QueueEntry}.
+   * Enqueues a list of {@link QueueEntry}. The entries are enqueued as one contiguous batch, without entries
+   * enqueued concurrently by other threads in between.
    */
   void enqueue(Iterable<QueueEntry> entries) throws IOException;
 }
@@ -21,32 +21,34 @@ import co.cask.cdap.data2.queue.QueueProducer;
 import com.google.common.base.Preconditions;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Iterables;
-import com.google.common.collect.Lists;
 import org.apache.tephra.Transaction;
 import org.apache.tephra.TransactionAware;
 
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
-import java.util.concurrent.BlockingQueue;
-import java.util.concurrent.LinkedBlockingQueue;
+import javax.annotation.concurrent.GuardedBy;
 
 /**
  * Abstract base class for {@link QueueProducer} that emits enqueue metrics post commit.
+ * Entries enqueued within a transaction are buffered in memory and persisted as one batch when the
+ * transaction commits.
  */
 public abstract class AbstractQueueProducer implements QueueProducer, TransactionAware {
 
   private final QueueMetrics queueMetrics;
-  private final BlockingQueue<QueueEntry> queue;
   private final QueueName queueName;
+  @GuardedBy("this")
+  private List<QueueEntry> queue;
   private Transaction transaction;
   private int lastEnqueueCount;
   private int lastEnqueueBytes;
 
   protected AbstractQueueProducer(QueueMetrics queueMetrics, QueueName queueName) {
     this.queueMetrics = queueMetrics;
-    this.queue = new LinkedBlockingQueue<>();
     this.queueName = queueName;
+    this.queue = new ArrayList<>();
   }
 
   @Override
@@ -57,18 +59,25 @@ public abstract class AbstractQueueProducer implements QueueProducer, Transactio
   @Override
   public void enqueue(QueueEntry entry) throws IOException {
     Preconditions.checkState(transaction != null, "Enqueue called outside of transaction.");
-    queue.add(entry);
+    synchronized (this) {
+      queue.add(entry);
+    }
   }
 
   @Override
   public void enqueue(Iterable<QueueEntry> entries) throws IOException {
     Preconditions.checkState(transaction != null, "Enqueue called outside of transaction.");
-    Iterables.addAll(queue, entries);
+    // Adds all entries under one lock so that they are contiguous in the batch
+    synchronized (this) {
+      Iterables.addAll(queue, entries);
+    }
   }
 
   @Override
   public void startTx(Transaction tx) {
-    queue.clear();
+    synchronized (this) {
+      queue.clear();
+    }
     transaction = tx;
     lastEnqueueCount = 0;
     lastEnqueueBytes = 0;
@@ -90,8 +99,12 @@ public abstract class AbstractQueueProducer implements QueueProducer, Transactio
     Preconditions.checkState(transaction != null, "Commit without starting transaction.");
     Transaction tx = transaction;
     transaction = null;
-    List<QueueEntry> entries = Lists.newArrayListWithCapacity(queue.size());
-    queue.drainTo(entries);
+    List<QueueEntry> entries;
+    synchronized (this) {
+      // Hands over the buffered entries and starts a new buffer sized for the same batch
+      entries = queue;
+      queue = new ArrayList<>(entries.size());
+    }
     lastEnqueueCount = entries.size();
     lastEnqueueBytes = persist(entries, tx);
     return true;
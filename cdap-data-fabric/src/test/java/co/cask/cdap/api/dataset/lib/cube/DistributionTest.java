@@ -0,0 +1,95 @@
+/*
+ * Copyright © 2018 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package co.cask.cdap.api.dataset.lib.cube;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Random;
+
+/**
+ * Unit tests for {@link Distribution}.
+ */
+public class DistributionTest {
+
+  @Test
+  public void testBuckets() {
+    // Small values have their own buckets
+    for (int i = 0; i < 16; i++) {
+      Assert.assertEquals(i, Distribution.getBucket(i));
+      Assert.assertEquals(i, Distribution.getBucketLowerBound(i));
+    }
+    // Negative values are counted as zero
+    Assert.assertEquals(0, Distribution.getBucket(-10));
+
+    // Bucket lower bounds are increasing, and values at the bounds map to the right buckets
+    for (int bucket = 1; bucket < Distribution.MAX_BUCKETS; bucket++) {
+      long lowerBound = Distribution.getBucketLowerBound(bucket);
+      Assert.assertTrue(lowerBound > Distribution.getBucketLowerBound(bucket - 1));
+      Assert.assertEquals(bucket, Distribution.getBucket(lowerBound));
+      Assert.assertEquals(bucket - 1, Distribution.getBucket(lowerBound - 1));
+    }
+    Assert.assertEquals(Distribution.MAX_BUCKETS - 1, Distribution.getBucket(Long.MAX_VALUE));
+  }
+
+  @Test
+  public void testPercentile() {
+    Distribution distribution = new Distribution();
+    Assert.assertTrue(distribution.isEmpty());
+    Assert.assertEquals(0L, distribution.getPercentile(50));
+
+    // Values are added in reverse order to exercise growing the buckets downward
+    for (int i = 1000; i > 0; i--) {
+      distribution.add(i);
+    }
+    Assert.assertEquals(1000L, distribution.getCount());
+
+    // Estimates are within the relative error bound
+    for (double percentile : new double[] { 1, 10, 50, 90, 99, 99.9, 100 }) {
+      long expected = (long) Math.ceil(percentile * 10);
+      long actual = distribution.getPercentile(percentile);
+      Assert.assertTrue("Percentile " + percentile + " expected " + expected + " actual " + actual,
+                        Math.abs(actual - expected) <= expected / 16 + 1);
+    }
+  }
+
+  @Test
+  public void testMerge() {
+    Random random = new Random();
+    Distribution all = new Distribution();
+    Distribution first = new Distribution();
+    Distribution second = new Distribution();
+
+    for (int i = 0; i < 10000; i++) {
+      long value = Math.abs(random.nextLong()) >>> random.nextInt(64);
+      all.add(value);
+      if (i % 3 == 0) {
+        first.add(value);
+      } else {
+        second.add(value);
+      }
+    }
+
+    Distribution merged = new Distribution(first).add(second);
+    Assert.assertEquals(all, merged);
+    Assert.assertEquals(all.hashCode(), merged.hashCode());
+    Assert.assertEquals(all.getPercentile(99), merged.getPercentile(99));
+
+    // The copy is not affected by the merge
+    Assert.assertNotEquals(first, merged);
+    Assert.assertEquals(new Distribution(), new Distribution().add(new Distribution()));
+  }
+}
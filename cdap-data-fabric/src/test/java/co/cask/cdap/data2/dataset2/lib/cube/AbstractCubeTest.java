@@ -21,9 +21,11 @@ import co.cask.cdap.api.dataset.lib.cube.Cube;
 import co.cask.cdap.api.dataset.lib.cube.CubeDeleteQuery;
 import co.cask.cdap.api.dataset.lib.cube.CubeFact;
 import co.cask.cdap.api.dataset.lib.cube.CubeQuery;
+import co.cask.cdap.api.dataset.lib.cube.Distribution;
 import co.cask.cdap.api.dataset.lib.cube.Interpolator;
 import co.cask.cdap.api.dataset.lib.cube.Interpolators;
 import co.cask.cdap.api.dataset.lib.cube.MeasureType;
+import co.cask.cdap.api.dataset.lib.cube.Measurement;
 import co.cask.cdap.api.dataset.lib.cube.TimeSeries;
 import co.cask.cdap.api.dataset.lib.cube.TimeValue;
 import com.google.common.collect.ImmutableList;
@@ -255,6 +257,61 @@ public abstract class AbstractCubeTest {
 
   }
 
+  @Test
+  public void testDistributions() throws Exception {
+    Aggregation agg1 = new DefaultAggregation(ImmutableList.of("dim1"));
+    Aggregation agg2 = new DefaultAggregation(ImmutableList.of("dim1", "dim2"));
+
+    int res1 = 1;
+    int res100 = 100;
+    Cube cube = getCube("myDistributionCube", new int[] {res1, res100},
+                        ImmutableMap.of("agg1", agg1, "agg2", agg2));
+
+    // write some data, with the values of the same timestamp split into multiple facts
+    Distribution all = new Distribution();
+    Distribution dim2Value1 = new Distribution();
+    for (int i = 1; i <= 100; i++) {
+      Distribution distribution = new Distribution().add(i).add(i * 1000);
+      writeDistribution(cube, "metric1", 1, distribution, "1", "1");
+      all.add(distribution);
+      dim2Value1.add(distribution);
+
+      distribution = new Distribution().add(i * 10);
+      writeDistribution(cube, "metric1", 1, distribution, "1", "2");
+      all.add(distribution);
+    }
+    writeDistribution(cube, "metric1", 101, new Distribution().add(7), "1", "1");
+
+    // now let's query!
+    // the distributions are merged across dimensions, so the percentiles are the same as from a single distribution
+    for (AggregationFunction function : ImmutableList.of(AggregationFunction.P50, AggregationFunction.P99)) {
+      long expected = all.getPercentile(function.getPercentile());
+      long expected101 = new Distribution().add(7).getPercentile(function.getPercentile());
+
+      verifyCountQuery(cube, "agg1", 0, 150, res1, "metric1", function,
+                       ImmutableMap.of("dim1", "1"), new ArrayList<String>(),
+                       ImmutableList.of(new TimeSeries("metric1", new HashMap<String, String>(),
+                                                       timeValues(1, expected, 101, expected101))));
+
+      verifyCountQuery(cube, "agg2", 0, 150, res1, "metric1", function,
+                       ImmutableMap.of("dim1", "1", "dim2", "1"), new ArrayList<String>(),
+                       ImmutableList.of(new TimeSeries("metric1", new HashMap<String, String>(),
+                                                       timeValues(1, dim2Value1.getPercentile(function.getPercentile()),
+                                                                  101, expected101))));
+
+      verifyCountQuery(cube, "agg1", 0, 150, res100, "metric1", function,
+                       ImmutableMap.of("dim1", "1"), new ArrayList<String>(),
+                       ImmutableList.of(new TimeSeries("metric1", new HashMap<String, String>(),
+                                                       timeValues(0, expected, 100, expected101))));
+    }
+
+    // non-percentile aggregation of distributions is based on the number of values
+    verifyCountQuery(cube, "agg1", 0, 150, res1, "metric1", AggregationFunction.SUM,
+                     ImmutableMap.of("dim1", "1"), new ArrayList<String>(),
+                     ImmutableList.of(
+                       new TimeSeries("metric1", new HashMap<String, String>(), timeValues(1, 300, 101, 1))));
+  }
+
   @Test
   public void testInterpolate() throws Exception {
     Aggregation agg1 = new DefaultAggregation(ImmutableList.of("dim1", "dim2", "dim3"),
@@ -412,6 +469,13 @@ public abstract class AbstractCubeTest {
     cube.add(getFact(measureName, ts, value, MeasureType.GAUGE, dims));
   }
 
+  private void writeDistribution(Cube cube, String measureName, long ts,
+                                 Distribution distribution, String... dims) throws Exception {
+    cube.add(new CubeFact(ts)
+               .addDimensionValues(dimValuesByValues(dims))
+               .addMeasurement(new Measurement(measureName, distribution)));
+  }
+
   private void writeIncViaBatchWritable(Cube cube, String measureName, long ts,
                                         long value, String... dims) throws Exception {
     // null for key: it is ignored
@@ -21,7 +21,10 @@ import co.cask.cdap.data2.dataset2.lib.table.inmemory.InMemoryMetricsTable;
 import co.cask.cdap.data2.dataset2.lib.table.inmemory.InMemoryTableService;
 import co.cask.cdap.data2.dataset2.lib.timeseries.EntityTable;
 import co.cask.cdap.data2.dataset2.lib.timeseries.FactTable;
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
+import org.junit.Assert;
+import org.junit.Test;
 
 import java.util.Map;
 
@@ -48,4 +51,28 @@ public class DefaultCubeTest extends AbstractCubeTest {
 
     return new DefaultCube(resolutions, supplier, aggregations, ImmutableMap.<String, AggregationAlias>of());
   }
+
+  @Test
+  public void testCompactionDisabled() {
+    final FactTable factTable = new FactTable(new InMemoryMetricsTable(createTable("DataTable-noCompaction")),
+                                              new EntityTable(new InMemoryMetricsTable(
+                                                createTable("EntityTable-noCompaction"))),
+                                              1, 100);
+    DefaultCube cube = new DefaultCube(new int[] {1}, new FactTableSupplier() {
+      @Override
+      public FactTable get(int resolution, int rollTime) {
+        return factTable;
+      }
+    }, ImmutableMap.of("agg", new DefaultAggregation(ImmutableList.of("dim1"))),
+                                       ImmutableMap.<String, AggregationAlias>of());
+
+    // The time up to which the table is compacted is not touched if the table is not compacted
+    Assert.assertEquals(0, cube.compact(1, 0, 1000));
+    Assert.assertEquals(0L, factTable.getCompactedTs());
+  }
+
+  private static String createTable(String name) {
+    InMemoryTableService.create(name);
+    return name;
+  }
 }
@@ -133,6 +133,17 @@ public class MetricsTableOnTableTest extends MetricsTableTest {
       });
     }
 
+    @Override
+    public void putAndIncrement(final SortedMap<byte[], ? extends SortedMap<byte[], Long>> puts,
+                                final NavigableMap<byte[], NavigableMap<byte[], Long>> increments) {
+      txnl.executeUnchecked(new TransactionExecutor.Subroutine() {
+        @Override
+        public void apply() {
+          delegate.putAndIncrement(puts, increments);
+        }
+      });
+    }
+
     @Override
     public long incrementAndGet(final byte[] row, final byte[] column, final long delta) {
       return txnl.executeUnchecked(new Callable<Long>() {
@@ -99,6 +99,33 @@ public abstract class MetricsTableTest {
     Assert.assertArrayEquals(Y, table.get(A, Q));
   }
 
+  @Test
+  public void testPutAndIncrement() throws Exception {
+    MetricsTable table = getTable("testPutAndIncrement");
+    table.put(ImmutableSortedMap.<byte[], SortedMap<byte[], Long>>orderedBy(Bytes.BYTES_COMPARATOR)
+                .put(A, mapOf(P, 1L, Q, 2L)).build());
+
+    // puts and increments on the same row and on different rows
+    NavigableMap<byte[], NavigableMap<byte[], Long>> increments = new TreeMap<>(Bytes.BYTES_COMPARATOR);
+    increments.put(A, new TreeMap<>(mapOf(Q, 5L, R, 3L)));
+    increments.put(C, new TreeMap<>(mapOf(P, 7L)));
+    table.putAndIncrement(ImmutableSortedMap.<byte[], SortedMap<byte[], Long>>orderedBy(Bytes.BYTES_COMPARATOR)
+                            .put(A, mapOf(P, 10L))
+                            .put(B, mapOf(P, 20L)).build(), increments);
+    Assert.assertEquals(10L, Bytes.toLong(table.get(A, P)));
+    Assert.assertEquals(7L, Bytes.toLong(table.get(A, Q)));
+    Assert.assertEquals(3L, Bytes.toLong(table.get(A, R)));
+    Assert.assertEquals(20L, Bytes.toLong(table.get(B, P)));
+    Assert.assertEquals(7L, Bytes.toLong(table.get(C, P)));
+
+    // put and increment of the same column is the same as put followed by increment
+    increments = new TreeMap<>(Bytes.BYTES_COMPARATOR);
+    increments.put(A, new TreeMap<>(mapOf(P, 4L)));
+    table.putAndIncrement(ImmutableSortedMap.<byte[], SortedMap<byte[], Long>>orderedBy(Bytes.BYTES_COMPARATOR)
+                            .put(A, mapOf(P, 100L)).build(), increments);
+    Assert.assertEquals(104L, Bytes.toLong(table.get(A, P)));
+  }
+
   protected class IncThread extends Thread implements Closeable {
     final MetricsTable table;
     final byte[] row;
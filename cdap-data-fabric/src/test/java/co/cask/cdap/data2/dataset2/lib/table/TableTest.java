@@ -25,6 +25,7 @@ import co.cask.cdap.api.dataset.table.ConflictDetection;
 import co.cask.cdap.api.dataset.table.Delete;
 import co.cask.cdap.api.dataset.table.Get;
 import co.cask.cdap.api.dataset.table.Increment;
+import co.cask.cdap.api.dataset.table.ParallelScanOptions;
 import co.cask.cdap.api.dataset.table.Put;
 import co.cask.cdap.api.dataset.table.Result;
 import co.cask.cdap.api.dataset.table.Row;
@@ -1294,6 +1295,77 @@ public abstract class TableTest<T extends Table> {
     }
   }
 
+  @Test
+  public void testParallelScan() throws Exception {
+    DatasetAdmin admin = getTableAdmin(CONTEXT1, MY_TABLE);
+    admin.create();
+    try {
+      Transaction tx1 = txClient.startShort();
+      Table myTable1 = getTable(CONTEXT1, MY_TABLE);
+      ((TransactionAware) myTable1).startTx(tx1);
+      for (int i = 0; i < 100; i += 2) {
+        myTable1.put(Bytes.toBytes(String.format("row%03d", i)), C1, Bytes.toBytes(i));
+      }
+      txClient.canCommitOrThrow(tx1, ((TransactionAware) myTable1).getTxChanges());
+      Assert.assertTrue(((TransactionAware) myTable1).commitTx());
+      txClient.commitOrThrow(tx1);
+
+      // the parallel scans must also see the uncommitted changes of the tx
+      Transaction tx2 = txClient.startShort();
+      ((TransactionAware) myTable1).startTx(tx2);
+      for (int i = 1; i < 100; i += 4) {
+        myTable1.put(Bytes.toBytes(String.format("row%03d", i)), C1, Bytes.toBytes(i));
+      }
+      for (int i = 0; i < 100; i += 10) {
+        myTable1.delete(Bytes.toBytes(String.format("row%03d", i)));
+      }
+
+      List<Scan> scans = ImmutableList.of(new Scan(null, null),
+                                          new Scan(Bytes.toBytes("row000"), Bytes.toBytes("row100")),
+                                          new Scan(Bytes.toBytes("row013"), Bytes.toBytes("row077")));
+      for (Scan scan : scans) {
+        List<String> expected = new ArrayList<>();
+        try (Scanner scanner = myTable1.scan(scan)) {
+          for (Row row = scanner.next(); row != null; row = scanner.next()) {
+            expected.add(rowToString(row));
+          }
+        }
+        Assert.assertFalse(expected.isEmpty());
+
+        for (boolean ordered : new boolean[] { true, false }) {
+          ParallelScanOptions options = ParallelScanOptions.builder()
+            .setParallelism(3).setOrdered(ordered).setBufferSize(2).build();
+          List<String> actual = new ArrayList<>();
+          try (Scanner scanner = myTable1.parallelScan(scan, options)) {
+            for (Row row = scanner.next(); row != null; row = scanner.next()) {
+              actual.add(rowToString(row));
+            }
+          }
+          if (!ordered) {
+            Collections.sort(actual);
+          }
+          Assert.assertEquals(expected, actual);
+        }
+      }
+
+      // closing a parallel scan before reading it to the end must not block
+      ParallelScanOptions options = ParallelScanOptions.builder().setParallelism(2).setBufferSize(1).build();
+      try (Scanner scanner = myTable1.parallelScan(new Scan(null, null), options)) {
+        Assert.assertNotNull(scanner.next());
+      }
+      ((TransactionAware) myTable1).rollbackTx();
+      txClient.abort(tx2);
+    } finally {
+      admin.drop();
+    }
+  }
+
+  private static String rowToString(Row row) {
+    // columns deleted in the tx are returned with null values
+    byte[] value = row.get(C1);
+    return Bytes.toString(row.getRow()) + "=" + (value == null ? "" : Bytes.toInt(value));
+  }
+
   @Test
   public void testScanWithFuzzyRowFilter() throws Exception {
     DatasetAdmin admin = getTableAdmin(CONTEXT1, MY_TABLE);
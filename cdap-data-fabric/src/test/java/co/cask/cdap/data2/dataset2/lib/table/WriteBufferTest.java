@@ -0,0 +1,91 @@
+/*
+ * Copyright © 2018 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.data2.dataset2.lib.table;
+
+import co.cask.cdap.api.common.Bytes;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NavigableMap;
+
+/**
+ * Tests for {@link WriteBuffer}.
+ */
+public class WriteBufferTest {
+
+  private static final byte[] COL = Bytes.toBytes("c");
+
+  @Test
+  public void testMergeInOrder() {
+    WriteBuffer buffer = new WriteBuffer();
+    Assert.assertTrue(buffer.isEmpty());
+    Assert.assertNull(buffer.getRow(Bytes.toBytes("r")));
+
+    // changes to the same cell are spread across the log and several sorted runs
+    buffer.add(Bytes.toBytes("r"), COL, new IncrementValue(1L));
+    buffer.add(Bytes.toBytes("r"), COL, new IncrementValue(2L));
+    Assert.assertEquals(Long.valueOf(3L), ((IncrementValue) buffer.getRow(Bytes.toBytes("r")).get(COL)).getValue());
+    buffer.add(Bytes.toBytes("r"), COL, new PutValue(Bytes.toBytes(10L)));
+    Assert.assertArrayEquals(Bytes.toBytes(10L), buffer.getRow(Bytes.toBytes("r")).get(COL).getBytes());
+    buffer.add(Bytes.toBytes("r"), COL, new IncrementValue(5L));
+    buffer.add(Bytes.toBytes("s"), COL, new PutValue(Bytes.toBytes("s")));
+    Assert.assertArrayEquals(Bytes.toBytes(15L), buffer.getRow(Bytes.toBytes("r")).get(COL).getBytes());
+
+    NavigableMap<byte[], NavigableMap<byte[], Update>> sorted = buffer.toSortedMap();
+    Assert.assertEquals(2, sorted.size());
+    Assert.assertArrayEquals(Bytes.toBytes(15L), sorted.get(Bytes.toBytes("r")).get(COL).getBytes());
+    Assert.assertArrayEquals(Bytes.toBytes("s"), sorted.get(Bytes.toBytes("s")).get(COL).getBytes());
+
+    buffer.clear();
+    Assert.assertTrue(buffer.isEmpty());
+    Assert.assertNull(buffer.getRow(Bytes.toBytes("r")));
+  }
+
+  @Test
+  public void testManyRows() {
+    WriteBuffer buffer = new WriteBuffer();
+    // write in reverse order, with reads in between, such that the bloom filter grows and runs are merged
+    for (int i = 9999; i >= 0; i--) {
+      buffer.add(Bytes.toBytes(i), COL, new PutValue(Bytes.toBytes(i)));
+      buffer.add(Bytes.toBytes(i), Bytes.toBytes(i), new PutValue(Bytes.toBytes(i)));
+      if (i % 7 == 0) {
+        Assert.assertEquals(2, buffer.getRow(Bytes.toBytes(i)).size());
+      }
+    }
+    for (int i = 0; i < 10000; i++) {
+      NavigableMap<byte[], Update> row = buffer.getRow(Bytes.toBytes(i));
+      Assert.assertEquals(2, row.size());
+      Assert.assertArrayEquals(Bytes.toBytes(i), row.get(COL).getBytes());
+    }
+    Assert.assertNull(buffer.getRow(Bytes.toBytes(10000)));
+
+    Iterator<Map.Entry<byte[], NavigableMap<byte[], Update>>> rows =
+      buffer.getRows(Bytes.toBytes(100), Bytes.toBytes(200));
+    // changes made after the iterator was created are not visible to it
+    buffer.add(Bytes.toBytes(150), Bytes.toBytes("new"), new PutValue(Bytes.toBytes(0L)));
+    for (int i = 100; i < 200; i++) {
+      Assert.assertTrue(rows.hasNext());
+      Map.Entry<byte[], NavigableMap<byte[], Update>> row = rows.next();
+      Assert.assertArrayEquals(Bytes.toBytes(i), row.getKey());
+      Assert.assertEquals(2, row.getValue().size());
+    }
+    Assert.assertFalse(rows.hasNext());
+    Assert.assertEquals(3, buffer.getRow(Bytes.toBytes(150)).size());
+  }
+}
@@ -24,6 +24,8 @@ import org.apache.tephra.Transaction;
 import org.junit.Assert;
 import org.junit.Test;
 
+import java.util.Iterator;
+import java.util.Map;
 import java.util.NavigableMap;
 
 /**
@@ -97,6 +99,49 @@ public class InMemoryTableServiceTest {
     verify123();
   }
 
+  @Test
+  public void testSnapshotReads() {
+    InMemoryTableService.create("snapshot");
+    byte[] row = new byte[] {1};
+    byte[] column = new byte[] {2};
+    byte[] otherColumn = new byte[] {3};
+    // versions 1 and 2 are committed, 3 is in progress, 4 belongs to the reading tx, 5 is after its snapshot
+    for (long version = 1; version <= 5; version++) {
+      NavigableMap<byte[], Update> rowUpdate = Maps.newTreeMap(Bytes.BYTES_COMPARATOR);
+      rowUpdate.put(column, new PutValue(Bytes.toBytes(version)));
+      if (version != 4) {
+        rowUpdate.put(otherColumn, new PutValue(Bytes.toBytes(version)));
+      }
+      NavigableMap<byte[], NavigableMap<byte[], Update>> updates = Maps.newTreeMap(Bytes.BYTES_COMPARATOR);
+      updates.put(row, rowUpdate);
+      InMemoryTableService.merge("snapshot", updates, version);
+    }
+
+    Transaction tx = new Transaction(2L, 4L, new long[0], new long[] {3L}, 3L);
+    Assert.assertArrayEquals(Bytes.toBytes(4L), InMemoryTableService.get("snapshot", row, column, tx));
+    Assert.assertArrayEquals(Bytes.toBytes(2L), InMemoryTableService.get("snapshot", row, otherColumn, tx));
+    Assert.assertArrayEquals(Bytes.toBytes(5L), InMemoryTableService.get("snapshot", row, column, null));
+
+    NavigableMap<byte[], byte[]> latest = InMemoryTableService.getLatest("snapshot", row, null, tx);
+    Assert.assertEquals(2, latest.size());
+    Assert.assertArrayEquals(Bytes.toBytes(4L), latest.get(column));
+    Assert.assertArrayEquals(Bytes.toBytes(2L), latest.get(otherColumn));
+
+    Iterator<Map.Entry<byte[], NavigableMap<byte[], byte[]>>> rows =
+      InMemoryTableService.scan("snapshot", null, null, tx);
+    Assert.assertTrue(rows.hasNext());
+    Map.Entry<byte[], NavigableMap<byte[], byte[]>> scanned = rows.next();
+    Assert.assertArrayEquals(row, scanned.getKey());
+    Assert.assertArrayEquals(Bytes.toBytes(4L), scanned.getValue().get(column));
+    Assert.assertArrayEquals(Bytes.toBytes(2L), scanned.getValue().get(otherColumn));
+    Assert.assertFalse(rows.hasNext());
+
+    // a tx that sees none of the versions does not see the row
+    Assert.assertFalse(InMemoryTableService.scan("snapshot", null, null,
+                                                 new Transaction(0L, 6L, new long[0], new long[0], 6L)).hasNext());
+    InMemoryTableService.drop("snapshot");
+  }
+
   private void verify123() {
     NavigableMap<byte[], NavigableMap<Long, byte[]>> rowFromGet =
       InMemoryTableService.get("table", new byte[]{1}, new Transaction(1L, 2L, new long[0], new long[0], 1L));
@@ -0,0 +1,130 @@
+/*
+ * Copyright © 2018 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.data2.dataset2.lib.table.leveldb;
+
+import co.cask.cdap.api.common.Bytes;
+import co.cask.cdap.api.dataset.DatasetContext;
+import co.cask.cdap.common.conf.CConfiguration;
+import co.cask.cdap.common.conf.Constants;
+import co.cask.cdap.common.utils.DirUtils;
+import co.cask.cdap.data2.dataset2.lib.table.inmemory.PrefixedNamespaces;
+import co.cask.cdap.proto.id.NamespaceId;
+import com.google.common.collect.Maps;
+import com.google.common.io.Files;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.NavigableMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JMH benchmark for concurrent increments on {@link LevelDBMetricsTable}, with single row increments as done by
+ * {@link LevelDBMetricsTable#incrementAndGet(byte[], byte[], long)} and batches of rows as written by the metrics
+ * fact tables. Each thread increments random rows out of a fixed set of rows, hence threads mostly write to
+ * different rows.
+ *
+ * It can be run from the IDE or through the {@link #main(String[])} method with the test classpath, which runs
+ * the benchmark with an increasing number of threads to show how the throughput scales.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class LevelDBMetricsTableBenchmark {
+
+  private static final String TABLE_NAME = "benchmark";
+  private static final int ROWS = 1024;
+  private static final int BATCH_SIZE = 10;
+  private static final byte[] COLUMN = Bytes.toBytes("c");
+
+  private File baseDir;
+  private LevelDBTableService service;
+  private LevelDBMetricsTable table;
+  private byte[][] rows;
+
+  @Setup(Level.Trial)
+  public void setup() throws IOException {
+    baseDir = Files.createTempDir();
+    CConfiguration cConf = CConfiguration.create();
+    cConf.set(Constants.CFG_DATA_LEVELDB_DIR, baseDir.getAbsolutePath());
+    // Without fsync, the benchmark measures the increment path rather than the disk
+    cConf.setBoolean(Constants.CFG_DATA_LEVELDB_FSYNC, false);
+
+    service = new LevelDBTableService();
+    service.setConfiguration(cConf);
+    service.ensureTableExists(PrefixedNamespaces.namespace(cConf, NamespaceId.SYSTEM.getNamespace(), TABLE_NAME));
+    table = new LevelDBMetricsTable(DatasetContext.from(NamespaceId.SYSTEM.getNamespace()), TABLE_NAME,
+                                    service, cConf);
+
+    rows = new byte[ROWS][];
+    for (int i = 0; i < ROWS; i++) {
+      rows[i] = Bytes.toBytes("row" + i);
+    }
+  }
+
+  @TearDown(Level.Trial)
+  public void teardown() throws IOException {
+    table.close();
+    service.close();
+    DirUtils.deleteDirectoryContents(baseDir);
+  }
+
+  @Benchmark
+  public long incrementAndGet() {
+    return table.incrementAndGet(rows[ThreadLocalRandom.current().nextInt(ROWS)], COLUMN, 1L);
+  }
+
+  @Benchmark
+  public void batchIncrement() {
+    NavigableMap<byte[], NavigableMap<byte[], Long>> updates = Maps.newTreeMap(Bytes.BYTES_COMPARATOR);
+    for (int i = 0; i < BATCH_SIZE; i++) {
+      NavigableMap<byte[], Long> columns = Maps.newTreeMap(Bytes.BYTES_COMPARATOR);
+      columns.put(COLUMN, 1L);
+      updates.put(rows[ThreadLocalRandom.current().nextInt(ROWS)], columns);
+    }
+    table.increment(updates);
+  }
+
+  public static void main(String[] args) throws RunnerException {
+    for (int threads : new int[] { 1, 4, 16 }) {
+      Options options = new OptionsBuilder()
+        .include(LevelDBMetricsTableBenchmark.class.getSimpleName())
+        .threads(threads)
+        .build();
+      new Runner(options).run();
+    }
+  }
+}
@@ -16,6 +16,7 @@
 
 package co.cask.cdap.data2.dataset2.lib.table.leveldb;
 
+import co.cask.cdap.api.common.Bytes;
 import co.cask.cdap.api.dataset.DatasetProperties;
 import co.cask.cdap.common.conf.CConfiguration;
 import co.cask.cdap.common.conf.Constants;
@@ -35,18 +36,24 @@ import co.cask.cdap.proto.id.NamespaceId;
 import co.cask.cdap.security.auth.context.AuthenticationContextModules;
 import co.cask.cdap.security.authorization.AuthorizationEnforcementModule;
 import co.cask.cdap.security.authorization.AuthorizationTestModule;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
 import com.google.inject.Guice;
 import com.google.inject.Injector;
+import org.junit.Assert;
 import org.junit.BeforeClass;
 import org.junit.ClassRule;
+import org.junit.Test;
 import org.junit.rules.TemporaryFolder;
 
+import java.util.Collection;
+
 /**
  * metrics table test for levelDB.
  */
 public class LevelDBMetricsTableTest extends MetricsTableTest {
 
-  private static DatasetFramework dsFramework;
+  protected static DatasetFramework dsFramework;
 
   @ClassRule
   public static TemporaryFolder tmpFolder = new TemporaryFolder();
@@ -76,4 +83,27 @@ public class LevelDBMetricsTableTest extends MetricsTableTest {
     return DatasetsUtil.getOrCreateDataset(dsFramework, metricsDatasetInstanceId, MetricsTable.class.getName(),
                                            DatasetProperties.EMPTY, null);
   }
+
+  @Test
+  public void testConcurrentIncrementMultipleInstances() throws Exception {
+    // Increments through different instances of the same table must not be lost
+    final int rounds = 500;
+    byte[] row = Bytes.toBytes("row");
+    byte[] col = Bytes.toBytes("col");
+    Collection<IncThread> threads = ImmutableList.of(
+      new IncThread(getTable("testConcurrentIncrementMultipleInstances"), row, ImmutableMap.of(col, 1L), rounds),
+      new IncThread(getTable("testConcurrentIncrementMultipleInstances"), row, ImmutableMap.of(col, 2L), rounds),
+      new IncThread(getTable("testConcurrentIncrementMultipleInstances"), row, ImmutableMap.of(col, 3L), rounds));
+    for (Thread t : threads) {
+      t.start();
+    }
+    for (IncThread t : threads) {
+      t.join();
+      t.close();
+    }
+
+    try (MetricsTable table = getTable("testConcurrentIncrementMultipleInstances")) {
+      Assert.assertEquals(6L * rounds, Bytes.toLong(table.get(row, col)));
+    }
+  }
 }
@@ -0,0 +1,147 @@
+/*
+ * Copyright © 2018 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.data2.dataset2.lib.table.leveldb;
+
+import co.cask.cdap.api.common.Bytes;
+import co.cask.cdap.api.dataset.table.Row;
+import co.cask.cdap.api.dataset.table.Scanner;
+import co.cask.cdap.common.conf.CConfiguration;
+import co.cask.cdap.common.conf.Constants;
+import co.cask.cdap.common.utils.DirUtils;
+import com.google.common.collect.Maps;
+import com.google.common.io.Files;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.NavigableMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JMH benchmark for comparing point gets and scans on the cell per entry layout of {@link LevelDBTableCore} with the
+ * row per entry layout of {@link PackedLevelDBTableCore}. The table has wide rows, similar to the rows of the metrics
+ * fact tables.
+ *
+ * It can be run from the IDE or through the {@link #main(String[])} method with the test classpath.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class LevelDBTableLayoutBenchmark {
+
+  private static final String TABLE_NAME = "benchmark";
+  private static final int ROWS = 10000;
+  private static final int COLUMNS = 60;
+  private static final int SCAN_ROWS = 100;
+
+  @Param({ "false", "true" })
+  private boolean rowPacked;
+
+  private File baseDir;
+  private LevelDBTableService service;
+  private LevelDBTableCore core;
+  private byte[][] rows;
+  private byte[][] columns;
+
+  @Setup(Level.Trial)
+  public void setup() throws IOException {
+    baseDir = Files.createTempDir();
+    CConfiguration cConf = CConfiguration.create();
+    cConf.set(Constants.CFG_DATA_LEVELDB_DIR, baseDir.getAbsolutePath());
+    cConf.setBoolean(Constants.CFG_DATA_LEVELDB_FSYNC, false);
+
+    service = new LevelDBTableService();
+    service.setConfiguration(cConf);
+    service.ensureTableExists(TABLE_NAME);
+    core = rowPacked ? new PackedLevelDBTableCore(TABLE_NAME, service) : new LevelDBTableCore(TABLE_NAME, service);
+
+    rows = new byte[ROWS][];
+    for (int i = 0; i < ROWS; i++) {
+      rows[i] = Bytes.toBytes(String.format("row%08d", i));
+    }
+    columns = new byte[COLUMNS][];
+    for (int i = 0; i < COLUMNS; i++) {
+      columns[i] = Bytes.toBytes((short) i);
+    }
+    // write one row at a time with all its columns, same as a buffered table flush
+    for (byte[] row : rows) {
+      NavigableMap<byte[], byte[]> values = Maps.newTreeMap(Bytes.BYTES_COMPARATOR);
+      for (byte[] column : columns) {
+        values.put(column, Bytes.toBytes(ThreadLocalRandom.current().nextLong()));
+      }
+      NavigableMap<byte[], NavigableMap<byte[], byte[]>> changes = Maps.newTreeMap(Bytes.BYTES_COMPARATOR);
+      changes.put(row, values);
+      core.persist(changes, System.currentTimeMillis());
+    }
+  }
+
+  @TearDown(Level.Trial)
+  public void teardown() throws IOException {
+    service.close();
+    DirUtils.deleteDirectoryContents(baseDir);
+  }
+
+  @Benchmark
+  public NavigableMap<byte[], byte[]> getRow() throws IOException {
+    return core.getRow(rows[ThreadLocalRandom.current().nextInt(ROWS)], null, null, null, -1, null);
+  }
+
+  @Benchmark
+  public NavigableMap<byte[], byte[]> getColumn() throws IOException {
+    return core.getRow(rows[ThreadLocalRandom.current().nextInt(ROWS)],
+                       new byte[][] { columns[ThreadLocalRandom.current().nextInt(COLUMNS)] }, null, null, -1, null);
+  }
+
+  @Benchmark
+  public void scan(Blackhole blackhole) throws IOException {
+    int start = ThreadLocalRandom.current().nextInt(ROWS - SCAN_ROWS);
+    try (Scanner scanner = core.scan(rows[start], rows[start + SCAN_ROWS], null, null, null)) {
+      Row row;
+      while ((row = scanner.next()) != null) {
+        blackhole.consume(row);
+      }
+    }
+  }
+
+  public static void main(String[] args) throws RunnerException {
+    Options options = new OptionsBuilder()
+      .include(LevelDBTableLayoutBenchmark.class.getSimpleName())
+      .build();
+    new Runner(options).run();
+  }
+}
@@ -29,6 +29,7 @@ import co.cask.cdap.data2.util.TableId;
 import co.cask.cdap.security.auth.context.AuthenticationContextModules;
 import co.cask.cdap.security.authorization.AuthorizationEnforcementModule;
 import co.cask.cdap.security.authorization.AuthorizationTestModule;
+import com.google.common.util.concurrent.Striped;
 import com.google.inject.Guice;
 import com.google.inject.Injector;
 import org.junit.Assert;
@@ -40,6 +41,7 @@ import org.junit.rules.TemporaryFolder;
 import java.io.IOException;
 import java.util.Random;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
 
 /**
  *
@@ -112,6 +114,17 @@ public class LevelDBTableServiceTest {
     Assert.assertEquals(table2Size, service.getTableStats().get(tableId2).getDiskSizeBytes());
   }
 
+  @Test
+  public void testDropTableRemovesRowLocks() throws Exception {
+    String table = "cdap_default.locks";
+    service.ensureTableExists(table);
+    Striped<Lock> locks = service.getRowLocks(table);
+    Assert.assertSame(locks, service.getRowLocks(table));
+
+    service.dropTable(table);
+    Assert.assertNotSame(locks, service.getRowLocks(table));
+  }
+
   private void writeSome(String tableName) throws IOException {
     LevelDBTableCore table = new LevelDBTableCore(tableName, service);
     Random r = new Random();
@@ -0,0 +1,38 @@
+/*
+ * Copyright © 2018 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.data2.dataset2.lib.table.leveldb;
+
+import co.cask.cdap.api.dataset.DatasetProperties;
+import co.cask.cdap.data2.datafabric.dataset.DatasetsUtil;
+import co.cask.cdap.data2.dataset2.lib.table.MetricsTable;
+import co.cask.cdap.proto.id.NamespaceId;
+import com.google.common.collect.ImmutableMap;
+
+/**
+ * Metrics table test for LevelDB tables that store each row as a single LevelDB entry.
+ */
+public class PackedLevelDBMetricsTableTest extends LevelDBMetricsTableTest {
+
+  @Override
+  protected MetricsTable getTable(String name) throws Exception {
+    return DatasetsUtil.getOrCreateDataset(dsFramework, NamespaceId.SYSTEM.dataset(name),
+                                           MetricsTable.class.getName(),
+                                           DatasetProperties.of(
+                                             ImmutableMap.of(LevelDBTableAdmin.PROPERTY_ROW_PACKED, "true")),
+                                           null);
+  }
+}
@@ -0,0 +1,68 @@
+/*
+ * Copyright © 2018 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.data2.dataset2.lib.table.leveldb;
+
+import co.cask.cdap.api.dataset.DatasetContext;
+import co.cask.cdap.api.dataset.DatasetProperties;
+import co.cask.cdap.api.dataset.IncompatibleUpdateException;
+import co.cask.cdap.common.conf.Constants;
+import com.google.common.collect.ImmutableMap;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.Map;
+
+/**
+ * Test for LevelDB tables that store each row as a single LevelDB entry.
+ */
+public class PackedLevelDBTableTest extends LevelDBTableTest {
+
+  private static final LevelDBTableDefinition TABLE_DEFINITION = new LevelDBTableDefinition("foo");
+
+  @Override
+  protected LevelDBTable getTable(DatasetContext datasetContext, String name,
+                                  DatasetProperties props, Map<String, String> runtimeArguments) throws Exception {
+    return super.getTable(datasetContext, name, rowPacked(props), runtimeArguments);
+  }
+
+  @Override
+  protected LevelDBTableAdmin getTableAdmin(DatasetContext datasetContext, String name,
+                                            DatasetProperties props) throws IOException {
+    return super.getTableAdmin(datasetContext, name, rowPacked(props));
+  }
+
+  @Test(expected = IncompatibleUpdateException.class)
+  public void testChangeRowPacked() throws Exception {
+    TABLE_DEFINITION.reconfigure("t", DatasetProperties.EMPTY,
+                                 TABLE_DEFINITION.configure("t", rowPacked(DatasetProperties.EMPTY)));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testRowPackedTransactional() throws Exception {
+    TABLE_DEFINITION.configure("t", DatasetProperties.of(
+      ImmutableMap.of(LevelDBTableAdmin.PROPERTY_ROW_PACKED, "true")));
+  }
+
+  private static DatasetProperties rowPacked(DatasetProperties props) {
+    // row packed tables must not be transactional. The table still gets used with transactions by the tests
+    return DatasetProperties.builder()
+      .addAll(props.getProperties())
+      .add(LevelDBTableAdmin.PROPERTY_ROW_PACKED, "true")
+      .add(Constants.Dataset.TABLE_TX_DISABLED, "true")
+      .build();
+  }
+}
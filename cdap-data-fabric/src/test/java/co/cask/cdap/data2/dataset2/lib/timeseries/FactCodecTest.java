@@ -17,6 +17,7 @@
 package co.cask.cdap.data2.dataset2.lib.timeseries;
 
 import co.cask.cdap.api.dataset.lib.cube.DimensionValue;
+import co.cask.cdap.api.dataset.lib.cube.TimeValue;
 import co.cask.cdap.common.utils.ImmutablePair;
 import co.cask.cdap.data2.dataset2.lib.table.FuzzyRowFilter;
 import co.cask.cdap.data2.dataset2.lib.table.MetricsTable;
@@ -54,6 +55,12 @@ public class FactCodecTest {
     Assert.assertEquals(dimensionValues, codec.getDimensionValues(rowKey));
     Assert.assertEquals("myMetric", codec.getMeasureName(rowKey));
 
+    // testing encoding with a row key template shared by multiple measures
+    byte[] rowKeyTemplate = codec.createRowKeyTemplate(dimensionValues, ts);
+    Assert.assertArrayEquals(rowKey, codec.createRowKey(rowKeyTemplate, "myMetric"));
+    Assert.assertArrayEquals(codec.createRowKey(dimensionValues, "myOtherMetric", ts),
+                             codec.createRowKey(rowKeyTemplate, "myOtherMetric"));
+
     // testing encoding without one dimension
     dimensionValues = ImmutableList.of(new DimensionValue("myTag", "myValue"));
     rowKey = codec.createRowKey(dimensionValues, "mySingleTagMetric", ts);
@@ -153,4 +160,39 @@ public class FactCodecTest {
     // todo: test prefix of multi dimension valued row key is not same one dimension valued row key
     // todo: test that rollTimebaseInterval applies well
   }
+
+  @Test
+  public void testCompacted() {
+    InMemoryTableService.create("FactCodecCompactedTest");
+    MetricsTable table = new InMemoryMetricsTable("FactCodecCompactedTest");
+    int resolution = 60;
+    int rollTimebaseInterval = 60;
+    FactCodec codec = new FactCodec(new EntityTable(table), resolution, rollTimebaseInterval);
+
+    long ts = 1422312900;
+    byte[] rowKey = codec.createRowKey(ImmutableList.of(new DimensionValue("dimension1", "value1")), "myMetric", ts);
+    long timeBase = codec.getRowTimeBase(rowKey);
+    Assert.assertEquals(ts / rollTimebaseInterval * rollTimebaseInterval, timeBase);
+
+    // values spanning more than the row, with gaps, negative deltas and large values
+    List<TimeValue> timeValues = ImmutableList.of(new TimeValue(timeBase, 5),
+                                                  new TimeValue(timeBase + resolution, 3),
+                                                  new TimeValue(timeBase + 10 * resolution, -7),
+                                                  new TimeValue(timeBase + 100 * resolution, Long.MAX_VALUE),
+                                                  new TimeValue(timeBase + 1000 * resolution, 0));
+    byte[] encoded = codec.encodeCompacted(rowKey, timeValues);
+    Assert.assertEquals(timeValues, codec.decodeCompacted(rowKey, encoded));
+    Assert.assertTrue(codec.decodeCompacted(rowKey, codec.encodeCompacted(rowKey, ImmutableList.of())).isEmpty());
+
+    // the compacted column can't be confused with the value columns
+    Assert.assertTrue(codec.isCompactedColumn(codec.getCompactedColumn()));
+    Assert.assertFalse(codec.isCompactedColumn(codec.createColumn(ts)));
+    Assert.assertFalse(codec.isCompactedColumn(codec.createDistributionColumn(ts, 1)));
+
+    // changing the timebase keeps the rest of the row key
+    byte[] otherRowKey = codec.changeTimeBase(rowKey, ts + 2 * rollTimebaseInterval);
+    Assert.assertEquals(timeBase + 2 * rollTimebaseInterval, codec.getRowTimeBase(otherRowKey));
+    Assert.assertEquals(codec.getDimensionValues(rowKey), codec.getDimensionValues(otherRowKey));
+    Assert.assertEquals("myMetric", codec.getMeasureName(otherRowKey));
+  }
 }
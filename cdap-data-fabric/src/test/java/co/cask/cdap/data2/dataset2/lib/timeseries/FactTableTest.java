@@ -35,6 +35,7 @@ import com.google.common.collect.Table;
 import org.junit.Assert;
 import org.junit.Test;
 
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.List;
 import java.util.Map;
@@ -562,6 +563,108 @@ public class FactTableTest {
     Assert.assertEquals(3, splitsWithRows.size());
   }
 
+  @Test
+  public void testCompaction() throws Exception {
+    InMemoryTableService.create("compactionEntityTable");
+    InMemoryTableService.create("compactionDataTable");
+    int resolution = 10;
+    int rollTimebaseInterval = 2;
+    // each compacted row holds the values of six rows
+    int compactionPeriod = 60;
+
+    InMemoryMetricsTable metricsTable = new InMemoryMetricsTable("compactionDataTable");
+    FactTable table = new FactTable(metricsTable, new EntityTable(new InMemoryMetricsTable("compactionEntityTable")),
+                                    resolution, rollTimebaseInterval, compactionPeriod);
+
+    // aligned to start of a compaction period
+    long ts = ((System.currentTimeMillis() / 1000) / compactionPeriod) * compactionPeriod;
+    // two and a half periods of values
+    long[] values = new long[15];
+    for (int i = 0; i < values.length; i++) {
+      values[i] = i % 4 == 0 ? -i : i * 1000;
+      writeInc(table, "metric1", ts + i * resolution, (int) values[i], "dim1", "value1");
+      writeInc(table, "metric2", ts + i * resolution, 1, "dim1", "value1");
+    }
+
+    FactScan scan = new FactScan(ts, ts + 150, "metric1", dimValues("dim1", "value1"));
+    Table<String, List<DimensionValue>, List<TimeValue>> expected = HashBasedTable.create();
+    expected.put("metric1", dimValues("dim1", "value1"), timeValues(ts, resolution, values));
+    assertScan(table, expected, scan);
+    Assert.assertEquals(30, countRows(metricsTable));
+
+    // compacts the first two periods only, as the third one is not complete in the time range
+    Assert.assertEquals(2, table.compact(new FactScan(ts, ts + 150, "metric1", dimValues("dim1", "value1"))));
+    Assert.assertEquals(20, countRows(metricsTable));
+    assertScan(table, expected, scan);
+    // compacting again doesn't rewrite anything
+    Assert.assertEquals(0, table.compact(new FactScan(ts, ts + 150, "metric1", dimValues("dim1", "value1"))));
+
+    // scans within a compacted row only return the values in the time range
+    FactScan partialScan = new FactScan(ts + 30, ts + 80, "metric1", dimValues("dim1", "value1"));
+    expected.clear();
+    expected.put("metric1", dimValues("dim1", "value1"),
+                 timeValues(ts + 30, resolution, Arrays.copyOfRange(values, 3, 9)));
+    assertScan(table, expected, partialScan);
+
+    // values written after compaction replace the compacted values, both in the compacted row and in other rows
+    writeGauge(table, "metric1", ts, 5, "dim1", "value1");
+    values[0] = 5;
+    writeGauge(table, "metric1", ts + 40, 7, "dim1", "value1");
+    values[4] = 7;
+    expected.clear();
+    expected.put("metric1", dimValues("dim1", "value1"), timeValues(ts, resolution, values));
+    assertScan(table, expected, scan);
+    Assert.assertEquals(1, table.compact(new FactScan(ts, ts + 150, "metric1", dimValues("dim1", "value1"))));
+    Assert.assertEquals(20, countRows(metricsTable));
+    assertScan(table, expected, scan);
+
+    // value columns left over by a failed compaction are deleted without rewriting the compacted row
+    writeGauge(table, "metric1", ts + 70, values[7], "dim1", "value1");
+    Assert.assertEquals(21, countRows(metricsTable));
+    assertScan(table, expected, scan);
+    Assert.assertEquals(0, table.compact(new FactScan(ts, ts + 150, "metric1", dimValues("dim1", "value1"))));
+    Assert.assertEquals(20, countRows(metricsTable));
+    assertScan(table, expected, scan);
+
+    // the compacted time is persisted in the table
+    Assert.assertEquals(0L, table.getCompactedTs());
+    table.setCompactedTs(ts + 120);
+    Assert.assertEquals(ts + 120, new FactTable(metricsTable, new EntityTable(new InMemoryMetricsTable(
+      "compactionEntityTable")), resolution, rollTimebaseInterval, compactionPeriod).getCompactedTs());
+
+    // measure names and dimension values are still found in compacted rows
+    Assert.assertEquals(ImmutableSet.of("metric1", "metric2"),
+                        table.findMeasureNames(ImmutableList.of("dim1"), ImmutableMap.of("dim1", "value1"),
+                                               ts + 50, ts + 55));
+
+    // delete a time range spanning compacted and non compacted rows
+    table.delete(new FactScan(ts + 50, ts + 130, "metric1", dimValues("dim1", "value1")));
+    expected.clear();
+    expected.put("metric1", dimValues("dim1", "value1"),
+                 ImmutableList.<TimeValue>builder()
+                   .addAll(timeValues(ts, resolution, Arrays.copyOfRange(values, 0, 5)))
+                   .addAll(timeValues(ts + 140, resolution, values[14]))
+                   .build());
+    assertScan(table, expected, scan);
+
+    // the other measure is untouched
+    expected.clear();
+    long[] ones = new long[15];
+    Arrays.fill(ones, 1L);
+    expected.put("metric2", dimValues("dim1", "value1"), timeValues(ts, resolution, ones));
+    assertScan(table, expected, new FactScan(ts, ts + 150, "metric2", dimValues("dim1", "value1")));
+  }
+
+  private int countRows(InMemoryMetricsTable metricsTable) throws Exception {
+    int count = 0;
+    try (Scanner scanner = metricsTable.scan(null, null, null)) {
+      while (scanner.next() != null) {
+        count++;
+      }
+    }
+    return count;
+  }
+
   private List<TimeValue> timeValues(long ts, int resolution, long... values) {
     List<TimeValue> timeValues = Lists.newArrayList();
     for (int i = 0; i < values.length; i++) {
@@ -576,6 +679,10 @@ public class FactTableTest {
     table.add(ImmutableList.of(new Fact(ts, dimValues(dims), new Measurement(metric, MeasureType.COUNTER, value))));
   }
 
+  private void writeGauge(FactTable table, String metric, long ts, long value, String... dims) {
+    table.add(ImmutableList.of(new Fact(ts, dimValues(dims), new Measurement(metric, MeasureType.GAUGE, value))));
+  }
+
   private List<DimensionValue> dimValues(String... dims) {
     List<DimensionValue> dimensionValues = Lists.newArrayList();
     for (int i = 0; i < dims.length; i += 2) {
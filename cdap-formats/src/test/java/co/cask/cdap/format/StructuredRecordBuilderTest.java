@@ -19,16 +19,28 @@ package co.cask.cdap.format;
 import co.cask.cdap.api.data.format.StructuredRecord;
 import co.cask.cdap.api.data.format.UnexpectedFormatException;
 import co.cask.cdap.api.data.schema.Schema;
+import co.cask.cdap.internal.io.SchemaTypeAdapter;
+import co.cask.cdap.internal.io.StructuredRecordTypeAdapter;
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonObject;
 import org.junit.Assert;
 import org.junit.Test;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamClass;
 import java.text.SimpleDateFormat;
 import java.time.LocalDate;
 import java.time.LocalTime;
 import java.time.ZoneId;
 import java.time.ZoneOffset;
 import java.time.ZonedDateTime;
+import java.util.Arrays;
 import java.util.Date;
+import java.util.Map;
 import java.util.TimeZone;
 
 /**
@@ -198,6 +210,47 @@ public class StructuredRecordBuilderTest {
     Assert.assertNull(StructuredRecord.builder(schema).setDate("x", date).build().getDate("y"));
   }
 
+  @Test
+  public void testFieldIndex() {
+    Schema schema = Schema.recordOf("record",
+                                    Schema.Field.of("id", Schema.of(Schema.Type.INT)),
+                                    Schema.Field.of("name", Schema.nullableOf(Schema.of(Schema.Type.STRING))),
+                                    Schema.Field.of("score", Schema.of(Schema.Type.DOUBLE)));
+    Assert.assertEquals(0, schema.getFieldIndex("id"));
+    Assert.assertEquals(2, schema.getFieldIndex("score"));
+    Assert.assertEquals(-1, schema.getFieldIndex("none"));
+    Assert.assertEquals(-1, Schema.of(Schema.Type.INT).getFieldIndex("id"));
+
+    // Set by name and by position, then get by name and by position
+    StructuredRecord record = StructuredRecord.builder(schema).set(2, 1.5d).set("id", 3).build();
+    Assert.assertEquals(3, (int) record.get(0));
+    Assert.assertNull(record.get(1));
+    Assert.assertEquals(1.5d, (double) record.get("score"), 0d);
+    Assert.assertEquals(StructuredRecord.builder(schema).set("id", 3).set("score", 1.5d).set("name", null).build(),
+                        record);
+  }
+
+  @Test(expected = UnexpectedFormatException.class)
+  public void testSetInvalidFieldIndex() {
+    Schema schema = Schema.recordOf("record", Schema.Field.of("x", Schema.of(Schema.Type.INT)));
+    StructuredRecord.builder(schema).set(1, 1);
+  }
+
+  @Test
+  public void testBuilderReuse() {
+    Schema schema = Schema.recordOf("record",
+                                    Schema.Field.of("x", Schema.of(Schema.Type.INT)),
+                                    Schema.Field.of("y", Schema.of(Schema.Type.NULL)));
+    StructuredRecord.Builder builder = StructuredRecord.builder(schema).set("x", 1).set("y", null);
+    StructuredRecord first = builder.build();
+    StructuredRecord second = builder.set("x", 2).build();
+
+    // Setting values after build doesn't change the record built
+    Assert.assertEquals(1, (int) first.get("x"));
+    Assert.assertEquals(2, (int) second.get("x"));
+    Assert.assertNull(second.get("y"));
+  }
+
   @Test(expected = UnexpectedFormatException.class)
   public void testSetNonExistentField() {
     Schema schema = Schema.recordOf("record", Schema.Field.of("x", Schema.of(Schema.LogicalType.DATE)));
@@ -248,4 +301,49 @@ public class StructuredRecordBuilderTest {
     LocalDate expected = LocalDate.now();
     StructuredRecord.builder(schema).set("id", 1).set("name", "test").setDate("timestamp", expected).build();
   }
+
+  @Test
+  public void testJavaSerialization() throws Exception {
+    Schema schema = Schema.recordOf("test", Schema.Field.of("id", Schema.of(Schema.Type.INT)),
+                                    Schema.Field.of("name", Schema.nullableOf(Schema.of(Schema.Type.STRING))),
+                                    Schema.Field.of("tags", Schema.arrayOf(Schema.of(Schema.Type.STRING))));
+    StructuredRecord record = StructuredRecord.builder(schema)
+      .set("id", 1).set("tags", Arrays.asList("a", "b")).build();
+
+    ByteArrayOutputStream bos = new ByteArrayOutputStream();
+    try (ObjectOutputStream oos = new ObjectOutputStream(bos)) {
+      oos.writeObject(record);
+    }
+    try (ObjectInputStream ois = new ObjectInputStream(new ByteArrayInputStream(bos.toByteArray()))) {
+      StructuredRecord deserialized = (StructuredRecord) ois.readObject();
+      Assert.assertEquals(record, deserialized);
+      Assert.assertEquals(1, (int) deserialized.get("id"));
+      Assert.assertNull(deserialized.get("name"));
+    }
+
+    // The serialized form is the same as the one of earlier versions
+    ObjectStreamClass streamClass = ObjectStreamClass.lookup(StructuredRecord.class);
+    Assert.assertEquals(-6547770456592865613L, streamClass.getSerialVersionUID());
+    Assert.assertNotNull(streamClass.getField("schema"));
+    Assert.assertEquals(Map.class, streamClass.getField("fields").getType());
+  }
+
+  @Test
+  public void testGson() {
+    Gson gson = new GsonBuilder()
+      .registerTypeAdapter(Schema.class, new SchemaTypeAdapter())
+      .registerTypeAdapter(StructuredRecord.class, new StructuredRecordTypeAdapter())
+      .create();
+
+    Schema schema = Schema.recordOf("test", Schema.Field.of("name", Schema.of(Schema.Type.STRING)),
+                                    Schema.Field.of("desc", Schema.nullableOf(Schema.of(Schema.Type.STRING))));
+    StructuredRecord record = StructuredRecord.builder(schema).set("name", "test").build();
+
+    // The record is a json object of the schema and a fields object
+    JsonObject json = gson.toJsonTree(record).getAsJsonObject();
+    Assert.assertEquals(schema, gson.fromJson(json.get("schema"), Schema.class));
+    Assert.assertEquals("test", json.getAsJsonObject("fields").get("name").getAsString());
+
+    Assert.assertEquals(record, gson.fromJson(gson.toJson(record), StructuredRecord.class));
+  }
 }
@@ -24,6 +24,7 @@ import co.cask.cdap.gateway.router.handlers.AuditLogHandler;
 import co.cask.cdap.gateway.router.handlers.AuthenticationHandler;
 import co.cask.cdap.gateway.router.handlers.HttpRequestRouter;
 import co.cask.cdap.gateway.router.handlers.HttpStatusRequestHandler;
+import co.cask.cdap.gateway.router.handlers.OutboundChannelPool;
 import co.cask.cdap.security.auth.AccessTokenTransformer;
 import co.cask.cdap.security.auth.TokenValidator;
 import co.cask.http.SSLConfig;
@@ -84,6 +85,7 @@ public class NettyRouter extends AbstractIdleService {
   private final boolean sslEnabled;
   private final SSLHandlerFactory sslHandlerFactory;
   private InetSocketAddress boundAddress;
+  private OutboundChannelPool channelPool;
 
   private DiscoveryServiceClient discoveryServiceClient;
   private Cancellable serverCancellable;
@@ -137,6 +139,7 @@ public class NettyRouter extends AbstractIdleService {
   protected void startUp() throws Exception {
     tokenValidator.startAndWait();
     ChannelGroup channelGroup = new DefaultChannelGroup(ImmediateEventExecutor.INSTANCE);
+    channelPool = new OutboundChannelPool(cConf);
     serverCancellable = startServer(createServerBootstrap(channelGroup), channelGroup);
   }
 
@@ -195,7 +198,7 @@ public class NettyRouter extends AbstractIdleService {
           // Always let the client to continue sending the request body after the authentication passed
           pipeline.addLast("expect-continue", new HttpServerExpectContinueHandler());
           // for now there's only one hardcoded rule, but if there will be more, we may want it generic and configurable
-          pipeline.addLast("http-request-handler", new HttpRequestRouter(cConf, serviceLookup));
+          pipeline.addLast("http-request-handler", new HttpRequestRouter(serviceLookup, channelPool));
         }
       });
   }
@@ -222,6 +225,8 @@ public class NettyRouter extends AbstractIdleService {
     return () -> {
       List<Future<?>> futures = new ArrayList<>();
       futures.add(channelGroup.close());
+      // Close the pooled connections before the event loops they use are shutdown
+      channelPool.close();
       futures.add(serverBootstrap.config().group().shutdownGracefully(0, 5, TimeUnit.SECONDS));
       futures.add(serverBootstrap.config().childGroup().shutdownGracefully(0, 5, TimeUnit.SECONDS));
 
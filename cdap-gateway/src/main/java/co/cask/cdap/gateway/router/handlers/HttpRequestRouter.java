@@ -17,39 +17,26 @@
 package co.cask.cdap.gateway.router.handlers;
 
 import co.cask.cdap.common.HandlerException;
-import co.cask.cdap.common.conf.CConfiguration;
-import co.cask.cdap.common.conf.Constants;
 import co.cask.cdap.common.discovery.EndpointStrategy;
 import co.cask.cdap.gateway.router.RouterServiceLookup;
-import io.netty.bootstrap.Bootstrap;
-import io.netty.buffer.ByteBufAllocator;
 import io.netty.channel.Channel;
 import io.netty.channel.ChannelDuplexHandler;
 import io.netty.channel.ChannelFuture;
 import io.netty.channel.ChannelFutureListener;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.channel.ChannelInboundHandler;
-import io.netty.channel.ChannelInitializer;
-import io.netty.channel.ChannelOption;
-import io.netty.channel.ChannelPipeline;
 import io.netty.channel.ChannelPromise;
-import io.netty.channel.socket.SocketChannel;
-import io.netty.channel.socket.nio.NioSocketChannel;
 import io.netty.handler.codec.http.DefaultFullHttpResponse;
 import io.netty.handler.codec.http.FullHttpResponse;
-import io.netty.handler.codec.http.HttpClientCodec;
 import io.netty.handler.codec.http.HttpRequest;
 import io.netty.handler.codec.http.HttpResponse;
 import io.netty.handler.codec.http.HttpResponseStatus;
 import io.netty.handler.codec.http.HttpUtil;
 import io.netty.handler.codec.http.HttpVersion;
 import io.netty.handler.codec.http.LastHttpContent;
-import io.netty.handler.ssl.SslContext;
-import io.netty.handler.ssl.SslContextBuilder;
-import io.netty.handler.ssl.SslHandler;
-import io.netty.handler.ssl.util.InsecureTrustManagerFactory;
-import io.netty.handler.timeout.IdleStateHandler;
 import io.netty.util.ReferenceCountUtil;
+import io.netty.util.concurrent.Future;
+import io.netty.util.concurrent.FutureListener;
 import org.apache.twill.discovery.Discoverable;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -58,35 +45,29 @@ import java.io.Closeable;
 import java.io.Flushable;
 import java.nio.channels.ClosedChannelException;
 import java.nio.charset.StandardCharsets;
-import java.util.Arrays;
-import java.util.HashMap;
 import java.util.LinkedList;
-import java.util.Map;
 import java.util.Queue;
-import javax.annotation.Nullable;
-import javax.net.ssl.SSLException;
 
 /**
  * A {@link ChannelInboundHandler} for forwarding incoming request to appropriate CDAP service endpoint
  * based on the request. This class doesn't need to be thread safe as Netty will make sure there is no
  * concurrent calls to ChannelHandler and each call always have a happens-before relationship to the previous call.
+ * Connections to the internal services are acquired from the router wide {@link OutboundChannelPool} for each
+ * request and released back to it when the response is completed.
  */
 public class HttpRequestRouter extends ChannelDuplexHandler {
 
   private static final Logger LOG = LoggerFactory.getLogger(HttpRequestRouter.class);
-  private static final byte[] HTTPS_SCHEME_BYTES = Constants.Security.SSL_URI_SCHEME.getBytes();
 
-  private final CConfiguration cConf;
   private final RouterServiceLookup serviceLookup;
-  private final Map<Discoverable, Queue<MessageSender>> messageSenders;
+  private final OutboundChannelPool channelPool;
   private int inflightRequests;
   private MessageSender currentMessageSender;
   private ChannelFutureListener failureResponseListener;
 
-  public HttpRequestRouter(CConfiguration cConf, RouterServiceLookup serviceLookup) {
-    this.cConf = cConf;
+  public HttpRequestRouter(RouterServiceLookup serviceLookup, OutboundChannelPool channelPool) {
     this.serviceLookup = serviceLookup;
-    this.messageSenders = new HashMap<>();
+    this.channelPool = channelPool;
   }
 
   @Override
@@ -118,9 +99,7 @@ public class HttpRequestRouter extends ChannelDuplexHandler {
           }
         };
         HttpRequest request = (HttpRequest) msg;
-        currentMessageSender = getMessageSender(
-          inboundChannel, getDiscoverable(request)
-        );
+        currentMessageSender = new MessageSender(channelPool, inboundChannel, getDiscoverable(request));
       }
 
       if (inflightRequests == 1 && currentMessageSender != null) {
@@ -151,9 +130,10 @@ public class HttpRequestRouter extends ChannelDuplexHandler {
       }
       inflightRequests = 0;
 
-      // Recycle the message sender
+      // Release the connection of the message sender back to the pool
       if (currentMessageSender != null) {
-        messageSenders.get(currentMessageSender.getDiscoverable()).add(currentMessageSender);
+        currentMessageSender.release();
+        currentMessageSender = null;
       }
     }
   }
@@ -171,11 +151,7 @@ public class HttpRequestRouter extends ChannelDuplexHandler {
   public void channelInactive(ChannelHandlerContext ctx) {
     if (currentMessageSender != null) {
       currentMessageSender.close();
-    }
-    for (Map.Entry<Discoverable, Queue<MessageSender>> entry : messageSenders.entrySet()) {
-      for (MessageSender sender : entry.getValue()) {
-        sender.close();
-      }
+      currentMessageSender = null;
     }
     ctx.fireChannelInactive();
   }
@@ -213,28 +189,6 @@ public class HttpRequestRouter extends ChannelDuplexHandler {
     return discoverable;
   }
 
-  /**
-   * Returns the {@link MessageSender} for writing messages to the endpoint represented by the given
-   * {@link Discoverable}.
-   */
-  private MessageSender getMessageSender(Channel inboundChannel,
-                                         Discoverable discoverable) {
-    Queue<MessageSender> senders = messageSenders.computeIfAbsent(discoverable, k -> new LinkedList<>());
-
-    MessageSender sender = senders.poll();
-
-    // Found a MessageSender to reuse, return it
-    if (sender != null) {
-      LOG.trace("Reuse message sender for {}", discoverable);
-      return sender;
-    }
-
-    // Create new MessageSender
-    sender = new MessageSender(cConf, inboundChannel, discoverable);
-    LOG.trace("Create new message sender for {}", discoverable);
-    return sender;
-  }
-
   private String getRequestLine(HttpRequest request) {
     return request.method() + " " + request.uri() + " " + request.protocolVersion();
   }
@@ -257,55 +211,33 @@ public class HttpRequestRouter extends ChannelDuplexHandler {
   }
 
   /**
-   * For sending messages to outbound channel while maintaining the order of messages according to
-   * the order that {@link #send(Object, ChannelFutureListener)} method is called.
+   * For sending messages of one request to outbound channel while maintaining the order of messages according to
+   * the order that {@link #send(Object, ChannelFutureListener)} method is called. The outbound channel is
+   * acquired from the {@link OutboundChannelPool} on the first message.
    */
   private static final class MessageSender implements Flushable, Closeable {
 
+    private final OutboundChannelPool channelPool;
+    private final Channel inboundChannel;
     private final Discoverable discoverable;
     private final Queue<OutboundMessage> pendingMessages;
-    private final Bootstrap clientBootstrap;
-    private volatile SslContext sslContext;
+    private final ChannelFutureListener onCloseListener;
     private Channel outboundChannel;
     private boolean closed;
     private boolean connecting;
 
-    private MessageSender(final CConfiguration cConf, final Channel inboundChannel, final Discoverable discoverable) {
+    private MessageSender(OutboundChannelPool channelPool, Channel inboundChannel, Discoverable discoverable) {
+      this.channelPool = channelPool;
+      this.inboundChannel = inboundChannel;
       this.discoverable = discoverable;
       this.pendingMessages = new LinkedList<>();
-
-      // A channel listener for resetting the state of this message sender on closing of outbound channel
-      final ChannelFutureListener onCloseResetListener = new ChannelFutureListener() {
-        @Override
-        public void operationComplete(ChannelFuture future) {
-          outboundChannel = null;
-          connecting = false;
+      // A channel listener for giving back the outbound channel if it get closed while this sender is using it
+      this.onCloseListener = future -> {
+        if (future.channel() == outboundChannel) {
+          closed = true;
+          releaseChannel(false);
         }
       };
-
-      // Create a client Bootstrap for connecting to internal services
-      // It must be create using the same EventLoopGroup as the inbound channel to make
-      // sure thread safety between the inbound and outbound channels callbacks.
-      this.clientBootstrap = new Bootstrap()
-        .group(inboundChannel.eventLoop())
-        .channel(NioSocketChannel.class)
-        .option(ChannelOption.SO_KEEPALIVE, true)
-        .handler(new ChannelInitializer<SocketChannel>() {
-          @Override
-          protected void initChannel(SocketChannel ch) throws Exception {
-            ch.closeFuture().addListener(onCloseResetListener);
-            ChannelPipeline pipeline = ch.pipeline();
-
-            SslHandler sslHandler = getSslHandler(discoverable, ch.alloc());
-            if (sslHandler != null) {
-              pipeline.addLast("ssl", sslHandler);
-            }
-            pipeline.addLast("idle-state-handler",
-                             new IdleStateHandler(0, 0, cConf.getInt(Constants.Router.CONNECTION_TIMEOUT_SECS)));
-            pipeline.addLast("codec", new HttpClientCodec());
-            pipeline.addLast("forwarder", new OutboundHandler(inboundChannel));
-          }
-        });
     }
 
     /**
@@ -314,7 +246,12 @@ public class HttpRequestRouter extends ChannelDuplexHandler {
      * @param msg the message to be sent
      * @param writeCompletedListener a {@link ChannelFutureListener} to be notified when the write completed
      */
-    void send(Object msg, ChannelFutureListener writeCompletedListener) {
+    void send(Object msg, ChannelFutureListener writeCompletedListener) throws Exception {
+      if (closed) {
+        ReferenceCountUtil.release(msg);
+        writeCompletedListener.operationComplete(inboundChannel.newFailedFuture(new ClosedChannelException()));
+        return;
+      }
       if (outboundChannel != null) {
         outboundChannel.write(msg).addListener(writeCompletedListener);
         return;
@@ -328,31 +265,30 @@ public class HttpRequestRouter extends ChannelDuplexHandler {
         return;
       }
 
-      // Make a new connection
-      ChannelFuture connectFuture = clientBootstrap.connect(discoverable.getSocketAddress());
-      connectFuture.addListener(new ChannelFutureListener() {
-        @Override
-        public void operationComplete(ChannelFuture future) throws Exception {
-          // Always remember the outbound channel even if the connection fail.
-          // This make sure any message received before the inbound channel is closed will not get forwarded
-          outboundChannel = future.channel();
-          connecting = false;
-
-          if (future.isSuccess()) {
-            // If this sender is closed (because inbound channel is closed), just close the outbound channel
-            if (closed) {
-              Channels.closeOnFlush(outboundChannel);
-            }
-          }
-          OutboundMessage message = pendingMessages.poll();
-          while (message != null) {
-            processMessage(message, future);
-            message = pendingMessages.poll();
-          }
-          if (future.isSuccess()) {
-            flush();
+      // Acquire a connection. The pool uses the event loop of the inbound channel for the connection
+      // to make sure thread safety between the inbound and outbound channels callbacks.
+      Future<Channel> acquireFuture = channelPool.acquire(inboundChannel.eventLoop(), discoverable);
+      acquireFuture.addListener((FutureListener<Channel>) future -> {
+        connecting = false;
+
+        if (future.isSuccess()) {
+          Channel channel = future.getNow();
+          // If this sender is closed (because inbound channel is closed), the connection is not used at all
+          if (closed) {
+            channelPool.release(channel);
+          } else {
+            LOG.trace("Acquired connection {} for {}", channel, discoverable);
+            channel.pipeline().get(OutboundHandler.class).bind(inboundChannel);
+            channel.closeFuture().addListener(onCloseListener);
+            outboundChannel = channel;
           }
         }
+        OutboundMessage message = pendingMessages.poll();
+        while (message != null) {
+          processMessage(message, future);
+          message = pendingMessages.poll();
+        }
+        flush();
       });
 
       connecting = true;
@@ -365,42 +301,45 @@ public class HttpRequestRouter extends ChannelDuplexHandler {
       }
     }
 
-    @Override
-    public void close() {
+    /**
+     * Releases the outbound channel back to the pool after the response is completed. The channel is closed
+     * instead of being reused if the request or response doesn't allow it.
+     */
+    void release() {
       if (!closed) {
         closed = true;
-        if (outboundChannel != null) {
-          Channels.closeOnFlush(outboundChannel);
-        }
+        releaseChannel(true);
       }
     }
 
-    Discoverable getDiscoverable() {
-      return discoverable;
+    @Override
+    public void close() {
+      if (!closed) {
+        closed = true;
+        releaseChannel(false);
+      }
     }
 
     /**
-     * Returns the {@link SslContext} to be used for a given discoverable endpoint
+     * Gives back the outbound channel, if there is one, to the pool.
      *
-     * @param discoverable the endpoint to connect to
-     * @return the {@link SslContext} or {@code null} if SSL is not needed
+     * @param reuse {@code true} to keep the channel open for reuse if it is in a reusable state
      */
-    @Nullable
-    private SslHandler getSslHandler(Discoverable discoverable, ByteBufAllocator alloc) throws SSLException {
-      if (!Arrays.equals(HTTPS_SCHEME_BYTES, discoverable.getPayload())) {
-        return null;
-      }
-      SslContext context = sslContext;
-      if (context != null) {
-        return context.newHandler(alloc);
+    private void releaseChannel(boolean reuse) {
+      Channel channel = outboundChannel;
+      if (channel == null) {
+        return;
       }
-      synchronized (this) {
-        context = sslContext;
-        if (context == null) {
-          sslContext = context = SslContextBuilder.forClient()
-                                                  .trustManager(InsecureTrustManagerFactory.INSTANCE).build();
-        }
-        return context.newHandler(alloc);
+      outboundChannel = null;
+      channel.closeFuture().removeListener(onCloseListener);
+
+      OutboundHandler handler = channel.pipeline().get(OutboundHandler.class);
+      if (reuse && handler != null && handler.isReusable(channel)) {
+        handler.unbind();
+        channelPool.release(channel);
+      } else {
+        // Only give it back after it is closed, so that the pool won't hand it out again
+        channel.close().addListener(future -> channelPool.release(channel));
       }
     }
 
@@ -408,17 +347,18 @@ public class HttpRequestRouter extends ChannelDuplexHandler {
      * Process the message by sending to the given channel or have a failure call to the message callback,
      * depending on the state of this sender.
      */
-    private void processMessage(OutboundMessage message, ChannelFuture channelFuture) throws Exception {
-      Channel channel = channelFuture.channel();
-
+    private void processMessage(OutboundMessage message, Future<Channel> channelFuture) throws Exception {
       if (closed) {
-        message.writeCompletedListener.operationComplete(channel.newFailedFuture(new ClosedChannelException()));
+        ReferenceCountUtil.release(message.message);
+        message.writeCompletedListener.operationComplete(
+          inboundChannel.newFailedFuture(new ClosedChannelException()));
         return;
       }
       if (channelFuture.isSuccess()) {
-        message.write(channelFuture.channel());
+        message.write(channelFuture.getNow());
       } else {
-        message.writeCompletedListener.operationComplete(channelFuture);
+        ReferenceCountUtil.release(message.message);
+        message.writeCompletedListener.operationComplete(inboundChannel.newFailedFuture(channelFuture.cause()));
       }
     }
   }
@@ -0,0 +1,360 @@
+/*
+ * Copyright © 2018 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package co.cask.cdap.gateway.router.handlers;
+
+import co.cask.cdap.common.conf.CConfiguration;
+import co.cask.cdap.common.conf.Constants;
+import io.netty.bootstrap.Bootstrap;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelOption;
+import io.netty.channel.ChannelPipeline;
+import io.netty.channel.EventLoop;
+import io.netty.channel.pool.AbstractChannelPoolHandler;
+import io.netty.channel.pool.ChannelHealthChecker;
+import io.netty.channel.pool.ChannelPool;
+import io.netty.channel.pool.FixedChannelPool;
+import io.netty.channel.socket.nio.NioSocketChannel;
+import io.netty.handler.codec.http.HttpClientCodec;
+import io.netty.handler.ssl.SslContext;
+import io.netty.handler.ssl.SslContextBuilder;
+import io.netty.handler.ssl.SslHandler;
+import io.netty.handler.ssl.util.InsecureTrustManagerFactory;
+import io.netty.handler.timeout.IdleStateHandler;
+import io.netty.util.AttributeKey;
+import io.netty.util.concurrent.Future;
+import io.netty.util.concurrent.FutureListener;
+import io.netty.util.concurrent.ScheduledFuture;
+import org.apache.twill.discovery.Discoverable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import javax.annotation.Nullable;
+import javax.net.ssl.SSLException;
+
+/**
+ * A router wide pool of keep-alive connections to internal services, shared by all inbound channels.
+ *
+ * Connections are pooled per {@link Discoverable} endpoint and per {@link EventLoop}, so that a pooled connection
+ * always uses the same {@link EventLoop} as the inbound channel it serves. This keeps the thread safety guarantee
+ * between the inbound and outbound channel callbacks that {@link HttpRequestRouter} relies on. Each pool holds at
+ * most {@link Constants.Router#CONNECTION_POOL_MAX_CONNECTIONS} connections; acquires beyond that wait for a
+ * connection to be released. Connections are health checked when acquired and released, and idle connections
+ * are closed by the {@link OutboundHandler} after {@link Constants.Router#CONNECTION_TIMEOUT_SECS}.
+ *
+ * A pool without acquired connections for the same idle timeout is closed and removed by a task running on its
+ * {@link EventLoop}, so that pools of endpoints that are gone don't accumulate. The same task periodically logs
+ * the pool statistics.
+ */
+public final class OutboundChannelPool implements Closeable {
+
+  private static final Logger LOG = LoggerFactory.getLogger(OutboundChannelPool.class);
+  private static final byte[] HTTPS_SCHEME_BYTES = Constants.Security.SSL_URI_SCHEME.getBytes();
+  private static final AttributeKey<EndpointPool> POOL = AttributeKey.valueOf("router.outbound.pool");
+  // Time to keep a pool without acquired connections when the idle timeout is disabled
+  private static final int DEFAULT_POOL_IDLE_SECS = 60;
+  private static final long STATS_LOG_INTERVAL_NANOS = TimeUnit.MINUTES.toNanos(10);
+
+  private final int idleTimeoutSecs;
+  private final int poolIdleSecs;
+  private final int maxConnections;
+  private final long acquireTimeoutMillis;
+  private final ConcurrentMap<EventLoop, EventLoopPools> pools;
+  private final LongAdder hits;
+  private final LongAdder misses;
+  private final LongAdder acquireWaitNanos;
+  private final AtomicLong lastStatsLogNanos;
+  private volatile long lastStatsLogAcquires;
+  private volatile SslContext sslContext;
+
+  public OutboundChannelPool(CConfiguration cConf) {
+    this.idleTimeoutSecs = cConf.getInt(Constants.Router.CONNECTION_TIMEOUT_SECS);
+    this.poolIdleSecs = idleTimeoutSecs > 0 ? idleTimeoutSecs : DEFAULT_POOL_IDLE_SECS;
+    this.maxConnections = cConf.getInt(Constants.Router.CONNECTION_POOL_MAX_CONNECTIONS);
+    this.acquireTimeoutMillis = cConf.getLong(Constants.Router.CONNECTION_POOL_ACQUIRE_TIMEOUT_MS);
+    this.pools = new ConcurrentHashMap<>();
+    this.hits = new LongAdder();
+    this.misses = new LongAdder();
+    this.acquireWaitNanos = new LongAdder();
+    this.lastStatsLogNanos = new AtomicLong(System.nanoTime());
+  }
+
+  /**
+   * Acquires a connection to the given endpoint. The returned {@link Channel} is registered to the given
+   * {@link EventLoop} and must be given back through {@link #release(Channel)}, no matter if it is still usable.
+   *
+   * @param eventLoop the {@link EventLoop} of the inbound channel that uses the connection
+   * @param discoverable the endpoint to connect to
+   * @return a {@link Future} that completes with the connected {@link Channel}
+   */
+  public Future<Channel> acquire(EventLoop eventLoop, Discoverable discoverable) {
+    final long startTime = System.nanoTime();
+    final EndpointPool pool = pools.computeIfAbsent(eventLoop, EventLoopPools::new).reserve(discoverable);
+    Future<Channel> future = pool.pool.acquire();
+    // This listener is added first, hence the channel is tagged before the caller sees it
+    future.addListener((FutureListener<Channel>) f -> {
+      acquireWaitNanos.add(System.nanoTime() - startTime);
+      if (!f.isSuccess()) {
+        pool.unreserve();
+        return;
+      }
+      // Only a channel that was acquired before is tagged with the pool
+      if (f.getNow().attr(POOL).setIfAbsent(pool) == null) {
+        misses.increment();
+      } else {
+        hits.increment();
+      }
+    });
+    return future;
+  }
+
+  /**
+   * Releases a connection acquired through {@link #acquire(EventLoop, Discoverable)}. An active connection is
+   * returned to the pool for reuse, while an inactive one is discarded.
+   */
+  public void release(Channel channel) {
+    EndpointPool pool = channel.attr(POOL).get();
+    if (pool == null) {
+      throw new IllegalArgumentException("Channel " + channel + " was not acquired from this pool");
+    }
+    pool.pool.release(channel);
+    pool.unreserve();
+  }
+
+  /**
+   * Returns the number of connection pools, which is one per endpoint and {@link EventLoop} in use.
+   */
+  public int getPoolCount() {
+    int count = 0;
+    for (EventLoopPools eventLoopPools : pools.values()) {
+      count += eventLoopPools.pools.size();
+    }
+    return count;
+  }
+
+  /**
+   * Returns the number of acquires that reused a pooled connection.
+   */
+  public long getHits() {
+    return hits.sum();
+  }
+
+  /**
+   * Returns the number of acquires that opened a new connection.
+   */
+  public long getMisses() {
+    return misses.sum();
+  }
+
+  /**
+   * Returns the total time in nanoseconds spent on acquiring connections, which includes connection setup for
+   * misses and waiting for a connection when a pool is full.
+   */
+  public long getAcquireWaitNanos() {
+    return acquireWaitNanos.sum();
+  }
+
+  @Override
+  public void close() {
+    LOG.debug("Closing outbound channel pool. Hits: {}, misses: {}, acquire wait: {} ms",
+              getHits(), getMisses(), TimeUnit.NANOSECONDS.toMillis(getAcquireWaitNanos()));
+    for (EventLoopPools eventLoopPools : pools.values()) {
+      eventLoopPools.close();
+    }
+    pools.clear();
+  }
+
+  /**
+   * Logs the pool statistics at most once per {@link #STATS_LOG_INTERVAL_NANOS}, if there were acquires since the
+   * last time they were logged.
+   */
+  private void logStats() {
+    long now = System.nanoTime();
+    long lastLogTime = lastStatsLogNanos.get();
+    if (now - lastLogTime < STATS_LOG_INTERVAL_NANOS || !lastStatsLogNanos.compareAndSet(lastLogTime, now)) {
+      return;
+    }
+    long hits = getHits();
+    long misses = getMisses();
+    long acquires = hits + misses;
+    if (acquires == lastStatsLogAcquires) {
+      return;
+    }
+    lastStatsLogAcquires = acquires;
+    LOG.info("Outbound connection pools: {} pools, {} hits, {} misses, {} ms average acquire wait",
+             getPoolCount(), hits, misses, TimeUnit.NANOSECONDS.toMillis(getAcquireWaitNanos()) / acquires);
+  }
+
+  private ChannelPool createPool(EventLoop eventLoop, final Discoverable discoverable) {
+    Bootstrap bootstrap = new Bootstrap()
+      .group(eventLoop)
+      .channel(NioSocketChannel.class)
+      .option(ChannelOption.SO_KEEPALIVE, true)
+      .remoteAddress(discoverable.getSocketAddress());
+
+    FixedChannelPool pool = new FixedChannelPool(bootstrap, new AbstractChannelPoolHandler() {
+      @Override
+      public void channelCreated(Channel ch) throws Exception {
+        ChannelPipeline pipeline = ch.pipeline();
+        SslHandler sslHandler = getSslHandler(discoverable, ch.alloc());
+        if (sslHandler != null) {
+          pipeline.addLast("ssl", sslHandler);
+        }
+        pipeline.addLast("idle-state-handler", new IdleStateHandler(0, 0, idleTimeoutSecs));
+        pipeline.addLast("codec", new HttpClientCodec());
+        pipeline.addLast("forwarder", new OutboundHandler());
+      }
+    }, ChannelHealthChecker.ACTIVE, FixedChannelPool.AcquireTimeoutAction.FAIL, acquireTimeoutMillis,
+       maxConnections, Integer.MAX_VALUE, true, true);
+    LOG.trace("Created outbound channel pool for {} on {}", discoverable, eventLoop);
+    return pool;
+  }
+
+  /**
+   * Returns the {@link SslHandler} to be used for a given discoverable endpoint
+   *
+   * @param discoverable the endpoint to connect to
+   * @return the {@link SslHandler} or {@code null} if SSL is not needed
+   */
+  @Nullable
+  private SslHandler getSslHandler(Discoverable discoverable, ByteBufAllocator alloc) throws SSLException {
+    if (!Arrays.equals(HTTPS_SCHEME_BYTES, discoverable.getPayload())) {
+      return null;
+    }
+    SslContext context = sslContext;
+    if (context != null) {
+      return context.newHandler(alloc);
+    }
+    synchronized (this) {
+      context = sslContext;
+      if (context == null) {
+        sslContext = context = SslContextBuilder.forClient()
+                                                .trustManager(InsecureTrustManagerFactory.INSTANCE).build();
+      }
+      return context.newHandler(alloc);
+    }
+  }
+
+  /**
+   * The pools of all endpoints for one {@link EventLoop}, with the task that evicts idle pools. The task runs on
+   * the {@link EventLoop}.
+   */
+  private final class EventLoopPools {
+
+    private final EventLoop eventLoop;
+    private final ConcurrentMap<Discoverable, EndpointPool> pools;
+    private final ScheduledFuture<?> evictFuture;
+
+    EventLoopPools(EventLoop eventLoop) {
+      this.eventLoop = eventLoop;
+      this.pools = new ConcurrentHashMap<>();
+      this.evictFuture = eventLoop.scheduleAtFixedRate(this::evictIdlePools, poolIdleSecs, poolIdleSecs,
+                                                       TimeUnit.SECONDS);
+    }
+
+    /**
+     * Returns the pool of the given endpoint, with a connection reserved to be acquired from it.
+     */
+    EndpointPool reserve(Discoverable discoverable) {
+      EndpointPool pool = pools.computeIfAbsent(discoverable, k -> new EndpointPool(createPool(eventLoop, k)));
+      // The pool may be evicted concurrently, in which case it is replaced by a new one
+      while (!pool.reserve()) {
+        pools.remove(discoverable, pool);
+        pool = pools.computeIfAbsent(discoverable, k -> new EndpointPool(createPool(eventLoop, k)));
+      }
+      return pool;
+    }
+
+    private void evictIdlePools() {
+      long evictTime = System.nanoTime() - TimeUnit.SECONDS.toNanos(poolIdleSecs);
+      for (Map.Entry<Discoverable, EndpointPool> entry : pools.entrySet()) {
+        EndpointPool pool = entry.getValue();
+        if (pool.evict(evictTime)) {
+          pools.remove(entry.getKey(), pool);
+          pool.pool.close();
+          LOG.trace("Closed idle outbound channel pool for {}", entry.getKey());
+        }
+      }
+      logStats();
+    }
+
+    void close() {
+      evictFuture.cancel(false);
+      for (EndpointPool pool : pools.values()) {
+        pool.pool.close();
+      }
+      pools.clear();
+    }
+  }
+
+  /**
+   * The {@link ChannelPool} of one endpoint, with the number of connections acquired from it.
+   */
+  private static final class EndpointPool {
+
+    private final ChannelPool pool;
+    // the following are guarded by this
+    private int acquired;
+    private long lastUsedNanos;
+    private boolean evicted;
+
+    EndpointPool(ChannelPool pool) {
+      this.pool = pool;
+      this.lastUsedNanos = System.nanoTime();
+    }
+
+    /**
+     * Reserves a connection to be acquired from this pool.
+     *
+     * @return {@code false} if this pool was evicted and cannot be used
+     */
+    synchronized boolean reserve() {
+      if (evicted) {
+        return false;
+      }
+      acquired++;
+      lastUsedNanos = System.nanoTime();
+      return true;
+    }
+
+    synchronized void unreserve() {
+      acquired--;
+      lastUsedNanos = System.nanoTime();
+    }
+
+    /**
+     * Marks this pool as evicted if it has no acquired connection and was last used before the given time.
+     *
+     * @return {@code true} if this pool is evicted
+     */
+    synchronized boolean evict(long evictTimeNanos) {
+      if (acquired == 0 && lastUsedNanos - evictTimeNanos <= 0) {
+        evicted = true;
+      }
+      return evicted;
+    }
+  }
+}
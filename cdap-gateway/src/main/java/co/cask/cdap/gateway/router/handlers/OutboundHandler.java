@@ -26,28 +26,58 @@ import io.netty.handler.codec.http.HttpUtil;
 import io.netty.handler.codec.http.LastHttpContent;
 import io.netty.handler.timeout.IdleState;
 import io.netty.handler.timeout.IdleStateEvent;
+import io.netty.util.ReferenceCountUtil;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import javax.annotation.Nullable;
+
 /**
  * A {@link ChannelDuplexHandler} for forwarding requests/responses between the router and the internal service.
  * It also handle idle state event for closing idled internal connections.
+ *
+ * The internal connections are pooled by the {@link OutboundChannelPool}, hence this handler is bound to an
+ * inbound channel only while the connection is used for forwarding a request.
  */
 public class OutboundHandler extends ChannelDuplexHandler {
   private static final Logger LOG = LoggerFactory.getLogger(OutboundHandler.class);
 
-  private final Channel inboundChannel;
+  @Nullable
+  private Channel inboundChannel;
   private boolean requestInProgress;
+  private boolean requestWritten;
   private boolean keepAlive;
 
-  public OutboundHandler(Channel inboundChannel) {
+  /**
+   * Binds this handler to the given inbound channel for forwarding responses to.
+   */
+  void bind(Channel inboundChannel) {
     this.inboundChannel = inboundChannel;
   }
 
+  /**
+   * Unbinds this handler from the inbound channel when the connection is returned to the pool.
+   */
+  void unbind() {
+    this.inboundChannel = null;
+  }
+
+  /**
+   * Returns {@code true} if the last request and response are completed and the connection can be reused.
+   */
+  boolean isReusable(Channel channel) {
+    return !requestInProgress && requestWritten && keepAlive && channel.isActive();
+  }
+
   @Override
   public void channelRead(ChannelHandlerContext ctx, Object msg) throws Exception {
-    // One receiving messages from the internal service, forward it to the inbound channel
-    inboundChannel.write(msg);
+    Channel inboundChannel = this.inboundChannel;
+    if (inboundChannel == null) {
+      // Nothing is expected from an idle pooled connection. It cannot be reused safely anymore.
+      ReferenceCountUtil.release(msg);
+      ctx.channel().close();
+      return;
+    }
 
     if (msg instanceof HttpResponse) {
       keepAlive = HttpUtil.isKeepAlive((HttpResponse) msg);
@@ -57,11 +87,19 @@ public class OutboundHandler extends ChannelDuplexHandler {
     if (msg instanceof LastHttpContent) {
       requestInProgress = false;
     }
+
+    // One receiving messages from the internal service, forward it to the inbound channel.
+    // The state must be updated before forwarding, as the last response content can release this connection
+    // to the pool, which can hand it out for another request immediately.
+    inboundChannel.write(msg);
   }
 
   @Override
   public void channelReadComplete(ChannelHandlerContext ctx) throws Exception {
-    inboundChannel.flush();
+    Channel inboundChannel = this.inboundChannel;
+    if (inboundChannel != null) {
+      inboundChannel.flush();
+    }
   }
 
   @Override
@@ -69,14 +107,21 @@ public class OutboundHandler extends ChannelDuplexHandler {
     // A request starts with a HttpRequest
     if (msg instanceof HttpRequest) {
       requestInProgress = true;
+      requestWritten = false;
       keepAlive = HttpUtil.isKeepAlive((HttpRequest) msg);
     }
+    // and ends with the last http content, which must be fully written before the connection can be reused
+    if (msg instanceof LastHttpContent) {
+      ctx.write(msg, promise.unvoid()).addListener(future -> requestWritten = future.isSuccess());
+      return;
+    }
     ctx.write(msg, promise);
   }
 
   @Override
   public void channelWritabilityChanged(ChannelHandlerContext ctx) throws Exception {
-    if (requestInProgress) {
+    final Channel inboundChannel = this.inboundChannel;
+    if (requestInProgress && inboundChannel != null) {
       final Channel channel = ctx.channel();
       ctx.executor().execute(() -> {
         // If outboundChannel is not saturated anymore, continue accepting
@@ -97,7 +142,8 @@ public class OutboundHandler extends ChannelDuplexHandler {
   @Override
   public void channelInactive(ChannelHandlerContext ctx) throws Exception {
     // Close the inbound channel if there is request in progress, or the last request/response has keep-alive == false
-    if (requestInProgress || !keepAlive) {
+    Channel inboundChannel = this.inboundChannel;
+    if (inboundChannel != null && (requestInProgress || !keepAlive)) {
       Channels.closeOnFlush(inboundChannel);
     }
     ctx.fireChannelInactive();
@@ -0,0 +1,128 @@
+/*
+ * Copyright © 2018 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package co.cask.cdap.gateway.router.handlers;
+
+import co.cask.cdap.common.conf.CConfiguration;
+import co.cask.cdap.common.conf.Constants;
+import co.cask.cdap.common.guice.ConfigModule;
+import co.cask.cdap.common.guice.DiscoveryRuntimeModule;
+import co.cask.cdap.common.guice.IOModule;
+import co.cask.cdap.security.auth.AccessTokenCodec;
+import co.cask.cdap.security.auth.AccessTokenIdentifier;
+import co.cask.cdap.security.auth.AccessTokenTransformer;
+import co.cask.cdap.security.auth.TokenManager;
+import co.cask.cdap.security.auth.TokenValidator;
+import co.cask.cdap.security.guice.SecurityModules;
+import com.google.common.collect.ImmutableList;
+import com.google.inject.Guice;
+import com.google.inject.Injector;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.handler.codec.http.DefaultFullHttpRequest;
+import io.netty.handler.codec.http.FullHttpRequest;
+import io.netty.handler.codec.http.HttpHeaderNames;
+import io.netty.handler.codec.http.HttpMethod;
+import io.netty.handler.codec.http.HttpVersion;
+import io.netty.util.ReferenceCountUtil;
+import org.apache.commons.codec.binary.Base64;
+import org.apache.twill.discovery.DiscoveryServiceClient;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JMH benchmark for the router request throughput with security enabled, measured by passing requests carrying
+ * the same access token through the {@link AuthenticationHandler}, with and without the validated tokens cache.
+ *
+ * It can be run from the IDE or through the {@link #main(String[])} method with the test classpath.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class AuthenticationHandlerBenchmark {
+
+  @Param({ "0", "10000" })
+  private int cacheSize;
+
+  private TokenValidator tokenValidator;
+  private EmbeddedChannel channel;
+  private String authorization;
+
+  @Setup(Level.Trial)
+  public void setup() throws Exception {
+    CConfiguration cConf = CConfiguration.create();
+    cConf.setInt(Constants.Security.TOKEN_VALIDATION_CACHE_SIZE, cacheSize);
+    Injector injector = Guice.createInjector(new IOModule(), new SecurityModules().getInMemoryModules(),
+                                             new ConfigModule(cConf),
+                                             new DiscoveryRuntimeModule().getInMemoryModules());
+    tokenValidator = injector.getInstance(TokenValidator.class);
+    tokenValidator.startAndWait();
+
+    long now = System.currentTimeMillis();
+    AccessTokenIdentifier identifier = new AccessTokenIdentifier("user", ImmutableList.of("users"),
+                                                                 now, now + TimeUnit.DAYS.toMillis(1));
+    byte[] token = injector.getInstance(AccessTokenCodec.class)
+      .encode(injector.getInstance(TokenManager.class).signIdentifier(identifier));
+    authorization = "Bearer " + Base64.encodeBase64String(token).trim();
+
+    channel = new EmbeddedChannel(new AuthenticationHandler(cConf, tokenValidator,
+                                                            injector.getInstance(DiscoveryServiceClient.class),
+                                                            injector.getInstance(AccessTokenTransformer.class)));
+  }
+
+  @TearDown(Level.Trial)
+  public void teardown() {
+    channel.finishAndReleaseAll();
+    tokenValidator.stopAndWait();
+  }
+
+  @Benchmark
+  public Object authenticate() {
+    FullHttpRequest request = new DefaultFullHttpRequest(HttpVersion.HTTP_1_1, HttpMethod.GET, "/v3/namespaces");
+    request.headers().set(HttpHeaderNames.AUTHORIZATION, authorization);
+    channel.writeInbound(request);
+    Object msg = channel.readInbound();
+    ReferenceCountUtil.release(msg);
+    return msg;
+  }
+
+  public static void main(String[] args) throws RunnerException {
+    Options options = new OptionsBuilder()
+      .include(AuthenticationHandlerBenchmark.class.getSimpleName())
+      .build();
+    new Runner(options).run();
+  }
+}
@@ -40,6 +40,7 @@ import co.cask.cdap.metrics.guice.MetricsStoreModule;
 import co.cask.cdap.metrics.process.MessagingMetricsProcessorServiceFactory;
 import co.cask.cdap.metrics.process.MetricsProcessorStatusService;
 import co.cask.cdap.metrics.runtime.MessagingMetricsProcessorRuntimeService;
+import co.cask.cdap.metrics.store.MetricsCompactionService;
 import co.cask.cdap.proto.id.NamespaceId;
 import co.cask.cdap.security.auth.context.AuthenticationContextModules;
 import co.cask.cdap.security.authorization.AuthorizationEnforcementModule;
@@ -70,6 +71,7 @@ public final class MetricsProcessorTwillRunnable extends AbstractMasterTwillRunn
   private static final Logger LOG = LoggerFactory.getLogger(MetricsProcessorTwillRunnable.class);
 
   private Injector injector;
+  private int instanceId;
 
   public MetricsProcessorTwillRunnable(String name, String cConfName, String hConfName) {
     super(name, cConfName, hConfName);
@@ -81,6 +83,7 @@ public final class MetricsProcessorTwillRunnable extends AbstractMasterTwillRunn
     // Set the hostname of the machine so that cConf can be used to start internal services
     LOG.info("{} Setting host name to {}", name, context.getHost().getCanonicalHostName());
 
+    instanceId = context.getInstanceId();
     String txClientId = String.format("cdap.service.%s.%d", Constants.Service.METRICS_PROCESSOR,
                                       context.getInstanceId());
     injector = createGuiceInjector(getCConfiguration(), getConfiguration(), txClientId, context);
@@ -96,6 +99,10 @@ public final class MetricsProcessorTwillRunnable extends AbstractMasterTwillRunn
   public void addServices(List<? super Service> services) {
     services.add(injector.getInstance(MessagingMetricsProcessorRuntimeService.class));
     services.add(injector.getInstance(MetricsProcessorStatusService.class));
+    // Only the first instance compacts the metrics tables, to avoid concurrent rewrites of the same rows
+    if (instanceId == 0) {
+      services.add(injector.getInstance(MetricsCompactionService.class));
+    }
   }
 
   @VisibleForTesting
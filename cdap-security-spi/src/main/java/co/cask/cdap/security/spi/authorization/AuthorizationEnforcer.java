@@ -53,6 +53,24 @@ public interface AuthorizationEnforcer {
    */
   void enforce(EntityId entity, Principal principal, Set<Action> actions) throws Exception;
 
+  /**
+   * Enforces authorization for the specified {@link Principal} for the specified {@link Action actions} on all of the
+   * specified {@link EntityId entities}. Implementations may check the entities in bulk. The default implementation
+   * enforces on each entity in turn.
+   *
+   * @param entities the {@link EntityId entities} on which authorization is to be enforced
+   * @param principal the {@link Principal} that performs the actions
+   * @param actions the {@link Action actions} being performed
+   * @throws UnauthorizedException if the principal is not authorized to perform the specified actions on any of the
+   *                               entities
+   * @throws Exception if any other errors occurred while performing the authorization enforcement check
+   */
+  default void enforce(Set<? extends EntityId> entities, Principal principal, Set<Action> actions) throws Exception {
+    for (EntityId entity : entities) {
+      enforce(entity, principal, actions);
+    }
+  }
+
   /**
    * Checks whether the set of {@link EntityId}s are visible to the specified {@link Principal}.
    * An entity is visible to a principal if the principal has any privileges on the entity, or any of its descendants.
@@ -30,6 +30,7 @@ import java.io.IOException;
 import java.security.InvalidKeyException;
 import java.security.NoSuchAlgorithmException;
 import java.util.Random;
+import java.util.concurrent.atomic.AtomicLong;
 import javax.crypto.KeyGenerator;
 import javax.crypto.Mac;
 import javax.crypto.SecretKey;
@@ -52,6 +53,7 @@ public abstract class AbstractKeyManager extends AbstractIdleService implements
    * means no expiration.
    */
   protected long keyExpirationPeriod = 0;
+  private final AtomicLong keysVersion = new AtomicLong();
 
 
   /**
@@ -124,10 +126,24 @@ public abstract class AbstractKeyManager extends AbstractIdleService implements
       new KeyIdentifier(nextKey, nextId, keyExpirationPeriod > 0 ? (now + keyExpirationPeriod) : Long.MAX_VALUE);
     addKey(keyIdentifier);
     this.currentKey = keyIdentifier;
+    keysChanged();
     LOG.info("Changed current key to {}", currentKey);
     return keyIdentifier;
   }
 
+  /**
+   * Must be called by subclasses whenever the set of keys or the current key is changed outside of
+   * {@link #generateKey()}, so that cached validation results get discarded.
+   */
+  protected final void keysChanged() {
+    keysVersion.incrementAndGet();
+  }
+
+  @Override
+  public final long getKeysVersion() {
+    return keysVersion.get();
+  }
+
   @Override
   public final <T> void validateMAC(Codec<T> codec, Signed<T> signedMessage)
     throws InvalidDigestException, InvalidKeyException {
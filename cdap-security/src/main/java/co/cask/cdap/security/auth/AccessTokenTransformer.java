@@ -16,7 +16,11 @@
 
 package co.cask.cdap.security.auth;
 
+import co.cask.cdap.common.conf.CConfiguration;
+import co.cask.cdap.common.conf.Constants;
 import co.cask.cdap.common.io.Codec;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import com.google.inject.Inject;
 import org.apache.commons.codec.binary.Base64;
 
@@ -24,16 +28,30 @@ import java.io.IOException;
 
 /**
  * It takes the access token and transforms it to Access Token Identifier.
+ * The results are cached, as the same access token is typically presented by a client for many requests.
  */
 public class AccessTokenTransformer {
   private final Codec<AccessToken> accessTokenCodec;
   private final Codec<AccessTokenIdentifier> accessTokenIdentifierCodec;
+  private final Cache<String, AccessTokenIdentifierPair> transformedTokens;
 
   @Inject
+  public AccessTokenTransformer(CConfiguration cConf, Codec<AccessToken> accessTokenCodec,
+                                Codec<AccessTokenIdentifier> accessTokenIdentifierCodec) {
+    this(accessTokenCodec, accessTokenIdentifierCodec,
+         cConf.getLong(Constants.Security.TOKEN_VALIDATION_CACHE_SIZE));
+  }
+
   public AccessTokenTransformer(Codec<AccessToken> accessTokenCodec,
                                 Codec<AccessTokenIdentifier> accessTokenIdentifierCodec) {
+    this(accessTokenCodec, accessTokenIdentifierCodec, 0L);
+  }
+
+  private AccessTokenTransformer(Codec<AccessToken> accessTokenCodec,
+                                 Codec<AccessTokenIdentifier> accessTokenIdentifierCodec, long cacheSize) {
     this.accessTokenCodec = accessTokenCodec;
     this.accessTokenIdentifierCodec = accessTokenIdentifierCodec;
+    this.transformedTokens = CacheBuilder.newBuilder().maximumSize(cacheSize).build();
   }
 
   /**
@@ -43,6 +61,15 @@ public class AccessTokenTransformer {
    * @throws IOException
    */
   public AccessTokenIdentifierPair transform(String accessToken) throws IOException {
+    AccessTokenIdentifierPair pair = transformedTokens.getIfPresent(accessToken);
+    if (pair == null) {
+      pair = doTransform(accessToken);
+      transformedTokens.put(accessToken, pair);
+    }
+    return pair;
+  }
+
+  private AccessTokenIdentifierPair doTransform(String accessToken) throws IOException {
     byte[] decodedAccessToken = Base64.decodeBase64(accessToken);
     AccessToken accessTokenObj = accessTokenCodec.decode(decodedAccessToken);
     AccessTokenIdentifier accessTokenIdentifierObj = accessTokenObj.getIdentifier();
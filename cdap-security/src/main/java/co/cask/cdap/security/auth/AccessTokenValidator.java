@@ -16,7 +16,12 @@
 
 package co.cask.cdap.security.auth;
 
+import co.cask.cdap.common.conf.CConfiguration;
+import co.cask.cdap.common.conf.Constants;
 import co.cask.cdap.common.io.Codec;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import com.google.common.util.concurrent.AbstractIdleService;
 import com.google.inject.Inject;
 import org.apache.commons.codec.binary.Base64;
@@ -24,20 +29,39 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
 
 /**
  * This class validates the accessToken and returns the different states
  * of accessToken validation.
+ *
+ * Valid tokens are cached, so that a token presented again is not decoded and its signature is not recomputed.
+ * A cached token is still checked for expiration, and is discarded when the secret keys of the
+ * {@link KeyManager} change.
  */
 public class AccessTokenValidator extends AbstractIdleService implements TokenValidator {
   private static final Logger LOG = LoggerFactory.getLogger(AccessTokenValidator.class);
+  private static final long STATS_LOG_INTERVAL_NANOS = TimeUnit.MINUTES.toNanos(10);
   private final TokenManager tokenManager;
   private final Codec<AccessToken> accessTokenCodec;
+  private final Cache<String, ValidatedToken> validatedTokens;
+  private final LongAdder cacheHits;
+  private final LongAdder cacheMisses;
+  private final AtomicLong lastStatsLogNanos;
+  private volatile long lastStatsLogValidations;
 
   @Inject
-  public AccessTokenValidator(TokenManager tokenManager, Codec<AccessToken> accessTokenCodec) {
+  public AccessTokenValidator(CConfiguration cConf, TokenManager tokenManager, Codec<AccessToken> accessTokenCodec) {
     this.tokenManager = tokenManager;
     this.accessTokenCodec = accessTokenCodec;
+    this.validatedTokens = CacheBuilder.newBuilder()
+      .maximumSize(cConf.getLong(Constants.Security.TOKEN_VALIDATION_CACHE_SIZE))
+      .build();
+    this.cacheHits = new LongAdder();
+    this.cacheMisses = new LongAdder();
+    this.lastStatsLogNanos = new AtomicLong(System.nanoTime());
   }
 
   @Override
@@ -50,6 +74,34 @@ public class AccessTokenValidator extends AbstractIdleService implements TokenVa
     tokenManager.stopAndWait();
   }
 
+  /**
+   * Returns the number of validations of non-null tokens that were served from the validated tokens cache.
+   */
+  @VisibleForTesting
+  long getCacheHits() {
+    return cacheHits.sum();
+  }
+
+  /**
+   * Logs the validated tokens cache statistics at most once per {@link #STATS_LOG_INTERVAL_NANOS}, if there were
+   * validations since the last time they were logged.
+   */
+  private void logCacheStats() {
+    long now = System.nanoTime();
+    long lastLogTime = lastStatsLogNanos.get();
+    if (now - lastLogTime < STATS_LOG_INTERVAL_NANOS || !lastStatsLogNanos.compareAndSet(lastLogTime, now)) {
+      return;
+    }
+    long hits = getCacheHits();
+    long validations = hits + cacheMisses.sum();
+    if (validations == lastStatsLogValidations) {
+      return;
+    }
+    lastStatsLogValidations = validations;
+    LOG.info("Token validation cache: {} entries, {} hits, {} misses, {} hit rate",
+             validatedTokens.size(), hits, validations - hits, (double) hits / validations);
+  }
+
   @Override
   public TokenState validate(String token) {
     AccessToken accessToken;
@@ -58,11 +110,28 @@ public class AccessTokenValidator extends AbstractIdleService implements TokenVa
       LOG.debug("Token is missing");
       return TokenState.MISSING;
     }
+    logCacheStats();
+
+    // Get the keys version before validating, so that a key change during validation invalidates the result
+    long keysVersion = tokenManager.getKeysVersion();
+    ValidatedToken validatedToken = validatedTokens.getIfPresent(token);
+    if (validatedToken != null && validatedToken.keysVersion == keysVersion) {
+      if (validatedToken.expireTimestamp >= System.currentTimeMillis()) {
+        cacheHits.increment();
+        return TokenState.VALID;
+      }
+    }
+    if (validatedToken != null) {
+      validatedTokens.invalidate(token);
+    }
+    cacheMisses.increment();
+
     byte[] decodedToken = Base64.decodeBase64(token);
 
     try {
       accessToken = accessTokenCodec.decode(decodedToken);
       tokenManager.validateSecret(accessToken);
+      validatedTokens.put(token, new ValidatedToken(accessToken.getIdentifier().getExpireTimestamp(), keysVersion));
     } catch (IOException ioe) {
       state = TokenState.INVALID;
       LOG.debug("Unknown Schema version for Access Token. {}", ioe);
@@ -72,4 +141,17 @@ public class AccessTokenValidator extends AbstractIdleService implements TokenVa
     }
     return state;
   }
+
+  /**
+   * Cache entry for a token that passed validation.
+   */
+  private static final class ValidatedToken {
+    private final long expireTimestamp;
+    private final long keysVersion;
+
+    ValidatedToken(long expireTimestamp, long keysVersion) {
+      this.expireTimestamp = expireTimestamp;
+      this.keysVersion = keysVersion;
+    }
+  }
 }
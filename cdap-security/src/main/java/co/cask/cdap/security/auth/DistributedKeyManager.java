@@ -169,6 +169,7 @@ public class DistributedKeyManager extends AbstractKeyManager implements Resourc
   @Override
   public synchronized void onUpdate() {
     LOG.debug("SharedResourceCache triggered update on key: leader={}", leader);
+    keysChanged();
     for (KeyIdentifier keyEntry : keyCache.getResources()) {
       if (currentKey == null || keyEntry.getExpiration() > currentKey.getExpiration()) {
         currentKey = keyEntry;
@@ -180,6 +181,7 @@ public class DistributedKeyManager extends AbstractKeyManager implements Resourc
   @Override
   public synchronized void onResourceUpdate(String name, KeyIdentifier instance) {
     LOG.debug("SharedResourceCache triggered update: leader={}, resource key={}", leader, name);
+    keysChanged();
     if (currentKey == null || instance.getExpiration() > currentKey.getExpiration()) {
       currentKey = instance;
       LOG.debug("Set current key: leader={}, key={}", leader, currentKey.getKeyId());
@@ -189,6 +191,7 @@ public class DistributedKeyManager extends AbstractKeyManager implements Resourc
   @Override
   public void onResourceDelete(String name) {
     LOG.debug("Removed key: leader={}, key={}", leader, name);
+    keysChanged();
   }
 
   @Override
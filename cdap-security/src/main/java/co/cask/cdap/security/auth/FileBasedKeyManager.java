@@ -66,6 +66,7 @@ public class FileBasedKeyManager extends MapBackedKeyManager {
       this.currentKey = storedKey;
       // the file-based key is considered valid forever
       allKeys.put(storedKey.getKeyId(), storedKey);
+      keysChanged();
     } else {
       Preconditions.checkState(keyFileDir.canWrite(),
                                "Configured keyFile directory " + keyFileDirectory + " exists but is not writable!");
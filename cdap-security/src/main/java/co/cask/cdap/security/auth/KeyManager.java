@@ -64,4 +64,11 @@ public interface KeyManager extends Service {
   <T> void validateMAC(Codec<T> codec, Signed<T> signedMessage)
     throws InvalidDigestException, InvalidKeyException;
 
+  /**
+   * Returns the version of the secret keys maintained by this key manager. The version changes whenever a key is
+   * added, removed or becomes the current key, hence results of {@link #validateMAC(Codec, Signed)} that are
+   * cached by callers must be discarded once the version changed.
+   */
+  long getKeysVersion();
+
 }
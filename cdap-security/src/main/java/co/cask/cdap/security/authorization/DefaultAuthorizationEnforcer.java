@@ -25,6 +25,7 @@ import co.cask.cdap.proto.id.NamespacedEntityId;
 import co.cask.cdap.proto.security.Action;
 import co.cask.cdap.proto.security.Principal;
 import co.cask.cdap.security.spi.authorization.AuthorizationEnforcer;
+import co.cask.cdap.security.spi.authorization.UnauthorizedException;
 import com.google.common.collect.Sets;
 import com.google.inject.Inject;
 import com.google.inject.Singleton;
@@ -33,7 +34,9 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Map;
 import java.util.Set;
 import javax.annotation.Nullable;
 
@@ -50,6 +53,7 @@ public class DefaultAuthorizationEnforcer extends AbstractAuthorizationEnforcer
   @Nullable
   private final Principal masterUser;
   private final int logTimeTakenAsWarn;
+  private final boolean namespacePrivilegesInherited;
 
   @Inject
   DefaultAuthorizationEnforcer(CConfiguration cConf, AuthorizerInstantiator authorizerInstantiator) {
@@ -58,6 +62,8 @@ public class DefaultAuthorizationEnforcer extends AbstractAuthorizationEnforcer
     String masterUserName = AuthorizationUtil.getEffectiveMasterUser(cConf);
     this.masterUser = masterUserName == null ? null : new Principal(masterUserName, Principal.PrincipalType.USER);
     this.logTimeTakenAsWarn = cConf.getInt(Constants.Security.Authorization.EXTENSION_OPERATION_TIME_WARN_THRESHOLD);
+    this.namespacePrivilegesInherited =
+      cConf.getBoolean(Constants.Security.Authorization.NAMESPACE_PRIVILEGES_INHERITED);
   }
 
   @Override
@@ -68,6 +74,30 @@ public class DefaultAuthorizationEnforcer extends AbstractAuthorizationEnforcer
     doEnforce(entity, principal, Collections.singleton(action));
   }
 
+  @Override
+  public void enforce(Set<? extends EntityId> entities, Principal principal, Set<Action> actions) throws Exception {
+    if (!isSecurityAuthorizationEnabled()) {
+      return;
+    }
+
+    // If privileges on a namespace are inherited, the namespace is checked once in place of all of its entities
+    Map<NamespaceId, Boolean> namespaceAllowed = new HashMap<>();
+    for (EntityId entity : entities) {
+      if (namespacePrivilegesInherited && entity instanceof NamespacedEntityId && !(entity instanceof NamespaceId)) {
+        NamespaceId namespace = ((NamespacedEntityId) entity).getNamespaceId();
+        Boolean allowed = namespaceAllowed.get(namespace);
+        if (allowed == null) {
+          allowed = isAllowed(namespace, principal, actions);
+          namespaceAllowed.put(namespace, allowed);
+        }
+        if (allowed) {
+          continue;
+        }
+      }
+      doEnforce(entity, principal, actions);
+    }
+  }
+
   @Override
   public Set<? extends EntityId> isVisible(Set<? extends EntityId> entityIds, Principal principal) throws Exception {
     if (!isSecurityAuthorizationEnabled()) {
@@ -130,6 +160,15 @@ public class DefaultAuthorizationEnforcer extends AbstractAuthorizationEnforcer
     }
   }
 
+  private boolean isAllowed(EntityId entity, Principal principal, Set<Action> actions) throws Exception {
+    try {
+      doEnforce(entity, principal, actions);
+      return true;
+    } catch (UnauthorizedException e) {
+      return false;
+    }
+  }
+
   private boolean isAccessingSystemNSAsMasterUser(EntityId entityId, Principal principal) {
     return entityId instanceof NamespacedEntityId &&
       ((NamespacedEntityId) entityId).getNamespaceId().equals(NamespaceId.SYSTEM) && principal.equals(masterUser);
@@ -24,6 +24,7 @@ import co.cask.cdap.proto.codec.EntityIdTypeAdapter;
 import co.cask.cdap.proto.id.EntityId;
 import co.cask.cdap.proto.security.Action;
 import co.cask.cdap.proto.security.AuthorizationPrivilege;
+import co.cask.cdap.proto.security.EnforcementRequest;
 import co.cask.cdap.proto.security.Principal;
 import co.cask.cdap.proto.security.VisibilityRequest;
 import co.cask.cdap.security.spi.authorization.UnauthorizedException;
@@ -53,6 +54,7 @@ import java.lang.reflect.Type;
 import java.net.HttpURLConnection;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
@@ -71,6 +73,7 @@ public class RemoteAuthorizationEnforcer extends AbstractAuthorizationEnforcer {
     .registerTypeAdapter(EntityId.class, new EntityIdTypeAdapter())
     .create();
   private static final Type SET_ENTITY_TYPE = new TypeToken<Set<EntityId>>() { }.getType();
+  private static final Type SET_PRIVILEGE_TYPE = new TypeToken<Set<AuthorizationPrivilege>>() { }.getType();
 
   private static final Function<VisibilityKey, EntityId> VISIBILITY_KEY_ENTITY_ID_FUNCTION =
     new Function<VisibilityKey, EntityId>() {
@@ -149,6 +152,45 @@ public class RemoteAuthorizationEnforcer extends AbstractAuthorizationEnforcer {
     }
   }
 
+  @Override
+  public void enforce(Set<? extends EntityId> entities, Principal principal, Set<Action> actions) throws Exception {
+    if (!isSecurityAuthorizationEnabled()) {
+      return;
+    }
+
+    // Only ask master about the entities that have some privilege not in the cache
+    Set<EntityId> uncached = new LinkedHashSet<>();
+    for (EntityId entity : entities) {
+      for (Action action : actions) {
+        Boolean allowed = cacheEnabled
+          ? authPolicyCache.getIfPresent(new AuthorizationPrivilege(principal, entity, action)) : null;
+        if (allowed == null) {
+          uncached.add(entity);
+        } else if (!allowed) {
+          throw new UnauthorizedException(principal, action, entity);
+        }
+      }
+    }
+    if (uncached.isEmpty()) {
+      return;
+    }
+
+    LOG.trace("Cache miss for {} on {} for principal {}", actions, uncached, principal);
+    Set<AuthorizationPrivilege> disallowed = doEnforce(new EnforcementRequest(principal, uncached, actions));
+    if (cacheEnabled) {
+      for (EntityId entity : uncached) {
+        for (Action action : actions) {
+          AuthorizationPrivilege privilege = new AuthorizationPrivilege(principal, entity, action);
+          authPolicyCache.put(privilege, !disallowed.contains(privilege));
+        }
+      }
+    }
+    if (!disallowed.isEmpty()) {
+      AuthorizationPrivilege privilege = disallowed.iterator().next();
+      throw new UnauthorizedException(principal, privilege.getAction(), privilege.getEntity());
+    }
+  }
+
   @Override
   public Set<? extends EntityId> isVisible(Set<? extends EntityId> entityIds, Principal principal) throws Exception {
     if (!isSecurityAuthorizationEnabled()) {
@@ -183,6 +225,16 @@ public class RemoteAuthorizationEnforcer extends AbstractAuthorizationEnforcer {
     }
   }
 
+  /**
+   * Enforces the given request on master with a single call, and returns the privileges that are not allowed.
+   */
+  private Set<AuthorizationPrivilege> doEnforce(EnforcementRequest enforcementRequest) throws IOException {
+    HttpRequest request = remoteClient.requestBuilder(HttpMethod.POST, "enforceAll")
+      .withBody(GSON.toJson(enforcementRequest))
+      .build();
+    return GSON.fromJson(remoteClient.execute(request).getResponseBodyAsString(), SET_PRIVILEGE_TYPE);
+  }
+
   private Set<? extends EntityId> visibilityCheckCall(VisibilityRequest visibilityRequest) throws IOException {
     HttpRequest request = remoteClient.requestBuilder(HttpMethod.POST, "isVisible")
       .withBody(GSON.toJson(visibilityRequest))
@@ -0,0 +1,112 @@
+/*
+ * Copyright © 2018 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package co.cask.cdap.security.auth;
+
+import co.cask.cdap.common.conf.CConfiguration;
+import co.cask.cdap.common.guice.ConfigModule;
+import co.cask.cdap.common.guice.DiscoveryRuntimeModule;
+import co.cask.cdap.common.guice.IOModule;
+import co.cask.cdap.common.io.Codec;
+import co.cask.cdap.security.guice.SecurityModules;
+import com.google.common.collect.ImmutableList;
+import com.google.inject.Guice;
+import com.google.inject.Injector;
+import org.apache.commons.codec.binary.Base64;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests for the validated tokens cache of {@link AccessTokenValidator}.
+ */
+public class AccessTokenValidatorTest {
+
+  private AccessTokenValidator tokenValidator;
+  private TokenManager tokenManager;
+  private AbstractKeyManager keyManager;
+  private Codec<AccessToken> tokenCodec;
+
+  @Before
+  public void setUp() {
+    Injector injector = Guice.createInjector(new IOModule(), new SecurityModules().getInMemoryModules(),
+                                             new ConfigModule(CConfiguration.create()),
+                                             new DiscoveryRuntimeModule().getInMemoryModules());
+    tokenManager = injector.getInstance(TokenManager.class);
+    keyManager = (AbstractKeyManager) tokenManager.keyManager;
+    tokenCodec = injector.getInstance(AccessTokenCodec.class);
+    tokenValidator = new AccessTokenValidator(CConfiguration.create(), tokenManager, tokenCodec);
+    tokenValidator.startAndWait();
+  }
+
+  @After
+  public void tearDown() {
+    tokenValidator.stopAndWait();
+  }
+
+  @Test
+  public void testCachedValidation() throws Exception {
+    long now = System.currentTimeMillis();
+    String token = createToken(now + 3600000L);
+
+    // The first validation is a miss, the following ones are served from the cache
+    Assert.assertEquals(TokenState.VALID, tokenValidator.validate(token));
+    Assert.assertEquals(TokenState.VALID, tokenValidator.validate(token));
+    Assert.assertEquals(TokenState.VALID, tokenValidator.validate(token));
+    Assert.assertEquals(2L, tokenValidator.getCacheHits());
+
+    // Invalid tokens are not cached
+    String invalidToken = Base64.encodeBase64String(
+      tokenCodec.encode(new AccessToken(new AccessTokenIdentifier("user", ImmutableList.<String>of(), now, now + 1000),
+                                        keyManager.currentKey.getKeyId(), new byte[32]))).trim();
+    Assert.assertEquals(TokenState.INVALID, tokenValidator.validate(invalidToken));
+    Assert.assertEquals(TokenState.INVALID, tokenValidator.validate(invalidToken));
+    Assert.assertEquals(2L, tokenValidator.getCacheHits());
+  }
+
+  @Test
+  public void testKeyRotation() throws Exception {
+    String token = createToken(System.currentTimeMillis() + 3600000L);
+    Assert.assertEquals(TokenState.VALID, tokenValidator.validate(token));
+    Assert.assertEquals(TokenState.VALID, tokenValidator.validate(token));
+    Assert.assertEquals(1L, tokenValidator.getCacheHits());
+
+    // After a key rotation the cached token must be validated again
+    keyManager.generateKey();
+    Assert.assertEquals(TokenState.VALID, tokenValidator.validate(token));
+    Assert.assertEquals(1L, tokenValidator.getCacheHits());
+    Assert.assertEquals(TokenState.VALID, tokenValidator.validate(token));
+    Assert.assertEquals(2L, tokenValidator.getCacheHits());
+  }
+
+  @Test
+  public void testCachedTokenExpiration() throws Exception {
+    String token = createToken(System.currentTimeMillis() + 500L);
+    Assert.assertEquals(TokenState.VALID, tokenValidator.validate(token));
+
+    // A cached token is still checked for expiration
+    Thread.sleep(600L);
+    Assert.assertEquals(TokenState.EXPIRED, tokenValidator.validate(token));
+  }
+
+  private String createToken(long expireTimestamp) throws Exception {
+    AccessTokenIdentifier identifier = new AccessTokenIdentifier("user", ImmutableList.of("users"),
+                                                                 System.currentTimeMillis(), expireTimestamp);
+    return Base64.encodeBase64String(tokenCodec.encode(tokenManager.signIdentifier(identifier))).trim();
+  }
+}
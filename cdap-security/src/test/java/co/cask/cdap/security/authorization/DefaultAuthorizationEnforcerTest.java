@@ -176,6 +176,44 @@ public class DefaultAuthorizationEnforcerTest extends AuthorizationTestBase {
     }
   }
 
+  @Test
+  public void testBulkEnforce() throws Exception {
+    NamespaceId ns = new NamespaceId("bulk");
+    DatasetId ds1 = ns.dataset("ds1");
+    DatasetId ds2 = ns.dataset("ds2");
+    DatasetId ds3 = ns.dataset("ds3");
+    Set<DatasetId> datasets = ImmutableSet.of(ds1, ds2, ds3);
+    CConfiguration cConfCopy = CConfiguration.copy(CCONF);
+    cConfCopy.setBoolean(Constants.Security.Authorization.NAMESPACE_PRIVILEGES_INHERITED, true);
+    try (AuthorizerInstantiator authorizerInstantiator = new AuthorizerInstantiator(CCONF, AUTH_CONTEXT_FACTORY)) {
+      Authorizer authorizer = authorizerInstantiator.get();
+      DefaultAuthorizationEnforcer authEnforcementService =
+        new DefaultAuthorizationEnforcer(CCONF, authorizerInstantiator);
+      DefaultAuthorizationEnforcer inheritingEnforcementService =
+        new DefaultAuthorizationEnforcer(cConfCopy, authorizerInstantiator);
+
+      authorizer.grant(Authorizable.fromEntityId(ds1), BOB, Collections.singleton(Action.READ));
+      authorizer.grant(Authorizable.fromEntityId(ds2), BOB, Collections.singleton(Action.READ));
+      authEnforcementService.enforce(ImmutableSet.of(ds1, ds2), BOB, Collections.singleton(Action.READ));
+      // bob has no privilege on ds3, and no privilege on the namespace either
+      assertAuthorizationFailure(authEnforcementService, datasets, BOB, Collections.singleton(Action.READ));
+      assertAuthorizationFailure(inheritingEnforcementService, datasets, BOB, Collections.singleton(Action.READ));
+      assertAuthorizationFailure(authEnforcementService, ImmutableSet.of(ds1, ds2), BOB,
+                                 EnumSet.of(Action.READ, Action.WRITE));
+
+      // privileges on the namespace only apply to the datasets in it if inheritance is enabled
+      authorizer.grant(Authorizable.fromEntityId(ns), ALICE, EnumSet.of(Action.READ, Action.WRITE));
+      assertAuthorizationFailure(authEnforcementService, datasets, ALICE, Collections.singleton(Action.READ));
+      inheritingEnforcementService.enforce(datasets, ALICE, EnumSet.of(Action.READ, Action.WRITE));
+      assertAuthorizationFailure(inheritingEnforcementService, datasets, ALICE, Collections.singleton(Action.ADMIN));
+
+      authorizer.revoke(Authorizable.fromEntityId(ns));
+      for (DatasetId dataset : datasets) {
+        authorizer.revoke(Authorizable.fromEntityId(dataset));
+      }
+    }
+  }
+
   @Test
   public void testSystemUser() throws Exception {
     CConfiguration cConfCopy = CConfiguration.copy(CCONF);
@@ -217,6 +255,18 @@ public class DefaultAuthorizationEnforcerTest extends AuthorizationTestBase {
     }
   }
 
+  private void assertAuthorizationFailure(AuthorizationEnforcer authEnforcementService,
+                                          Set<? extends EntityId> entityIds, Principal principal,
+                                          Set<Action> actions) throws Exception {
+    try {
+      authEnforcementService.enforce(entityIds, principal, actions);
+      Assert.fail(String.format("Expected %s to not have '%s' privileges on all of %s but it does.",
+                                principal, actions, entityIds));
+    } catch (UnauthorizedException expected) {
+      // expected
+    }
+  }
+
   private void assertAuthorizationFailure(AuthorizationEnforcer authEnforcementService,
                                           EntityId entityId, Principal principal,
                                           Set<Action> actions) throws Exception {
@@ -95,6 +95,13 @@ public interface MessagingService {
    */
   MessageFetcher prepareFetch(TopicId topicId) throws TopicNotFoundException, IOException;
 
+  /**
+   * Prepares to fetch messages from multiple topics in one call.
+   *
+   * @return a {@link MultiTopicMessageFetcher} for setting up parameters for fetching messages from multiple topics
+   */
+  MultiTopicMessageFetcher prepareMultiTopicFetch();
+
   /**
    * Publishes a list of messages to the messaging system.
    *
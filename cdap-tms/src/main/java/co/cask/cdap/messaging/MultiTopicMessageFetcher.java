@@ -0,0 +1,168 @@
+/*
+ * Copyright © 2018 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.messaging;
+
+import co.cask.cdap.api.messaging.TopicNotFoundException;
+import co.cask.cdap.messaging.data.RawMessage;
+import co.cask.cdap.proto.id.TopicId;
+import org.apache.tephra.Transaction;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import javax.annotation.Nullable;
+
+/**
+ * A builder to setup parameters for fetching messages from multiple topics in one call. Each topic has its own
+ * starting point, while the limit and transaction apply to all topics.
+ * Sub-class needs to override the {@link #fetch()} method to return the messages fetched from each topic.
+ */
+public abstract class MultiTopicMessageFetcher {
+
+  private final Map<TopicId, StartPosition> topics = new LinkedHashMap<>();
+  private Transaction transaction;
+  private Integer limit;
+
+  /**
+   * Adds a topic to fetch from, starting from the given message id.
+   *
+   * @param topicId the topic to fetch messages from
+   * @param startOffset the message id to start fetching from; if it is {@code null},
+   *                    fetching starts from the earliest message available in the topic
+   * @param inclusive if {@code true}, it will include the message identified by the given message id as the
+   *                  first message (if still available in the system); otherwise it won't be included.
+   * @return this instance
+   */
+  public MultiTopicMessageFetcher addTopic(TopicId topicId, @Nullable byte[] startOffset, boolean inclusive) {
+    topics.put(topicId, new StartPosition(startOffset, inclusive, null));
+    return this;
+  }
+
+  /**
+   * Adds a topic to fetch from, starting from the given publish time.
+   *
+   * @param topicId the topic to fetch messages from
+   * @param startTime timestamp in milliseconds
+   * @return this instance
+   */
+  public MultiTopicMessageFetcher addTopic(TopicId topicId, long startTime) {
+    if (startTime < 0) {
+      throw new IllegalArgumentException("Invalid message fetching start time. Start time must be >= 0");
+    }
+    topics.put(topicId, new StartPosition(null, true, startTime));
+    return this;
+  }
+
+  /**
+   * Sets the transaction to use for fetching. It is for transactional consumption.
+   *
+   * @param transaction the transaction to use for reading messages
+   * @return this instance
+   */
+  public MultiTopicMessageFetcher setTransaction(Transaction transaction) {
+    this.transaction = transaction;
+    return this;
+  }
+
+  /**
+   * Sets the maximum limit on number of messages to be fetched from each topic.
+   * By default, the limit is decided by the implementation.
+   *
+   * @param limit maximum number of messages to be fetched from each topic
+   * @return this instance
+   */
+  public MultiTopicMessageFetcher setLimit(int limit) {
+    if (limit <= 0) {
+      throw new IllegalArgumentException("Invalid message fetching limit. Limit must be > 0");
+    }
+    this.limit = limit;
+    return this;
+  }
+
+  /**
+   * Returns the topics to fetch from, with the starting point of each of them, in the order they were added.
+   */
+  protected Map<TopicId, StartPosition> getTopics() {
+    return Collections.unmodifiableMap(topics);
+  }
+
+  @Nullable
+  protected Transaction getTransaction() {
+    return transaction;
+  }
+
+  @Nullable
+  protected Integer getLimit() {
+    return limit;
+  }
+
+  /**
+   * Fetches messages from all the topics added to this fetcher.
+   *
+   * @return a {@link Map} from each topic to the list of messages fetched from it, in the same order as the topics
+   *         were added. A topic without any message available will have an empty list.
+   * @throws TopicNotFoundException if any of the topics does not exist
+   * @throws IOException if it fails to fetch messages
+   */
+  public abstract Map<TopicId, List<RawMessage>> fetch() throws TopicNotFoundException, IOException;
+
+  /**
+   * The starting point for fetching messages from a topic. It is either a message id or a publish time.
+   */
+  public static final class StartPosition {
+
+    private final byte[] startOffset;
+    private final boolean includeStart;
+    private final Long startTime;
+
+    private StartPosition(@Nullable byte[] startOffset, boolean includeStart, @Nullable Long startTime) {
+      this.startOffset = startOffset;
+      this.includeStart = includeStart;
+      this.startTime = startTime;
+    }
+
+    @Nullable
+    public byte[] getStartOffset() {
+      return startOffset;
+    }
+
+    public boolean isIncludeStart() {
+      return includeStart;
+    }
+
+    @Nullable
+    public Long getStartTime() {
+      return startTime;
+    }
+
+    /**
+     * Applies this starting point to the given {@link MessageFetcher}.
+     *
+     * @return the same {@link MessageFetcher} instance
+     */
+    public MessageFetcher apply(MessageFetcher fetcher) {
+      if (startOffset != null) {
+        fetcher.setStartMessage(startOffset, includeStart);
+      } else if (startTime != null) {
+        fetcher.setStartTime(startTime);
+      }
+      return fetcher;
+    }
+  }
+}
@@ -64,6 +64,27 @@ public final class Schemas {
     public static final class ConsumeResponse {
       public static final Schema SCHEMA = loadSchema(ConsumeResponse.class);
     }
+
+    /**
+     * Contains schema for long poll consume request. The response uses the {@link ConsumeResponse} schema.
+     */
+    public static final class LongPollRequest {
+      public static final Schema SCHEMA = loadSchema(LongPollRequest.class);
+    }
+
+    /**
+     * Contains schema for consume request that fetches from multiple topics.
+     */
+    public static final class MultiConsumeRequest {
+      public static final Schema SCHEMA = loadSchema(MultiConsumeRequest.class);
+    }
+
+    /**
+     * Contains schema for consume response that carries messages from multiple topics.
+     */
+    public static final class MultiConsumeResponse {
+      public static final Schema SCHEMA = loadSchema(MultiConsumeResponse.class);
+    }
   }
 
   private Schemas() {
@@ -0,0 +1,67 @@
+/*
+ * Copyright © 2018 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.messaging.cache;
+
+import com.google.common.collect.AbstractIterator;
+
+import java.util.Iterator;
+import javax.annotation.Nullable;
+
+/**
+ * Abstract implementation of {@link MessageCache.Scanner}.
+ *
+ * @param <T> type of the entry
+ */
+abstract class AbstractScanner<T> extends AbstractIterator<T> implements MessageCache.Scanner<T> {
+
+  private final Iterator<T> iterator;
+  private final T firstInCache;
+  private boolean closed;
+
+  AbstractScanner(Iterator<T> iterator, @Nullable T firstInCache) {
+    this.iterator = iterator;
+    this.firstInCache = firstInCache;
+  }
+
+  @Override
+  protected final T computeNext() {
+    if (!closed && iterator.hasNext()) {
+      return iterator.next();
+    }
+    close();
+    return endOfData();
+  }
+
+  @Nullable
+  @Override
+  public final T getFirstInCache() {
+    return firstInCache;
+  }
+
+  @Override
+  public final void close() {
+    if (!closed) {
+      closed = true;
+      doClose();
+    }
+  }
+
+  /**
+   * Performs cleanup task.
+   */
+  abstract void doClose();
+}
@@ -0,0 +1,507 @@
+/*
+ * Copyright © 2018 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.messaging.cache;
+
+import co.cask.cdap.api.metrics.MetricsContext;
+import co.cask.cdap.messaging.store.MessageFilter;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Preconditions;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import javax.annotation.Nullable;
+
+/**
+ * A {@link MessageCache} that stores entries in serialized form inside off-heap, append-only segments.
+ * Since the cached content doesn't live in the java heap, it doesn't add pressure to the garbage collector
+ * no matter how large the cache is.
+ *
+ * Entries are encoded with a {@link Codec} and appended to the latest segment. Each segment keeps an index of
+ * entry offsets, which together with the ordering of entries, allows binary search by the cache {@link Comparator}.
+ * The weight of the cache is the total capacity of all segments. When weight reduction is needed, whole segments
+ * are evicted, starting from the oldest one.
+ *
+ * Entries returned by {@link #scan(Object, boolean, int, MessageFilter)} are views created by the
+ * {@link Codec#decode(ByteBuffer, int, int)} method over the off-heap memory. Memory of an evicted segment
+ * is released once there is no more view referring to it.
+ *
+ * @param <T> type of entry stored in the cache
+ */
+public class OffHeapMessageCache<T> implements MessageCache<T> {
+
+  private static final String METRICS_WEIGHT = "cache.weight";
+  private static final String METRICS_ENTRIES_ADDED = "cache.entries.added";
+  private static final String METRICS_ENTRIES_REMOVED = "cache.entries.removed";
+  private static final String METRICS_SEGMENTS_REMOVED = "cache.segments.removed";
+  private static final String METRICS_ADD_REQUESTS = "cache.add.requests";
+  private static final String METRICS_ADD_REDUCE_WEIGHT = "cache.add.reduce.weight";
+  private static final String METRICS_SCAN_REQUESTS = "cache.scan.requests";
+  private static final String METRICS_SCAN_REDUCE_WEIGHT = "cache.scan.reduce.weight";
+
+  private final List<Segment> segments;
+  private final Comparator<T> comparator;
+  private final Codec<T> codec;
+  private final int segmentSize;
+  private final AtomicReference<Limits> limits;
+  private final MetricsContext metricsContext;
+  private final AtomicLong currentWeight;
+  private final AtomicBoolean needReduceWeight;
+  private final AtomicBoolean adding;
+  private final ReadWriteLock cacheLock;
+
+  // The segment that new entries get appended to. It is only accessed by the writer thread.
+  private Segment activeSegment;
+
+  /**
+   * Creates a new instance of the cache.
+   *
+   * @param comparator a {@link Comparator} for ordering cache entries
+   * @param codec a {@link Codec} for encoding entries into and decoding entries from the off-heap memory
+   * @param segmentSize size in bytes of each segment. Entries larger than the segment size
+   *                    will be stored in a segment of its own.
+   * @param limits the limits for maintaining cache weight; see {@link MessageCache} for more detail
+   * @param metricsContext a {@link MetricsContext} for emitting metrics about this cache.
+   */
+  public OffHeapMessageCache(Comparator<T> comparator, Codec<T> codec, int segmentSize,
+                             Limits limits, MetricsContext metricsContext) {
+    Preconditions.checkArgument(segmentSize > 0, "Segment size must be > 0");
+    this.segments = new CopyOnWriteArrayList<>();
+    this.comparator = comparator;
+    this.codec = codec;
+    this.segmentSize = segmentSize;
+    this.limits = new AtomicReference<>(limits);
+    this.metricsContext = metricsContext;
+    this.currentWeight = new AtomicLong();
+    this.needReduceWeight = new AtomicBoolean();
+    this.adding = new AtomicBoolean();
+    this.cacheLock = new ReentrantReadWriteLock();
+  }
+
+  @Override
+  public Comparator<T> getComparator() {
+    return comparator;
+  }
+
+  @Override
+  public void addAll(Iterator<T> entries) {
+    if (!adding.compareAndSet(false, true)) {
+      // This is to guard against bug, otherwise this shouldn't happen
+      throw new ConcurrentModificationException(
+        "The MessageCache.addAll method shouldn't be called concurrently by multiple threads.");
+    }
+
+    try {
+      T largestEntry = null;
+      boolean first = true;
+
+      int entriesAdded = 0;
+      while (entries.hasNext()) {
+        T entry = entries.next();
+
+        // Make sure new entries are also in increasing order.
+        // For the first entry from the provided iterator, it must be larger than everything in the cache.
+        // For sub-sequence entries in the iterator, they must be in strictly increasing order
+        if (first) {
+          largestEntry = getLastInCache();
+          first = false;
+        }
+        if (largestEntry != null && comparator.compare(largestEntry, entry) >= 0) {
+          // Clear the cache to reset state. This is just for precaution, as this shouldn't happen,
+          // unless there is bug in the TMS system (from the caller side).
+          clear();
+          throw new IllegalArgumentException("Cache entry must be in strictly increasing order. " +
+                                               "Entry " + entry + " is smaller than or equal to " + largestEntry);
+        }
+
+        int size = codec.getEncodedSize(entry);
+        getWritableSegment(size).append(entry, size);
+        entriesAdded++;
+        largestEntry = entry;
+      }
+
+      long newWeight = currentWeight.get();
+      metricsContext.increment(METRICS_ADD_REQUESTS, 1L);
+      metricsContext.increment(METRICS_ENTRIES_ADDED, entriesAdded);
+      metricsContext.gauge(METRICS_WEIGHT, newWeight);
+
+      if (newWeight > limits.get().getHardLimit()) {
+        reduceWeight();
+        metricsContext.increment(METRICS_ADD_REDUCE_WEIGHT, 1L);
+      } else if (newWeight > limits.get().getReduceTrigger()) {
+        needReduceWeight.compareAndSet(false, true);
+      }
+    } finally {
+      adding.set(false);
+    }
+  }
+
+  @Override
+  public Scanner<T> scan(T startEntry, boolean includeStart, int limit, MessageFilter<T> filter) {
+    List<T> entries = new ArrayList<>();
+
+    // Acquire the read lock so that no segment is evicted while searching. Segments can only be appended
+    // concurrently by the writer, hence it is safe to access segments by index up to the size acquired below.
+    cacheLock.readLock().lock();
+    T firstInCache;
+    try {
+      int segmentCount = segments.size();
+      firstInCache = segmentCount == 0 ? null : segments.get(0).getFirst();
+
+      int segmentIdx = findSegment(startEntry, segmentCount);
+      int entryIdx = segmentIdx < 0 ? 0 : segments.get(segmentIdx).search(startEntry, includeStart);
+
+      for (int i = Math.max(0, segmentIdx); i < segmentCount && entries.size() < limit; i++) {
+        Segment segment = segments.get(i);
+        int count = segment.getCount();
+        int j = i == segmentIdx ? entryIdx : 0;
+
+        boolean hold = false;
+        for (; j < count && entries.size() < limit; j++) {
+          T entry = segment.get(j);
+          MessageFilter.Result result = filter.apply(entry);
+          if (result == MessageFilter.Result.ACCEPT) {
+            entries.add(entry);
+          } else if (result == MessageFilter.Result.HOLD) {
+            // Hold means not to scan more, so just break
+            hold = true;
+            break;
+          }
+        }
+        if (hold) {
+          break;
+        }
+      }
+    } finally {
+      cacheLock.readLock().unlock();
+    }
+
+    metricsContext.increment(METRICS_SCAN_REQUESTS, 1L);
+
+    return new AbstractScanner<T>(entries.iterator(), firstInCache) {
+      @Override
+      void doClose() {
+        // Use compareAndSet to check if need to reduce weight. There will only be
+        // one winner to proceed with the reduce weight call.
+        if (needReduceWeight.compareAndSet(true, false)) {
+          reduceWeight();
+          metricsContext.increment(METRICS_SCAN_REDUCE_WEIGHT, 1L);
+        }
+      }
+    };
+  }
+
+  @Override
+  public void updateEntries(T startEntry, T endEntry, EntryUpdater<T> updater) {
+    cacheLock.writeLock().lock();
+    try {
+      int segmentCount = segments.size();
+      int segmentIdx = findSegment(startEntry, segmentCount);
+      int entryIdx = segmentIdx < 0 ? 0 : segments.get(segmentIdx).search(startEntry, true);
+
+      T lower = null;
+      for (int i = Math.max(0, segmentIdx); i < segmentCount; i++) {
+        Segment segment = segments.get(i);
+        int count = segment.getCount();
+        for (int j = i == segmentIdx ? entryIdx : 0; j < count; j++) {
+          T entry = segment.get(j);
+          if (comparator.compare(entry, endEntry) > 0) {
+            return;
+          }
+          try {
+            updater.updateEntry(entry);
+          } catch (RuntimeException e) {
+            clear();
+            throw e;
+          }
+
+          // A quick check that the ordering hasn't been altered.
+          // This is just a quick catch for bug in the caller.
+          if (lower != null && comparator.compare(lower, entry) >= 0) {
+            clear();
+            throw new IllegalStateException("Entry order should not be altered after update.");
+          }
+          lower = entry;
+        }
+      }
+    } finally {
+      cacheLock.writeLock().unlock();
+    }
+  }
+
+  @Override
+  public void clear() {
+    // To clear the cache, first set the limit to 0, the reset it back to proper limit
+    Limits oldLimits = limits.get();
+    resize(new Limits(0, 0, 0));
+    resize(oldLimits);
+  }
+
+  @Override
+  public void resize(Limits limits) {
+    cacheLock.writeLock().lock();
+    try {
+      this.limits.set(limits);
+      reduceWeight();
+    } finally {
+      cacheLock.writeLock().unlock();
+    }
+  }
+
+  @Override
+  public Limits getLimits() {
+    return limits.get();
+  }
+
+  /**
+   * Returns the current cache weight.
+   */
+  @VisibleForTesting
+  long getCurrentWeight() {
+    return currentWeight.get();
+  }
+
+  /**
+   * Returns the number of segments currently in the cache.
+   */
+  @VisibleForTesting
+  int getSegmentCount() {
+    return segments.size();
+  }
+
+  /**
+   * Returns the last entry in the cache or {@code null} if the cache is empty. This method is only called
+   * from the writer thread.
+   */
+  @Nullable
+  private T getLastInCache() {
+    // Segments are only evicted from the oldest one, if the active segment is evicted, the cache is empty.
+    if (activeSegment == null || activeSegment.isEvicted() || activeSegment.getCount() == 0) {
+      return null;
+    }
+    return activeSegment.get(activeSegment.getCount() - 1);
+  }
+
+  /**
+   * Returns a {@link Segment} that has enough room for appending an entry of the given size. A new segment
+   * will be added to the cache if the current active segment doesn't have enough room.
+   * This method is only called from the writer thread.
+   */
+  private Segment getWritableSegment(int size) {
+    // If the active segment was evicted, it is safe to just start a new one, since eviction always happen from the
+    // oldest segment, meaning all entries before the new segment are not in the cache.
+    if (activeSegment != null && !activeSegment.isEvicted() && activeSegment.hasRoom(size)) {
+      return activeSegment;
+    }
+
+    int capacity = Math.max(segmentSize, size);
+    if (currentWeight.get() + capacity > limits.get().getHardLimit()) {
+      reduceWeight();
+      metricsContext.increment(METRICS_ADD_REDUCE_WEIGHT, 1L);
+    }
+
+    // It's ok to "leak" the new segment to reader even if the new weight is larger than the hard limit
+    // The segment will get removed eventually and the read/write operations as a whole still give valid results
+    activeSegment = new Segment(capacity);
+    segments.add(activeSegment);
+    currentWeight.addAndGet(capacity);
+    return activeSegment;
+  }
+
+  /**
+   * Finds the index of the last segment that has the first entry smaller than or equal to the given entry.
+   *
+   * @return the index of the segment or {@code -1} if all entries in the cache are larger than the given entry
+   */
+  private int findSegment(T entry, int segmentCount) {
+    int low = 0;
+    int high = segmentCount - 1;
+    int result = -1;
+    while (low <= high) {
+      int mid = (low + high) >>> 1;
+      T first = segments.get(mid).getFirst();
+      // An empty segment can only be the last one, and it is considered larger than any entry
+      if (first != null && comparator.compare(first, entry) <= 0) {
+        result = mid;
+        low = mid + 1;
+      } else {
+        high = mid - 1;
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Reduces the cache weight. Segments will be evicted, starting from the oldest one,
+   * until the cache weight is smaller than the min retain limit.
+   */
+  private void reduceWeight() {
+    int entriesRemoved = 0;
+    int segmentsRemoved = 0;
+    cacheLock.writeLock().lock();
+    try {
+      long newWeight = currentWeight.get();
+      while (!segments.isEmpty()) {
+        Segment segment = segments.get(0);
+        // If removing the next segment is smaller than the min weight, we are done with the reduce logic
+        if (newWeight - segment.getCapacity() < limits.get().getMinRetain()) {
+          break;
+        }
+        segments.remove(0);
+        segment.evict();
+        entriesRemoved += segment.getCount();
+        segmentsRemoved++;
+        newWeight = currentWeight.addAndGet(-1 * segment.getCapacity());
+      }
+    } finally {
+      cacheLock.writeLock().unlock();
+    }
+    metricsContext.increment(METRICS_ENTRIES_REMOVED, entriesRemoved);
+    metricsContext.increment(METRICS_SEGMENTS_REMOVED, segmentsRemoved);
+  }
+
+  /**
+   * Encodes and decodes cache entries to and from the off-heap memory.
+   *
+   * @param <T> type of the entry
+   */
+  public interface Codec<T> {
+
+    /**
+     * Returns the number of bytes needed for encoding the given entry.
+     */
+    int getEncodedSize(T entry);
+
+    /**
+     * Encodes the given entry into the given {@link ByteBuffer}, starting from the current position. The number of
+     * bytes written must be the same as the size returned by the {@link #getEncodedSize(Object)} method.
+     */
+    void encode(T entry, ByteBuffer buffer);
+
+    /**
+     * Decodes an entry from the given {@link ByteBuffer}. The {@link ByteBuffer} is shared by concurrent readers,
+     * hence implementation must only use absolute get and put operations. The returned entry can be a view backed
+     * by the given {@link ByteBuffer}.
+     *
+     * @param buffer the {@link ByteBuffer} containing the encoded entry
+     * @param offset the starting offset of the encoded entry in the buffer
+     * @param length length of the encoded entry in bytes
+     * @return the decoded entry
+     */
+    T decode(ByteBuffer buffer, int offset, int length);
+  }
+
+  /**
+   * An append-only segment of off-heap memory for storing encoded entries. Appending to the segment can happen
+   * concurrently with reading, since the number of entries is only updated after the entry is fully written.
+   */
+  private final class Segment {
+
+    private final ByteBuffer writeBuffer;
+    private final ByteBuffer readBuffer;
+    // Offset of each entry. The end offset of entry i is stored at i + 1.
+    private int[] offsets;
+    private volatile int count;
+    private volatile boolean evicted;
+
+    Segment(int capacity) {
+      this.writeBuffer = ByteBuffer.allocateDirect(capacity);
+      this.readBuffer = writeBuffer.duplicate();
+      this.offsets = new int[64];
+    }
+
+    int getCapacity() {
+      return writeBuffer.capacity();
+    }
+
+    int getCount() {
+      return count;
+    }
+
+    boolean hasRoom(int size) {
+      return writeBuffer.remaining() >= size;
+    }
+
+    boolean isEvicted() {
+      return evicted;
+    }
+
+    void evict() {
+      evicted = true;
+    }
+
+    void append(T entry, int size) {
+      int idx = count;
+      if (idx + 1 >= offsets.length) {
+        offsets = Arrays.copyOf(offsets, offsets.length * 2);
+      }
+      int start = writeBuffer.position();
+      codec.encode(entry, writeBuffer);
+      if (writeBuffer.position() - start != size) {
+        throw new IllegalStateException("Encoded size of entry " + entry + " is not the same as the expected size "
+                                          + size + ". Actual size is " + (writeBuffer.position() - start));
+      }
+      offsets[idx] = start;
+      offsets[idx + 1] = writeBuffer.position();
+
+      // Publish the new entry to readers
+      count = idx + 1;
+    }
+
+    /**
+     * Returns the entry at the given index. The index must be smaller than the result of {@link #getCount()}.
+     */
+    T get(int idx) {
+      int[] offsets = this.offsets;
+      return codec.decode(readBuffer, offsets[idx], offsets[idx + 1] - offsets[idx]);
+    }
+
+    @Nullable
+    T getFirst() {
+      return count == 0 ? null : get(0);
+    }
+
+    /**
+     * Returns the index of the first entry that is larger than the given entry,
+     * or equal to the given entry if {@code inclusive} is {@code true}.
+     */
+    int search(T entry, boolean inclusive) {
+      int low = 0;
+      int high = count - 1;
+      while (low <= high) {
+        int mid = (low + high) >>> 1;
+        int cmp = comparator.compare(get(mid), entry);
+        if (cmp < 0 || (cmp == 0 && !inclusive)) {
+          low = mid + 1;
+        } else {
+          high = mid - 1;
+        }
+      }
+      return low;
+    }
+  }
+}
@@ -22,11 +22,13 @@ import co.cask.cdap.api.dataset.lib.CloseableIterator;
 import co.cask.cdap.api.messaging.TopicAlreadyExistsException;
 import co.cask.cdap.api.messaging.TopicNotFoundException;
 import co.cask.cdap.common.ServiceUnavailableException;
+import co.cask.cdap.common.conf.CConfiguration;
 import co.cask.cdap.common.conf.Constants;
 import co.cask.cdap.common.http.DefaultHttpRequestConfig;
 import co.cask.cdap.common.internal.remote.RemoteClient;
 import co.cask.cdap.messaging.MessageFetcher;
 import co.cask.cdap.messaging.MessagingService;
+import co.cask.cdap.messaging.MultiTopicMessageFetcher;
 import co.cask.cdap.messaging.RollbackDetail;
 import co.cask.cdap.messaging.Schemas;
 import co.cask.cdap.messaging.StoreRequest;
@@ -48,6 +50,7 @@ import com.google.gson.Gson;
 import com.google.gson.reflect.TypeToken;
 import com.google.inject.Inject;
 import org.apache.avro.Schema;
+import org.apache.avro.generic.GenericArray;
 import org.apache.avro.generic.GenericData;
 import org.apache.avro.generic.GenericDatumReader;
 import org.apache.avro.generic.GenericDatumWriter;
@@ -60,6 +63,8 @@ import org.apache.avro.io.Encoder;
 import org.apache.avro.io.EncoderFactory;
 import org.apache.tephra.TransactionCodec;
 import org.apache.twill.discovery.DiscoveryServiceClient;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
@@ -72,6 +77,7 @@ import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.function.Supplier;
@@ -87,20 +93,34 @@ import javax.annotation.Nullable;
  */
 public final class ClientMessagingService implements MessagingService {
 
+  private static final Logger LOG = LoggerFactory.getLogger(ClientMessagingService.class);
   private static final HttpRequestConfig HTTP_REQUEST_CONFIG = new DefaultHttpRequestConfig();
   private static final TransactionCodec TRANSACTION_CODEC = new TransactionCodec();
   private static final Gson GSON = new Gson();
   // These types for only for Gson to use, hence using the gson TypeToken instead of guava one
   private static final Type TOPIC_PROPERTY_TYPE = new TypeToken<Map<String, String>>() { }.getType();
   private static final Type TOPIC_LIST_TYPE = new TypeToken<List<String>>() { }.getType();
+  private static final Type TOPIC_NOT_FOUND_TYPE = new TypeToken<Map<String, String>>() { }.getType();
 
   private final RemoteClient remoteClient;
+  private final long defaultPollTimeoutMillis;
+  // Set to false when the messaging service is found not to support long poll consume
+  private volatile boolean longPollSupported = true;
 
   @VisibleForTesting
+  public ClientMessagingService(DiscoveryServiceClient discoveryServiceClient) {
+    this(discoveryServiceClient, 0L);
+  }
+
   @Inject
-  public ClientMessagingService(final DiscoveryServiceClient discoveryServiceClient) {
+  ClientMessagingService(CConfiguration cConf, DiscoveryServiceClient discoveryServiceClient) {
+    this(discoveryServiceClient, cConf.getLong(Constants.MessagingSystem.HTTP_CLIENT_CONSUME_TIMEOUT_MS));
+  }
+
+  private ClientMessagingService(DiscoveryServiceClient discoveryServiceClient, long defaultPollTimeoutMillis) {
     this.remoteClient = new RemoteClient(discoveryServiceClient, Constants.Service.MESSAGING_SERVICE,
-                                         HTTP_REQUEST_CONFIG, "/v1/namespaces/");
+                                         HTTP_REQUEST_CONFIG, "/v1/");
+    this.defaultPollTimeoutMillis = defaultPollTimeoutMillis;
   }
 
   @Override
@@ -160,7 +180,8 @@ public final class ClientMessagingService implements MessagingService {
 
   @Override
   public List<TopicId> listTopics(NamespaceId namespaceId) throws IOException {
-    HttpRequest request = remoteClient.requestBuilder(HttpMethod.GET, namespaceId.getNamespace() + "/topics").build();
+    String path = "namespaces/" + namespaceId.getNamespace() + "/topics";
+    HttpRequest request = remoteClient.requestBuilder(HttpMethod.GET, path).build();
     HttpResponse response = remoteClient.execute(request);
 
     handleError(response, "Failed to list topics in namespace " + namespaceId);
@@ -178,6 +199,11 @@ public final class ClientMessagingService implements MessagingService {
     return new ClientMessageFetcher(topicId);
   }
 
+  @Override
+  public MultiTopicMessageFetcher prepareMultiTopicFetch() {
+    return new ClientMultiTopicMessageFetcher();
+  }
+
   @Nullable
   @Override
   public RollbackDetail publish(StoreRequest request) throws TopicNotFoundException, IOException {
@@ -263,7 +289,7 @@ public final class ClientMessagingService implements MessagingService {
    * Creates the URL path for making HTTP requests for the given topic.
    */
   private String createTopicPath(TopicId topicId) {
-    return topicId.getNamespace() + "/topics/" + topicId.getTopic();
+    return "namespaces/" + topicId.getNamespace() + "/topics/" + topicId.getTopic();
   }
 
   /**
@@ -364,6 +390,8 @@ public final class ClientMessagingService implements MessagingService {
 
   /**
    * Client side implementation of {@link MessageFetcher}. It streams messages from the server with chunk encoding.
+   * With a poll timeout, the server holds the request up to the timeout for new messages to arrive if there is no
+   * message available. Servers without long poll support are fetched from without waiting.
    */
   private final class ClientMessageFetcher extends MessageFetcher {
 
@@ -381,57 +409,50 @@ public final class ClientMessagingService implements MessagingService {
 
     @Override
     public CloseableIterator<RawMessage> fetch() throws IOException, TopicNotFoundException {
-      GenericRecord record = new GenericData.Record(Schemas.V1.ConsumeRequest.SCHEMA);
-
-      if (getStartOffset() != null) {
-        record.put("startFrom", ByteBuffer.wrap(getStartOffset()));
-      }
-      if (getStartTime() != null) {
-        record.put("startFrom", getStartTime());
-      }
-      record.put("inclusive", isIncludeStart());
-      record.put("limit", getLimit());
-
-      if (getTransaction() != null) {
-        record.put("transaction", ByteBuffer.wrap(TRANSACTION_CODEC.encode(getTransaction())));
+      long pollTimeout = getPollTimeoutMillis() == null ? defaultPollTimeoutMillis : getPollTimeoutMillis();
+
+      HttpURLConnection urlConn = null;
+      if (pollTimeout > 0 && longPollSupported) {
+        GenericRecord record = createRequest(Schemas.V1.LongPollRequest.SCHEMA);
+        record.put("timeout", pollTimeout);
+        urlConn = openConnection("/consume", Schemas.V1.LongPollRequest.SCHEMA, record, pollTimeout);
+        if (urlConn.getResponseCode() == HttpURLConnection.HTTP_NOT_FOUND) {
+          // Either the topic doesn't exist or the server doesn't have the consume endpoint.
+          // Poll to find out, which throws TopicNotFoundException in the former case.
+          urlConn.disconnect();
+          urlConn = null;
+        }
       }
 
-      // The cask common http library doesn't support read streaming, and we don't want to buffer all messages
-      // in memory, hence we use the HttpURLConnection directly instead.
-      URL url = remoteClient.resolve(createTopicPath(topicId) + "/poll");
-      final HttpURLConnection urlConn = (HttpURLConnection)  url.openConnection();
-      urlConn.setConnectTimeout(HTTP_REQUEST_CONFIG.getConnectTimeout());
-      urlConn.setReadTimeout(HTTP_REQUEST_CONFIG.getReadTimeout());
-      urlConn.setRequestMethod("POST");
-      urlConn.setRequestProperty(HttpHeaders.CONTENT_TYPE, "avro/binary");
-      urlConn.setDoInput(true);
-      urlConn.setDoOutput(true);
-
-      // Send the request
-      Encoder encoder = EncoderFactory.get().directBinaryEncoder(urlConn.getOutputStream(), null);
-      DatumWriter<GenericRecord> datumWriter = new GenericDatumWriter<>(Schemas.V1.ConsumeRequest.SCHEMA);
-      datumWriter.write(record, encoder);
-
-      int responseCode = urlConn.getResponseCode();
-      if (responseCode == HttpURLConnection.HTTP_NOT_FOUND) {
-        throw new TopicNotFoundException(topicId.getNamespace(), topicId.getTopic());
+      if (urlConn == null) {
+        urlConn = openConnection("/poll", Schemas.V1.ConsumeRequest.SCHEMA,
+                                 createRequest(Schemas.V1.ConsumeRequest.SCHEMA), 0L);
+        if (urlConn.getResponseCode() == HttpURLConnection.HTTP_NOT_FOUND) {
+          urlConn.disconnect();
+          throw new TopicNotFoundException(topicId.getNamespace(), topicId.getTopic());
+        }
+        if (pollTimeout > 0 && longPollSupported && urlConn.getResponseCode() == HttpURLConnection.HTTP_OK) {
+          LOG.info("Messaging service doesn't support long poll. Fetching without poll timeout.");
+          longPollSupported = false;
+        }
       }
 
-      handleError(responseCode, () -> {
+      final HttpURLConnection conn = urlConn;
+      handleError(conn.getResponseCode(), () -> {
         // If there is any error, read the response body from the error stream
-        try (InputStream errorStream = urlConn.getErrorStream()) {
+        try (InputStream errorStream = conn.getErrorStream()) {
           return errorStream == null ? "" : new String(ByteStreams.toByteArray(errorStream),
                                                        StandardCharsets.UTF_8);
         } catch (IOException e) {
           return "";
         } finally {
-          urlConn.disconnect();
+          conn.disconnect();
         }
       }, "Failed to update topic " + topicId);
-      verifyContentType(urlConn.getHeaderFields(), "avro/binary");
+      verifyContentType(conn.getHeaderFields(), "avro/binary");
 
       // Decode the avro array manually instead of using DatumReader in order to support streaming decode.
-      final InputStream inputStream = urlConn.getInputStream();
+      final InputStream inputStream = conn.getInputStream();
       final Decoder decoder = DecoderFactory.get().binaryDecoder(inputStream, null);
       final long initialItemCount = decoder.readArrayStart();
       return new AbstractCloseableIterator<RawMessage>() {
@@ -470,9 +491,134 @@ public final class ClientMessagingService implements MessagingService {
         @Override
         public void close() {
           Closeables.closeQuietly(inputStream);
-          urlConn.disconnect();
+          conn.disconnect();
         }
       };
     }
+
+    /**
+     * Creates a consume request record of the given schema, with the fetching parameters set.
+     */
+    private GenericRecord createRequest(Schema schema) throws IOException {
+      GenericRecord record = new GenericData.Record(schema);
+
+      if (getStartOffset() != null) {
+        record.put("startFrom", ByteBuffer.wrap(getStartOffset()));
+      }
+      if (getStartTime() != null) {
+        record.put("startFrom", getStartTime());
+      }
+      record.put("inclusive", isIncludeStart());
+      record.put("limit", getLimit());
+
+      if (getTransaction() != null) {
+        record.put("transaction", ByteBuffer.wrap(TRANSACTION_CODEC.encode(getTransaction())));
+      }
+      return record;
+    }
+
+    /**
+     * Sends the given request to the given endpoint of the topic and returns the connection for reading the response.
+     */
+    private HttpURLConnection openConnection(String endpoint, Schema schema, GenericRecord record,
+                                             long pollTimeout) throws IOException {
+      // The cask common http library doesn't support read streaming, and we don't want to buffer all messages
+      // in memory, hence we use the HttpURLConnection directly instead.
+      URL url = remoteClient.resolve(createTopicPath(topicId) + endpoint);
+      HttpURLConnection urlConn = (HttpURLConnection) url.openConnection();
+      urlConn.setConnectTimeout(HTTP_REQUEST_CONFIG.getConnectTimeout());
+      // The server can hold the request up to the poll timeout before responding
+      urlConn.setReadTimeout((int) Math.min(Integer.MAX_VALUE, HTTP_REQUEST_CONFIG.getReadTimeout() + pollTimeout));
+      urlConn.setRequestMethod("POST");
+      urlConn.setRequestProperty(HttpHeaders.CONTENT_TYPE, "avro/binary");
+      urlConn.setDoInput(true);
+      urlConn.setDoOutput(true);
+
+      // Send the request
+      Encoder encoder = EncoderFactory.get().directBinaryEncoder(urlConn.getOutputStream(), null);
+      DatumWriter<GenericRecord> datumWriter = new GenericDatumWriter<>(schema);
+      datumWriter.write(record, encoder);
+      return urlConn;
+    }
+  }
+
+  /**
+   * Client side implementation of {@link MultiTopicMessageFetcher}. It fetches messages from all topics with a
+   * single call to the server. The number of messages fetched from each topic is capped by the server.
+   */
+  private final class ClientMultiTopicMessageFetcher extends MultiTopicMessageFetcher {
+
+    @Override
+    public Map<TopicId, List<RawMessage>> fetch() throws TopicNotFoundException, IOException {
+      Schema schema = Schemas.V1.MultiConsumeRequest.SCHEMA;
+      Schema topicsSchema = schema.getField("topics").schema();
+      GenericArray<GenericRecord> topics = new GenericData.Array<>(getTopics().size(), topicsSchema);
+
+      for (Map.Entry<TopicId, StartPosition> entry : getTopics().entrySet()) {
+        StartPosition position = entry.getValue();
+        GenericRecord topicRecord = new GenericData.Record(topicsSchema.getElementType());
+        topicRecord.put("namespace", entry.getKey().getNamespace());
+        topicRecord.put("topic", entry.getKey().getTopic());
+        if (position.getStartOffset() != null) {
+          topicRecord.put("startFrom", ByteBuffer.wrap(position.getStartOffset()));
+        }
+        if (position.getStartTime() != null) {
+          topicRecord.put("startFrom", position.getStartTime());
+        }
+        topicRecord.put("inclusive", position.isIncludeStart());
+        topics.add(topicRecord);
+      }
+
+      GenericRecord record = new GenericData.Record(schema);
+      record.put("topics", topics);
+      // Without a limit, the server applies its default limit
+      record.put("limit", getLimit());
+      if (getTransaction() != null) {
+        record.put("transaction", ByteBuffer.wrap(TRANSACTION_CODEC.encode(getTransaction())));
+      }
+
+      ExposedByteArrayOutputStream os = new ExposedByteArrayOutputStream();
+      Encoder encoder = EncoderFactory.get().directBinaryEncoder(os, null);
+      DatumWriter<GenericRecord> datumWriter = new GenericDatumWriter<>(schema);
+      datumWriter.write(record, encoder);
+
+      HttpRequest httpRequest = remoteClient.requestBuilder(HttpMethod.POST, "fetch")
+        .addHeader(HttpHeaders.CONTENT_TYPE, "avro/binary")
+        .withBody(os.toByteBuffer())
+        .build();
+
+      HttpResponse response = remoteClient.execute(httpRequest);
+
+      if (response.getResponseCode() == HttpURLConnection.HTTP_NOT_FOUND) {
+        // The server responds with the namespace and name of the topic that doesn't exist
+        Map<String, String> topic = GSON.fromJson(response.getResponseBodyAsString(), TOPIC_NOT_FOUND_TYPE);
+        throw new TopicNotFoundException(topic.get("namespace"), topic.get("topic"));
+      }
+      handleError(response, "Failed to fetch messages from topics " + getTopics().keySet());
+      verifyContentType(response.getHeaders().asMap(), "avro/binary");
+
+      // Decode the topic records with DatumReader for greater flexibility on schema evolution.
+      DatumReader<GenericRecord> topicReader =
+        new GenericDatumReader<>(Schemas.V1.MultiConsumeResponse.SCHEMA.getElementType());
+      GenericRecord topicRecord = null;
+
+      Map<TopicId, List<RawMessage>> result = new LinkedHashMap<>();
+      Decoder decoder = DecoderFactory.get().binaryDecoder(response.getResponseBody(), null);
+      for (long topicCount = decoder.readArrayStart(); topicCount > 0; topicCount = decoder.arrayNext()) {
+        for (long i = 0; i < topicCount; i++) {
+          topicRecord = topicReader.read(topicRecord, decoder);
+          TopicId topicId = new NamespaceId(topicRecord.get("namespace").toString())
+            .topic(topicRecord.get("topic").toString());
+          List<RawMessage> messages = new ArrayList<>();
+          for (Object obj : (GenericArray<?>) topicRecord.get("messages")) {
+            GenericRecord messageRecord = (GenericRecord) obj;
+            messages.add(new RawMessage(Bytes.toBytes((ByteBuffer) messageRecord.get("id")),
+                                        Bytes.toBytes((ByteBuffer) messageRecord.get("payload"))));
+          }
+          result.put(topicId, messages);
+        }
+      }
+      return result;
+    }
   }
 }
@@ -33,28 +33,32 @@ import co.cask.cdap.proto.id.NamespaceId;
 import co.cask.cdap.proto.id.TopicId;
 import co.cask.http.AbstractHttpHandler;
 import co.cask.http.BodyProducer;
+import co.cask.http.ChunkResponder;
+import co.cask.http.HandlerContext;
 import co.cask.http.HttpResponder;
+import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
+import com.google.common.io.Closeables;
+import com.google.gson.Gson;
 import com.google.inject.Inject;
 import io.netty.buffer.ByteBuf;
 import io.netty.buffer.ByteBufInputStream;
-import io.netty.buffer.ByteBufOutputStream;
+import io.netty.buffer.PooledByteBufAllocator;
 import io.netty.buffer.Unpooled;
 import io.netty.handler.codec.http.DefaultHttpHeaders;
 import io.netty.handler.codec.http.FullHttpRequest;
 import io.netty.handler.codec.http.HttpHeaderNames;
 import io.netty.handler.codec.http.HttpResponseStatus;
-import org.apache.avro.generic.GenericData;
+import org.apache.avro.Schema;
+import org.apache.avro.generic.GenericArray;
 import org.apache.avro.generic.GenericDatumReader;
-import org.apache.avro.generic.GenericDatumWriter;
 import org.apache.avro.generic.GenericRecord;
 import org.apache.avro.io.DatumReader;
-import org.apache.avro.io.DatumWriter;
 import org.apache.avro.io.Decoder;
 import org.apache.avro.io.DecoderFactory;
-import org.apache.avro.io.Encoder;
-import org.apache.avro.io.EncoderFactory;
+import org.apache.tephra.Transaction;
 import org.apache.tephra.TransactionCodec;
+import org.apache.twill.common.Threads;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -62,9 +66,17 @@ import java.io.IOException;
 import java.net.SocketException;
 import java.nio.ByteBuffer;
 import java.nio.channels.ClosedChannelException;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 import javax.annotation.Nullable;
 import javax.ws.rs.POST;
 import javax.ws.rs.Path;
@@ -73,46 +85,65 @@ import javax.ws.rs.PathParam;
 /**
  * A netty http handler for handling message fetching REST API for the messaging system.
  */
-@Path("/v1/namespaces/{namespace}/topics/{topic}")
+@Path("/v1")
 public final class FetchHandler extends AbstractHttpHandler {
 
   private static final Logger LOG = LoggerFactory.getLogger(FetchHandler.class);
   // Log at most once per minute.
   private static final Logger SAMPLING_LOG = Loggers.sampling(LOG, LogSamplers.limitRate(60000));
   private static final TransactionCodec TRANSACTION_CODEC = new TransactionCodec();
+  private static final Gson GSON = new Gson();
   private static final Set<String> KNOWN_IO_EXCEPTION_MESSAGES = ImmutableSet.of(
     "Connection reset by peer",
     "Broken pipe"
   );
 
   private final MessagingService messagingService;
-  private int messageChunkSize;
+  private final int messageChunkSize;
+  private final long maxPollTimeoutMillis;
+  private final long pollDelayMillis;
+  private final int pollThreads;
+  private final int fetchDefaultLimit;
+  private final int fetchMaxLimit;
+  private ScheduledExecutorService pollExecutor;
 
   @Inject
   FetchHandler(CConfiguration cConf, MessagingService messagingService) {
     this.messagingService = messagingService;
     this.messageChunkSize = cConf.getInt(Constants.MessagingSystem.HTTP_SERVER_CONSUME_CHUNK_SIZE);
+    this.maxPollTimeoutMillis = cConf.getLong(Constants.MessagingSystem.HTTP_SERVER_CONSUME_MAX_TIMEOUT_MS);
+    this.pollDelayMillis = cConf.getLong(Constants.MessagingSystem.HTTP_SERVER_CONSUME_POLL_DELAY_MS);
+    this.pollThreads = cConf.getInt(Constants.MessagingSystem.HTTP_SERVER_CONSUME_POLL_THREADS);
+    this.fetchDefaultLimit = cConf.getInt(Constants.MessagingSystem.HTTP_SERVER_FETCH_DEFAULT_LIMIT);
+    this.fetchMaxLimit = cConf.getInt(Constants.MessagingSystem.HTTP_SERVER_FETCH_MAX_LIMIT);
+  }
+
+  @Override
+  public void init(HandlerContext context) {
+    super.init(context);
+    pollExecutor = Executors.newScheduledThreadPool(pollThreads,
+                                                    Threads.createDaemonThreadFactory("messaging-long-poll-%d"));
+  }
+
+  @Override
+  public void destroy(HandlerContext context) {
+    pollExecutor.shutdownNow();
+    super.destroy(context);
   }
 
   @POST
-  @Path("poll")
+  @Path("/namespaces/{namespace}/topics/{topic}/poll")
   public void poll(FullHttpRequest request, HttpResponder responder,
                    @PathParam("namespace") String namespace,
                    @PathParam("topic") String topic) throws Exception {
 
     TopicId topicId = new NamespaceId(namespace).topic(topic);
 
-    // Currently only support avro
-    if (!"avro/binary".equals(request.headers().get(HttpHeaderNames.CONTENT_TYPE))) {
-      throw new BadRequestException("Only avro/binary content type is supported.");
-    }
-
     // Decode the poll request
-    Decoder decoder = DecoderFactory.get().directBinaryDecoder(new ByteBufInputStream(request.content()), null);
-    DatumReader<GenericRecord> datumReader = new GenericDatumReader<>(Schemas.V1.ConsumeRequest.SCHEMA);
+    GenericRecord pollRequest = decodeRequest(request, Schemas.V1.ConsumeRequest.SCHEMA);
 
     // Fetch the messages
-    CloseableIterator<RawMessage> iterator = fetchMessages(datumReader.read(null, decoder), topicId);
+    CloseableIterator<RawMessage> iterator = fetchMessages(pollRequest, topicId);
     try {
       responder.sendContent(HttpResponseStatus.OK, new MessagesBodyProducer(iterator, messageChunkSize),
                             new DefaultHttpHeaders().set(HttpHeaderNames.CONTENT_TYPE, "avro/binary"));
@@ -122,18 +153,112 @@ public final class FetchHandler extends AbstractHttpHandler {
     }
   }
 
+  /**
+   * Long poll consume endpoint. If there is no message available, the connection is held until new messages
+   * are available or the poll timeout given in the request has passed, whichever comes first.
+   * The response has the same format as the {@link #poll(FullHttpRequest, HttpResponder, String, String)} call.
+   */
+  @POST
+  @Path("/namespaces/{namespace}/topics/{topic}/consume")
+  public void consume(FullHttpRequest request, HttpResponder responder,
+                      @PathParam("namespace") String namespace,
+                      @PathParam("topic") String topic) throws Exception {
+
+    TopicId topicId = new NamespaceId(namespace).topic(topic);
+    GenericRecord pollRequest = decodeRequest(request, Schemas.V1.LongPollRequest.SCHEMA);
+
+    long timeout = Math.max(0L, Math.min(maxPollTimeoutMillis, (Long) pollRequest.get("timeout")));
+
+    // The first fetch is done in the handler thread, so that errors are handled by the exception handler
+    new LongPoll(topicId, pollRequest, responder, System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeout)).poll();
+  }
+
+  /**
+   * Consumes messages from multiple topics in one call. Each topic has its own starting point, while the limit and
+   * transaction apply to all topics. The limit is the maximum number of messages from each topic. If it is missing
+   * the default limit is used, and it is capped by the maximum limit. Responds with {@code 404} if any of the topics
+   * doesn't exist, with a json object of the namespace and topic name of the missing topic as the response body.
+   */
+  @POST
+  @Path("/fetch")
+  public void fetch(FullHttpRequest request, HttpResponder responder) throws Exception {
+    GenericRecord fetchRequest = decodeRequest(request, Schemas.V1.MultiConsumeRequest.SCHEMA);
+
+    Integer requestLimit = (Integer) fetchRequest.get("limit");
+    int limit = requestLimit == null ? fetchDefaultLimit : Math.min(requestLimit, fetchMaxLimit);
+    ByteBuffer encodedTx = (ByteBuffer) fetchRequest.get("transaction");
+    Transaction transaction = encodedTx == null ? null : TRANSACTION_CODEC.decode(ByteBuffers.getByteArray(encodedTx));
+
+    // Open the iterators of all topics before responding, so that a missing topic can still be responded with 404.
+    // Messages are only read from the iterators when the response is streamed.
+    Map<TopicId, CloseableIterator<RawMessage>> iterators = new LinkedHashMap<>();
+    try {
+      for (Object obj : (GenericArray<?>) fetchRequest.get("topics")) {
+        GenericRecord topicRequest = (GenericRecord) obj;
+        TopicId topicId = new NamespaceId(topicRequest.get("namespace").toString())
+          .topic(topicRequest.get("topic").toString());
+        if (!iterators.containsKey(topicId)) {
+          iterators.put(topicId, fetchMessages(topicRequest, topicId, limit, transaction));
+        }
+      }
+    } catch (TopicNotFoundException e) {
+      closeAll(iterators.values());
+      responder.sendJson(HttpResponseStatus.NOT_FOUND,
+                         GSON.toJson(ImmutableMap.of("namespace", e.getNamespace(), "topic", e.getTopic())));
+      return;
+    } catch (Throwable t) {
+      closeAll(iterators.values());
+      throw t;
+    }
+
+    try {
+      responder.sendContent(HttpResponseStatus.OK, new MultiTopicMessagesBodyProducer(iterators, messageChunkSize),
+                            new DefaultHttpHeaders().set(HttpHeaderNames.CONTENT_TYPE, "avro/binary"));
+    } catch (Throwable t) {
+      closeAll(iterators.values());
+      throw t;
+    }
+  }
+
+  /**
+   * Decodes the request body with the given avro {@link Schema}.
+   */
+  private GenericRecord decodeRequest(FullHttpRequest request, Schema schema) throws BadRequestException, IOException {
+    // Currently only support avro
+    if (!"avro/binary".equals(request.headers().get(HttpHeaderNames.CONTENT_TYPE))) {
+      throw new BadRequestException("Only avro/binary content type is supported.");
+    }
+
+    Decoder decoder = DecoderFactory.get().directBinaryDecoder(new ByteBufInputStream(request.content()), null);
+    DatumReader<GenericRecord> datumReader = new GenericDatumReader<>(schema);
+    return datumReader.read(null, decoder);
+  }
+
   /**
    * Creates a {@link CloseableIterator} of {@link RawMessage} based on the given fetch request.
    */
   private CloseableIterator<RawMessage> fetchMessages(GenericRecord fetchRequest,
                                                       TopicId topicId) throws IOException, TopicNotFoundException {
+    ByteBuffer encodedTx = (ByteBuffer) fetchRequest.get("transaction");
+    Transaction transaction = encodedTx == null ? null : TRANSACTION_CODEC.decode(ByteBuffers.getByteArray(encodedTx));
+    return fetchMessages(fetchRequest, topicId, (Integer) fetchRequest.get("limit"), transaction);
+  }
+
+  /**
+   * Creates a {@link CloseableIterator} of {@link RawMessage} starting from the position in the given request,
+   * with the given limit and transaction.
+   */
+  private CloseableIterator<RawMessage> fetchMessages(GenericRecord startRequest, TopicId topicId,
+                                                      @Nullable Integer limit,
+                                                      @Nullable Transaction transaction)
+    throws IOException, TopicNotFoundException {
     MessageFetcher fetcher = messagingService.prepareFetch(topicId);
 
-    Object startFrom = fetchRequest.get("startFrom");
+    Object startFrom = startRequest.get("startFrom");
     if (startFrom != null) {
       if (startFrom instanceof ByteBuffer) {
         // start message id is specified
-        fetcher.setStartMessage(Bytes.toBytes((ByteBuffer) startFrom), (Boolean) fetchRequest.get("inclusive"));
+        fetcher.setStartMessage(Bytes.toBytes((ByteBuffer) startFrom), (Boolean) startRequest.get("inclusive"));
       } else if (startFrom instanceof Long) {
         // start by timestamp is specified
         fetcher.setStartTime((Long) startFrom);
@@ -143,55 +268,175 @@ public final class FetchHandler extends AbstractHttpHandler {
       }
     }
 
-    Integer limit = (Integer) fetchRequest.get("limit");
     if (limit != null) {
       fetcher.setLimit(limit);
     }
-
-    ByteBuffer encodedTx = (ByteBuffer) fetchRequest.get("transaction");
-    if (encodedTx != null) {
-      fetcher.setTransaction(TRANSACTION_CODEC.decode(ByteBuffers.getByteArray(encodedTx)));
+    if (transaction != null) {
+      fetcher.setTransaction(transaction);
     }
 
     return fetcher.fetch();
   }
 
+  /**
+   * Closes all the given iterators.
+   */
+  private static void closeAll(Iterable<? extends CloseableIterator<?>> iterators) {
+    for (CloseableIterator<?> iterator : iterators) {
+      iterator.close();
+    }
+  }
+
+  /**
+   * Writes an avro encoded long to the given buffer and returns the number of bytes written.
+   */
+  private static int encodeLong(long n, byte[] buffer) {
+    // Zig-zag encoding followed by variable length encoding, as defined by the avro spec.
+    long value = (n << 1) ^ (n >> 63);
+    int len = 0;
+    while ((value & ~0x7FL) != 0) {
+      buffer[len++] = (byte) ((value & 0x7F) | 0x80);
+      value >>>= 7;
+    }
+    buffer[len++] = (byte) value;
+    return len;
+  }
+
+  /**
+   * Represents a pending long poll request. Each call to {@link #poll()} performs one fetch. If no message
+   * is available and the deadline hasn't passed yet, another fetch will be scheduled in the poll executor.
+   *
+   * Before the first fetch is scheduled, the response is started with chunked encoding. Each scheduled fetch first
+   * writes an empty chunk, which fails if the client has closed the connection, hence the long poll is cancelled
+   * instead of fetching until the deadline. Since the response status is already sent, failures in scheduled
+   * fetches are responded with an empty array, and the next request from the client will see the failure.
+   */
+  private final class LongPoll implements Runnable {
+
+    private final TopicId topicId;
+    private final GenericRecord pollRequest;
+    private final HttpResponder responder;
+    private final long deadlineNanos;
+    private ChunkResponder chunkResponder;
+
+    LongPoll(TopicId topicId, GenericRecord pollRequest, HttpResponder responder, long deadlineNanos) {
+      this.topicId = topicId;
+      this.pollRequest = pollRequest;
+      this.responder = responder;
+      this.deadlineNanos = deadlineNanos;
+    }
+
+    void poll() throws Exception {
+      CloseableIterator<RawMessage> iterator = fetchMessages(pollRequest, topicId);
+      try {
+        long remainingNanos = deadlineNanos - System.nanoTime();
+        if (!iterator.hasNext() && remainingNanos > 0) {
+          iterator.close();
+          if (chunkResponder == null) {
+            chunkResponder = responder.sendChunkStart(HttpResponseStatus.OK, new DefaultHttpHeaders()
+              .set(HttpHeaderNames.CONTENT_TYPE, "avro/binary"));
+          }
+          try {
+            pollExecutor.schedule(this, Math.min(TimeUnit.NANOSECONDS.toMillis(remainingNanos), pollDelayMillis),
+                                  TimeUnit.MILLISECONDS);
+          } catch (RejectedExecutionException e) {
+            // The handler is being destroyed
+            sendEmpty();
+          }
+          return;
+        }
+        if (chunkResponder == null) {
+          responder.sendContent(HttpResponseStatus.OK, new MessagesBodyProducer(iterator, messageChunkSize),
+                                new DefaultHttpHeaders().set(HttpHeaderNames.CONTENT_TYPE, "avro/binary"));
+          return;
+        }
+      } catch (Throwable t) {
+        iterator.close();
+        throw t;
+      }
+      sendChunks(new MessagesBodyProducer(iterator, messageChunkSize));
+    }
+
+    @Override
+    public void run() {
+      try {
+        // An empty chunk writes nothing to the client, but fails if the connection is closed
+        chunkResponder.sendChunk(Unpooled.EMPTY_BUFFER);
+      } catch (IOException e) {
+        LOG.trace("Long poll on topic {} cancelled since the connection is closed", topicId);
+        return;
+      }
+
+      // This is called from the poll executor, hence needs to respond to failure explicitly.
+      try {
+        poll();
+      } catch (Throwable t) {
+        if (!(t instanceof TopicNotFoundException)) {
+          SAMPLING_LOG.warn("Exception raised when polling messages from topic {}", topicId, t);
+        }
+        sendEmpty();
+      }
+    }
+
+    /**
+     * Writes all chunks of the given {@link BodyProducer} to the started response and ends it. The chunks are
+     * written out when the response ends, which is bounded by the fetch limit.
+     */
+    private void sendChunks(BodyProducer producer) {
+      try {
+        ByteBuf chunk = producer.nextChunk();
+        while (chunk.isReadable()) {
+          try {
+            chunkResponder.sendChunk(chunk);
+          } catch (Throwable t) {
+            chunk.release();
+            throw t;
+          }
+          chunk = producer.nextChunk();
+        }
+        chunkResponder.close();
+        producer.finished();
+      } catch (Throwable t) {
+        producer.handleError(t);
+        Closeables.closeQuietly(chunkResponder);
+      }
+    }
+
+    /**
+     * Ends the started response with an empty array of messages.
+     */
+    private void sendEmpty() {
+      try {
+        // A zero item count is an empty array
+        chunkResponder.sendChunk(Unpooled.wrappedBuffer(new byte[] { 0 }));
+        chunkResponder.close();
+      } catch (IOException e) {
+        LOG.trace("Failed to end long poll response on topic {}", topicId, e);
+        Closeables.closeQuietly(chunkResponder);
+      }
+    }
+  }
+
   /**
    * A {@link BodyProducer} to encode and send back messages.
    * Instead of using GenericDatumWriter, we perform the array encoding manually so that we don't have to buffer
-   * all messages in memory before sending out.
+   * all messages in memory before sending out. Message ids and payloads are written directly to pooled buffers,
+   * without going through any intermediate avro record.
    */
   private static class MessagesBodyProducer extends BodyProducer {
 
+    // Maximum number of bytes for an avro encoded long
+    private static final int MAX_LONG_SIZE = 10;
+
     private final CloseableIterator<RawMessage> iterator;
-    private final List<RawMessage> messages;
     private final int messageChunkSize;
-    private final ByteBuf chunk;
-    private final Encoder encoder;
-    private final GenericRecord messageRecord;
-    private final DatumWriter<GenericRecord> messageWriter;
-    private boolean arrayStarted;
+    private final byte[] longBuffer;
     private boolean arrayEnded;
 
     MessagesBodyProducer(CloseableIterator<RawMessage> iterator, int messageChunkSize) {
       this.iterator = iterator;
-      this.messages = new ArrayList<>();
       this.messageChunkSize = messageChunkSize;
-      this.chunk = Unpooled.buffer(messageChunkSize);
-      this.encoder = EncoderFactory.get().directBinaryEncoder(new ByteBufOutputStream(chunk), null);
-
-      // These are for writing individual message (response is an array of messages)
-      this.messageRecord = new GenericData.Record(Schemas.V1.ConsumeResponse.SCHEMA.getElementType());
-      this.messageWriter = new GenericDatumWriter<GenericRecord>(Schemas.V1.ConsumeResponse.SCHEMA.getElementType()) {
-        @Override
-        protected void writeBytes(Object datum, Encoder out) throws IOException {
-          if (datum instanceof byte[]) {
-            out.writeBytes((byte[]) datum);
-          } else {
-            super.writeBytes(datum, out);
-          }
-        }
-      };
+      this.longBuffer = new byte[MAX_LONG_SIZE];
     }
 
     @Override
@@ -201,65 +446,177 @@ public final class FetchHandler extends AbstractHttpHandler {
         return Unpooled.EMPTY_BUFFER;
       }
 
-      chunk.clear();
+      // The buffer ownership is passed to netty, which will release it after writing it out
+      ByteBuf chunk = PooledByteBufAllocator.DEFAULT.buffer(MAX_LONG_SIZE + messageChunkSize);
+      try {
+        // An avro array is encoded as blocks of items, with each block prefixed by the item count.
+        // Since the count is only known after the block is written,
+        // reserve space at the beginning of the buffer for writing the count later.
+        chunk.writerIndex(MAX_LONG_SIZE);
+
+        // Try to buffer up to buffer size
+        int count = 0;
+        while (chunk.writerIndex() - MAX_LONG_SIZE < messageChunkSize && iterator.hasNext()) {
+          RawMessage message = iterator.next();
+          // Each message is a record of (id, payload), both are avro bytes, which is (len + bytes).
+          writeBytes(chunk, message.getId());
+          writeBytes(chunk, message.getPayload());
+          count++;
+        }
+
+        chunk.readerIndex(MAX_LONG_SIZE);
+        if (count > 0) {
+          int len = encodeLong(count, longBuffer);
+          chunk.setBytes(MAX_LONG_SIZE - len, longBuffer, 0, len);
+          chunk.readerIndex(MAX_LONG_SIZE - len);
+        }
 
-      if (!arrayStarted) {
-        arrayStarted = true;
-        encoder.writeArrayStart();
+        if (!iterator.hasNext()) {
+          // A zero item count signals the end of the array
+          arrayEnded = true;
+          chunk.writeByte(0);
+        }
+        return chunk;
+      } catch (Throwable t) {
+        chunk.release();
+        throw t;
       }
+    }
 
-      // Try to buffer up to buffer size
-      int size = 0;
-      messages.clear();
-      while (iterator.hasNext() && size < messageChunkSize) {
-        RawMessage message = iterator.next();
-        messages.add(message);
-
-        // Avro encodes bytes as (len + bytes), hence adding 8 to cater for the length of the id and payload
-        // Straightly speaking it can be up to 9 bytes each (hence 18 bytes),
-        // but we don't expect id and payload of such size
-        size += message.getId().length + message.getPayload().length + 8;
+    private void writeBytes(ByteBuf buffer, byte[] bytes) {
+      int len = encodeLong(bytes.length, longBuffer);
+      buffer.writeBytes(longBuffer, 0, len);
+      buffer.writeBytes(bytes);
+    }
+
+    @Override
+    public void finished() throws Exception {
+      iterator.close();
+    }
+
+    @Override
+    public void handleError(@Nullable Throwable cause) {
+      iterator.close();
+      // Since response header is already sent, there is nothing we can send back to client. Simply log the failure
+      if (cause instanceof SocketException
+        || cause instanceof ClosedChannelException
+        || (cause instanceof IOException && KNOWN_IO_EXCEPTION_MESSAGES.contains(cause.getMessage()))) {
+        // This can easily caused by client close connection prematurely. Don't want to flood the log.
+        LOG.trace("Connection closed by client prematurely while sending messages back to client", cause);
+      } else {
+        // Use sampling logger to log to avoid flooding the log if there is any systematic failure
+        SAMPLING_LOG.warn("Exception raised when sending messages back to client", cause);
+        // Also log a trace to provide a way to see every error if needed
+        LOG.trace("Exception raised when sending messages back to client", cause);
       }
+    }
+  }
 
-      encoder.setItemCount(messages.size());
-      for (RawMessage message : messages) {
-        encoder.startItem();
+  /**
+   * A {@link BodyProducer} to encode and send back messages from multiple topics.
+   * Similar to {@link MessagesBodyProducer}, the arrays are encoded manually so that messages are streamed in chunks
+   * instead of being buffered in memory. Each topic is encoded as a separate block of the outer array, followed by
+   * the blocks of its messages, with each chunk carrying about {@code messageChunkSize} bytes of messages.
+   */
+  private static class MultiTopicMessagesBodyProducer extends BodyProducer {
+
+    private final Map<TopicId, CloseableIterator<RawMessage>> iterators;
+    private final Iterator<Map.Entry<TopicId, CloseableIterator<RawMessage>>> topicIterator;
+    private final int messageChunkSize;
+    private final byte[] longBuffer;
+    private final List<RawMessage> block;
+    private CloseableIterator<RawMessage> currentIterator;
+    private boolean arrayEnded;
+
+    MultiTopicMessagesBodyProducer(Map<TopicId, CloseableIterator<RawMessage>> iterators, int messageChunkSize) {
+      this.iterators = iterators;
+      this.topicIterator = iterators.entrySet().iterator();
+      this.messageChunkSize = messageChunkSize;
+      this.longBuffer = new byte[MessagesBodyProducer.MAX_LONG_SIZE];
+      this.block = new ArrayList<>();
+    }
 
-        // Write individual message (array element) with DatumWrite.
-        // This provides greater flexibility on schema evolution.
-        // The response will likely always be an array, but the element schema can evolve.
-        messageRecord.put("id", message.getId());
-        messageRecord.put("payload", message.getPayload());
-        messageWriter.write(messageRecord, encoder);
+    @Override
+    public ByteBuf nextChunk() throws Exception {
+      // Already sent all topics, return empty to signal the end of response
+      if (arrayEnded) {
+        return Unpooled.EMPTY_BUFFER;
       }
 
-      if (!iterator.hasNext()) {
-        arrayEnded = true;
-        encoder.writeArrayEnd();
+      // The buffer ownership is passed to netty, which will release it after writing it out
+      ByteBuf chunk = PooledByteBufAllocator.DEFAULT.buffer(messageChunkSize);
+      try {
+        while (chunk.writerIndex() < messageChunkSize && !arrayEnded) {
+          if (currentIterator == null) {
+            if (!topicIterator.hasNext()) {
+              // A zero item count signals the end of the topics array
+              arrayEnded = true;
+              chunk.writeByte(0);
+              break;
+            }
+            // Each topic is a block of one item in the outer array
+            Map.Entry<TopicId, CloseableIterator<RawMessage>> entry = topicIterator.next();
+            writeLong(chunk, 1);
+            writeBytes(chunk, entry.getKey().getNamespace().getBytes(StandardCharsets.UTF_8));
+            writeBytes(chunk, entry.getKey().getTopic().getBytes(StandardCharsets.UTF_8));
+            currentIterator = entry.getValue();
+          }
+
+          // Collect messages up to the chunk size first, since the block is prefixed by the item count
+          int size = chunk.writerIndex();
+          while (size < messageChunkSize && currentIterator.hasNext()) {
+            RawMessage message = currentIterator.next();
+            block.add(message);
+            size += message.getId().length + message.getPayload().length + 2 * MessagesBodyProducer.MAX_LONG_SIZE;
+          }
+          if (!block.isEmpty()) {
+            writeLong(chunk, block.size());
+            for (RawMessage message : block) {
+              // Each message is a record of (id, payload), both are avro bytes, which is (len + bytes).
+              writeBytes(chunk, message.getId());
+              writeBytes(chunk, message.getPayload());
+            }
+            block.clear();
+          }
+
+          if (!currentIterator.hasNext()) {
+            // A zero item count signals the end of the messages array of the topic
+            chunk.writeByte(0);
+            currentIterator = null;
+          }
+        }
+        return chunk;
+      } catch (Throwable t) {
+        chunk.release();
+        throw t;
       }
+    }
 
-      return chunk.copy();
+    private void writeLong(ByteBuf buffer, long value) {
+      int len = encodeLong(value, longBuffer);
+      buffer.writeBytes(longBuffer, 0, len);
+    }
+
+    private void writeBytes(ByteBuf buffer, byte[] bytes) {
+      writeLong(buffer, bytes.length);
+      buffer.writeBytes(bytes);
     }
 
     @Override
     public void finished() throws Exception {
-      iterator.close();
-      chunk.release();
+      closeAll(iterators.values());
     }
 
     @Override
     public void handleError(@Nullable Throwable cause) {
-      iterator.close();
+      closeAll(iterators.values());
       // Since response header is already sent, there is nothing we can send back to client. Simply log the failure
       if (cause instanceof SocketException
         || cause instanceof ClosedChannelException
         || (cause instanceof IOException && KNOWN_IO_EXCEPTION_MESSAGES.contains(cause.getMessage()))) {
-        // This can easily caused by client close connection prematurely. Don't want to flood the log.
         LOG.trace("Connection closed by client prematurely while sending messages back to client", cause);
       } else {
-        // Use sampling logger to log to avoid flooding the log if there is any systematic failure
         SAMPLING_LOG.warn("Exception raised when sending messages back to client", cause);
-        // Also log a trace to provide a way to see every error if needed
         LOG.trace("Exception raised when sending messages back to client", cause);
       }
     }
@@ -31,7 +31,9 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.Queue;
 import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.LockSupport;
 import javax.annotation.Nullable;
 import javax.annotation.concurrent.ThreadSafe;
 
@@ -58,6 +60,11 @@ import javax.annotation.concurrent.ThreadSafe;
  *
  * The spin lock between step 2 to step 8 is necessary as it guarantees events enqueued by all threads would eventually
  * get written and flushed.
+ *
+ * Optionally, the writer can operate in group commit mode by having a positive linger time. In this mode, the writer
+ * thread in step 4 keeps collecting newly enqueued requests for up to the linger time, or until the total payload
+ * size of the collected requests reaches the max batch size, before writing them out in one batch. This trades
+ * a small amount of latency for larger and fewer writes to the underlying table under bursty load.
  */
 @ThreadSafe
 final class ConcurrentMessageWriter implements Closeable {
@@ -83,9 +90,24 @@ final class ConcurrentMessageWriter implements Closeable {
    * @param metricsCollector the {@link MetricsCollector} for collecting metrics emitted by this class.
    */
   ConcurrentMessageWriter(StoreRequestWriter<?> messagesWriter, MetricsCollector metricsCollector) {
+    this(messagesWriter, metricsCollector, 0L, Integer.MAX_VALUE);
+  }
+
+  /**
+   * Constructor.
+   *
+   * @param messagesWriter the {@link StoreRequestWriter} for persisting {@link StoreRequest}.
+   * @param metricsCollector the {@link MetricsCollector} for collecting metrics emitted by this class.
+   * @param lingerMicros maximum time in microseconds to wait for more requests to be batched together.
+   *                     If it is {@code <= 0}, group commit is disabled.
+   * @param maxBatchBytes maximum total payload size in bytes of a batch when group commit is enabled
+   */
+  ConcurrentMessageWriter(StoreRequestWriter<?> messagesWriter, MetricsCollector metricsCollector,
+                          long lingerMicros, int maxBatchBytes) {
     this.messagesWriter = messagesWriter;
     this.metricsCollector = metricsCollector;
-    this.pendingStoreQueue = new PendingStoreQueue(metricsCollector);
+    this.pendingStoreQueue = new PendingStoreQueue(metricsCollector, TimeUnit.MICROSECONDS.toNanos(lingerMicros),
+                                                   maxBatchBytes);
     this.writerFlag = new AtomicBoolean();
     this.closed = new AtomicBoolean();
   }
@@ -136,7 +158,8 @@ final class ConcurrentMessageWriter implements Closeable {
   /**
    * Tries to acquire the writer flag and persist the pending requests.
    *
-   * @return {@code true} if acquired the writer flag and called {@link PendingStoreQueue#persist(StoreRequestWriter)};
+   * @return {@code true} if acquired the writer flag and called
+   *         {@link PendingStoreQueue#persist(StoreRequestWriter, boolean)};
    *         otherwise {@code false} will be returned.
    */
   private boolean tryWrite() {
@@ -144,7 +167,8 @@ final class ConcurrentMessageWriter implements Closeable {
       return false;
     }
     try {
-      pendingStoreQueue.persist(messagesWriter);
+      // No need to linger for more requests once closed, since there won't be any new one.
+      pendingStoreQueue.persist(messagesWriter, !closed.get());
     } finally {
       writerFlag.set(false);
     }
@@ -172,14 +196,21 @@ final class ConcurrentMessageWriter implements Closeable {
    */
   private static final class PendingStoreQueue {
 
+    // Maximum time to park the writer thread while lingering for more requests
+    private static final long MAX_PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(50);
+
     private final MetricsCollector metricsCollector;
     private final Queue<PendingStoreRequest> writeQueue;
     private final List<PendingStoreRequest> inflightRequests;
+    private final long lingerNanos;
+    private final int maxBatchBytes;
 
-    private PendingStoreQueue(MetricsCollector metricsCollector) {
+    private PendingStoreQueue(MetricsCollector metricsCollector, long lingerNanos, int maxBatchBytes) {
       this.metricsCollector = metricsCollector;
       this.writeQueue = new ConcurrentLinkedQueue<>();
       this.inflightRequests = new ArrayList<>(100);
+      this.lingerNanos = lingerNanos;
+      this.maxBatchBytes = maxBatchBytes;
     }
 
     /**
@@ -191,29 +222,82 @@ final class ConcurrentMessageWriter implements Closeable {
 
     /**
      * Persists all {@link PendingStoreRequest} currently in the queue with the given writer.
+     * If group commit is enabled, requests are collected up to the max batch size instead.
+     *
+     * @param writer the {@link StoreRequestWriter} for writing out the requests
+     * @param linger {@code true} to wait up to the linger time for more requests if group commit is enabled
      */
-    void persist(StoreRequestWriter<?> writer) {
+    void persist(StoreRequestWriter<?> writer, boolean linger) {
       // Capture all current events.
       // The reason for capturing instead of using a live iterator is to avoid the possible case of infinite write
       // time. E.g. while generating the entry to write to the storage table, a new store request get enqueued.
       // The number of requests in the queue is bounded by the number of threads that call this method.
       // Since this method is expected to be called (indirectly) from a http handler thread, that is bounded by
       // the thread pool size used by the http service.
+      long startNanos = System.nanoTime();
       inflightRequests.clear();
-      PendingStoreRequest request = writeQueue.poll();
-      while (request != null) {
-        inflightRequests.add(request);
-        request = writeQueue.poll();
+
+      if (lingerNanos <= 0) {
+        PendingStoreRequest request = writeQueue.poll();
+        while (request != null) {
+          inflightRequests.add(request);
+          request = writeQueue.poll();
+        }
+      } else {
+        collectBatch(startNanos + (linger ? lingerNanos : 0L));
       }
 
-      metricsCollector.gauge("persist.queue.size", inflightRequests.size());
+      if (inflightRequests.isEmpty()) {
+        return;
+      }
 
+      // completeAll() removes the requests from the inflight list, hence the batch size is captured before writing
+      int batchRequests = inflightRequests.size();
+      metricsCollector.gauge("persist.queue.size", batchRequests);
+
+      // The latency only covers the write, not the time spent on collecting the batch
+      long writeStartNanos = System.nanoTime();
       try {
         writer.write(inflightRequests.iterator());
         completeAll(null);
       } catch (Throwable t) {
         completeAll(t);
       }
+
+      histogram("persist.batch.requests", batchRequests);
+      histogram("persist.batch.latency.us", TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - writeStartNanos));
+    }
+
+    /**
+     * Collects requests from the queue into the inflight list until the total payload size reaches the max
+     * batch size, or until the given deadline has passed and the queue is empty.
+     */
+    private void collectBatch(long deadlineNanos) {
+      long batchBytes = 0;
+      while (batchBytes < maxBatchBytes) {
+        PendingStoreRequest request = writeQueue.poll();
+        if (request == null) {
+          long remaining = deadlineNanos - System.nanoTime();
+          if (remaining <= 0) {
+            break;
+          }
+          LockSupport.parkNanos(Math.min(remaining, MAX_PARK_NANOS));
+          continue;
+        }
+        inflightRequests.add(request);
+        batchBytes += request.getPayloadSize();
+      }
+      histogram("persist.batch.bytes", batchBytes);
+    }
+
+    /**
+     * Emits a histogram data point as counters. Values are grouped into exponential buckets, each named by
+     * the inclusive upper bound of the bucket, which is a power of two.
+     */
+    private void histogram(String name, long value) {
+      long bucket = value <= 1 ? 1 : Long.highestOneBit(value - 1) << 1;
+      metricsCollector.increment(name + ".bucket." + bucket, 1L);
+      metricsCollector.increment(name + ".total", value);
     }
 
     /**
@@ -27,6 +27,7 @@ import co.cask.cdap.messaging.MessageFetcher;
 import co.cask.cdap.messaging.MessagingService;
 import co.cask.cdap.messaging.MessagingServiceUtils;
 import co.cask.cdap.messaging.MessagingUtils;
+import co.cask.cdap.messaging.MultiTopicMessageFetcher;
 import co.cask.cdap.messaging.RollbackDetail;
 import co.cask.cdap.messaging.StoreRequest;
 import co.cask.cdap.messaging.TopicMetadata;
@@ -77,6 +78,9 @@ public class CoreMessagingService extends AbstractIdleService implements Messagi
 
   private static final Logger LOG = LoggerFactory.getLogger(CoreMessagingService.class);
 
+  // Key in the writer caches for the writer shared by all topics when group commit is enabled
+  private static final TopicId GROUP_COMMIT_WRITER_KEY = NamespaceId.SYSTEM.topic("group-commit");
+
   private final CConfiguration cConf;
   private final TableFactory tableFactory;
   private final LoadingCache<TopicId, TopicMetadata> topicCache;
@@ -85,6 +89,8 @@ public class CoreMessagingService extends AbstractIdleService implements Messagi
   private final TimeProvider timeProvider;
   private final MetricsCollectionService metricsCollectionService;
   private final long txMaxLifeTimeInMillis;
+  private final long groupCommitLingerMicros;
+  private final int groupCommitMaxBatchBytes;
 
   @Inject
   CoreMessagingService(CConfiguration cConf, TableFactory tableFactory,
@@ -97,6 +103,9 @@ public class CoreMessagingService extends AbstractIdleService implements Messagi
                        TimeProvider timeProvider, MetricsCollectionService metricsCollectionService) {
     this.cConf = cConf;
     this.tableFactory = tableFactory;
+    this.groupCommitLingerMicros = cConf.getLong(Constants.MessagingSystem.GROUP_COMMIT_LINGER_US, 0L);
+    this.groupCommitMaxBatchBytes = cConf.getInt(Constants.MessagingSystem.GROUP_COMMIT_MAX_BATCH_BYTES,
+                                                 Integer.MAX_VALUE);
     this.topicCache = createTopicCache();
     this.messageTableWriterCache = createTableWriterCache(true, cConf);
     this.payloadTableWriterCache = createTableWriterCache(false, cConf);
@@ -179,6 +188,12 @@ public class CoreMessagingService extends AbstractIdleService implements Messagi
     });
   }
 
+  @Override
+  public MultiTopicMessageFetcher prepareMultiTopicFetch() {
+    return new CoreMultiTopicMessageFetcher(this,
+                                            cConf.getInt(Constants.MessagingSystem.HTTP_SERVER_FETCH_DEFAULT_LIMIT));
+  }
+
   @Nullable
   @Override
   public RollbackDetail publish(StoreRequest request) throws TopicNotFoundException, IOException {
@@ -187,7 +202,7 @@ public class CoreMessagingService extends AbstractIdleService implements Messagi
       if (request.isTransactional()) {
         ensureValidTxLifetime(request.getTransactionWritePointer());
       }
-      return messageTableWriterCache.get(request.getTopicId()).persist(request, metadata);
+      return messageTableWriterCache.get(getWriterKey(request.getTopicId())).persist(request, metadata);
     } catch (ExecutionException e) {
       Throwable cause = Objects.firstNonNull(e.getCause(), e);
       Throwables.propagateIfPossible(cause, TopicNotFoundException.class, IOException.class);
@@ -199,7 +214,7 @@ public class CoreMessagingService extends AbstractIdleService implements Messagi
   public void storePayload(StoreRequest request) throws TopicNotFoundException, IOException {
     try {
       TopicMetadata metadata = topicCache.get(request.getTopicId());
-      payloadTableWriterCache.get(request.getTopicId()).persist(request, metadata);
+      payloadTableWriterCache.get(getWriterKey(request.getTopicId())).persist(request, metadata);
     } catch (ExecutionException e) {
       Throwable cause = Objects.firstNonNull(e.getCause(), e);
       Throwables.propagateIfPossible(cause, TopicNotFoundException.class, IOException.class);
@@ -263,6 +278,14 @@ public class CoreMessagingService extends AbstractIdleService implements Messagi
     LOG.info("Core Messaging Service stopped");
   }
 
+  /**
+   * Returns the key in the writer caches for writing messages of the given topic. When group commit is enabled,
+   * all topics share the same writer so that concurrent publishes across topics are written in one batch.
+   */
+  private TopicId getWriterKey(TopicId topicId) {
+    return groupCommitLingerMicros > 0 ? GROUP_COMMIT_WRITER_KEY : topicId;
+  }
+
   private void ensureValidTxLifetime(long transactionWritePointer) throws IOException {
     long txTimestamp = TxUtils.getTimestamp(transactionWritePointer);
     boolean validLifetime = (txTimestamp + txMaxLifeTimeInMillis) > System.currentTimeMillis();
@@ -361,7 +384,8 @@ public class CoreMessagingService extends AbstractIdleService implements Messagi
       .build(new CacheLoader<TopicId, ConcurrentMessageWriter>() {
         @Override
         public ConcurrentMessageWriter load(TopicId topicId) throws Exception {
-          TopicMetadata metadata = getTopic(topicId);
+          // The shared group commit writer is not associated with any topic
+          TopicMetadata metadata = GROUP_COMMIT_WRITER_KEY.equals(topicId) ? null : getTopic(topicId);
           StoreRequestWriter<?> messagesWriter = messageTable
             ? new MessageTableStoreRequestWriter(createMessageTable(metadata), timeProvider)
             : new PayloadTableStoreRequestWriter(createPayloadTable(metadata), timeProvider);
@@ -373,7 +397,8 @@ public class CoreMessagingService extends AbstractIdleService implements Messagi
             Constants.Metrics.Tag.TABLE, messageTable ? "message" : "payload"
           ));
 
-          return new ConcurrentMessageWriter(messagesWriter, metricsContext);
+          return new ConcurrentMessageWriter(messagesWriter, metricsContext,
+                                             groupCommitLingerMicros, groupCommitMaxBatchBytes);
         }
       });
   }
@@ -385,13 +410,15 @@ public class CoreMessagingService extends AbstractIdleService implements Messagi
     return tableFactory.createMetadataTable(cConf.get(Constants.MessagingSystem.METADATA_TABLE_NAME));
   }
 
-  private MessageTable createMessageTable(@SuppressWarnings("unused") TopicMetadata topicMetadata) throws IOException {
+  private MessageTable createMessageTable(@SuppressWarnings("unused") @Nullable TopicMetadata topicMetadata)
+    throws IOException {
     // Currently we don't support customizable table name yet, hence always get it from cConf.
     // Later on it can be done by topic properties, with impersonation setting as well.
     return tableFactory.createMessageTable(cConf.get(Constants.MessagingSystem.MESSAGE_TABLE_NAME));
   }
 
-  private PayloadTable createPayloadTable(@SuppressWarnings("unused") TopicMetadata topicMetadata) throws IOException {
+  private PayloadTable createPayloadTable(@SuppressWarnings("unused") @Nullable TopicMetadata topicMetadata)
+    throws IOException {
     // Currently we don't support customizable table name yet, hence always get it from cConf.
     // Later on it can be done by topic properties, with impersonation setting as well.
     return tableFactory.createPayloadTable(cConf.get(Constants.MessagingSystem.PAYLOAD_TABLE_NAME));
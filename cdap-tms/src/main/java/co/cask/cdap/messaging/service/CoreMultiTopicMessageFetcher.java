@@ -0,0 +1,72 @@
+/*
+ * Copyright © 2016-2018 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.messaging.service;
+
+import co.cask.cdap.api.dataset.lib.CloseableIterator;
+import co.cask.cdap.api.messaging.TopicNotFoundException;
+import co.cask.cdap.messaging.MessageFetcher;
+import co.cask.cdap.messaging.MessagingService;
+import co.cask.cdap.messaging.MultiTopicMessageFetcher;
+import co.cask.cdap.messaging.data.RawMessage;
+import co.cask.cdap.proto.id.TopicId;
+import org.apache.tephra.Transaction;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Implementation of {@link MultiTopicMessageFetcher} that fetches from each topic through the
+ * {@link MessageFetcher} provided by the given {@link MessagingService}, all within the same call.
+ * Without a limit, the default limit is applied to each topic, so that the messages fetched are bounded.
+ */
+final class CoreMultiTopicMessageFetcher extends MultiTopicMessageFetcher {
+
+  private final MessagingService messagingService;
+  private final int defaultLimit;
+
+  CoreMultiTopicMessageFetcher(MessagingService messagingService, int defaultLimit) {
+    this.messagingService = messagingService;
+    this.defaultLimit = defaultLimit;
+  }
+
+  @Override
+  public Map<TopicId, List<RawMessage>> fetch() throws TopicNotFoundException, IOException {
+    Transaction transaction = getTransaction();
+    int limit = getLimit() == null ? defaultLimit : getLimit();
+
+    Map<TopicId, List<RawMessage>> result = new LinkedHashMap<>();
+    for (Map.Entry<TopicId, StartPosition> entry : getTopics().entrySet()) {
+      MessageFetcher fetcher = entry.getValue().apply(messagingService.prepareFetch(entry.getKey()));
+      fetcher.setLimit(limit);
+      if (transaction != null) {
+        fetcher.setTransaction(transaction);
+      }
+
+      List<RawMessage> messages = new ArrayList<>();
+      try (CloseableIterator<RawMessage> iterator = fetcher.fetch()) {
+        while (iterator.hasNext()) {
+          messages.add(iterator.next());
+        }
+      }
+      result.put(entry.getKey(), messages);
+    }
+    return result;
+  }
+}
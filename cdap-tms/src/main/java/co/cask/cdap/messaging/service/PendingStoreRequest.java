@@ -19,7 +19,9 @@ package co.cask.cdap.messaging.service;
 import co.cask.cdap.messaging.StoreRequest;
 import co.cask.cdap.messaging.TopicMetadata;
 
+import java.util.ArrayList;
 import java.util.Iterator;
+import java.util.List;
 import javax.annotation.Nullable;
 
 /**
@@ -36,6 +38,8 @@ final class PendingStoreRequest extends StoreRequest {
   private int startSequenceId;
   private int endSequenceId;
   private Throwable failureCause;
+  private List<byte[]> payloads;
+  private int payloadSize;
 
   PendingStoreRequest(StoreRequest originalRequest, TopicMetadata topicMetadata) {
     super(originalRequest.getTopicId(), originalRequest.isTransactional(),
@@ -101,6 +105,24 @@ final class PendingStoreRequest extends StoreRequest {
     return endSequenceId;
   }
 
+  /**
+   * Returns the total size in bytes of all payloads in this request. Calling this method materializes
+   * the payloads from the original request, so that they won't get decoded again when being written.
+   */
+  int getPayloadSize() {
+    if (payloads == null) {
+      List<byte[]> payloads = new ArrayList<>();
+      int size = 0;
+      for (byte[] payload : originalRequest) {
+        payloads.add(payload);
+        size += payload.length;
+      }
+      this.payloads = payloads;
+      this.payloadSize = size;
+    }
+    return payloadSize;
+  }
+
   @Override
   public boolean hasPayload() {
     return originalRequest.hasPayload();
@@ -108,7 +130,7 @@ final class PendingStoreRequest extends StoreRequest {
 
   @Override
   public Iterator<byte[]> iterator() {
-    return originalRequest.iterator();
+    return payloads == null ? originalRequest.iterator() : payloads.iterator();
   }
 
   @Override
@@ -156,13 +156,13 @@ final class CachingMessageTable implements MessageTable {
       messageCache.updateEntries(startEntry, endEntry, new MessageCache.EntryUpdater<Entry>() {
         @Override
         public void updateEntry(Entry entry) {
-          if (!(entry instanceof CacheMessageTableEntry)) {
+          if (!(entry instanceof RollbackableEntry)) {
             // This shouldn't happen
             throw new IllegalStateException("Entries in MessageCache must be of type "
-                                              + CacheMessageTableEntry.class.getName()
+                                              + RollbackableEntry.class.getName()
                                               + ", but got type " + entry.getClass().getName() + " instead.");
           }
-          ((CacheMessageTableEntry) entry).rollback();
+          ((RollbackableEntry) entry).rollback();
         }
       });
     }
@@ -225,7 +225,7 @@ final class CachingMessageTable implements MessageTable {
         if (generation != entry.getGeneration()) {
           return Result.SKIP;
         }
-        if (entry instanceof CacheMessageTableEntry && ((CacheMessageTableEntry) entry).isRollback()) {
+        if (entry instanceof RollbackableEntry && ((RollbackableEntry) entry).isRollback()) {
           return Result.SKIP;
         }
         return super.apply(entry);
@@ -334,7 +334,7 @@ final class CachingMessageTable implements MessageTable {
    * altering the transaction write point for rollback purpose of messages that were published transactionally.
    */
   @VisibleForTesting
-  static final class CacheMessageTableEntry implements Entry {
+  static final class CacheMessageTableEntry implements RollbackableEntry {
 
     private final boolean lookupOnly;
     private final TopicId topicId;
@@ -367,12 +367,14 @@ final class CachingMessageTable implements MessageTable {
       this.sequenceId = other.getSequenceId();
     }
 
-    void rollback() {
+    @Override
+    public void rollback() {
       if (isTransactional()) {
         rollback = true;
       }
     }
 
+    @Override
     public boolean isRollback() {
       return rollback;
     }
@@ -22,6 +22,8 @@ import co.cask.cdap.common.conf.CConfiguration;
 import co.cask.cdap.common.conf.Constants;
 import co.cask.cdap.messaging.MessagingServiceUtils;
 import co.cask.cdap.messaging.cache.MessageCache;
+import co.cask.cdap.messaging.cache.OffHeapMessageCache;
+import co.cask.cdap.messaging.cache.OnHeapMessageCache;
 import co.cask.cdap.messaging.store.MessageTable;
 import co.cask.cdap.proto.id.TopicId;
 import com.google.common.collect.ImmutableMap;
@@ -38,6 +40,8 @@ import javax.annotation.Nullable;
  */
 public class DefaultMessageTableCacheProvider implements MessageTableCacheProvider {
 
+  private static final String CACHE_TYPE_OFFHEAP = "offheap";
+
   private final CConfiguration cConf;
   private final MetricsCollectionService metricsCollectionService;
   private Map<TopicId, MessageCache<MessageTable.Entry>> topicMessageCaches;
@@ -75,9 +79,20 @@ public class DefaultMessageTableCacheProvider implements MessageTableCacheProvid
               // Have reduce trigger as 70% of the hard limit and min retain as 50% of the hard limit
               // In future, it can be adjusted dynamically based on metrics
               MessageCache.Limits limits = new MessageCache.Limits(hardLimit / 2, hardLimit * 7 / 10, hardLimit);
+              boolean offHeap = CACHE_TYPE_OFFHEAP.equalsIgnoreCase(cConf.get(Constants.MessagingSystem.CACHE_TYPE));
+
+              // For off-heap cache, eviction happens in units of segments. Cap the segment size so that
+              // there are at least 10 segments per topic, so that eviction doesn't drop too much of the cache.
+              long segmentSize = cConf.getInt(Constants.MessagingSystem.CACHE_OFFHEAP_SEGMENT_SIZE_KB) * 1024L;
+              segmentSize = Math.min(segmentSize, Math.max(1L, hardLimit / 10));
               for (TopicId topic : systemTopics) {
-                caches.put(topic, new MessageCache<>(comparator, weigher, limits,
-                                                     createMetricsContext(cConf, topic, metricsCollectionService)));
+                MetricsContext metricsContext = createMetricsContext(cConf, topic, metricsCollectionService);
+                if (offHeap) {
+                  caches.put(topic, new OffHeapMessageCache<>(comparator, new MessageTableEntryCodec(topic),
+                                                              (int) segmentSize, limits, metricsContext));
+                } else {
+                  caches.put(topic, new OnHeapMessageCache<>(comparator, weigher, limits, metricsContext));
+                }
               }
             }
           }
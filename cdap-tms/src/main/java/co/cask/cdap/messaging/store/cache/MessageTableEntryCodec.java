@@ -0,0 +1,184 @@
+/*
+ * Copyright © 2018 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.messaging.store.cache;
+
+import co.cask.cdap.messaging.cache.OffHeapMessageCache;
+import co.cask.cdap.messaging.store.MessageTable;
+import co.cask.cdap.proto.id.TopicId;
+
+import java.nio.ByteBuffer;
+import javax.annotation.Nullable;
+
+/**
+ * A {@link OffHeapMessageCache.Codec} for {@link MessageTable.Entry} of a given topic.
+ * The topic id is not encoded since each {@link OffHeapMessageCache} only contains entries of one topic.
+ *
+ * The encoded format is:
+ *
+ * <pre>
+ * {@code
+ *   generation (int) | publish timestamp (long) | sequence id (short) | flags (byte) |
+ *   tx write pointer (long) | payload
+ * }
+ * </pre>
+ */
+final class MessageTableEntryCodec implements OffHeapMessageCache.Codec<MessageTable.Entry> {
+
+  private static final int GENERATION_OFFSET = 0;
+  private static final int PUBLISH_TIMESTAMP_OFFSET = GENERATION_OFFSET + Integer.SIZE / Byte.SIZE;
+  private static final int SEQUENCE_ID_OFFSET = PUBLISH_TIMESTAMP_OFFSET + Long.SIZE / Byte.SIZE;
+  private static final int FLAGS_OFFSET = SEQUENCE_ID_OFFSET + Short.SIZE / Byte.SIZE;
+  private static final int TX_WRITE_POINTER_OFFSET = FLAGS_OFFSET + 1;
+  private static final int PAYLOAD_OFFSET = TX_WRITE_POINTER_OFFSET + Long.SIZE / Byte.SIZE;
+
+  private static final byte FLAG_TRANSACTIONAL = 0x01;
+  private static final byte FLAG_PAYLOAD_REFERENCE = 0x02;
+  private static final byte FLAG_ROLLBACK = 0x04;
+
+  private final TopicId topicId;
+
+  MessageTableEntryCodec(TopicId topicId) {
+    this.topicId = topicId;
+  }
+
+  @Override
+  public int getEncodedSize(MessageTable.Entry entry) {
+    byte[] payload = entry.getPayload();
+    return PAYLOAD_OFFSET + (payload == null ? 0 : payload.length);
+  }
+
+  @Override
+  public void encode(MessageTable.Entry entry, ByteBuffer buffer) {
+    byte flags = 0;
+    if (entry.isTransactional()) {
+      flags |= FLAG_TRANSACTIONAL;
+    }
+    byte[] payload = entry.getPayload();
+    if (payload == null) {
+      flags |= FLAG_PAYLOAD_REFERENCE;
+    }
+    if (entry instanceof RollbackableEntry && ((RollbackableEntry) entry).isRollback()) {
+      flags |= FLAG_ROLLBACK;
+    }
+
+    buffer.putInt(entry.getGeneration())
+      .putLong(entry.getPublishTimestamp())
+      .putShort(entry.getSequenceId())
+      .put(flags)
+      .putLong(entry.getTransactionWritePointer());
+    if (payload != null) {
+      buffer.put(payload);
+    }
+  }
+
+  @Override
+  public MessageTable.Entry decode(ByteBuffer buffer, int offset, int length) {
+    return new OffHeapEntry(topicId, buffer, offset, length);
+  }
+
+  /**
+   * A {@link RollbackableEntry} that reads from the encoded entry in a {@link ByteBuffer}.
+   */
+  private static final class OffHeapEntry implements RollbackableEntry {
+
+    private final TopicId topicId;
+    private final ByteBuffer buffer;
+    private final int offset;
+    private final int length;
+
+    private OffHeapEntry(TopicId topicId, ByteBuffer buffer, int offset, int length) {
+      this.topicId = topicId;
+      this.buffer = buffer;
+      this.offset = offset;
+      this.length = length;
+    }
+
+    @Override
+    public void rollback() {
+      if (isTransactional()) {
+        buffer.put(offset + FLAGS_OFFSET, (byte) (getFlags() | FLAG_ROLLBACK));
+      }
+    }
+
+    @Override
+    public boolean isRollback() {
+      return (getFlags() & FLAG_ROLLBACK) != 0;
+    }
+
+    @Override
+    public TopicId getTopicId() {
+      return topicId;
+    }
+
+    @Override
+    public int getGeneration() {
+      return buffer.getInt(offset + GENERATION_OFFSET);
+    }
+
+    @Override
+    public boolean isPayloadReference() {
+      return (getFlags() & FLAG_PAYLOAD_REFERENCE) != 0;
+    }
+
+    @Override
+    public boolean isTransactional() {
+      return (getFlags() & FLAG_TRANSACTIONAL) != 0;
+    }
+
+    @Override
+    public long getTransactionWritePointer() {
+      return buffer.getLong(offset + TX_WRITE_POINTER_OFFSET);
+    }
+
+    @Nullable
+    @Override
+    public byte[] getPayload() {
+      if (isPayloadReference()) {
+        return null;
+      }
+      byte[] payload = new byte[length - PAYLOAD_OFFSET];
+      ByteBuffer duplicate = buffer.duplicate();
+      duplicate.position(offset + PAYLOAD_OFFSET);
+      duplicate.get(payload);
+      return payload;
+    }
+
+    @Override
+    public long getPublishTimestamp() {
+      return buffer.getLong(offset + PUBLISH_TIMESTAMP_OFFSET);
+    }
+
+    @Override
+    public short getSequenceId() {
+      return buffer.getShort(offset + SEQUENCE_ID_OFFSET);
+    }
+
+    private byte getFlags() {
+      return buffer.get(offset + FLAGS_OFFSET);
+    }
+
+    @Override
+    public String toString() {
+      return "OffHeapEntry{" +
+        "topicId=" + topicId +
+        ", generation=" + getGeneration() +
+        ", publishTimestamp=" + getPublishTimestamp() +
+        ", sequenceId=" + getSequenceId() +
+        '}';
+    }
+  }
+}
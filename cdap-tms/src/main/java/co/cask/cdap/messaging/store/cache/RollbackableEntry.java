@@ -0,0 +1,37 @@
+/*
+ * Copyright © 2018 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.messaging.store.cache;
+
+import co.cask.cdap.messaging.cache.MessageCache;
+import co.cask.cdap.messaging.store.MessageTable;
+
+/**
+ * A {@link MessageTable.Entry} stored in {@link MessageCache}, which allows marking messages that were
+ * published transactionally as rolled back.
+ */
+interface RollbackableEntry extends MessageTable.Entry {
+
+  /**
+   * Marks this entry as rolled back. It is a no-op if the entry is not transactional.
+   */
+  void rollback();
+
+  /**
+   * Returns {@code true} if this entry has been rolled back.
+   */
+  boolean isRollback();
+}
@@ -0,0 +1,384 @@
+/*
+ * Copyright © 2018 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.messaging.cache;
+
+import co.cask.cdap.api.metrics.MetricsContext;
+import co.cask.cdap.api.metrics.NoopMetricsContext;
+import co.cask.cdap.messaging.store.MessageFilter;
+import com.google.common.collect.Lists;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Unit test for {@link OffHeapMessageCache}.
+ */
+public class OffHeapMessageCacheTest {
+
+  private static final MetricsContext NOOP_METRICS = new NoopMetricsContext();
+
+  @Test
+  public void testNoCache() {
+    // Create a cache with zero limits
+    OffHeapMessageCache<Integer> cache = new OffHeapMessageCache<>(new IntComparator(), new IntCodec(), 8,
+                                                                   new MessageCache.Limits(0, 0, 0), NOOP_METRICS);
+    cache.addAll(Arrays.asList(1, 2, 3).iterator());
+    Assert.assertEquals(0L, cache.getCurrentWeight());
+
+    try (MessageCache.Scanner<Integer> scanner = cache.scan(0, true, 10, MessageFilter.<Integer>alwaysAccept())) {
+      Assert.assertNull(scanner.getFirstInCache());
+      Assert.assertFalse(scanner.hasNext());
+    }
+  }
+
+  @Test
+  public void testBasic() {
+    // Each segment holds two integers. The limits are large enough that no reduction will happen.
+    OffHeapMessageCache<Integer> cache = new OffHeapMessageCache<>(new IntComparator(), new IntCodec(), 8,
+                                                                   new MessageCache.Limits(40, 48, 56), NOOP_METRICS);
+
+    cache.addAll(Arrays.asList(1, 2, 3, 4, 5, 11, 12, 13, 14, 15).iterator());
+    Assert.assertEquals(40, cache.getCurrentWeight());
+    Assert.assertEquals(5, cache.getSegmentCount());
+
+    MessageFilter<Integer> filter = MessageFilter.alwaysAccept();
+
+    // Scan from the beginning
+    try (MessageCache.Scanner<Integer> scanner = cache.scan(0, true, 20, filter)) {
+      Assert.assertEquals(Integer.valueOf(1), scanner.getFirstInCache());
+      Assert.assertEquals(Arrays.asList(1, 2, 3, 4, 5, 11, 12, 13, 14, 15), Lists.newArrayList(scanner));
+    }
+
+    // Scan from the middle of a segment, with and without including the start
+    try (MessageCache.Scanner<Integer> scanner = cache.scan(4, true, 20, filter)) {
+      Assert.assertEquals(Arrays.asList(4, 5, 11, 12, 13, 14, 15), Lists.newArrayList(scanner));
+    }
+    try (MessageCache.Scanner<Integer> scanner = cache.scan(4, false, 20, filter)) {
+      Assert.assertEquals(Arrays.asList(5, 11, 12, 13, 14, 15), Lists.newArrayList(scanner));
+    }
+
+    // Scan from a value that is not in the cache
+    try (MessageCache.Scanner<Integer> scanner = cache.scan(8, true, 20, filter)) {
+      Assert.assertEquals(Arrays.asList(11, 12, 13, 14, 15), Lists.newArrayList(scanner));
+    }
+
+    // Scan with limit
+    try (MessageCache.Scanner<Integer> scanner = cache.scan(2, true, 3, filter)) {
+      Assert.assertEquals(Arrays.asList(2, 3, 4), Lists.newArrayList(scanner));
+    }
+
+    // Scan beyond the last entry
+    try (MessageCache.Scanner<Integer> scanner = cache.scan(16, true, 20, filter)) {
+      Assert.assertFalse(scanner.hasNext());
+    }
+
+    // Scan with filter that only accept even number
+    MessageFilter<Integer> acceptEvens = new MessageFilter<Integer>() {
+      @Override
+      public Result apply(Integer input) {
+        return input % 2 == 0 ? Result.ACCEPT : Result.SKIP;
+      }
+    };
+    try (MessageCache.Scanner<Integer> scanner = cache.scan(0, true, 3, acceptEvens)) {
+      Assert.assertEquals(Arrays.asList(2, 4, 12), Lists.newArrayList(scanner));
+    }
+
+    // Scan with filter that hold when number 11
+    MessageFilter<Integer> holdAtEleven = new MessageFilter<Integer>() {
+      @Override
+      public Result apply(Integer input) {
+        return input == 11 ? Result.HOLD : Result.ACCEPT;
+      }
+    };
+    try (MessageCache.Scanner<Integer> scanner = cache.scan(0, true, 10, holdAtEleven)) {
+      Assert.assertEquals(Arrays.asList(1, 2, 3, 4, 5), Lists.newArrayList(scanner));
+    }
+  }
+
+  @Test
+  public void testCacheReduction() {
+    // Each segment holds two integers, min retain is two segments and hard limit is four segments.
+    OffHeapMessageCache<Integer> cache = new OffHeapMessageCache<>(new IntComparator(), new IntCodec(), 8,
+                                                                   new MessageCache.Limits(16, 24, 32), NOOP_METRICS);
+    MessageFilter<Integer> filter = MessageFilter.alwaysAccept();
+
+    // Adding 8 entries fills up to the hard limit without eviction, but passes the reduce trigger
+    cache.addAll(Arrays.asList(1, 2, 3, 4, 5, 6, 7, 8).iterator());
+    Assert.assertEquals(32, cache.getCurrentWeight());
+
+    // Adding one more entry needs a new segment, which will trigger eviction of the oldest segments
+    // until the min retain is reached before adding the new segment.
+    cache.addAll(Collections.singleton(9).iterator());
+    Assert.assertEquals(24, cache.getCurrentWeight());
+
+    // Since the reduce trigger was passed, the reduction happens on closing of the scanner
+    try (MessageCache.Scanner<Integer> scanner = cache.scan(0, true, 20, filter)) {
+      Assert.assertEquals(Integer.valueOf(5), scanner.getFirstInCache());
+      Assert.assertEquals(Arrays.asList(5, 6, 7, 8, 9), Lists.newArrayList(scanner));
+    }
+    Assert.assertEquals(16, cache.getCurrentWeight());
+    try (MessageCache.Scanner<Integer> scanner = cache.scan(0, true, 20, filter)) {
+      Assert.assertEquals(Integer.valueOf(7), scanner.getFirstInCache());
+      Assert.assertEquals(Arrays.asList(7, 8, 9), Lists.newArrayList(scanner));
+    }
+
+    // Adding more entries to pass the reduce trigger again.
+    cache.addAll(Arrays.asList(10, 11, 12, 13).iterator());
+    Assert.assertEquals(32, cache.getCurrentWeight());
+    try (MessageCache.Scanner<Integer> scanner = cache.scan(0, true, 20, filter)) {
+      Assert.assertEquals(Arrays.asList(7, 8, 9, 10, 11, 12, 13), Lists.newArrayList(scanner));
+    }
+    Assert.assertEquals(16, cache.getCurrentWeight());
+    try (MessageCache.Scanner<Integer> scanner = cache.scan(0, true, 20, filter)) {
+      Assert.assertEquals(Integer.valueOf(11), scanner.getFirstInCache());
+      Assert.assertEquals(Arrays.asList(11, 12, 13), Lists.newArrayList(scanner));
+    }
+
+    // Adding entries after the active segment got evicted should continue to work
+    cache.clear();
+    Assert.assertEquals(0, cache.getCurrentWeight());
+    cache.addAll(Arrays.asList(1, 2, 3).iterator());
+    try (MessageCache.Scanner<Integer> scanner = cache.scan(0, true, 20, filter)) {
+      Assert.assertEquals(Integer.valueOf(1), scanner.getFirstInCache());
+      Assert.assertEquals(Arrays.asList(1, 2, 3), Lists.newArrayList(scanner));
+    }
+  }
+
+  @Test
+  public void testLargeEntry() {
+    // Entries larger than the segment size are stored in their own segments
+    OffHeapMessageCache<String> cache = new OffHeapMessageCache<>(new StringComparator(), new StringCodec(), 8,
+                                                                  new MessageCache.Limits(64, 96, 128), NOOP_METRICS);
+    List<String> entries = Arrays.asList("a", "bb", "ccccccccccccccccccc", "d", "eeeeeeeeeeeeeeeeeeeeeeee", "f");
+    cache.addAll(entries.iterator());
+
+    try (MessageCache.Scanner<String> scanner = cache.scan("", true, 20, MessageFilter.<String>alwaysAccept())) {
+      Assert.assertEquals(entries, Lists.newArrayList(scanner));
+    }
+    try (MessageCache.Scanner<String> scanner = cache.scan("c", true, 20, MessageFilter.<String>alwaysAccept())) {
+      Assert.assertEquals(entries.subList(2, entries.size()), Lists.newArrayList(scanner));
+    }
+  }
+
+  @Test
+  public void testUpdate() {
+    OffHeapMessageCache<MutableEntry> cache = new OffHeapMessageCache<>(new EntryComparator(), new EntryCodec(), 16,
+                                                                        new MessageCache.Limits(80, 112, 160),
+                                                                        NOOP_METRICS);
+    List<MutableEntry> entries = new ArrayList<>();
+    for (int i = 0; i < 10; i++) {
+      entries.add(new MutableEntry(i, 0));
+    }
+    cache.addAll(entries.iterator());
+
+    // Update the entries that span across multiple segments
+    cache.updateEntries(new MutableEntry(3, 0), new MutableEntry(6, 0), new MessageCache.EntryUpdater<MutableEntry>() {
+      @Override
+      public void updateEntry(MutableEntry entry) {
+        entry.setValue(entry.getId() * 10);
+      }
+    });
+
+    List<Integer> values = new ArrayList<>();
+    try (MessageCache.Scanner<MutableEntry> scanner = cache.scan(new MutableEntry(0, 0), true, 20,
+                                                                  MessageFilter.<MutableEntry>alwaysAccept())) {
+      while (scanner.hasNext()) {
+        values.add(scanner.next().getValue());
+      }
+    }
+    Assert.assertEquals(Arrays.asList(0, 0, 0, 30, 40, 50, 60, 0, 0, 0), values);
+
+    // Update that alter the order should result in exception and the cache should be cleared
+    try {
+      cache.updateEntries(new MutableEntry(3, 0), new MutableEntry(6, 0),
+                          new MessageCache.EntryUpdater<MutableEntry>() {
+        @Override
+        public void updateEntry(MutableEntry entry) {
+          entry.setId(100 - entry.getId());
+        }
+      });
+      Assert.fail("Expected IllegalStateException");
+    } catch (IllegalStateException e) {
+      Assert.assertEquals(0, cache.getCurrentWeight());
+    }
+  }
+
+  @Test
+  public void testAddError() {
+    OffHeapMessageCache<Integer> cache = new OffHeapMessageCache<>(new IntComparator(), new IntCodec(), 8,
+                                                                   new MessageCache.Limits(16, 24, 32), NOOP_METRICS);
+
+    // Adding out of order should result in error
+    try {
+      cache.addAll(Arrays.asList(5, 2, 3).iterator());
+      Assert.fail("Expected IllegalArgumentException");
+    } catch (IllegalArgumentException e) {
+      Assert.assertEquals(0, cache.getCurrentWeight());
+    }
+
+    // Adding entry that is smaller than or equal to the last entry in the cache should result in error
+    cache.addAll(Arrays.asList(1, 2, 3).iterator());
+    try {
+      cache.addAll(Arrays.asList(3, 4).iterator());
+      Assert.fail("Expected IllegalArgumentException");
+    } catch (IllegalArgumentException e) {
+      Assert.assertEquals(0, cache.getCurrentWeight());
+    }
+  }
+
+  /**
+   * A {@link Comparator} for {@link Integer}.
+   */
+  private static final class IntComparator implements Comparator<Integer> {
+
+    @Override
+    public int compare(Integer o1, Integer o2) {
+      return o1.compareTo(o2);
+    }
+  }
+
+  /**
+   * A {@link OffHeapMessageCache.Codec} for {@link Integer}.
+   */
+  private static final class IntCodec implements OffHeapMessageCache.Codec<Integer> {
+
+    @Override
+    public int getEncodedSize(Integer entry) {
+      return Integer.SIZE / Byte.SIZE;
+    }
+
+    @Override
+    public void encode(Integer entry, ByteBuffer buffer) {
+      buffer.putInt(entry);
+    }
+
+    @Override
+    public Integer decode(ByteBuffer buffer, int offset, int length) {
+      return buffer.getInt(offset);
+    }
+  }
+
+  /**
+   * A {@link Comparator} for {@link String}.
+   */
+  private static final class StringComparator implements Comparator<String> {
+
+    @Override
+    public int compare(String o1, String o2) {
+      return o1.compareTo(o2);
+    }
+  }
+
+  /**
+   * A {@link OffHeapMessageCache.Codec} for ASCII {@link String}.
+   */
+  private static final class StringCodec implements OffHeapMessageCache.Codec<String> {
+
+    @Override
+    public int getEncodedSize(String entry) {
+      return entry.length();
+    }
+
+    @Override
+    public void encode(String entry, ByteBuffer buffer) {
+      for (int i = 0; i < entry.length(); i++) {
+        buffer.put((byte) entry.charAt(i));
+      }
+    }
+
+    @Override
+    public String decode(ByteBuffer buffer, int offset, int length) {
+      char[] chars = new char[length];
+      for (int i = 0; i < length; i++) {
+        chars[i] = (char) buffer.get(offset + i);
+      }
+      return new String(chars);
+    }
+  }
+
+  /**
+   * A mutable cache entry for testing. Entries decoded from the cache are backed by the off-heap memory.
+   */
+  private static final class MutableEntry {
+
+    private final ByteBuffer buffer;
+    private final int offset;
+
+    MutableEntry(int id, int value) {
+      this(ByteBuffer.allocate(8).putInt(0, id).putInt(4, value), 0);
+    }
+
+    MutableEntry(ByteBuffer buffer, int offset) {
+      this.buffer = buffer;
+      this.offset = offset;
+    }
+
+    int getId() {
+      return buffer.getInt(offset);
+    }
+
+    void setId(int id) {
+      buffer.putInt(offset, id);
+    }
+
+    int getValue() {
+      return buffer.getInt(offset + 4);
+    }
+
+    void setValue(int value) {
+      buffer.putInt(offset + 4, value);
+    }
+  }
+
+  /**
+   * A {@link Comparator} for {@link MutableEntry}, which compares by the entry id.
+   */
+  private static final class EntryComparator implements Comparator<MutableEntry> {
+
+    @Override
+    public int compare(MutableEntry o1, MutableEntry o2) {
+      return Integer.compare(o1.getId(), o2.getId());
+    }
+  }
+
+  /**
+   * A {@link OffHeapMessageCache.Codec} for {@link MutableEntry}.
+   */
+  private static final class EntryCodec implements OffHeapMessageCache.Codec<MutableEntry> {
+
+    @Override
+    public int getEncodedSize(MutableEntry entry) {
+      return 8;
+    }
+
+    @Override
+    public void encode(MutableEntry entry, ByteBuffer buffer) {
+      buffer.putInt(entry.getId()).putInt(entry.getValue());
+    }
+
+    @Override
+    public MutableEntry decode(ByteBuffer buffer, int offset, int length) {
+      return new MutableEntry(buffer, offset);
+    }
+  }
+}
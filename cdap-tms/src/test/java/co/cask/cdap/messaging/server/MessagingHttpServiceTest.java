@@ -37,6 +37,7 @@ import co.cask.cdap.messaging.data.RawMessage;
 import co.cask.cdap.messaging.guice.MessagingServerRuntimeModule;
 import co.cask.cdap.proto.id.NamespaceId;
 import co.cask.cdap.proto.id.TopicId;
+import com.google.common.base.Stopwatch;
 import com.google.common.base.Strings;
 import com.google.common.collect.Iterators;
 import com.google.inject.AbstractModule;
@@ -57,7 +58,12 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 
 /**
@@ -77,6 +83,7 @@ public class MessagingHttpServiceTest {
     cConf = CConfiguration.create();
     cConf.set(Constants.CFG_LOCAL_DATA_DIR, TEMP_FOLDER.newFolder().getAbsolutePath());
     cConf.setInt(Constants.MessagingSystem.HTTP_SERVER_CONSUME_CHUNK_SIZE, 128);
+    cConf.setInt(Constants.MessagingSystem.HTTP_SERVER_FETCH_MAX_LIMIT, 8);
     // Set max life time to a high value so that dummy tx ids that we create in the tests still work
     cConf.setLong(TxConstants.Manager.CFG_TX_MAX_LIFETIME, 10000000000L);
 
@@ -440,6 +447,123 @@ public class MessagingHttpServiceTest {
     client.deleteTopic(topicId);
   }
 
+  @Test
+  public void testLongPoll() throws Exception {
+    TopicId topicId = new NamespaceId("ns1").topic("testLongPoll");
+
+    client.createTopic(new TopicMetadata(topicId));
+
+    // Fetch from an empty topic with a short timeout. It should return empty after the timeout.
+    Stopwatch stopwatch = new Stopwatch().start();
+    try (CloseableIterator<RawMessage> iterator = client.prepareFetch(topicId)
+                                                        .setPollTimeout(500, TimeUnit.MILLISECONDS).fetch()) {
+      Assert.assertFalse(iterator.hasNext());
+    }
+    Assert.assertTrue(stopwatch.elapsedMillis() >= 500);
+
+    // Fetch with a long timeout, and publish a message while the fetch is pending.
+    // The fetch should return as soon as the message is available.
+    ExecutorService executor = Executors.newSingleThreadExecutor();
+    try {
+      Future<List<RawMessage>> future = executor.submit(() -> {
+        List<RawMessage> messages = new ArrayList<>();
+        try (CloseableIterator<RawMessage> iterator = client.prepareFetch(topicId)
+                                                            .setPollTimeout(30, TimeUnit.SECONDS).fetch()) {
+          Iterators.addAll(messages, iterator);
+        }
+        return messages;
+      });
+
+      TimeUnit.MILLISECONDS.sleep(200);
+      client.publish(StoreRequestBuilder.of(topicId).addPayload("m1").build());
+
+      List<RawMessage> messages = future.get(10, TimeUnit.SECONDS);
+      Assert.assertEquals(1, messages.size());
+      Assert.assertEquals("m1", Bytes.toString(messages.get(0).getPayload()));
+    } finally {
+      executor.shutdownNow();
+    }
+
+    // Long poll on a non-existing topic should get not found exception
+    try {
+      client.prepareFetch(new NamespaceId("ns1").topic("testLongPollMissing"))
+        .setPollTimeout(500, TimeUnit.MILLISECONDS).fetch();
+      Assert.fail("Expected TopicNotFoundException");
+    } catch (TopicNotFoundException e) {
+      // Expected
+    }
+
+    client.deleteTopic(topicId);
+  }
+
+  @Test
+  public void testMultiTopicFetch() throws Exception {
+    TopicId topic1 = new NamespaceId("ns1").topic("testMultiTopicFetch1");
+    TopicId topic2 = new NamespaceId("ns2").topic("testMultiTopicFetch2");
+    TopicId topic3 = new NamespaceId("ns1").topic("testMultiTopicFetch3");
+
+    client.createTopic(new TopicMetadata(topic1));
+    client.createTopic(new TopicMetadata(topic2));
+    client.createTopic(new TopicMetadata(topic3));
+
+    for (int i = 0; i < 10; i++) {
+      client.publish(StoreRequestBuilder.of(topic1).addPayload("a" + i).build());
+      client.publish(StoreRequestBuilder.of(topic2).addPayload("b" + i).build());
+    }
+
+    // Fetch from all topics, with a limit that applies to each topic
+    Map<TopicId, List<RawMessage>> result = client.prepareMultiTopicFetch()
+      .addTopic(topic1, null, true)
+      .addTopic(topic2, 0L)
+      .addTopic(topic3, null, true)
+      .setLimit(5)
+      .fetch();
+
+    Assert.assertEquals(Arrays.asList(topic1, topic2, topic3), new ArrayList<>(result.keySet()));
+    Assert.assertEquals(Arrays.asList("a0", "a1", "a2", "a3", "a4"),
+                        result.get(topic1).stream().map(m -> Bytes.toString(m.getPayload()))
+                          .collect(Collectors.toList()));
+    Assert.assertEquals(Arrays.asList("b0", "b1", "b2", "b3", "b4"),
+                        result.get(topic2).stream().map(m -> Bytes.toString(m.getPayload()))
+                          .collect(Collectors.toList()));
+    Assert.assertTrue(result.get(topic3).isEmpty());
+
+    // Continue fetching from the last message of each topic
+    byte[] lastId1 = result.get(topic1).get(4).getId();
+    byte[] lastId2 = result.get(topic2).get(4).getId();
+    result = client.prepareMultiTopicFetch()
+      .addTopic(topic1, lastId1, false)
+      .addTopic(topic2, lastId2, true)
+      .fetch();
+    Assert.assertEquals(Arrays.asList("a5", "a6", "a7", "a8", "a9"),
+                        result.get(topic1).stream().map(m -> Bytes.toString(m.getPayload()))
+                          .collect(Collectors.toList()));
+    Assert.assertEquals(Arrays.asList("b4", "b5", "b6", "b7", "b8", "b9"),
+                        result.get(topic2).stream().map(m -> Bytes.toString(m.getPayload()))
+                          .collect(Collectors.toList()));
+
+    // The limit is capped by the server
+    result = client.prepareMultiTopicFetch()
+      .addTopic(topic1, null, true)
+      .setLimit(100)
+      .fetch();
+    Assert.assertEquals(8, result.get(topic1).size());
+
+    // Fetching with a non-existing topic should fail with the missing topic
+    TopicId missingTopic = new NamespaceId("ns1").topic("testMultiTopicFetchMissing");
+    try {
+      client.prepareMultiTopicFetch().addTopic(topic1, null, true).addTopic(missingTopic, null, true).fetch();
+      Assert.fail("Expected TopicNotFoundException");
+    } catch (TopicNotFoundException e) {
+      Assert.assertEquals(missingTopic.getNamespace(), e.getNamespace());
+      Assert.assertEquals(missingTopic.getTopic(), e.getTopic());
+    }
+
+    client.deleteTopic(topic1);
+    client.deleteTopic(topic2);
+    client.deleteTopic(topic3);
+  }
+
   @Test
   public void testPayloadTable() throws Exception {
     // This test is to verify storing transaction messages to the payload table
@@ -18,6 +18,7 @@ package co.cask.cdap.messaging.service;
 
 import co.cask.cdap.api.common.Bytes;
 import co.cask.cdap.api.metrics.MetricsCollector;
+import co.cask.cdap.api.metrics.NoopMetricsContext;
 import co.cask.cdap.common.utils.TimeProvider;
 import co.cask.cdap.messaging.StoreRequest;
 import co.cask.cdap.messaging.TopicMetadata;
@@ -40,7 +41,9 @@ import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.BrokenBarrierException;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.CyclicBarrier;
 import java.util.concurrent.ExecutorService;
@@ -268,6 +271,80 @@ public class ConcurrentMessageWriterTest {
     }
   }
 
+  @Test
+  public void testGroupCommit() throws InterruptedException, BrokenBarrierException {
+    int threadCount = 10;
+
+    // Use a long linger time so that concurrent requests across topics are written in one batch
+    TestStoreRequestWriter testWriter = new TestStoreRequestWriter(new TimeProvider.IncrementalTimeProvider());
+    final ConcurrentMessageWriter writer = new ConcurrentMessageWriter(testWriter, new NoopMetricsContext(),
+                                                                       TimeUnit.SECONDS.toMicros(2),
+                                                                       Integer.MAX_VALUE);
+
+    ExecutorService executor = Executors.newFixedThreadPool(threadCount);
+    final CyclicBarrier barrier = new CyclicBarrier(threadCount + 1);
+    for (int i = 0; i < threadCount; i++) {
+      final TopicId topicId = NamespaceId.DEFAULT.topic("t" + i);
+      executor.submit(new Runnable() {
+        @Override
+        public void run() {
+          try {
+            barrier.await();
+            writer.persist(new TestStoreRequest(topicId, Arrays.asList("a", "b")),
+                           new TopicMetadata(topicId, new HashMap<String, String>(), 1));
+          } catch (Exception e) {
+            LOG.error("Exception raised when persisting.", e);
+          }
+        }
+      });
+    }
+
+    barrier.await();
+    executor.shutdown();
+    Assert.assertTrue(executor.awaitTermination(1, TimeUnit.MINUTES));
+
+    // All requests should be written and with much fewer writes than the number of requests
+    for (int i = 0; i < threadCount; i++) {
+      Assert.assertEquals(2, testWriter.getMessages().get(NamespaceId.DEFAULT.topic("t" + i)).size());
+    }
+    Assert.assertTrue(testWriter.getWriteCount() < threadCount);
+  }
+
+  @Test
+  public void testGroupCommitMaxBatchBytes() throws IOException {
+    // With a small max batch size, the writer shouldn't linger once the batch is full
+    TestStoreRequestWriter testWriter = new TestStoreRequestWriter(new TimeProvider.IncrementalTimeProvider());
+    final Map<String, Long> counters = new ConcurrentHashMap<>();
+    ConcurrentMessageWriter writer = new ConcurrentMessageWriter(testWriter, new MetricsCollector() {
+      @Override
+      public void increment(String metricName, long value) {
+        counters.merge(metricName, value, Long::sum);
+      }
+
+      @Override
+      public void gauge(String metricName, long value) {
+        // no-op
+      }
+    }, TimeUnit.MINUTES.toMicros(1), 2);
+
+    TopicId topicId = NamespaceId.DEFAULT.topic("t");
+    TopicMetadata metadata = new TopicMetadata(topicId, new HashMap<String, String>(), 1);
+    Stopwatch stopwatch = new Stopwatch().start();
+    writer.persist(new TestStoreRequest(topicId, Arrays.asList("1", "2", "3")), metadata);
+    writer.persist(new TestStoreRequest(topicId, Arrays.asList("4", "5")), metadata);
+    Assert.assertTrue(stopwatch.elapsedTime(TimeUnit.SECONDS) < 30);
+
+    Assert.assertEquals(5, testWriter.getMessages().get(topicId).size());
+    Assert.assertEquals(2, testWriter.getWriteCount());
+    // Each write has one request
+    Assert.assertEquals(Long.valueOf(2L), counters.get("persist.batch.requests.total"));
+    Assert.assertEquals(Long.valueOf(2L), counters.get("persist.batch.requests.bucket.1"));
+
+    // Closing should flush without waiting for the linger time
+    writer.close();
+    Assert.assertTrue(stopwatch.elapsedTime(TimeUnit.SECONDS) < 30);
+  }
+
   /**
    * A {@link StoreRequestWriter} that turns all payloads to {@link RawMessage} and stores it in a List.
    */
@@ -275,6 +352,7 @@ public class ConcurrentMessageWriterTest {
 
     private final ListMultimap<TopicId, RawMessage> messages = ArrayListMultimap.create();
     private long writeDelayMillis;
+    private int writeCount;
 
     TestStoreRequestWriter(TimeProvider timeProvider) {
       super(timeProvider, false);
@@ -297,6 +375,7 @@ public class ConcurrentMessageWriterTest {
 
     @Override
     protected void doWrite(Iterator<TestEntry> entries) throws IOException {
+      writeCount++;
       while (entries.hasNext()) {
         TestEntry entry = entries.next();
         byte[] rawId = new byte[MessageId.RAW_ID_SIZE];
@@ -315,6 +394,10 @@ public class ConcurrentMessageWriterTest {
       return messages;
     }
 
+    int getWriteCount() {
+      return writeCount;
+    }
+
     @Override
     public void close() throws IOException {
       // No-op
@@ -24,6 +24,7 @@ import co.cask.cdap.common.utils.TimeProvider;
 import co.cask.cdap.messaging.MessagingUtils;
 import co.cask.cdap.messaging.TopicMetadata;
 import co.cask.cdap.messaging.cache.MessageCache;
+import co.cask.cdap.messaging.cache.OnHeapMessageCache;
 import co.cask.cdap.messaging.data.MessageId;
 import co.cask.cdap.messaging.store.ImmutableMessageTableEntry;
 import co.cask.cdap.messaging.store.MessageTable;
@@ -69,8 +70,8 @@ public class CachingMessageTableTest extends LevelDBMessageTableTest {
       .build(new CacheLoader<TopicId, MessageCache<MessageTable.Entry>>() {
         @Override
         public MessageCache<MessageTable.Entry> load(TopicId key) throws Exception {
-          return new MessageCache<>(new MessageTableEntryComparator(), new MessageTableEntryWeigher(),
-                                    new MessageCache.Limits(500, 700, 1000), new NoopMetricsContext());
+          return new OnHeapMessageCache<>(new MessageTableEntryComparator(), new MessageTableEntryWeigher(),
+                                          new MessageCache.Limits(500, 700, 1000), new NoopMetricsContext());
         }
       });
 
@@ -0,0 +1,150 @@
+/*
+ * Copyright © 2018 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.messaging.store.cache;
+
+import co.cask.cdap.api.common.Bytes;
+import co.cask.cdap.api.metrics.NoopMetricsContext;
+import co.cask.cdap.messaging.MessagingUtils;
+import co.cask.cdap.messaging.TopicMetadata;
+import co.cask.cdap.messaging.cache.MessageCache;
+import co.cask.cdap.messaging.cache.OffHeapMessageCache;
+import co.cask.cdap.messaging.cache.OnHeapMessageCache;
+import co.cask.cdap.messaging.store.ImmutableMessageTableEntry;
+import co.cask.cdap.messaging.store.MessageFilter;
+import co.cask.cdap.messaging.store.MessageTable;
+import co.cask.cdap.proto.id.NamespaceId;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JMH benchmark for comparing the {@link OnHeapMessageCache} and the {@link OffHeapMessageCache}
+ * with {@link MessageTable.Entry}.
+ *
+ * It can be run from the IDE or through the {@link #main(String[])} method with the test classpath.
+ * The {@code -verbose:gc} JVM option can be added to the fork settings to compare the GC activities
+ * between the two cache implementations.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx1g", "-XX:MaxDirectMemorySize=1g"})
+public class MessageCacheBenchmark {
+
+  private static final int BATCH_SIZE = 100;
+  private static final long CACHE_SIZE = 256L * 1024 * 1024;
+
+  @Param({"heap", "offheap"})
+  private String cacheType;
+
+  @Param({"100", "1000"})
+  private int payloadSize;
+
+  private TopicMetadata metadata;
+  private MessageCache<MessageTable.Entry> cache;
+  private MessageFilter<MessageTable.Entry> filter;
+  private byte[] payload;
+  private long publishTimestamp;
+  private long retainedEntries;
+
+  @Setup(Level.Trial)
+  public void setup() {
+    metadata = new TopicMetadata(NamespaceId.SYSTEM.topic("benchmark"),
+                                 TopicMetadata.GENERATION_KEY, 1, TopicMetadata.TTL_KEY, 86400);
+    MessageCache.Limits limits = new MessageCache.Limits(CACHE_SIZE / 2, CACHE_SIZE * 7 / 10, CACHE_SIZE);
+    MessageTableEntryComparator comparator = new MessageTableEntryComparator();
+    if ("offheap".equals(cacheType)) {
+      cache = new OffHeapMessageCache<>(comparator, new MessageTableEntryCodec(metadata.getTopicId()),
+                                        1024 * 1024, limits, new NoopMetricsContext());
+    } else {
+      cache = new OnHeapMessageCache<>(comparator, new MessageTableEntryWeigher(), limits, new NoopMetricsContext());
+    }
+    filter = MessageFilter.alwaysAccept();
+    payload = new byte[payloadSize];
+    ThreadLocalRandom.current().nextBytes(payload);
+
+    // Fill the cache to the min retain size
+    retainedEntries = CACHE_SIZE / 2 / (payloadSize + 64);
+    while (publishTimestamp < retainedEntries) {
+      cache.addAll(createBatch().iterator());
+    }
+  }
+
+  @TearDown(Level.Trial)
+  public void teardown() {
+    cache.clear();
+  }
+
+  @Benchmark
+  public void add() {
+    cache.addAll(createBatch().iterator());
+  }
+
+  @Benchmark
+  public void scan(Blackhole blackhole) {
+    // Scan from a random position among the recently added entries, which are always retained in the cache
+    long start = publishTimestamp - 1 - ThreadLocalRandom.current().nextLong(retainedEntries / 2);
+    MessageTable.Entry startEntry = new CachingMessageTable.CacheMessageTableEntry(metadata, start, (short) 0);
+    try (MessageCache.Scanner<MessageTable.Entry> scanner = cache.scan(startEntry, true, BATCH_SIZE, filter)) {
+      while (scanner.hasNext()) {
+        blackhole.consume(scanner.next().getPayload());
+      }
+    }
+  }
+
+  /**
+   * Creates a batch of entries with increasing publish timestamp.
+   */
+  private List<MessageTable.Entry> createBatch() {
+    List<MessageTable.Entry> batch = new ArrayList<>(BATCH_SIZE);
+    byte[] keyPrefix = MessagingUtils.toDataKeyPrefix(metadata.getTopicId(), metadata.getGeneration());
+    for (int i = 0; i < BATCH_SIZE; i++) {
+      byte[] row = Bytes.concat(keyPrefix, Bytes.toBytes(publishTimestamp++), Bytes.toBytes((short) 0));
+      batch.add(new CachingMessageTable.CacheMessageTableEntry(new ImmutableMessageTableEntry(row, payload, null)));
+    }
+    return batch;
+  }
+
+  public static void main(String[] args) throws RunnerException {
+    Options options = new OptionsBuilder()
+      .include(MessageCacheBenchmark.class.getSimpleName())
+      .build();
+    new Runner(options).run();
+  }
+}
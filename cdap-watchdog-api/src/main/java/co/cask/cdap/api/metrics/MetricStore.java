@@ -63,6 +63,12 @@ public interface MetricStore {
    */
   void deleteTTLExpired() throws Exception;
 
+  /**
+   * Compacts the metric data of each resolution table in the time range for which the data of the next finer
+   * resolution has expired, so that reading long time ranges touches fewer rows.
+   */
+  void compact() throws Exception;
+
   /**
    * Deletes all metric data specified by the {@link MetricDeleteQuery}
    * @param query specifies what to delete
@@ -15,16 +15,21 @@
  */
 package co.cask.cdap.api.metrics;
 
+import co.cask.cdap.api.dataset.lib.cube.Distribution;
 import com.google.common.base.Objects;
 
+import javax.annotation.Nullable;
+
 /**
- * Carries the "raw" emitted metric data point: metric name, type, and value
+ * Carries the "raw" emitted metric data point: metric name, type, and value. For {@link MetricType#DISTRIBUTION},
+ * the value is the number of values in the {@link Distribution} carried.
  */
 public class MetricValue {
 
   String name;
   MetricType type;
   long value;
+  Distribution distribution;
 
   public MetricValue (String name, MetricType type, long value) {
     this.name = name;
@@ -32,6 +37,13 @@ public class MetricValue {
     this.value = value;
   }
 
+  public MetricValue(String name, Distribution distribution) {
+    this.name = name;
+    this.type = MetricType.DISTRIBUTION;
+    this.value = distribution.getCount();
+    this.distribution = distribution;
+  }
+
   public String getName() {
     return name;
   }
@@ -44,12 +56,21 @@ public class MetricValue {
     return value;
   }
 
+  /**
+   * Returns the {@link Distribution} if the type is {@link MetricType#DISTRIBUTION}; otherwise {@code null}.
+   */
+  @Nullable
+  public Distribution getDistribution() {
+    return distribution;
+  }
+
   @Override
   public String toString() {
     return Objects.toStringHelper(this)
       .add("name", name)
       .add("type", type)
       .add("value", value)
+      .add("distribution", distribution)
       .toString();
   }
 }
@@ -34,6 +34,23 @@ public interface MetricsContext extends MetricsCollector {
    */
   MetricsContext childContext(String tagName, String tagValue);
 
+  /**
+   * Adds a value to the distribution of a metric at the current time. The distribution supports percentile queries,
+   * e.g. for latencies.
+   * @param metricName Name of the metric.
+   * @param value value to add to the distribution.
+   */
+  void distribution(String metricName, long value);
+
+  /**
+   * Returns a {@link MetricsCounter} bound to the given metric in this context. Incrementing the returned counter
+   * is the same as calling {@link #increment(String, long)} with the metric name, but is cheaper on frequently
+   * updated metrics.
+   * @param metricName Name of the metric.
+   * @return a {@link MetricsCounter} for the metric.
+   */
+  MetricsCounter counter(String metricName);
+
   /**
    * @return tags that identify the context.
    */
@@ -18,9 +18,11 @@ package co.cask.cdap.logging.appender.system;
 
 import ch.qos.logback.classic.spi.ILoggingEvent;
 import co.cask.cdap.common.io.ByteBuffers;
+import co.cask.cdap.common.io.Locations;
 import co.cask.cdap.common.io.Syncable;
 import co.cask.cdap.logging.serialize.LoggingEvent;
 import co.cask.cdap.logging.serialize.LoggingEventSerializer;
+import co.cask.cdap.logging.write.LogFileIndex;
 import com.google.common.io.Closeables;
 import org.apache.avro.Schema;
 import org.apache.avro.file.DataFileWriter;
@@ -41,12 +43,17 @@ import java.nio.ByteBuffer;
  *
  * Since there is no way to check the state of the underlying file on an exception,
  * all methods of this class assume that the file state is bad on any exception and close the file.
+ *
+ * Besides the log file, a {@link LogFileIndex} is written when the file is closed. The log file is synced at least
+ * every {@link #INDEX_INTERVAL_EVENTS} events, so that each index entry covers a bounded range of the file.
  */
 
 class LogFileOutputStream implements Closeable, Flushable, Syncable {
   private static final Logger LOG = LoggerFactory.getLogger(LogFileOutputStream.class);
+  private static final int INDEX_INTERVAL_EVENTS = 1000;
 
   private final Location location;
+  private final String filePermissions;
   private final long createTime;
   private final Closeable closeable;
   private final LoggingEventSerializer serializer;
@@ -54,10 +61,12 @@ class LogFileOutputStream implements Closeable, Flushable, Syncable {
   private OutputStream outputStream;
   private DataFileWriter<GenericRecord> dataFileWriter;
   private long fileSize;
+  private LogFileIndex.Builder indexBuilder;
 
   LogFileOutputStream(Location location, String filePermissions,
                       int syncIntervalBytes, long createTime, Closeable closeable) throws IOException {
     this.location = location;
+    this.filePermissions = filePermissions;
     this.closeable = closeable;
     this.serializer = new LoggingEventSerializer();
 
@@ -70,6 +79,7 @@ class LogFileOutputStream implements Closeable, Flushable, Syncable {
       this.dataFileWriter.setSyncInterval(syncIntervalBytes);
       this.createTime = createTime;
       this.fileSize = 0;
+      this.indexBuilder = new LogFileIndex.Builder(dataFileWriter.sync());
     } catch (IOException e) {
       Closeables.closeQuietly(outputStream);
       Closeables.closeQuietly(dataFileWriter);
@@ -82,6 +92,15 @@ class LogFileOutputStream implements Closeable, Flushable, Syncable {
   }
 
   void append(ILoggingEvent event) throws IOException {
+    write(event);
+    indexBuilder.add(event);
+    // Start a new index entry, which forces the current Avro block to be written
+    if (indexBuilder.getEventCount() >= INDEX_INTERVAL_EVENTS) {
+      flush();
+    }
+  }
+
+  private void write(ILoggingEvent event) throws IOException {
     // If the event is already a LoggingEvent, we don't need to re-encode.
     if (event instanceof LoggingEvent) {
       ByteBuffer encoded = ((LoggingEvent) event).getEncoded();
@@ -115,6 +134,7 @@ class LogFileOutputStream implements Closeable, Flushable, Syncable {
   @Override
   public void flush() throws IOException {
     fileSize = dataFileWriter.sync();
+    indexBuilder.sync(fileSize);
   }
 
   @Override
@@ -131,9 +151,27 @@ class LogFileOutputStream implements Closeable, Flushable, Syncable {
   public void close() throws IOException {
     LOG.trace("Closing file {}", location);
     try {
+      flush();
       dataFileWriter.close();
+      writeIndex();
     } finally {
       closeable.close();
     }
   }
+
+  /**
+   * Writes the index of the log file. The index is optional for reading, hence failure is only logged.
+   */
+  private void writeIndex() {
+    Location indexLocation = null;
+    try {
+      indexLocation = LogFileIndex.getIndexLocation(location);
+      indexBuilder.build().write(indexLocation, filePermissions);
+    } catch (Exception e) {
+      LOG.warn("Failed to write index for log file {}. Reading the file will not use an index.", location, e);
+      if (indexLocation != null) {
+        Locations.deleteQuietly(indexLocation);
+      }
+    }
+  }
 }
@@ -16,11 +16,13 @@
 
 package co.cask.cdap.logging.filter;
 
+import ch.qos.logback.classic.Level;
 import ch.qos.logback.classic.spi.ILoggingEvent;
 import com.google.common.base.Objects;
 import com.google.common.collect.ImmutableList;
 
 import java.util.List;
+import java.util.Set;
 
 /**
  * Represents an And Filter where all sub expressions are and-ed together.
@@ -42,6 +44,16 @@ public class AndFilter implements Filter {
     return true;
   }
 
+  @Override
+  public boolean matchAnyLevel(Set<Level> levels) {
+    for (Filter expression : expressions) {
+      if (!expression.matchAnyLevel(levels)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
   @Override
   public String toString() {
     return Objects.toStringHelper(this)
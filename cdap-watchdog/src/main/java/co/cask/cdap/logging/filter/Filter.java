@@ -16,14 +16,23 @@
 
 package co.cask.cdap.logging.filter;
 
+import ch.qos.logback.classic.Level;
 import ch.qos.logback.classic.spi.ILoggingEvent;
 
+import java.util.Set;
+
 /**
  * Represents a generic filter to filter ILoggingEvent objects.
  */
 public interface Filter {
   boolean match(ILoggingEvent event);
 
+  /**
+   * Returns {@code false} if no event with any of the given levels can match this filter. It is used to skip
+   * reading ranges of a log file that only contain events of the given levels.
+   */
+  boolean matchAnyLevel(Set<Level> levels);
+
   Filter EMPTY_FILTER = new EmptyFilter();
 
   /**
@@ -34,5 +43,10 @@ public interface Filter {
     public boolean match(ILoggingEvent event) {
       return true;
     }
+
+    @Override
+    public boolean matchAnyLevel(Set<Level> levels) {
+      return true;
+    }
   }
 }
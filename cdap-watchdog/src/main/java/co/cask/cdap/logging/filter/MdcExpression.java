@@ -16,9 +16,12 @@
 
 package co.cask.cdap.logging.filter;
 
+import ch.qos.logback.classic.Level;
 import ch.qos.logback.classic.spi.ILoggingEvent;
 import com.google.common.base.Objects;
 
+import java.util.Set;
+
 /**
  * Represents an expression that can match a key,value in MDC.
  */
@@ -37,6 +40,11 @@ public class MdcExpression implements Filter {
     return value != null && value.equals(getValue());
   }
 
+  @Override
+  public boolean matchAnyLevel(Set<Level> levels) {
+    return true;
+  }
+
   public String getKey() {
     return key;
   }
@@ -16,11 +16,13 @@
 
 package co.cask.cdap.logging.filter;
 
+import ch.qos.logback.classic.Level;
 import ch.qos.logback.classic.spi.ILoggingEvent;
 import com.google.common.base.Objects;
 import com.google.common.collect.ImmutableList;
 
 import java.util.List;
+import java.util.Set;
 
 /**
  * Represents an Or filter where all sub expressions are or-ed together.
@@ -42,6 +44,16 @@ public class OrFilter implements Filter {
     return false;
   }
 
+  @Override
+  public boolean matchAnyLevel(Set<Level> levels) {
+    for (Filter expression : expressions) {
+      if (expression.matchAnyLevel(levels)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
   @Override
   public String toString() {
     return Objects.toStringHelper(this)
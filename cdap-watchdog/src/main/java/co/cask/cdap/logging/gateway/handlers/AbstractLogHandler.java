@@ -29,6 +29,7 @@ import co.cask.cdap.logging.read.LogOffset;
 import co.cask.cdap.logging.read.LogReader;
 import co.cask.cdap.logging.read.ReadRange;
 import co.cask.http.AbstractHttpHandler;
+import co.cask.http.HandlerContext;
 import co.cask.http.HttpResponder;
 import io.netty.handler.codec.http.HttpResponseStatus;
 import org.slf4j.Logger;
@@ -53,6 +54,13 @@ public class AbstractLogHandler extends AbstractHttpHandler {
     this.logPattern = cConfig.get(LoggingConfiguration.LOG_PATTERN, LoggingConfiguration.DEFAULT_LOG_PATTERN);
   }
 
+  @Override
+  public void destroy(HandlerContext context) {
+    super.destroy(context);
+    // The log reader is stopped together with the http service that serves the logs
+    logReader.close();
+  }
+
   protected void doGetLogs(HttpResponder responder, LoggingContext loggingContext,
                            long fromTimeSecsParam, long toTimeSecsParam, boolean escape, String filterStr,
                            @Nullable RunRecordMeta runRecord, String format, List<String> fieldsToSuppress) {
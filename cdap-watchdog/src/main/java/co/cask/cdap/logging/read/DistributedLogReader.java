@@ -114,6 +114,12 @@ public final class DistributedLogReader implements LogReader {
     return fileLogReader.getLog(loggingContext, fromTimeMs, toTimeMs, filter);
   }
 
+  @Override
+  public void close() {
+    fileLogReader.close();
+    kafkaLogReader.close();
+  }
+
   private long getCheckpointTime(LoggingContext loggingContext) {
     int partition = partitioner.partition(loggingContext.getLogPartition(), -1);
     try {
@@ -18,6 +18,8 @@ package co.cask.cdap.logging.read;
 
 import co.cask.cdap.api.dataset.lib.AbstractCloseableIterator;
 import co.cask.cdap.api.dataset.lib.CloseableIterator;
+import co.cask.cdap.common.conf.CConfiguration;
+import co.cask.cdap.common.conf.Constants;
 import co.cask.cdap.common.logging.LoggingContext;
 import co.cask.cdap.logging.context.LoggingContextHelper;
 import co.cask.cdap.logging.filter.AndFilter;
@@ -30,6 +32,7 @@ import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Iterables;
 import com.google.common.collect.Lists;
 import com.google.inject.Inject;
+import org.apache.twill.common.Threads;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -38,18 +41,45 @@ import java.util.Collection;
 import java.util.Iterator;
 import java.util.List;
 import java.util.NoSuchElementException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Reads log events from a file.
+ *
+ * If {@link Constants.Logging#READER_FILE_PARALLELISM} is greater than one, {@link #getLog} and {@link #getLogNext}
+ * read multiple files concurrently and merge the log events in time order. The files are read by a bounded number
+ * of threads shared by all reads, which are stopped by {@link #close()}. A read that doesn't get a thread because
+ * all of them are busy is done by the thread that reads the log events.
  */
 public class FileLogReader implements LogReader {
   private static final Logger LOG = LoggerFactory.getLogger(FileLogReader.class);
 
   private final FileMetaDataReader fileMetadataReader;
+  private final int parallelism;
+  private final int prefetchEvents;
+  private final ExecutorService executor;
 
   @Inject
-  public FileLogReader(FileMetaDataReader fileMetadataReader) {
+  public FileLogReader(CConfiguration cConf, FileMetaDataReader fileMetadataReader) {
     this.fileMetadataReader = fileMetadataReader;
+    this.parallelism = cConf.getInt(Constants.Logging.READER_FILE_PARALLELISM, 1);
+    this.prefetchEvents = cConf.getInt(Constants.Logging.READER_FILE_PREFETCH_EVENTS, 1000);
+    Preconditions.checkArgument(parallelism > 0, "The log reader file parallelism must be greater than zero, got %s",
+                                parallelism);
+    Preconditions.checkArgument(prefetchEvents > 0, "The log reader prefetch events must be greater than zero, got %s",
+                                prefetchEvents);
+    this.executor = parallelism > 1 ? createExecutor(parallelism) : null;
+  }
+
+  @Override
+  public void close() {
+    if (executor != null) {
+      executor.shutdownNow();
+    }
   }
 
   @Override
@@ -75,6 +105,17 @@ public class FileLogReader implements LogReader {
         return;
       }
 
+      if (parallelism > 1) {
+        try (CloseableIterator<LogEvent> events = new MergingLogEventIterator(sortedFilesInRange, logFilter,
+                                                                              fromTimeMs, Long.MAX_VALUE, maxEvents,
+                                                                              executor, parallelism, prefetchEvents)) {
+          while (callback.getCount() < maxEvents && events.hasNext()) {
+            callback.handle(events.next());
+          }
+        }
+        return;
+      }
+
       for (LogLocation file : sortedFilesInRange) {
         LOG.trace("Reading file {}", file);
         file.readLog(logFilter, fromTimeMs, Long.MAX_VALUE, maxEvents - callback.getCount(), callback);
@@ -159,6 +200,11 @@ public class FileLogReader implements LogReader {
         };
       }
 
+      if (parallelism > 1) {
+        return new MergingLogEventIterator(sortedFilesInRange, logFilter, fromTimeMs, toTimeMs, Integer.MAX_VALUE,
+                                           executor, parallelism, prefetchEvents);
+      }
+
       final Iterator<LogLocation> filesIter = sortedFilesInRange.iterator();
 
       CloseableIterator<CloseableIterator<LogEvent>> closeableIterator =
@@ -201,6 +247,20 @@ public class FileLogReader implements LogReader {
     }
   }
 
+  private static ExecutorService createExecutor(int parallelism) {
+    int maxThreads = Math.max(parallelism, Runtime.getRuntime().availableProcessors());
+    // No queuing of reads. A read that is rejected, either because all threads are busy or because the reader is
+    // closed, runs in the calling thread, so that its future always completes.
+    return new ThreadPoolExecutor(0, maxThreads, 60L, TimeUnit.SECONDS, new SynchronousQueue<Runnable>(),
+                                  Threads.createDaemonThreadFactory("file-log-reader-%d"),
+                                  new RejectedExecutionHandler() {
+                                    @Override
+                                    public void rejectedExecution(Runnable r, ThreadPoolExecutor executor) {
+                                      r.run();
+                                    }
+                                  });
+  }
+
   /**
    * See {@link com.google.common.collect.Iterators#concat(Iterator)}. The difference is that the input types and return
    * type are CloseableIterator, which closes the inputs that it has opened.
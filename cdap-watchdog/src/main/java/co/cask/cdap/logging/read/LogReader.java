@@ -20,10 +20,12 @@ import co.cask.cdap.api.dataset.lib.CloseableIterator;
 import co.cask.cdap.common.logging.LoggingContext;
 import co.cask.cdap.logging.filter.Filter;
 
+import java.io.Closeable;
+
 /**
  * Interface to read logs.
  */
-public interface LogReader {
+public interface LogReader extends Closeable {
   /**
    * Read log events of a Flow or Map Reduce program after a given offset.
    * @param loggingContext context to look up log events.
@@ -55,4 +57,12 @@ public interface LogReader {
     * @return CloseableIterator of log events
     */
   CloseableIterator<LogEvent> getLog(LoggingContext loggingContext, long fromTimeMs, long toTimeMs, Filter filter);
+
+  /**
+   * Releases the resources used by this reader. By default, there is nothing to release.
+   */
+  @Override
+  default void close() {
+    // no-op
+  }
 }
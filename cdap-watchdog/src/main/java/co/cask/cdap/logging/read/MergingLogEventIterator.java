@@ -0,0 +1,252 @@
+/*
+ * Copyright © 2018-2017 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.logging.read;
+
+import co.cask.cdap.api.dataset.lib.AbstractCloseableIterator;
+import co.cask.cdap.api.dataset.lib.CloseableIterator;
+import co.cask.cdap.logging.filter.Filter;
+import co.cask.cdap.logging.write.LogLocation;
+import com.google.common.util.concurrent.Uninterruptibles;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.NotThreadSafe;
+
+/**
+ * A {@link CloseableIterator} that reads multiple log files concurrently and merges the log events in time order.
+ * Up to {@code parallelism} files are read ahead at the same time, each by at most {@code prefetchEvents} events,
+ * and by no more than the number of events left to return.
+ * Files are expected to be sorted by the event time of the first event in the file, which is used to decide
+ * when a file has to be merged with the files being read.
+ */
+@NotThreadSafe
+final class MergingLogEventIterator extends AbstractCloseableIterator<LogEvent> {
+
+  private static final Logger LOG = LoggerFactory.getLogger(MergingLogEventIterator.class);
+
+  private final Iterator<LogLocation> files;
+  private final Filter filter;
+  private final long fromTimeMs;
+  private final long toTimeMs;
+  private final int maxEvents;
+  private final ExecutorService executor;
+  private final int parallelism;
+  private final int prefetchEvents;
+
+  // Files being read ahead, but not yet merged, in file order
+  private final Deque<FileSource> pending;
+  // Files being merged, ordered by the time of the next event
+  private final PriorityQueue<FileSource> merging;
+  private int sequence;
+  private int returned;
+
+  MergingLogEventIterator(List<LogLocation> sortedFiles, Filter filter, long fromTimeMs, long toTimeMs,
+                          int maxEvents, ExecutorService executor, int parallelism, int prefetchEvents) {
+    this.files = sortedFiles.iterator();
+    this.filter = filter;
+    this.fromTimeMs = fromTimeMs;
+    this.toTimeMs = toTimeMs;
+    this.maxEvents = maxEvents;
+    this.executor = executor;
+    this.parallelism = parallelism;
+    this.prefetchEvents = prefetchEvents;
+    this.pending = new LinkedList<>();
+    this.merging = new PriorityQueue<>(Math.max(1, parallelism), new Comparator<FileSource>() {
+      @Override
+      public int compare(FileSource o1, FileSource o2) {
+        int cmp = Long.compare(o1.getHead().getLoggingEvent().getTimeStamp(),
+                               o2.getHead().getLoggingEvent().getTimeStamp());
+        return cmp != 0 ? cmp : Integer.compare(o1.getSequence(), o2.getSequence());
+      }
+    });
+  }
+
+  @Override
+  protected LogEvent computeNext() {
+    if (returned >= maxEvents) {
+      return endOfData();
+    }
+    prefetch();
+
+    // A file has to be merged if it may have events earlier than the next event to return
+    while (!pending.isEmpty()
+      && (merging.isEmpty()
+      || pending.peek().getFile().getEventTimeMs() <= merging.peek().getHead().getLoggingEvent().getTimeStamp())) {
+      FileSource source = pending.poll();
+      if (source.advance()) {
+        merging.add(source);
+      } else {
+        source.close();
+      }
+      prefetch();
+    }
+
+    FileSource source = merging.poll();
+    if (source == null) {
+      return endOfData();
+    }
+    LogEvent event = source.getHead();
+    returned++;
+    if (returned < maxEvents && source.advance()) {
+      merging.add(source);
+    } else {
+      source.close();
+    }
+    return event;
+  }
+
+  @Override
+  public void close() {
+    for (FileSource source : merging) {
+      source.close();
+    }
+    merging.clear();
+    for (FileSource source : pending) {
+      source.close();
+    }
+    pending.clear();
+  }
+
+  /**
+   * Starts reading ahead files, until there are {@link #parallelism} files being read.
+   */
+  private void prefetch() {
+    while (merging.size() + pending.size() < parallelism && files.hasNext()) {
+      FileSource source = new FileSource(files.next(), sequence++);
+      source.fetch();
+      pending.add(source);
+    }
+  }
+
+  /**
+   * Reads log events of a file in chunks of {@link #prefetchEvents} events. While the current chunk is consumed,
+   * the next chunk is read in the background.
+   */
+  private final class FileSource {
+
+    private final LogLocation file;
+    private final int sequence;
+    // Only accessed by the fetch task. Visibility is guaranteed by the completion of the fetch future.
+    private CloseableIterator<LogEvent> fileIterator;
+    private Future<List<LogEvent>> nextChunk;
+    private int nextChunkSize;
+    private Iterator<LogEvent> chunk = Collections.emptyIterator();
+    private LogEvent head;
+
+    FileSource(LogLocation file, int sequence) {
+      this.file = file;
+      this.sequence = sequence;
+    }
+
+    LogLocation getFile() {
+      return file;
+    }
+
+    int getSequence() {
+      return sequence;
+    }
+
+    LogEvent getHead() {
+      return head;
+    }
+
+    /**
+     * Moves to the next event of the file.
+     *
+     * @return {@code true} if there is a next event, which is available from {@link #getHead()}
+     */
+    boolean advance() {
+      while (!chunk.hasNext()) {
+        int chunkSize = nextChunkSize;
+        List<LogEvent> events = getNextChunk();
+        if (events == null || events.isEmpty()) {
+          head = null;
+          return false;
+        }
+        chunk = events.iterator();
+        // Read ahead the next chunk if the file may have more events
+        if (events.size() >= chunkSize) {
+          fetch();
+        }
+      }
+      head = chunk.next();
+      return true;
+    }
+
+    /**
+     * Submits a task to read the next chunk of events, which has at most as many events as are left to return.
+     */
+    void fetch() {
+      final int chunkSize = Math.min(prefetchEvents, maxEvents - returned);
+      nextChunkSize = chunkSize;
+      nextChunk = executor.submit(new Callable<List<LogEvent>>() {
+        @Override
+        public List<LogEvent> call() {
+          if (fileIterator == null) {
+            LOG.trace("Reading file {}", file);
+            fileIterator = file.readLog(filter, fromTimeMs, toTimeMs, maxEvents);
+          }
+          List<LogEvent> events = new ArrayList<>(chunkSize);
+          while (events.size() < chunkSize && fileIterator.hasNext()) {
+            events.add(fileIterator.next());
+          }
+          return events;
+        }
+      });
+    }
+
+    void close() {
+      // Wait for the running fetch before closing, since the file iterator is not thread safe
+      getNextChunk();
+      if (fileIterator != null) {
+        fileIterator.close();
+      }
+    }
+
+    /**
+     * Returns the chunk from the last fetch, or {@code null} if there is no fetch or the fetch failed.
+     */
+    @Nullable
+    private List<LogEvent> getNextChunk() {
+      Future<List<LogEvent>> future = nextChunk;
+      nextChunk = null;
+      if (future == null) {
+        return null;
+      }
+      try {
+        return Uninterruptibles.getUninterruptibly(future);
+      } catch (ExecutionException e) {
+        // Same as reading a single file, ignore files that can't be read
+        LOG.warn("Got exception while reading log file {}", file, e.getCause());
+        return null;
+      }
+    }
+  }
+}
@@ -0,0 +1,286 @@
+/*
+ * Copyright © 2018 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.logging.write;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import co.cask.cdap.common.io.Locations;
+import co.cask.cdap.logging.filter.Filter;
+import com.google.common.base.Objects;
+import com.google.common.collect.ImmutableSet;
+import org.apache.twill.filesystem.Location;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import javax.annotation.Nullable;
+
+/**
+ * A sidecar index of a log file. Each {@link Entry} covers the events written between two sync positions of the
+ * Avro log file, and records the minimum and maximum event timestamps and the set of levels of those events.
+ * Readers use it to seek directly to the events in a time range, and to skip ranges that can't match a
+ * {@link Filter}.
+ *
+ * The index is stored next to the log file, with the {@link #SUFFIX} appended to the log file name.
+ */
+public final class LogFileIndex {
+
+  public static final String SUFFIX = ".idx";
+
+  private static final int VERSION = 1;
+  // Levels are stored as a bitmap, with the bit of a level being its index in this array
+  private static final Level[] LEVELS = { Level.TRACE, Level.DEBUG, Level.INFO, Level.WARN, Level.ERROR };
+  private static final int ALL_LEVELS = (1 << LEVELS.length) - 1;
+
+  private final List<Entry> entries;
+
+  private LogFileIndex(List<Entry> entries) {
+    this.entries = Collections.unmodifiableList(entries);
+  }
+
+  /**
+   * Returns the index entries, ordered by position in the log file.
+   */
+  public List<Entry> getEntries() {
+    return entries;
+  }
+
+  /**
+   * Returns the {@link Location} of the index for the given log file.
+   */
+  public static Location getIndexLocation(Location logLocation) throws IOException {
+    Location parent = Locations.getParent(logLocation);
+    if (parent == null) {
+      throw new IOException("Log file " + logLocation + " has no parent directory");
+    }
+    return parent.append(logLocation.getName() + SUFFIX);
+  }
+
+  /**
+   * Reads the index of the given log file.
+   *
+   * @param logLocation location of the log file
+   * @return the {@link LogFileIndex} or {@code null} if the log file has no index
+   * @throws IOException if failed to read the index
+   */
+  @Nullable
+  public static LogFileIndex read(Location logLocation) throws IOException {
+    Location indexLocation = getIndexLocation(logLocation);
+    if (!indexLocation.exists()) {
+      return null;
+    }
+    try (DataInputStream input = new DataInputStream(new BufferedInputStream(indexLocation.getInputStream()))) {
+      return read(input);
+    }
+  }
+
+  /**
+   * Reads an index from the given {@link InputStream}.
+   */
+  static LogFileIndex read(InputStream is) throws IOException {
+    DataInputStream input = new DataInputStream(is);
+    int version = input.readInt();
+    if (version != VERSION) {
+      throw new IOException("Unsupported log file index version " + version);
+    }
+    int size = input.readInt();
+    List<Entry> entries = new ArrayList<>(size);
+    for (int i = 0; i < size; i++) {
+      entries.add(new Entry(input.readLong(), input.readLong(), input.readLong(), input.readInt()));
+    }
+    return new LogFileIndex(entries);
+  }
+
+  /**
+   * Writes this index to the given {@link OutputStream}.
+   */
+  void write(OutputStream os) throws IOException {
+    DataOutputStream output = new DataOutputStream(new BufferedOutputStream(os));
+    output.writeInt(VERSION);
+    output.writeInt(entries.size());
+    for (Entry entry : entries) {
+      output.writeLong(entry.getPosition());
+      output.writeLong(entry.getMinTimestamp());
+      output.writeLong(entry.getMaxTimestamp());
+      output.writeInt(entry.levelBits);
+    }
+    output.flush();
+  }
+
+  /**
+   * Writes this index to the given location.
+   *
+   * @param indexLocation location of the index, as returned by {@link #getIndexLocation(Location)}
+   * @param permissions permissions of the index file, or an empty string to use the default
+   */
+  public void write(Location indexLocation, String permissions) throws IOException {
+    try (OutputStream os = permissions.isEmpty() ? indexLocation.getOutputStream()
+                                                 : indexLocation.getOutputStream(permissions)) {
+      write(os);
+    }
+  }
+
+  private static int toLevelBit(Level level) {
+    for (int i = 0; i < LEVELS.length; i++) {
+      if (LEVELS[i].equals(level)) {
+        return 1 << i;
+      }
+    }
+    // Unknown level, be conservative and treat it as any level
+    return ALL_LEVELS;
+  }
+
+  /**
+   * An index entry, covering the events from a sync position of the log file up to the position of the next entry,
+   * or to the end of the file for the last entry.
+   */
+  public static final class Entry {
+    private final long position;
+    private final long minTimestamp;
+    private final long maxTimestamp;
+    private final int levelBits;
+
+    Entry(long position, long minTimestamp, long maxTimestamp, int levelBits) {
+      this.position = position;
+      this.minTimestamp = minTimestamp;
+      this.maxTimestamp = maxTimestamp;
+      this.levelBits = levelBits;
+    }
+
+    /**
+     * Returns the sync position in the log file where this entry starts.
+     */
+    public long getPosition() {
+      return position;
+    }
+
+    public long getMinTimestamp() {
+      return minTimestamp;
+    }
+
+    public long getMaxTimestamp() {
+      return maxTimestamp;
+    }
+
+    /**
+     * Returns the levels of the events covered by this entry.
+     */
+    public Set<Level> getLevels() {
+      ImmutableSet.Builder<Level> levels = ImmutableSet.builder();
+      for (int i = 0; i < LEVELS.length; i++) {
+        if ((levelBits & (1 << i)) != 0) {
+          levels.add(LEVELS[i]);
+        }
+      }
+      return levels.build();
+    }
+
+    /**
+     * Returns {@code true} if any event covered by this entry may match the given filter.
+     */
+    public boolean mayMatch(Filter filter) {
+      return filter.matchAnyLevel(getLevels());
+    }
+
+    @Override
+    public String toString() {
+      return Objects.toStringHelper(this)
+        .add("position", position)
+        .add("minTimestamp", minTimestamp)
+        .add("maxTimestamp", maxTimestamp)
+        .add("levels", getLevels())
+        .toString();
+    }
+  }
+
+  /**
+   * Builder for {@link LogFileIndex}, fed with events in the order they are written to the log file.
+   */
+  public static final class Builder {
+    private final List<Entry> entries = new ArrayList<>();
+
+    private long position;
+    private long minTimestamp;
+    private long maxTimestamp;
+    private int levelBits;
+    private int events;
+
+    /**
+     * Creates a builder.
+     *
+     * @param position the sync position of the log file where the first entry starts
+     */
+    public Builder(long position) {
+      reset(position);
+    }
+
+    /**
+     * Adds an event to the current entry.
+     */
+    public void add(ILoggingEvent event) {
+      minTimestamp = Math.min(minTimestamp, event.getTimeStamp());
+      maxTimestamp = Math.max(maxTimestamp, event.getTimeStamp());
+      levelBits |= toLevelBit(event.getLevel());
+      events++;
+    }
+
+    /**
+     * Returns the number of events added to the current entry.
+     */
+    public int getEventCount() {
+      return events;
+    }
+
+    /**
+     * Ends the current entry and starts a new one.
+     *
+     * @param position the sync position of the log file where the new entry starts
+     */
+    public void sync(long position) {
+      if (position == this.position) {
+        return;
+      }
+      if (events > 0) {
+        entries.add(new Entry(this.position, minTimestamp, maxTimestamp, levelBits));
+      }
+      reset(position);
+    }
+
+    /**
+     * Returns the {@link LogFileIndex} of all entries ended so far.
+     */
+    public LogFileIndex build() {
+      return new LogFileIndex(new ArrayList<>(entries));
+    }
+
+    private void reset(long position) {
+      this.position = position;
+      this.minTimestamp = Long.MAX_VALUE;
+      this.maxTimestamp = Long.MIN_VALUE;
+      this.levelBits = 0;
+      this.events = 0;
+    }
+  }
+}
@@ -50,6 +50,7 @@ import java.util.LinkedList;
 import java.util.List;
 import java.util.NoSuchElementException;
 import java.util.concurrent.Callable;
+import javax.annotation.Nullable;
 
 /**
  * LogLocation representing a log file and methods to read the file's contents.
@@ -159,6 +160,13 @@ public class LogLocation {
           return ImmutableList.of();
         }
 
+        LogFileIndex index = readIndex();
+        if (index != null) {
+          count = readLogPrev(dataFileReader, index, logFilter, fromTimeMs, maxEvents, logSegments);
+          int skip = count >= maxEvents ? count - maxEvents : 0;
+          return Lists.newArrayList(Iterables.skip(Iterables.concat(logSegments), skip));
+        }
+
         // Calculate skipLen based on fileLength
         long length = location.length();
         LOG.trace("File length {} {}", location, length);
@@ -206,6 +214,42 @@ public class LogLocation {
     return Lists.newArrayList(Iterables.skip(Iterables.concat(logSegments), skip));
   }
 
+  /**
+   * Reads log events backward using the index of the file, skipping index entries that can't have events to return.
+   *
+   * @return number of log events read
+   */
+  private int readLogPrev(DataFileReader<GenericRecord> dataFileReader, LogFileIndex index, Filter logFilter,
+                          long fromTimeMs, int maxEvents, Deque<Collection<LogEvent>> logSegments) throws IOException {
+    List<LogFileIndex.Entry> entries = index.getEntries();
+    int count = 0;
+    for (int i = entries.size() - 1; i >= 0 && count < maxEvents; i--) {
+      LogFileIndex.Entry entry = entries.get(i);
+      if (entry.getMinTimestamp() > fromTimeMs || !entry.mayMatch(logFilter)) {
+        continue;
+      }
+
+      long endPosition = i + 1 < entries.size() ? entries.get(i + 1).getPosition() : -1;
+      dataFileReader.seek(entry.getPosition());
+      List<LogEvent> logSegment = new ArrayList<>();
+      while (dataFileReader.hasNext() && (endPosition == -1 || dataFileReader.previousSync() < endPosition)) {
+        ILoggingEvent loggingEvent = new LoggingEvent(dataFileReader.next());
+        loggingEvent.prepareForDeferredProcessing();
+        if (loggingEvent.getTimeStamp() <= fromTimeMs && logFilter.match(loggingEvent)) {
+          logSegment.add(new LogEvent(loggingEvent,
+                                      new LogOffset(LogOffset.INVALID_KAFKA_OFFSET, loggingEvent.getTimeStamp())));
+        }
+      }
+
+      if (!logSegment.isEmpty()) {
+        logSegments.addFirst(logSegment);
+        count += logSegment.size();
+      }
+      LOG.trace("Read log events {} from index entry {}", count, entry);
+    }
+    return count;
+  }
+
   /**
    *  Read current block in Avro file from current block sync marker to next block sync marker
    */
@@ -259,6 +303,9 @@ public class LogLocation {
     private final long maxEvents;
 
     private DataFileReader<GenericRecord> dataFileReader;
+    // Index entries of the file, or null if the file has no index
+    private List<LogFileIndex.Entry> indexEntries;
+    private int entryIdx;
 
     private ILoggingEvent loggingEvent;
     private GenericRecord datum;
@@ -276,7 +323,13 @@ public class LogLocation {
 
       try {
         dataFileReader = createReader();
-        if (dataFileReader.hasNext()) {
+        LogFileIndex index = readIndex();
+        if (index != null) {
+          // Seek directly to the first index entry that can have events to return
+          indexEntries = index.getEntries();
+          entryIdx = -1;
+          seekToNextEntry();
+        } else if (dataFileReader.hasNext()) {
           datum = dataFileReader.next();
           loggingEvent = new LoggingEvent(datum);
           loggingEvent.prepareForDeferredProcessing();
@@ -315,7 +368,7 @@ public class LogLocation {
     private void computeNext() {
       try {
         // read events from file
-        while (next == null && dataFileReader.hasNext()) {
+        while (next == null && hasNextEvent()) {
           loggingEvent = new LoggingEvent(dataFileReader.next(datum));
           loggingEvent.prepareForDeferredProcessing();
 
@@ -338,6 +391,47 @@ public class LogLocation {
       }
     }
 
+    /**
+     * Returns whether there are more events to read. If the file has an index, skips the index entries
+     * that can't have events to return.
+     */
+    private boolean hasNextEvent() throws IOException {
+      if (indexEntries == null) {
+        return dataFileReader.hasNext();
+      }
+      while (entryIdx < indexEntries.size() && dataFileReader.hasNext()) {
+        // Find the entry of the block being read
+        long position = dataFileReader.previousSync();
+        while (entryIdx + 1 < indexEntries.size() && indexEntries.get(entryIdx + 1).getPosition() <= position) {
+          entryIdx++;
+        }
+        if (canSkip(indexEntries.get(entryIdx))) {
+          seekToNextEntry();
+        } else {
+          return true;
+        }
+      }
+      return false;
+    }
+
+    /**
+     * Seeks to the first index entry after the current one that can have events to return.
+     */
+    private void seekToNextEntry() throws IOException {
+      entryIdx++;
+      while (entryIdx < indexEntries.size() && canSkip(indexEntries.get(entryIdx))) {
+        entryIdx++;
+      }
+      if (entryIdx < indexEntries.size()) {
+        LOG.trace("Seeking to index entry {}", indexEntries.get(entryIdx));
+        dataFileReader.seek(indexEntries.get(entryIdx).getPosition());
+      }
+    }
+
+    private boolean canSkip(LogFileIndex.Entry entry) {
+      return entry.getMaxTimestamp() < fromTimeMs || !entry.mayMatch(logFilter);
+    }
+
     @Override
     public void close() {
       try {
@@ -371,6 +465,25 @@ public class LogLocation {
     }
   }
 
+  /**
+   * Reads the {@link LogFileIndex} of this log file.
+   *
+   * @return the index or {@code null} if the file has no index or the index can't be read
+   */
+  @Nullable
+  private LogFileIndex readIndex() {
+    // Indexes are only written by the new logging framework
+    if (!VERSION_1.equals(frameworkVersion)) {
+      return null;
+    }
+    try {
+      return LogFileIndex.read(location);
+    } catch (Exception e) {
+      READ_FAILURE_LOG.warn("Failed to read index of log file {}. Reading without index.", location, e);
+      return null;
+    }
+  }
+
   private DataFileReader<GenericRecord> createReader() throws IOException {
     boolean shouldImpersonate = this.getFrameworkVersion().equals(VERSION_0);
     return new DataFileReader<>(new LocationSeekableInput(location, namespaceId, impersonator, shouldImpersonate),
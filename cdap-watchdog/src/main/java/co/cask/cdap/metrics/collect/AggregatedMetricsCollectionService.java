@@ -20,10 +20,13 @@ import co.cask.cdap.api.metrics.MetricValue;
 import co.cask.cdap.api.metrics.MetricValues;
 import co.cask.cdap.api.metrics.MetricsCollectionService;
 import co.cask.cdap.api.metrics.MetricsContext;
+import co.cask.cdap.api.metrics.MetricsCounter;
 import co.cask.cdap.common.conf.Constants;
 import com.google.common.cache.CacheBuilder;
 import com.google.common.cache.CacheLoader;
 import com.google.common.cache.LoadingCache;
+import com.google.common.cache.RemovalListener;
+import com.google.common.cache.RemovalNotification;
 import com.google.common.collect.AbstractIterator;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Lists;
@@ -62,12 +65,29 @@ public abstract class AggregatedMetricsCollectionService extends AbstractExecuti
       // emitters.get() is used to increment/gauge and that would reset the access time,
       // and since runOneIteration() emits all the metrics for the scheduled duration (every 1 second)
       // there wont be any loss of emitter entries.
+      // Increments through MetricsCounter don't access the cache, hence getMetrics() resets the access time of
+      // emitters that have values, and the removalListener moves values that raced with the eviction.
       .expireAfterAccess(CACHE_EXPIRE_MINUTES, TimeUnit.MINUTES)
+      .removalListener(new RemovalListener<Map<String, String>, LoadingCache<String, AggregatedMetricsEmitter>>() {
+        @Override
+        public void onRemoval(RemovalNotification<Map<String, String>,
+                                                  LoadingCache<String, AggregatedMetricsEmitter>> notification) {
+          for (Map.Entry<String, AggregatedMetricsEmitter> entry : notification.getValue().asMap().entrySet()) {
+            evict(notification.getKey(), entry.getKey(), entry.getValue());
+          }
+        }
+      })
       .build(new CacheLoader<Map<String, String>, LoadingCache<String, AggregatedMetricsEmitter>>() {
         @Override
-        public LoadingCache<String, AggregatedMetricsEmitter> load(Map<String, String> tags) throws Exception {
-          return CacheBuilder.newBuilder().expireAfterAccess(CACHE_EXPIRE_MINUTES, TimeUnit.MINUTES).
-            build(new CacheLoader<String, AggregatedMetricsEmitter>() {
+        public LoadingCache<String, AggregatedMetricsEmitter> load(final Map<String, String> tags) throws Exception {
+          return CacheBuilder.newBuilder().expireAfterAccess(CACHE_EXPIRE_MINUTES, TimeUnit.MINUTES)
+            .removalListener(new RemovalListener<String, AggregatedMetricsEmitter>() {
+              @Override
+              public void onRemoval(RemovalNotification<String, AggregatedMetricsEmitter> notification) {
+                evict(tags, notification.getKey(), notification.getValue());
+              }
+            })
+            .build(new CacheLoader<String, AggregatedMetricsEmitter>() {
               @Override
               public AggregatedMetricsEmitter load(String metricName) throws Exception {
                 return new AggregatedMetricsEmitter(metricName);
@@ -185,22 +205,33 @@ public abstract class AggregatedMetricsCollectionService extends AbstractExecuti
       protected MetricValues computeNext() {
         while (iterator.hasNext()) {
           Map.Entry<Map<String, String>, LoadingCache<String, AggregatedMetricsEmitter>> entry = iterator.next();
-          Map<String, AggregatedMetricsEmitter> metricEmitters = entry.getValue().asMap();
+          LoadingCache<String, AggregatedMetricsEmitter> emitterCache = entry.getValue();
+          Map<String, AggregatedMetricsEmitter> metricEmitters = emitterCache.asMap();
           // +1 because we add extra metric about how many metric values did we emit in this context (see below)
           List<MetricValue> metricValues = Lists.newArrayListWithCapacity(metricEmitters.size() + 1);
           for (Map.Entry<String, AggregatedMetricsEmitter> emitterEntry : metricEmitters.entrySet()) {
+            int size = metricValues.size();
+            // a metric can have both a distribution and a counter or gauge value
+            MetricValue distributionValue = emitterEntry.getValue().emitDistribution();
+            if (distributionValue != null) {
+              metricValues.add(distributionValue);
+            }
             MetricValue metricValue = emitterEntry.getValue().emit();
             // skip increment by 0
-            if (metricValue.getType() == MetricType.COUNTER && metricValue.getValue() == 0) {
-              continue;
+            if (metricValue.getType() != MetricType.COUNTER || metricValue.getValue() != 0) {
+              metricValues.add(metricValue);
+            }
+            if (metricValues.size() > size) {
+              // reset the access time, since increments through MetricsCounter don't access the cache
+              emitterCache.getIfPresent(emitterEntry.getKey());
             }
-            metricValues.add(metricValue);
           }
 
           if (metricValues.isEmpty()) {
             // skip if there are no metric values to send
             continue;
           }
+          emitters.getIfPresent(entry.getKey());
 
           // number of emitted metrics
           metricValues.add(new MetricValue("metrics.emitted.count", MetricType.COUNTER, metricValues.size() + 1));
@@ -213,6 +244,40 @@ public abstract class AggregatedMetricsCollectionService extends AbstractExecuti
     };
   }
 
+  /**
+   * Returns the {@link AggregatedMetricsEmitter} for the given metric.
+   */
+  private AggregatedMetricsEmitter getEmitter(Map<String, String> tags, String metricName) {
+    return emitters.getUnchecked(tags).getUnchecked(metricName);
+  }
+
+  /**
+   * Increments the given {@link AggregatedMetricsEmitter}. If the emitter was evicted concurrently,
+   * the value is moved to the current emitter of the metric so that it won't get lost.
+   *
+   * @return the emitter to use for subsequent increments
+   */
+  private AggregatedMetricsEmitter increment(Map<String, String> tags, String metricName,
+                                             AggregatedMetricsEmitter emitter, long value) {
+    emitter.increment(value);
+    while (emitter.isEvicted()) {
+      long remaining = emitter.evict();
+      emitter = getEmitter(tags, metricName);
+      emitter.increment(remaining);
+    }
+    return emitter;
+  }
+
+  /**
+   * Evicts the given {@link AggregatedMetricsEmitter}, moving the value that is not yet emitted to a new emitter.
+   */
+  private void evict(Map<String, String> tags, String metricName, AggregatedMetricsEmitter emitter) {
+    long remaining = emitter.evict();
+    if (remaining != 0) {
+      increment(tags, metricName, getEmitter(tags, metricName), remaining);
+    }
+  }
+
   private CacheLoader<Map<String, String>, MetricsContext> createCollectorLoader() {
     return new CacheLoader<Map<String, String>, MetricsContext>() {
       @Override
@@ -232,12 +297,22 @@ public abstract class AggregatedMetricsCollectionService extends AbstractExecuti
 
     @Override
     public void increment(String metricName, long value) {
-      emitters.getUnchecked(tags).getUnchecked(metricName).increment(value);
+      AggregatedMetricsCollectionService.this.increment(tags, metricName, getEmitter(tags, metricName), value);
     }
 
     @Override
     public void gauge(String metricName, long value) {
-      emitters.getUnchecked(tags).getUnchecked(metricName).gauge(value);
+      getEmitter(tags, metricName).gauge(value);
+    }
+
+    @Override
+    public void distribution(String metricName, long value) {
+      getEmitter(tags, metricName).distribution(value);
+    }
+
+    @Override
+    public MetricsCounter counter(String metricName) {
+      return new MetricsCounterImpl(tags, metricName);
     }
 
     @Override
@@ -264,4 +339,31 @@ public abstract class AggregatedMetricsCollectionService extends AbstractExecuti
       return collectors.getUnchecked(allTags);
     }
   }
+
+  /**
+   * A {@link MetricsCounter} that holds on to the {@link AggregatedMetricsEmitter} of the metric, so that
+   * incrementing it doesn't need to look up the emitter from the caches.
+   */
+  private final class MetricsCounterImpl implements MetricsCounter {
+
+    private final Map<String, String> tags;
+    private final String metricName;
+    private volatile AggregatedMetricsEmitter emitter;
+
+    private MetricsCounterImpl(Map<String, String> tags, String metricName) {
+      this.tags = tags;
+      this.metricName = metricName;
+      this.emitter = getEmitter(tags, metricName);
+    }
+
+    @Override
+    public void increment(long value) {
+      AggregatedMetricsEmitter emitter = this.emitter;
+      AggregatedMetricsEmitter current = AggregatedMetricsCollectionService.this.increment(tags, metricName,
+                                                                                          emitter, value);
+      if (current != emitter) {
+        this.emitter = current;
+      }
+    }
+  }
 }
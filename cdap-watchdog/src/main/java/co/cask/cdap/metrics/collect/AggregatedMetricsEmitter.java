@@ -15,26 +15,35 @@
  */
 package co.cask.cdap.metrics.collect;
 
+import co.cask.cdap.api.dataset.lib.cube.Distribution;
 import co.cask.cdap.api.metrics.MetricType;
 import co.cask.cdap.api.metrics.MetricValue;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.util.concurrent.atomic.AtomicBoolean;
-import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import javax.annotation.Nullable;
 
 /**
  * {@link MetricsEmitter} that aggregates  values for a metric
  * during collection and emit the aggregated value when emit.
+ * Increments are lock-free and striped across threads, and are taken as a snapshot when emit.
+ * Values added through {@link #distribution(long)} are aggregated into a {@link Distribution}, which is emitted
+ * separately through {@link #emitDistribution()}.
  */
 final class AggregatedMetricsEmitter implements MetricsEmitter {
   private static final Logger LOG = LoggerFactory.getLogger(AggregatedMetricsEmitter.class);
 
   private final String name;
-  // metric value
-  private final AtomicLong value;
-  // specifies if the metric type is gauge or counter
-  private final AtomicBoolean gaugeUsed;
+  // counter value, incremented without locking
+  private final LongAdder value;
+  // last gauge value and whether the metric type is gauge or counter, guarded by this emitter instance
+  private long gaugeValue;
+  private boolean gaugeUsed;
+  // values collected for distribution, guarded by this emitter instance
+  private Distribution distribution;
+  // set when this emitter is no longer used for collection
+  private volatile boolean evicted;
 
   AggregatedMetricsEmitter(String name) {
     if (name == null || name.isEmpty()) {
@@ -42,25 +51,75 @@ final class AggregatedMetricsEmitter implements MetricsEmitter {
     }
 
     this.name = name;
-    this.value = new AtomicLong();
-    this.gaugeUsed = new AtomicBoolean(false);
+    this.value = new LongAdder();
+    this.distribution = new Distribution();
   }
 
   void increment(long value) {
-    this.value.addAndGet(value);
+    this.value.add(value);
   }
 
+  synchronized void distribution(long value) {
+    distribution.add(value);
+  }
+
+  synchronized void gauge(long value) {
+    // increments before the gauge are replaced by the gauge value
+    drain();
+    gaugeValue = value;
+    gaugeUsed = true;
+  }
+
+  /**
+   * Returns {@code true} if this emitter has been evicted by {@link #evict()}.
+   */
+  boolean isEvicted() {
+    return evicted;
+  }
+
+  /**
+   * Marks this emitter as evicted and returns the counter value that has not been emitted.
+   * The caller is responsible for collecting the returned value through another emitter.
+   * It can be called multiple times to collect increments that happened concurrently with the eviction.
+   */
+  synchronized long evict() {
+    evicted = true;
+    return drain();
+  }
+
+  /**
+   * Emits the values collected for distribution since the last call.
+   *
+   * @return the distribution {@link MetricValue}, or {@code null} if no value was collected
+   */
+  @Nullable
+  synchronized MetricValue emitDistribution() {
+    if (distribution.isEmpty()) {
+      return null;
+    }
+    Distribution distribution = this.distribution;
+    this.distribution = new Distribution();
+    return new MetricValue(name, distribution);
+  }
 
   @Override
-  public MetricValue emit() {
-    // todo CDAP-2195 - potential race condition , reseting value and type has to be done together
-    long value = this.value.getAndSet(0);
-    MetricType type = gaugeUsed.getAndSet(false) ? MetricType.GAUGE : MetricType.COUNTER;
-    return new MetricValue(name, type, value);
+  public synchronized MetricValue emit() {
+    long value = drain();
+    if (!gaugeUsed) {
+      return new MetricValue(name, MetricType.COUNTER, value);
+    }
+    gaugeUsed = false;
+    return new MetricValue(name, MetricType.GAUGE, gaugeValue + value);
   }
 
-  public void gauge(long value) {
-    this.value.set(value);
-    this.gaugeUsed.set(true);
+  /**
+   * Takes a snapshot of the counter value and subtracts it from the counter. Unlike {@link LongAdder#sumThenReset()},
+   * increments that happen concurrently are not lost, but are kept in the counter.
+   * Callers must hold the lock of this emitter instance.
+   */
+  private long drain() {
+    long value = this.value.sum();
+    this.value.add(-value);
+    return value;
   }
 }
@@ -22,6 +22,7 @@ import co.cask.cdap.common.conf.Constants;
 import co.cask.cdap.common.id.Id;
 import co.cask.cdap.metrics.process.MessagingMetricsProcessorService;
 import co.cask.cdap.metrics.process.MessagingMetricsProcessorServiceFactory;
+import co.cask.cdap.metrics.store.MetricsCompactionService;
 import com.google.common.base.Throwables;
 import com.google.common.collect.ImmutableMap;
 import com.google.inject.Inject;
@@ -51,6 +52,7 @@ public final class LocalMetricsCollectionService extends AggregatedMetricsCollec
   private ScheduledExecutorService scheduler;
   private MessagingMetricsProcessorServiceFactory messagingMetricsProcessorFactory;
   private MessagingMetricsProcessorService messagingMetricsProcessor;
+  private MetricsCompactionService compactionService;
 
   @Inject
   LocalMetricsCollectionService(CConfiguration cConf, MetricStore metricStore) {
@@ -92,6 +94,9 @@ public final class LocalMetricsCollectionService extends AggregatedMetricsCollec
                                             Constants.Metrics.RETENTION_SECONDS_SUFFIX);
     // Try right away if there's anything to cleanup, we will then schedule based on the min retention interval
     scheduler.schedule(createCleanupTask(secRetentionSecs), 1, TimeUnit.SECONDS);
+
+    compactionService = new MetricsCompactionService(cConf, metricStore);
+    compactionService.startAndWait();
   }
 
   @Override
@@ -99,6 +104,9 @@ public final class LocalMetricsCollectionService extends AggregatedMetricsCollec
     if (scheduler != null) {
       scheduler.shutdownNow();
     }
+    if (compactionService != null) {
+      compactionService.stopAndWait();
+    }
 
     // Shutdown the TMS metrics processor if present. This will flush all buffered metrics that were read from TMS
     Exception failure = null;
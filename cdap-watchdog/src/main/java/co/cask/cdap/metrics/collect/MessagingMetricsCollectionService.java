@@ -90,7 +90,8 @@ public class MessagingMetricsCollectionService extends AggregatedMetricsCollecti
     while (metrics.hasNext()) {
       encoderOutputStream.reset();
       MetricValues metricValues = metrics.next();
-      // Encode MetricValues into bytes
+      // Encode MetricValues into bytes, after the payload version
+      encoderOutputStream.write(MetricValuesPayload.VERSION);
       recordWriter.encode(metricValues, encoder);
       TopicPayload topicPayload = topicPayloads.get(Math.abs(metricValues.getTags().hashCode() % size));
       // Calculate the topic number with the hashcode of MetricValues' tags and store the encoded payload in the
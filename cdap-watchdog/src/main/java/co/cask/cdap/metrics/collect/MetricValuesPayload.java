@@ -0,0 +1,64 @@
+/*
+ * Copyright © 2018 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.metrics.collect;
+
+import co.cask.cdap.api.data.schema.Schema;
+import co.cask.cdap.api.metrics.MetricValue;
+import co.cask.cdap.api.metrics.MetricValues;
+
+/**
+ * Format of the {@link MetricValues} payloads published to TMS.
+ *
+ * A payload starts with a version byte, followed by the {@link MetricValues} encoded with the schema of that version.
+ * Payloads published before payloads were versioned have no version byte and are encoded with
+ * {@link #UNVERSIONED_SCHEMA}. The first field of {@link MetricValues} is the nullable {@code metrics} field in
+ * every schema, hence those payloads start with its union index, which is encoded as an even byte. Versions are odd,
+ * so that the two kinds of payloads can be told apart.
+ */
+public final class MetricValuesPayload {
+
+  /**
+   * Version of payloads encoded with the current schema of {@link MetricValues}, in which {@link MetricValue} carries
+   * a distribution. A change to that schema needs a new version.
+   */
+  public static final byte VERSION = 0x01;
+
+  /**
+   * Schema of unversioned payloads, in which {@link MetricValue} has no distribution.
+   */
+  public static final Schema UNVERSIONED_SCHEMA = Schema.recordOf(
+    MetricValues.class.getName(),
+    Schema.Field.of("metrics", Schema.nullableOf(Schema.arrayOf(Schema.nullableOf(Schema.recordOf(
+      MetricValue.class.getName(),
+      Schema.Field.of("name", Schema.nullableOf(Schema.of(Schema.Type.STRING))),
+      Schema.Field.of("type", Schema.nullableOf(Schema.enumWith("COUNTER", "GAUGE"))),
+      Schema.Field.of("value", Schema.of(Schema.Type.LONG))))))),
+    Schema.Field.of("tags", Schema.nullableOf(Schema.mapOf(Schema.of(Schema.Type.STRING),
+                                                           Schema.nullableOf(Schema.of(Schema.Type.STRING))))),
+    Schema.Field.of("timestamp", Schema.of(Schema.Type.LONG)));
+
+  /**
+   * Returns whether the given payload starts with a version byte.
+   */
+  public static boolean isVersioned(byte[] payload) {
+    return payload.length > 0 && (payload[0] & 1) != 0;
+  }
+
+  private MetricValuesPayload() {
+    // no-op
+  }
+}
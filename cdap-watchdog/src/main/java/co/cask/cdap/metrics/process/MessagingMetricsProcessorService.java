@@ -19,7 +19,6 @@ package co.cask.cdap.metrics.process;
 import co.cask.cdap.api.common.Bytes;
 import co.cask.cdap.api.data.schema.Schema;
 import co.cask.cdap.api.data.schema.UnsupportedTypeException;
-import co.cask.cdap.api.dataset.lib.CloseableIterator;
 import co.cask.cdap.api.metrics.MetricStore;
 import co.cask.cdap.api.metrics.MetricType;
 import co.cask.cdap.api.metrics.MetricValue;
@@ -35,9 +34,10 @@ import co.cask.cdap.common.logging.Loggers;
 import co.cask.cdap.data2.dataset2.DatasetFramework;
 import co.cask.cdap.internal.io.DatumReaderFactory;
 import co.cask.cdap.internal.io.SchemaGenerator;
-import co.cask.cdap.messaging.MessageFetcher;
 import co.cask.cdap.messaging.MessagingService;
+import co.cask.cdap.messaging.MultiTopicMessageFetcher;
 import co.cask.cdap.messaging.data.RawMessage;
+import co.cask.cdap.metrics.collect.MetricValuesPayload;
 import co.cask.cdap.metrics.store.MetricDatasetFactory;
 import co.cask.cdap.proto.id.DatasetId;
 import co.cask.cdap.proto.id.NamespaceId;
@@ -58,6 +58,7 @@ import java.util.ArrayList;
 import java.util.Deque;
 import java.util.HashMap;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
@@ -96,7 +97,7 @@ public class MessagingMetricsProcessorService extends AbstractExecutionThreadSer
   private final AtomicBoolean persistingFlag;
   // maximum number of milliseconds to sleep between each run of fetching & processing new metrics
   private final int metricsProcessIntervalMillis;
-  private final List<ProcessMetricsThread> processMetricsThreads;
+  private volatile ProcessMetricsThread processMetricsThread;
   private final String processMetricName;
   private final int instanceId;
   private final CConfiguration cConfiguration;
@@ -161,7 +162,6 @@ public class MessagingMetricsProcessorService extends AbstractExecutionThreadSer
     this.queueSize = cConf.getInt(Constants.Metrics.QUEUE_SIZE);
     this.fetcherLimit = Math.max(1, queueSize / topicNumbers.size()); // fetcherLimit is at least one
     this.metricsContextMap = metricsContext.getTags();
-    this.processMetricsThreads = new ArrayList<>();
     this.metricsFromAllTopics = new LinkedBlockingDeque<>(queueSize);
     this.topicProcessMetaMap = new ConcurrentHashMap<>();
     this.persistingFlag = new AtomicBoolean();
@@ -207,6 +207,7 @@ public class MessagingMetricsProcessorService extends AbstractExecutionThreadSer
       return;
     }
 
+    Map<TopicIdMetaKey, TopicProcessMeta> persistedMetas = new LinkedHashMap<>();
     for (TopicId topic : metricsTopics) {
       TopicProcessMeta topicProcessMeta = null;
       TopicIdMetaKey topicRowKey = new TopicIdMetaKey(topic);
@@ -215,16 +216,16 @@ public class MessagingMetricsProcessorService extends AbstractExecutionThreadSer
       } catch (Exception e) {
         LOG.warn("Cannot retrieve last processed MessageId for topic: {}", topic, e);
       }
-      processMetricsThreads.add(new ProcessMetricsThread(topicRowKey, topicProcessMeta));
+      persistedMetas.put(topicRowKey, topicProcessMeta);
     }
+    ProcessMetricsThread thread = new ProcessMetricsThread(persistedMetas);
+    processMetricsThread = thread;
 
     if (!isRunning()) {
       return;
     }
 
-    for (ProcessMetricsThread thread : processMetricsThreads) {
-      thread.start();
-    }
+    thread.start();
 
     if (instanceId == 0) {
       if (!skipMigration) {
@@ -256,13 +257,11 @@ public class MessagingMetricsProcessorService extends AbstractExecutionThreadSer
       }
     }
 
-    for (ProcessMetricsThread thread : processMetricsThreads) {
-      try {
-        thread.join();
-      } catch (InterruptedException e) {
-        LOG.info("Thread {} is being terminated while waiting for it to finish.", thread.getName());
-        Thread.currentThread().interrupt();
-      }
+    try {
+      thread.join();
+    } catch (InterruptedException e) {
+      LOG.info("Thread {} is being terminated while waiting for it to finish.", thread.getName());
+      Thread.currentThread().interrupt();
     }
 
     try {
@@ -275,7 +274,7 @@ public class MessagingMetricsProcessorService extends AbstractExecutionThreadSer
       Thread.currentThread().interrupt();
     }
 
-    // Persist metricsFromAllTopics and messageId's after all ProcessMetricsThread's complete.
+    // Persist metricsFromAllTopics and messageId's after the ProcessMetricsThread completes.
     // No need to make a copy of metricsFromAllTopics and topicProcessMetaMap because no thread is writing to them
     persistMetricsAndTopicProcessMeta(metricsFromAllTopics, topicProcessMetaMap);
   }
@@ -284,7 +283,8 @@ public class MessagingMetricsProcessorService extends AbstractExecutionThreadSer
   protected void triggerShutdown() {
     LOG.info("Stopping Metrics Processing Service.");
     stopping = true;
-    for (ProcessMetricsThread thread : processMetricsThreads) {
+    ProcessMetricsThread thread = processMetricsThread;
+    if (thread != null) {
       thread.interrupt();
     }
     // set stopping to true for helper class that retries the get/hasInstance/delete dataset
@@ -364,33 +364,22 @@ public class MessagingMetricsProcessorService extends AbstractExecutionThreadSer
                        metricsProcessedCount, lastMetricTime);
   }
 
+  /**
+   * Fetches metrics from all the topics of this processor with one multi-topic fetch per run, so that the fetching
+   * cost scales with the number of processors rather than the number of topics.
+   */
   private class ProcessMetricsThread extends Thread {
-    private final TopicIdMetaKey topicIdMetaKey;
+    private final List<TopicState> topics;
     private final PayloadInputStream payloadInput;
     private final BinaryDecoder decoder;
-    private final String oldestTsMetricName;
-    private final String latestTsMetricName;
-    private long lastMetricTimeSecs;
 
-    ProcessMetricsThread(TopicIdMetaKey topicIdMetaKey, @Nullable TopicProcessMeta topicProcessMeta) {
-      super(String.format("ProcessMetricsThread-%s", topicIdMetaKey.getTopicId()));
+    ProcessMetricsThread(Map<TopicIdMetaKey, TopicProcessMeta> persistedMetas) {
+      super(String.format("ProcessMetricsThread-%d", instanceId));
       setDaemon(true);
-      oldestTsMetricName = String.format("%s.topic.%s.oldest.delay.ms",
-                                                metricsPrefixForDelayMetrics, topicIdMetaKey.getTopicId().getTopic());
-      latestTsMetricName = String.format("%s.topic.%s.latest.delay.ms",
-                                                metricsPrefixForDelayMetrics, topicIdMetaKey.getTopicId().getTopic());
-      if (topicProcessMeta != null && topicProcessMeta.getMessageId() != null) {
-        // message-id already for this topic in metaTable, we create a new TopicProcessMeta with existing values,
-        // add metric names and put it in map
-        byte[] persistedMessageId = topicProcessMeta.getMessageId();
-        topicProcessMetaMap.put(topicIdMetaKey,
-                                new TopicProcessMeta(persistedMessageId, topicProcessMeta.getOldestMetricsTimestamp(),
-                                                     topicProcessMeta.getLatestMetricsTimestamp(),
-                                                     topicProcessMeta.getMessagesProcessed(),
-                                                     topicProcessMeta.getLastProcessedTimestamp(),
-                                                     oldestTsMetricName, latestTsMetricName));
+      this.topics = new ArrayList<>();
+      for (Map.Entry<TopicIdMetaKey, TopicProcessMeta> entry : persistedMetas.entrySet()) {
+        topics.add(new TopicState(entry.getKey(), entry.getValue()));
       }
-      this.topicIdMetaKey = topicIdMetaKey;
       this.payloadInput = new PayloadInputStream();
       this.decoder = new BinaryDecoder(payloadInput);
     }
@@ -412,7 +401,22 @@ public class MessagingMetricsProcessorService extends AbstractExecutionThreadSer
     }
 
     /**
-     * Fetch at most {@code fetcherLimit} metrics to process, and calculate the estimated sleep time
+     * Decodes a {@link MetricValues} payload, which is either versioned or is from before payloads were versioned.
+     */
+    private MetricValues decodeMetricValues(byte[] payload) throws IOException {
+      payloadInput.reset(payload);
+      if (!MetricValuesPayload.isVersioned(payload)) {
+        return metricReader.read(decoder, MetricValuesPayload.UNVERSIONED_SCHEMA);
+      }
+      int version = payloadInput.read();
+      if (version != MetricValuesPayload.VERSION) {
+        throw new IOException("Unsupported metrics payload version " + version);
+      }
+      return metricReader.read(decoder, metricSchema);
+    }
+
+    /**
+     * Fetch at most {@code fetcherLimit} metrics from each topic to process, and calculate the estimated sleep time
      * before the next run with the best effort to avoid accumulating unprocessed metrics
      *
      * @return the estimated sleep time before the next run with the best effort to avoid accumulating
@@ -421,66 +425,34 @@ public class MessagingMetricsProcessorService extends AbstractExecutionThreadSer
     private long processMetrics() {
       long startTime = System.currentTimeMillis();
       try {
-        MessageFetcher fetcher = messagingService.prepareFetch(topicIdMetaKey.getTopicId());
-        fetcher.setLimit(fetcherLimit);
-        TopicProcessMeta persistMetaInfo = topicProcessMetaMap.get(topicIdMetaKey);
-        byte[] lastMessageId = null;
-
-        if (persistMetaInfo != null) {
-          lastMessageId = persistMetaInfo.getMessageId();
-        }
-
-        if (lastMessageId != null) {
-          fetcher.setStartMessage(lastMessageId, false);
-        } else {
-          fetcher.setStartTime(0L);
-        }
-
-        byte[] currentMessageId = null;
-        TopicProcessMeta localTopicProcessMeta =
-          new TopicProcessMeta(lastMessageId, Long.MAX_VALUE, Long.MIN_VALUE, 0,
-                               TimeUnit.MILLISECONDS.toSeconds(System.currentTimeMillis()),
-                               oldestTsMetricName, latestTsMetricName);
-        try (CloseableIterator<RawMessage> iterator = fetcher.fetch()) {
-          while (iterator.hasNext() && isRunning()) {
-            RawMessage input = iterator.next();
-            try {
-              payloadInput.reset(input.getPayload());
-              MetricValues metricValues = metricReader.read(decoder, metricSchema);
-              if (!metricsFromAllTopics.offer(metricValues)) {
-                break;
-              }
-              lastMetricTimeSecs = metricValues.getTimestamp();
-              currentMessageId = input.getId();
-              if (LOG.isTraceEnabled()) {
-                LOG.trace("Received message {} with metrics: {}", Bytes.toStringBinary(currentMessageId), metricValues);
-              }
-              localTopicProcessMeta.updateTopicProcessingStats(currentMessageId, lastMetricTimeSecs);
-            } catch (IOException e) {
-              LOG.warn("Failed to decode message to MetricValue. Skipped. {}", e.getMessage());
-            }
+        MultiTopicMessageFetcher fetcher = messagingService.prepareMultiTopicFetch().setLimit(fetcherLimit);
+        for (TopicState topic : topics) {
+          TopicProcessMeta persistMetaInfo = topicProcessMetaMap.get(topic.topicIdMetaKey);
+          byte[] lastMessageId = persistMetaInfo == null ? null : persistMetaInfo.getMessageId();
+          if (lastMessageId != null) {
+            fetcher.addTopic(topic.topicIdMetaKey.getTopicId(), lastMessageId, false);
+          } else {
+            fetcher.addTopic(topic.topicIdMetaKey.getTopicId(), 0L);
           }
         }
+        Map<TopicId, List<RawMessage>> messages = fetcher.fetch();
 
-        if (currentMessageId != null) {
-          // update the last processed timestamp in local topic meta and update the topicProcessMetaMap with this
-          // local topic meta for the topic
-          localTopicProcessMeta.updateLastProcessedTimestamp();
-          topicProcessMetaMap.put(topicIdMetaKey, localTopicProcessMeta);
+        boolean fallingBehind = false;
+        for (TopicState topic : topics) {
+          List<RawMessage> topicMessages = messages.get(topic.topicIdMetaKey.getTopicId());
+          if (topicMessages != null && processMessages(topic, topicMessages)) {
+            fallingBehind = true;
+          }
         }
         // Try to persist metrics and messageId's of the last metrics to be persisted if no other thread is persisting
         tryPersist();
 
-        long endTime = System.currentTimeMillis();
-        // use currentMessageId != null to ensure that the current fetching is not empty and
-        // lastMetricTimeSecs is updated
-        if (currentMessageId != null && endTime - TimeUnit.SECONDS.toMillis(lastMetricTimeSecs) > maxDelayMillis) {
+        if (fallingBehind) {
           // Don't sleep if falling behind
           return 0L;
-        } else {
-          long timeSpent = endTime - startTime;
-          return Math.max(0L, metricsProcessIntervalMillis - timeSpent);
         }
+        long timeSpent = System.currentTimeMillis() - startTime;
+        return Math.max(0L, metricsProcessIntervalMillis - timeSpent);
       } catch (ServiceUnavailableException e) {
         LOG.trace("Could not fetch metrics. Will be retried in next iteration.", e);
       } catch (Exception e) {
@@ -489,6 +461,51 @@ public class MessagingMetricsProcessorService extends AbstractExecutionThreadSer
       return metricsProcessIntervalMillis;
     }
 
+    /**
+     * Decodes the messages fetched from a topic into {@link #metricsFromAllTopics} and updates the processing stats
+     * of the topic.
+     *
+     * @return {@code true} if the last metric processed is older than the max delay
+     */
+    private boolean processMessages(TopicState topic, List<RawMessage> messages) {
+      TopicProcessMeta persistMetaInfo = topicProcessMetaMap.get(topic.topicIdMetaKey);
+      byte[] lastMessageId = persistMetaInfo == null ? null : persistMetaInfo.getMessageId();
+      byte[] currentMessageId = null;
+      long lastMetricTimeSecs = 0L;
+      TopicProcessMeta localTopicProcessMeta =
+        new TopicProcessMeta(lastMessageId, Long.MAX_VALUE, Long.MIN_VALUE, 0,
+                             TimeUnit.MILLISECONDS.toSeconds(System.currentTimeMillis()),
+                             topic.oldestTsMetricName, topic.latestTsMetricName);
+      for (RawMessage input : messages) {
+        if (!isRunning()) {
+          break;
+        }
+        try {
+          MetricValues metricValues = decodeMetricValues(input.getPayload());
+          if (!metricsFromAllTopics.offer(metricValues)) {
+            break;
+          }
+          lastMetricTimeSecs = metricValues.getTimestamp();
+          currentMessageId = input.getId();
+          if (LOG.isTraceEnabled()) {
+            LOG.trace("Received message {} with metrics: {}", Bytes.toStringBinary(currentMessageId), metricValues);
+          }
+          localTopicProcessMeta.updateTopicProcessingStats(currentMessageId, lastMetricTimeSecs);
+        } catch (IOException e) {
+          LOG.warn("Failed to decode message to MetricValue. Skipped. {}", e.getMessage());
+        }
+      }
+
+      if (currentMessageId == null) {
+        return false;
+      }
+      // update the last processed timestamp in local topic meta and update the topicProcessMetaMap with this
+      // local topic meta for the topic
+      localTopicProcessMeta.updateLastProcessedTimestamp();
+      topicProcessMetaMap.put(topic.topicIdMetaKey, localTopicProcessMeta);
+      return System.currentTimeMillis() - TimeUnit.SECONDS.toMillis(lastMetricTimeSecs) > maxDelayMillis;
+    }
+
     /**
      * Persist metrics and messageId's of the last metrics to be persisted if no other thread is persisting
      */
@@ -529,6 +546,34 @@ public class MessagingMetricsProcessorService extends AbstractExecutionThreadSer
     }
   }
 
+  /**
+   * A topic processed by the {@link ProcessMetricsThread}, with the names of its delay metrics.
+   */
+  private final class TopicState {
+    private final TopicIdMetaKey topicIdMetaKey;
+    private final String oldestTsMetricName;
+    private final String latestTsMetricName;
+
+    TopicState(TopicIdMetaKey topicIdMetaKey, @Nullable TopicProcessMeta topicProcessMeta) {
+      this.topicIdMetaKey = topicIdMetaKey;
+      this.oldestTsMetricName = String.format("%s.topic.%s.oldest.delay.ms",
+                                              metricsPrefixForDelayMetrics, topicIdMetaKey.getTopicId().getTopic());
+      this.latestTsMetricName = String.format("%s.topic.%s.latest.delay.ms",
+                                              metricsPrefixForDelayMetrics, topicIdMetaKey.getTopicId().getTopic());
+      if (topicProcessMeta != null && topicProcessMeta.getMessageId() != null) {
+        // message-id already for this topic in metaTable, we create a new TopicProcessMeta with existing values,
+        // add metric names and put it in map
+        byte[] persistedMessageId = topicProcessMeta.getMessageId();
+        topicProcessMetaMap.put(topicIdMetaKey,
+                                new TopicProcessMeta(persistedMessageId, topicProcessMeta.getOldestMetricsTimestamp(),
+                                                     topicProcessMeta.getLatestMetricsTimestamp(),
+                                                     topicProcessMeta.getMessagesProcessed(),
+                                                     topicProcessMeta.getLastProcessedTimestamp(),
+                                                     oldestTsMetricName, latestTsMetricName));
+      }
+    }
+  }
+
   private class PayloadInputStream extends ByteArrayInputStream {
 
     PayloadInputStream() {
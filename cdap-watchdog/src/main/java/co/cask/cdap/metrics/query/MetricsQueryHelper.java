@@ -47,6 +47,8 @@ import java.util.Collection;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 import javax.annotation.Nullable;
 
 /**
@@ -70,6 +72,9 @@ public class MetricsQueryHelper {
   private static final String PARAM_AGGREGATE = "aggregate";
   private static final String PARAM_AUTO_RESOLUTION = "auto";
   private static final String ANY_TAG_VALUE = "*";
+  // separates the metric name and the percentile to query for distribution metrics, e.g. "system.latency:p99"
+  // A metric name with a percentile suffix, e.g. "system.latency:p99"
+  private static final Pattern PERCENTILE_METRIC = Pattern.compile("(.+):(p\\d+)", Pattern.CASE_INSENSITIVE);
 
   private final MetricStore metricStore;
 
@@ -321,12 +326,26 @@ public class MetricsQueryHelper {
 
     MetricQueryRequest.TimeRange timeRange = queryRequest.getTimeRange();
 
-    MetricDataQuery query = new MetricDataQuery(timeRange.getStart(), timeRange.getEnd(),
-                                                timeRange.getResolutionInSeconds(),
-                                                timeRange.getCount(), toMetrics(queryRequest.getMetrics()),
-                                                tagsSliceBy, transformGroupByTags(queryRequest.getGroupBy()),
-                                                timeRange.getInterpolate());
-    Collection<MetricTimeSeries> queryResult = metricStore.query(query);
+    // A query can only have one aggregation function per metric, hence query separately for each function
+    List<MetricTimeSeries> queryResult = Lists.newArrayList();
+    for (Map.Entry<AggregationFunction, Map<String, String>> entry : toMetrics(queryRequest.getMetrics()).entrySet()) {
+      Map<String, String> metricNames = entry.getValue();
+      Map<String, AggregationFunction> metrics = Maps.newHashMap();
+      for (String metricName : metricNames.keySet()) {
+        metrics.put(metricName, entry.getKey());
+      }
+
+      MetricDataQuery query = new MetricDataQuery(timeRange.getStart(), timeRange.getEnd(),
+                                                  timeRange.getResolutionInSeconds(),
+                                                  timeRange.getCount(), metrics,
+                                                  tagsSliceBy, transformGroupByTags(queryRequest.getGroupBy()),
+                                                  timeRange.getInterpolate());
+      // Name the result with the metric name as requested
+      for (MetricTimeSeries timeSeries : metricStore.query(query)) {
+        queryResult.add(new MetricTimeSeries(metricNames.get(timeSeries.getMetricName()),
+                                             timeSeries.getTagValues(), timeSeries.getTimeValues()));
+      }
+    }
 
     long endTime = timeRange.getEnd();
     if (timeRange.getResolutionInSeconds() == Integer.MAX_VALUE && endTime == 0) {
@@ -379,15 +398,55 @@ public class MetricsQueryHelper {
     return result;
   }
 
-  private Map<String, AggregationFunction> toMetrics(List<String> metrics) {
-    Map<String, AggregationFunction> result = Maps.newHashMap();
+  /**
+   * Groups the requested metrics by the aggregation function to query with. A metric is queried with
+   * {@link AggregationFunction#SUM}, unless a percentile is requested with a suffix, e.g. "system.latency:p99".
+   * Any other suffix after a colon is part of the metric name.
+   *
+   * @return a map from the aggregation function to a map from metric name to the requested metric name
+   */
+  private Map<AggregationFunction, Map<String, String>> toMetrics(List<String> metrics) {
+    Map<AggregationFunction, Map<String, String>> result = Maps.newLinkedHashMap();
     for (String metric : metrics) {
       // todo: figure out metric type
-      result.put(metric, AggregationFunction.SUM);
+      AggregationFunction function = AggregationFunction.SUM;
+      String metricName = metric;
+
+      Matcher matcher = PERCENTILE_METRIC.matcher(metric);
+      if (matcher.matches()) {
+        metricName = matcher.group(1);
+        function = toPercentileFunction(matcher.group(2));
+      }
+
+      Map<String, String> metricNames = result.get(function);
+      if (metricNames == null) {
+        metricNames = Maps.newHashMap();
+        result.put(function, metricNames);
+      }
+      metricNames.put(metricName, metric);
     }
     return result;
   }
 
+  private AggregationFunction toPercentileFunction(String percentile) {
+    try {
+      AggregationFunction function = AggregationFunction.valueOf(percentile.toUpperCase());
+      if (function.isPercentile()) {
+        return function;
+      }
+    } catch (IllegalArgumentException e) {
+      // fall through to throw below
+    }
+    List<String> supported = Lists.newArrayList();
+    for (AggregationFunction function : AggregationFunction.values()) {
+      if (function.isPercentile()) {
+        supported.add(function.name().toLowerCase());
+      }
+    }
+    throw new IllegalArgumentException(String.format("Unsupported percentile '%s'. Supported percentiles are %s",
+                                                     percentile, supported));
+  }
+
   private MetricQueryResult decorate(Collection<MetricTimeSeries> series, long startTs, long endTs,
                                      int resolution) {
     MetricQueryResult.TimeSeries[] serieses = new MetricQueryResult.TimeSeries[series.size()];
@@ -89,7 +89,8 @@ public class DefaultMetricDatasetFactory implements MetricDatasetFactory {
               cConf.get(Constants.Metrics.METRICS_TABLE_HBASE_SPLIT_POLICY));
 
     MetricsTable table = getOrCreateResolutionMetricsTable(v3TableName, props, resolution);
-    return new FactTable(table, entityTable.get(), resolution, getRollTime(resolution));
+    return new FactTable(table, entityTable.get(), resolution, getRollTime(resolution),
+                         cConf.getInt(Constants.Metrics.TIME_SERIES_TABLE_COMPACTION_PERIOD + resolution, 0));
   }
 
   @Override
@@ -0,0 +1,48 @@
+/*
+ * Copyright © 2018 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.metrics.store;
+
+import co.cask.cdap.api.metrics.MetricStore;
+import co.cask.cdap.common.conf.CConfiguration;
+import co.cask.cdap.common.conf.Constants;
+import co.cask.cdap.common.service.AbstractRetryableScheduledService;
+import co.cask.cdap.common.service.RetryStrategies;
+import com.google.inject.Inject;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A service that periodically compacts the metrics data with {@link MetricStore#compact()}.
+ */
+public class MetricsCompactionService extends AbstractRetryableScheduledService {
+
+  private final MetricStore metricStore;
+  private final long intervalMillis;
+
+  @Inject
+  public MetricsCompactionService(CConfiguration cConf, MetricStore metricStore) {
+    super(RetryStrategies.exponentialDelay(1, 60, TimeUnit.SECONDS));
+    this.metricStore = metricStore;
+    this.intervalMillis = TimeUnit.SECONDS.toMillis(cConf.getLong(Constants.Metrics.COMPACTION_INTERVAL_SECONDS));
+  }
+
+  @Override
+  protected long runTask() throws Exception {
+    metricStore.compact();
+    return intervalMillis;
+  }
+}
@@ -35,6 +35,7 @@ import co.cask.cdap.logging.context.FlowletLoggingContext;
 import co.cask.cdap.logging.filter.Filter;
 import co.cask.cdap.logging.framework.local.LocalLogAppender;
 import co.cask.cdap.logging.guice.LoggingModules;
+import co.cask.cdap.logging.meta.FileMetaDataReader;
 import co.cask.cdap.logging.read.FileLogReader;
 import co.cask.cdap.logging.read.LogEvent;
 import co.cask.cdap.logging.read.ReadRange;
@@ -203,4 +204,28 @@ public class TestFileLogging {
       Lists.newArrayList(logTail.getLog(loggingContext1, 0, Long.MAX_VALUE, Filter.EMPTY_FILTER));
     Assert.assertEquals(100, events.size());
   }
+
+  @Test
+  public void testParallelRead() throws Exception {
+    CConfiguration cConf = CConfiguration.copy(injector.getInstance(CConfiguration.class));
+    cConf.setInt(Constants.Logging.READER_FILE_PARALLELISM, 3);
+    cConf.setInt(Constants.Logging.READER_FILE_PREFETCH_EVENTS, 7);
+    FileLogReader parallelReader = new FileLogReader(cConf, injector.getInstance(FileMetaDataReader.class));
+
+    LoggingContext loggingContext = new FlowletLoggingContext("TFL_NS_1", "APP_1", "FLOW_1", "", "RUN1", "INSTANCE1");
+    new LoggingTester().testGetNext(parallelReader, loggingContext);
+
+    // Reading all files concurrently should give the same events as reading them one after another
+    LoggingContext loggingContext1 = new FlowletLoggingContext("TFL_NS_1", "APP_1", "FLOW_1", "", null, "INSTANCE1");
+    FileLogReader logReader = injector.getInstance(FileLogReader.class);
+    List<LogEvent> expected =
+      Lists.newArrayList(logReader.getLog(loggingContext1, 0, Long.MAX_VALUE, Filter.EMPTY_FILTER));
+    List<LogEvent> actual =
+      Lists.newArrayList(parallelReader.getLog(loggingContext1, 0, Long.MAX_VALUE, Filter.EMPTY_FILTER));
+    Assert.assertEquals(100, actual.size());
+    for (int i = 0; i < expected.size(); i++) {
+      Assert.assertEquals(expected.get(i).getLoggingEvent().getFormattedMessage(),
+                          actual.get(i).getLoggingEvent().getFormattedMessage());
+    }
+  }
 }
@@ -0,0 +1,124 @@
+/*
+ * Copyright © 2018 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.logging.appender.system;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.classic.spi.LoggingEvent;
+import co.cask.cdap.api.dataset.lib.CloseableIterator;
+import co.cask.cdap.logging.filter.Filter;
+import co.cask.cdap.logging.filter.LogLevelExpression;
+import co.cask.cdap.logging.read.LogEvent;
+import co.cask.cdap.logging.write.LogFileIndex;
+import co.cask.cdap.logging.write.LogLocation;
+import org.apache.twill.filesystem.LocalLocationFactory;
+import org.apache.twill.filesystem.Location;
+import org.junit.Assert;
+import org.junit.ClassRule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Tests for {@link LogFileOutputStream} and reading of the {@link LogFileIndex} written by it.
+ */
+public class LogFileOutputStreamTest {
+
+  @ClassRule
+  public static final TemporaryFolder TMP_FOLDER = new TemporaryFolder();
+
+  @Test
+  public void testIndex() throws Exception {
+    Location location = new LocalLocationFactory(TMP_FOLDER.newFolder()).create("1000.avro");
+    LogFileOutputStream outputStream = new LogFileOutputStream(location, "", 1024 * 1024, 1000L, new Closeable() {
+      @Override
+      public void close() {
+        // no-op
+      }
+    });
+
+    // Write 5000 events, with ERROR events only in the range of 2000 to 3000
+    Logger logger = (Logger) LoggerFactory.getLogger(Logger.ROOT_LOGGER_NAME);
+    for (int i = 0; i < 5000; i++) {
+      Level level = i >= 2000 && i < 3000 ? Level.ERROR : Level.INFO;
+      LoggingEvent event = new LoggingEvent("co.cask.Test", logger, level, "message " + i, null, null);
+      event.setTimeStamp(i);
+      outputStream.append(event);
+    }
+    outputStream.close();
+
+    LogFileIndex index = LogFileIndex.read(location);
+    Assert.assertNotNull(index);
+    List<LogFileIndex.Entry> entries = index.getEntries();
+    Assert.assertEquals(5, entries.size());
+    for (int i = 0; i < entries.size(); i++) {
+      LogFileIndex.Entry entry = entries.get(i);
+      Assert.assertEquals(i * 1000, entry.getMinTimestamp());
+      Assert.assertEquals(i * 1000 + 999, entry.getMaxTimestamp());
+      Assert.assertEquals(i == 2, entry.getLevels().contains(Level.ERROR));
+      Assert.assertEquals(i != 2, entry.getLevels().contains(Level.INFO));
+    }
+
+    LogLocation logLocation = new LogLocation(LogLocation.VERSION_1, 1000L, 1000L, location, "default", null);
+    Filter errorFilter = new LogLevelExpression("ERROR");
+
+    // Reads with and without the index should give the same result
+    for (int i = 0; i < 2; i++) {
+      Assert.assertEquals(range(2500, 3000), getTimestamps(logLocation.readLog(errorFilter, 2500, 4000, 1000)));
+      Assert.assertEquals(range(1500, 1600), getTimestamps(logLocation.readLog(Filter.EMPTY_FILTER, 1500, 4000, 100)));
+      Assert.assertEquals(range(2000, 2100), getTimestamps(logLocation.readLogPrev(errorFilter, 2099, 1000)));
+      Assert.assertEquals(range(3900, 4000), getTimestamps(logLocation.readLogPrev(Filter.EMPTY_FILTER, 3999, 100)));
+
+      LogFileIndex.getIndexLocation(location).delete();
+    }
+  }
+
+  private List<Long> range(long start, long end) {
+    List<Long> result = new ArrayList<>();
+    for (long i = start; i < end; i++) {
+      result.add(i);
+    }
+    return result;
+  }
+
+  private List<Long> getTimestamps(CloseableIterator<LogEvent> iterator) {
+    List<Long> result = new ArrayList<>();
+    try {
+      while (iterator.hasNext()) {
+        result.add(iterator.next().getLoggingEvent().getTimeStamp());
+      }
+    } finally {
+      iterator.close();
+    }
+    return result;
+  }
+
+  private List<Long> getTimestamps(Collection<LogEvent> events) {
+    List<Long> result = new ArrayList<>();
+    for (LogEvent event : events) {
+      ILoggingEvent loggingEvent = event.getLoggingEvent();
+      result.add(loggingEvent.getTimeStamp());
+    }
+    return result;
+  }
+}
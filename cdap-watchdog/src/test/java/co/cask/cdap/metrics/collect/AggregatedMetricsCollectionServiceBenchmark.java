@@ -0,0 +1,115 @@
+/*
+ * Copyright © 2018 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package co.cask.cdap.metrics.collect;
+
+import co.cask.cdap.api.metrics.MetricValues;
+import co.cask.cdap.api.metrics.MetricsContext;
+import co.cask.cdap.api.metrics.MetricsCounter;
+import co.cask.cdap.common.conf.Constants;
+import com.google.common.collect.ImmutableMap;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JMH benchmark for the increment path of {@link AggregatedMetricsCollectionService}, comparing
+ * {@link MetricsContext#increment(String, long)} with a {@link MetricsCounter} obtained from the context.
+ * Metrics are emitted every second while the benchmark is running, same as in a real deployment.
+ *
+ * It can be run from the IDE or through the {@link #main(String[])} method with the test classpath.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Threads(32)
+@Fork(1)
+public class AggregatedMetricsCollectionServiceBenchmark {
+
+  private static final String METRIC = "process.events.processed";
+  private static final Map<String, String> TAGS = ImmutableMap.of(Constants.Metrics.Tag.NAMESPACE, "benchmark",
+                                                                  Constants.Metrics.Tag.APP, "app",
+                                                                  Constants.Metrics.Tag.FLOW, "flow",
+                                                                  Constants.Metrics.Tag.FLOWLET, "flowlet");
+
+  private AggregatedMetricsCollectionService service;
+  private MetricsContext context;
+  private MetricsCounter counter;
+
+  @Setup(Level.Trial)
+  public void setup() {
+    service = new AggregatedMetricsCollectionService() {
+      @Override
+      protected void publish(Iterator<MetricValues> metrics) {
+        // The service consumes the iterator, which emits all the metrics
+      }
+
+      @Override
+      protected long getInitialDelayMillis() {
+        return 1000L;
+      }
+
+      @Override
+      protected long getPeriodMillis() {
+        return 1000L;
+      }
+    };
+    service.startAndWait();
+    context = service.getContext(TAGS);
+    counter = context.counter(METRIC);
+  }
+
+  @TearDown(Level.Trial)
+  public void teardown() {
+    service.stopAndWait();
+  }
+
+  @Benchmark
+  public void contextIncrement() {
+    context.increment(METRIC, 1L);
+  }
+
+  @Benchmark
+  public void counterIncrement() {
+    counter.increment(1L);
+  }
+
+  public static void main(String[] args) throws RunnerException {
+    Options options = new OptionsBuilder()
+      .include(AggregatedMetricsCollectionServiceBenchmark.class.getSimpleName())
+      .build();
+    new Runner(options).run();
+  }
+}
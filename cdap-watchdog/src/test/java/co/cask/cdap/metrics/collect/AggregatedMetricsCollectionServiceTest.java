@@ -15,9 +15,12 @@
  */
 package co.cask.cdap.metrics.collect;
 
+import co.cask.cdap.api.dataset.lib.cube.Distribution;
+import co.cask.cdap.api.metrics.MetricType;
 import co.cask.cdap.api.metrics.MetricValue;
 import co.cask.cdap.api.metrics.MetricValues;
 import co.cask.cdap.api.metrics.MetricsContext;
+import co.cask.cdap.api.metrics.MetricsCounter;
 import co.cask.cdap.common.conf.Constants;
 import co.cask.cdap.test.SlowTests;
 import com.google.common.collect.ImmutableMap;
@@ -26,16 +29,24 @@ import org.junit.Assert;
 import org.junit.Test;
 import org.junit.experimental.categories.Category;
 
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
 import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.CyclicBarrier;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
+import javax.annotation.Nullable;
 
 /**
  * Testing the basic properties of the {@link AggregatedMetricsCollectionService}.
@@ -51,16 +62,31 @@ public class AggregatedMetricsCollectionServiceTest {
   private static final String INSTANCE = "testInstance";
   private static final String METRIC = "metric";
   private static final String GAUGE_METRIC = "gaugeMetric";
+  private static final String DISTRIBUTION_METRIC = "distributionMetric";
 
   private long getMetricValue(Collection<MetricValue> metrics, String metricName) {
-    Iterator<MetricValue> metricsItor = metrics.iterator();
-    while (metricsItor.hasNext()) {
-      MetricValue metricValue = metricsItor.next();
+    MetricValue metricValue = getMetric(metrics, metricName);
+    return metricValue == null ? 0 : metricValue.getValue();
+  }
+
+  @Nullable
+  private MetricValue getMetric(Collection<MetricValue> metrics, String metricName) {
+    for (MetricValue metricValue : metrics) {
       if (metricValue.getName().equals(metricName)) {
-        return metricValue.getValue();
+        return metricValue;
+      }
+    }
+    return null;
+  }
+
+  @Nullable
+  private MetricValue getMetric(Collection<MetricValue> metrics, String metricName, MetricType type) {
+    for (MetricValue metricValue : metrics) {
+      if (metricValue.getName().equals(metricName) && metricValue.getType() == type) {
+        return metricValue;
       }
     }
-    return 0;
+    return null;
   }
 
   @Category(SlowTests.class)
@@ -123,6 +149,22 @@ public class AggregatedMetricsCollectionServiceTest {
       Assert.assertNotNull(record);
       Assert.assertEquals(3, getMetricValue(record.getMetrics(), GAUGE_METRIC));
 
+      // distribution keeps all the values emitted within the same period
+      service.getContext(EMPTY_TAGS).distribution(DISTRIBUTION_METRIC, 10);
+      service.getContext(EMPTY_TAGS).distribution(DISTRIBUTION_METRIC, 20);
+      service.getContext(EMPTY_TAGS).distribution(DISTRIBUTION_METRIC, 30);
+      // a counter with the same name is emitted together with the distribution
+      service.getContext(EMPTY_TAGS).increment(DISTRIBUTION_METRIC, 5);
+
+      record = published.poll(3, TimeUnit.SECONDS);
+      Assert.assertNotNull(record);
+      MetricValue distribution = getMetric(record.getMetrics(), DISTRIBUTION_METRIC, MetricType.DISTRIBUTION);
+      Assert.assertNotNull(distribution);
+      Assert.assertEquals(new Distribution().add(10).add(20).add(30), distribution.getDistribution());
+      MetricValue counter = getMetric(record.getMetrics(), DISTRIBUTION_METRIC, MetricType.COUNTER);
+      Assert.assertNotNull(counter);
+      Assert.assertEquals(5, counter.getValue());
+
       // define collectors for non-empty tags
       MetricsContext baseCollector = service.getContext(baseTags);
       MetricsContext flowletInstanceCollector = baseCollector.childContext(Constants.Metrics.Tag.FLOWLET, FLOWLET)
@@ -164,6 +206,73 @@ public class AggregatedMetricsCollectionServiceTest {
     }
   }
 
+  @Test
+  public void testConcurrentIncrements() throws Exception {
+    final BlockingQueue<MetricValues> published = new LinkedBlockingQueue<>();
+
+    AggregatedMetricsCollectionService service = new AggregatedMetricsCollectionService() {
+      @Override
+      protected void publish(Iterator<MetricValues> metrics) {
+        Iterators.addAll(published, metrics);
+      }
+
+      @Override
+      protected long getInitialDelayMillis() {
+        return 0L;
+      }
+
+      @Override
+      protected long getPeriodMillis() {
+        return 10L;
+      }
+    };
+
+    service.startAndWait();
+    final int threads = 8;
+    final int increments = 100000;
+    try {
+      // Increment through both the context and bound counters concurrently while metrics are being emitted
+      final MetricsContext context = service.getContext(EMPTY_TAGS);
+      ExecutorService executor = Executors.newFixedThreadPool(threads);
+      try {
+        final CyclicBarrier barrier = new CyclicBarrier(threads);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int i = 0; i < threads; i++) {
+          final boolean useCounter = i % 2 == 0;
+          futures.add(executor.submit(new Callable<Void>() {
+            @Override
+            public Void call() throws Exception {
+              MetricsCounter counter = context.counter(METRIC);
+              barrier.await();
+              for (int j = 0; j < increments; j++) {
+                if (useCounter) {
+                  counter.increment(1L);
+                } else {
+                  context.increment(METRIC, 1L);
+                }
+              }
+              return null;
+            }
+          }));
+        }
+        for (Future<?> future : futures) {
+          future.get(30, TimeUnit.SECONDS);
+        }
+      } finally {
+        executor.shutdownNow();
+      }
+    } finally {
+      // Stopping the service publishes the remaining metrics
+      service.stopAndWait();
+    }
+
+    long total = 0;
+    for (MetricValues record : published) {
+      total += getMetricValue(record.getMetrics(), METRIC);
+    }
+    Assert.assertEquals((long) threads * increments, total);
+  }
+
   @Test
   public void testServiceShutdown() throws InterruptedException, TimeoutException, ExecutionException {
     final CountDownLatch latch = new CountDownLatch(1);
@@ -64,6 +64,7 @@ public class MessagingMetricsCollectionServiceTest extends MetricsTestBase {
     // publish metrics for different context
     for (int i = 1; i <= 3; i++) {
       collectionService.getContext(ImmutableMap.of("tag", "" + i)).increment("processed", i);
+      collectionService.getContext(ImmutableMap.of("tag", "" + i)).distribution("latency", i * 10);
     }
 
     collectionService.stopAndWait();
@@ -73,6 +74,10 @@ public class MessagingMetricsCollectionServiceTest extends MetricsTestBase {
     expected.put("tag.1", "processed", 1L);
     expected.put("tag.2", "processed", 2L);
     expected.put("tag.3", "processed", 3L);
+    // the value of a distribution is the number of values in it
+    expected.put("tag.1", "latency", 1L);
+    expected.put("tag.2", "latency", 1L);
+    expected.put("tag.3", "latency", 1L);
 
     ReflectionDatumReader<MetricValues> recordReader = new ReflectionDatumReader<>(schema, metricValueType);
     assertMetricsFromMessaging(schema, recordReader, expected);
@@ -90,8 +95,11 @@ public class MessagingMetricsCollectionServiceTest extends MetricsTestBase {
       try (CloseableIterator<RawMessage> iterator = messagingService.prepareFetch(topicId).fetch()) {
         while (iterator.hasNext()) {
           RawMessage message = iterator.next();
+          byte[] payload = message.getPayload();
+          // Payloads start with the payload version
+          Assert.assertEquals(MetricValuesPayload.VERSION, payload[0]);
           MetricValues metricsRecord = (MetricValues) recordReader.read(
-            new BinaryDecoder(is.reset(ByteBuffer.wrap(message.getPayload()))), schema);
+            new BinaryDecoder(is.reset(ByteBuffer.wrap(payload, 1, payload.length - 1))), schema);
           StringBuilder flattenContext = new StringBuilder();
           // for verifying expected results, sorting tags
           Map<String, String> tags = Maps.newTreeMap();
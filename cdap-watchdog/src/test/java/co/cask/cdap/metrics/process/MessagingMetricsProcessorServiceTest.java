@@ -70,8 +70,9 @@ public class MessagingMetricsProcessorServiceTest extends MetricsProcessorServic
       // First publish all metrics before MessagingMetricsProcessorService starts, so that fetchers of different topics
       // will fetch metrics concurrently.
       for (int i = 0; i < 50; i++) {
-        // TOPIC_PREFIX + (i % PARTITION_SIZE) decides which topic the metric is published to
-        publishMessagingMetrics(i, startTime, METRICS_CONTEXT, expected, "", MetricType.COUNTER);
+        // TOPIC_PREFIX + (i % PARTITION_SIZE) decides which topic the metric is published to.
+        // Counters are published in the unversioned format, same as containers from before payloads were versioned.
+        publishMessagingMetrics(i, startTime, METRICS_CONTEXT, expected, "", MetricType.COUNTER, false);
       }
       for (int i = 50; i < 100; i++) {
         // TOPIC_PREFIX + (i % PARTITION_SIZE) decides which topic the metric is published to
@@ -209,6 +210,11 @@ public class MessagingMetricsProcessorServiceTest extends MetricsProcessorServic
       // no-op
     }
 
+    @Override
+    public void compact() throws Exception {
+      // no-op
+    }
+
     @Override
     public void delete(MetricDeleteQuery query) throws Exception {
       // no-op
@@ -16,7 +16,6 @@
 
 package co.cask.cdap.metrics.process;
 
-import co.cask.cdap.api.messaging.TopicNotFoundException;
 import co.cask.cdap.api.metrics.MetricStore;
 import co.cask.cdap.api.metrics.MetricType;
 import co.cask.cdap.api.metrics.MetricValues;
@@ -32,6 +31,7 @@ import co.cask.cdap.data.runtime.DataSetsModules;
 import co.cask.cdap.explore.guice.ExploreClientModule;
 import co.cask.cdap.messaging.client.StoreRequestBuilder;
 import co.cask.cdap.metrics.MetricsTestBase;
+import co.cask.cdap.metrics.collect.MetricValuesPayload;
 import co.cask.cdap.metrics.store.DefaultMetricStore;
 import co.cask.cdap.metrics.store.LocalMetricsDatasetFactory;
 import co.cask.cdap.metrics.store.MetricDatasetFactory;
@@ -52,7 +52,6 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.ByteArrayOutputStream;
-import java.io.IOException;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
@@ -79,10 +78,27 @@ abstract class MetricsProcessorServiceTestBase extends MetricsTestBase {
   void publishMessagingMetrics(int metricIndex, long startTimeSecs, Map<String, String> metricsContext,
                                Map<String, Long> expected, String expectedMetricPrefix,
                                MetricType metricType) {
+    publishMessagingMetrics(metricIndex, startTimeSecs, metricsContext, expected, expectedMetricPrefix, metricType,
+                            true);
+  }
+
+  /**
+   * Publishes a metric, either in the current payload format or in the unversioned one, which is published by
+   * containers from before payloads were versioned.
+   */
+  void publishMessagingMetrics(int metricIndex, long startTimeSecs, Map<String, String> metricsContext,
+                               Map<String, Long> expected, String expectedMetricPrefix,
+                               MetricType metricType, boolean versioned) {
 
     try {
-      getMetricValuesAddToExpected(metricIndex, startTimeSecs,
-                                   metricsContext, expected, expectedMetricPrefix, metricType);
+      MetricValues metric = getMetricValuesAddToExpected(metricIndex, startTimeSecs, metricsContext, expected,
+                                                         expectedMetricPrefix, metricType);
+      if (versioned) {
+        encoderOutputStream.write(MetricValuesPayload.VERSION);
+        recordWriter.encode(metric, encoder);
+      } else {
+        unversionedRecordWriter.encode(metric, encoder);
+      }
       int numOfTopics = cConf.getInt(Constants.Metrics.MESSAGING_TOPIC_NUM);
       messagingService.publish(
         StoreRequestBuilder.of(NamespaceId.SYSTEM.topic(TOPIC_PREFIX + (metricIndex % numOfTopics)))
@@ -103,8 +119,7 @@ abstract class MetricsProcessorServiceTestBase extends MetricsTestBase {
    */
   private MetricValues getMetricValuesAddToExpected(int i, long startTimeSecs, Map<String, String> metricsContext,
                                                     Map<String, Long> expected, String expectedMetricPrefix,
-                                                    MetricType metricType)
-    throws TopicNotFoundException, IOException {
+                                                    MetricType metricType) {
     MetricValues metric;
     if (MetricType.GAUGE.equals(metricType)) {
       String metricName = GAUGE_METRIC_NAME_PREFIX + i;
@@ -123,7 +138,6 @@ abstract class MetricsProcessorServiceTestBase extends MetricsTestBase {
       }
     }
 
-    recordWriter.encode(metric, encoder);
     return metric;
   }
 